@@ -20,9 +20,11 @@ package org.apache.jena.atlas.data;
 import java.util.Arrays;
 import java.util.Comparator;
 
-public final class AbortableComparator<E> implements Comparator<E> {
+public final class AbortableComparator<E> implements SortKeyComparator<E, Object> {
+    @SuppressWarnings("unchecked")
     public AbortableComparator(Comparator<? super E> comparator) {
         this.baseComparator = comparator;
+        this.keyComparator = ( comparator instanceof SortKeyComparator<?, ?> ) ? (SortKeyComparator<? super E, Object>)comparator : null;
     }
 
     /**
@@ -37,9 +39,14 @@ public final class AbortableComparator<E> implements Comparator<E> {
         COMPLETED, ABORTED
     }
 
+    /** Arrays smaller than this are sorted on the calling thread. */
+    public static final int PARALLEL_SORT_THRESHOLD = 8192;
+
     protected volatile boolean cancelled;
 
     final Comparator<? super E> baseComparator;
+    // The base comparator, if it provides sort keys, else null.
+    private final SortKeyComparator<? super E, Object> keyComparator;
 
     @Override
     public int compare(E o1, E o2) {
@@ -48,19 +55,81 @@ public final class AbortableComparator<E> implements Comparator<E> {
         return baseComparator.compare(o1, o2);
     }
 
+    /** Whether the base comparator calculates sort keys. */
+    public boolean hasSortKeys() {
+        return keyComparator != null;
+    }
+
+    /** The sort key of an item; null if the base comparator does not use sort keys. */
+    @Override
+    public Object sortKey(E item) {
+        return keyComparator == null ? null : keyComparator.sortKey(item);
+    }
+
+    @Override
+    public int compare(Object key1, E item1, Object key2, E item2) {
+        if (cancelled)
+            throw new AbandonSort();
+        if ( keyComparator == null )
+            return baseComparator.compare(item1, item2);
+        return keyComparator.compare(key1, item1, key2, item2);
+    }
+
     /**
      * Sort the array <code>e</code> using this comparator with the additional
      * ability to abort the sort.
      */
     public Finish abortableSort(E[] e) {
+        return abortableSort(e, false);
+    }
+
+    /**
+     * Sort the array <code>e</code> using this comparator with the additional
+     * ability to abort the sort.
+     * <p>
+     * If the base comparator is a {@link SortKeyComparator}, the sort key of each item
+     * is calculated once, on the calling thread, and the keys are compared.
+     * Then, if {@code parallel} is true, a large array is sorted with
+     * {@link Arrays#parallelSort}.
+     */
+    public Finish abortableSort(E[] e, boolean parallel) {
         try {
-            Arrays.sort(e, this);
+            if ( keyComparator == null )
+                Arrays.sort(e, this);
+            else
+                keyedSort(e, parallel && e.length >= PARALLEL_SORT_THRESHOLD);
         } catch (AbandonSort s) {
             return Finish.ABORTED;
         }
         return Finish.COMPLETED;
     }
 
+    private static class Keyed<E> {
+        final Object key;
+        final E item;
+        Keyed(Object key, E item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void keyedSort(E[] e, boolean parallel) {
+        Keyed<E>[] keyed = new Keyed[e.length];
+        for ( int i = 0 ; i < e.length ; i++ ) {
+            if ( cancelled )
+                throw new AbandonSort();
+            keyed[i] = new Keyed<>(keyComparator.sortKey(e[i]), e[i]);
+        }
+        Comparator<Keyed<E>> cmp = (k1, k2) -> compare(k1.key, k1.item, k2.key, k2.item);
+        if ( parallel )
+            Arrays.parallelSort(keyed, cmp);
+        else
+            Arrays.sort(keyed, cmp);
+        for ( int i = 0 ; i < e.length ; i++ )
+            e[i] = keyed[i].item;
+    }
+
     /**
      * Arrange that the next on-frequency cancellation test in compare will
      * succeed, aborting the sort.
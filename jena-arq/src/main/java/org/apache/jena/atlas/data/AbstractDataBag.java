@@ -43,6 +43,8 @@ import org.apache.jena.atlas.lib.FileOps ;
 public abstract class AbstractDataBag<E> implements DataBag<E>
 {
     private final List<File> spillFiles = new ArrayList<>();
+    // Action to run, on the spilling thread, for each spill file.
+    private static final ThreadLocal<Runnable> spillAction = new ThreadLocal<>();
     protected Collection<E> memory = new ArrayList<>();
     
     private final List<WeakReference<Closeable>> closeableIterators = new ArrayList<>();
@@ -86,6 +88,23 @@ public abstract class AbstractDataBag<E> implements DataBag<E>
     protected void registerSpillFile(File spillFile)
     {
         spillFiles.add(spillFile);
+        Runnable action = spillAction.get();
+        if ( action != null )
+            action.run();
+    }
+    
+    /**
+     * Set the action to run each time a data bag spills to disk on the current thread,
+     * or null for none. Returns the previous action so that callers can restore it.
+     */
+    public static Runnable setSpillAction(Runnable action)
+    {
+        Runnable previous = spillAction.get();
+        if ( action == null )
+            spillAction.remove();
+        else
+            spillAction.set(action);
+        return previous;
     }
     
     protected static OutputStream getOutputStream(File file) throws FileNotFoundException
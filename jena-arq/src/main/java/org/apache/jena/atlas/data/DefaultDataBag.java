@@ -159,7 +159,8 @@ public class DefaultDataBag<E> extends AbstractDataBag<E>
         closeWriter();
         
         // Create a new reader
-        if (policy.isThresholdExceeded())
+        // Not "policy.isThresholdExceeded()" - a zero count policy is exceeded before anything is added.
+        if (spilled)
         {
             File spillFile = getSpillFiles().get(0);
             
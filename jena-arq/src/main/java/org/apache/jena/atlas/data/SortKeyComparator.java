@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.atlas.data;
+
+import java.util.Comparator;
+
+/**
+ * A comparator that orders items by a sort key computed once per item.
+ * <p>
+ * Sorting and merging calculate the key of each item once, rather than on each
+ * comparison, and compare the keys. Comparing keys must not depend on the thread
+ * it runs on, so that keys can be compared in parallel. Items with equal keys may
+ * be compared using the items themselves.
+ *
+ * @param <E> Items
+ * @param <K> Sort keys
+ */
+public interface SortKeyComparator<E, K> extends Comparator<E> {
+
+    /** The sort key of an item. */
+    public K sortKey(E item);
+
+    /**
+     * Compare two items, given their sort keys. This must give the same result as
+     * {@link #compare(Object, Object)} of the items.
+     */
+    public int compare(K key1, E item1, K key2, E item2);
+
+    @Override
+    public default int compare(E item1, E item2) {
+        return compare(sortKey(item1), item1, sortKey(item2), item2);
+    }
+}
@@ -29,10 +29,15 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jena.atlas.AtlasException;
 import org.apache.jena.atlas.data.AbortableComparator.Finish;
+import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.iterator.IteratorResourceClosing;
 import org.apache.jena.atlas.lib.Closeable;
@@ -81,6 +86,11 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
     protected boolean spilled = false;
     protected boolean closed = false;
 
+    protected boolean parallelSort = false;
+    protected boolean asyncSpill = false;
+    // The spill being sorted and written on another thread, if any.
+    private Future<?> pendingSpill = null;
+
     public SortedDataBag(ThresholdPolicy<E> policy, SerializationFactory<E> serializerFactory,
             Comparator<? super E> comparator) {
         this.policy = policy;
@@ -113,6 +123,25 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
         return closed;
     }
 
+    /**
+     * Sort large arrays of items in parallel. This applies when the comparator is a
+     * {@link SortKeyComparator}: the keys are calculated on the calling thread and
+     * only the comparison of keys is done on other threads. Comparing items with
+     * equal keys may read the items, so the items must be usable on another thread.
+     */
+    public void setParallelSort(boolean parallelSort) {
+        this.parallelSort = parallelSort;
+    }
+
+    /**
+     * Sort and write each spill file on a background thread while items continue
+     * to be added. At most one spill is in progress, so up to twice the threshold
+     * of items can be in memory. The items must be usable on another thread.
+     */
+    public void setAsyncSpill(boolean asyncSpill) {
+        this.asyncSpill = asyncSpill;
+    }
+
     protected void checkClosed() {
         if (closed)
             throw new AtlasException("SortedDataBag is closed, no operations can be performed on it.");
@@ -155,32 +184,79 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
                 throw new AtlasException(e);
             }
 
-            // Sort the tuples as an array. The CanAbortComparator will sort
-            // the array using Arrays.sort. The cast to E[] is safe. If the sort is
-            // aborted, don't bother messing around with the serialisation.
-            // We'll never get around to using it anyway.
-
+            // The cast to E[] is safe.
             E[] array = (E[]) memory.toArray();
-            if (comparator.abortableSort(array) == Finish.COMPLETED) {
-                Sink<E> serializer = serializationFactory.createSerializer(out);
-                try {
-                    for (Object tuple : array) {
-                        serializer.send((E) tuple);
-                    }
-                } finally {
-                    serializer.close();
-                }
-            }
-
             spilled = true;
             policy.reset();
             memory.clear();
+
+            if (asyncSpill) {
+                awaitSpill();
+                pendingSpill = spillExecutor().submit(() -> writeSpill(array, out));
+            } else {
+                writeSpill(array, out);
+            }
         }
     }
 
+    private void writeSpill(E[] array, OutputStream out) {
+        // Sort the tuples as an array. The CanAbortComparator will sort
+        // the array using Arrays.sort. If the sort is
+        // aborted, don't bother messing around with the serialisation.
+        // We'll never get around to using it anyway.
+        if (comparator.abortableSort(array, parallelSort) == Finish.COMPLETED) {
+            Sink<E> serializer = serializationFactory.createSerializer(out);
+            try {
+                for (E tuple : array) {
+                    serializer.send(tuple);
+                }
+            } finally {
+                serializer.close();
+            }
+        } else {
+            IO.closeSilent(out);
+        }
+    }
+
+    /** Wait for a background spill to finish. */
+    private void awaitSpill() {
+        Future<?> spill = pendingSpill;
+        if (spill == null)
+            return;
+        pendingSpill = null;
+        try {
+            spill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AtlasException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new AtlasException(cause);
+        }
+    }
+
+    private static ExecutorService spillExecutor = null;
+
+    private static synchronized ExecutorService spillExecutor() {
+        if (spillExecutor == null) {
+            AtomicInteger counter = new AtomicInteger(0);
+            spillExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "SortedDataBag-spill-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return spillExecutor;
+    }
+
     @Override
     public void flush() {
         spill();
+        awaitSpill();
     }
 
     protected Iterator<E> getInputIterator(File spillFile) throws FileNotFoundException {
@@ -199,6 +275,7 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
      */
     @Override
     public Iterator<E> iterator() {
+        awaitSpill();
         preMerge();
 
         return iterator(getSpillFiles().size());
@@ -214,7 +291,7 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
         // like all the the other methods)
         if (!finishedAdding && memSize > 1) {
             E[] array = (E[]) memory.toArray();
-            comparator.abortableSort(array); // don't care if we aborted or not
+            comparator.abortableSort(array, parallelSort); // don't care if we aborted or not
             memory = Arrays.asList(array);
         }
 
@@ -292,6 +369,11 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
     @Override
     public void close() {
         if (!closed) {
+            try {
+                awaitSpill();
+            } catch (RuntimeException ex) {
+                // Closing anyway.
+            }
             closeIterators();
             deleteSpillFiles();
 
@@ -302,47 +384,121 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
 
     /**
      * An iterator that handles getting the next tuple from the bag.
+     * <p>
+     * This is a k-way merge of the sorted inputs using a tree of losers: each step
+     * replays one path from a leaf to the root, log(k) comparisons. If the comparator
+     * is a {@link SortKeyComparator}, the sort key of each item is calculated once
+     * when it is read from its input.
      */
     protected static class SpillSortIterator<T> implements Iterator<T>, Closeable {
         private final List<Iterator<T>> inputs;
         private final Comparator<? super T> comp;
-        private final PriorityQueue<Item<T>> minHeap;
-
+        private final SortKeyComparator<? super T, Object> keyComp;
+        private final int k;
+        // The current item of each input, and its sort key.
+        private final Object[] heads;
+        private final Object[] keys;
+        private final boolean[] exhausted;
+        // tree[0] is the input with the least item; tree[1..k-1] are the losers
+        // at the internal nodes. Input i is the leaf at node k+i.
+        private final int[] tree;
+
+        @SuppressWarnings("unchecked")
         public SpillSortIterator(List<Iterator<T>> inputs, Comparator<? super T> comp) {
             this.inputs = inputs;
             this.comp = comp;
-            this.minHeap = new PriorityQueue<>(inputs.size());
-
-            // Prime the heap
-            for (int i = 0; i < inputs.size(); i++) {
+            this.keyComp = ( comp instanceof SortKeyComparator<?, ?> ) ? (SortKeyComparator<? super T, Object>)comp : null;
+            this.k = inputs.size();
+            this.heads = new Object[k];
+            this.keys = new Object[k];
+            this.exhausted = new boolean[k];
+            this.tree = new int[Math.max(1, k)];
+
+            // Prime the tree
+            for (int i = 0; i < k; i++) {
                 replaceItem(i);
             }
+            if (k == 0) {
+                return;
+            }
+            // The winner of each internal node, played bottom up.
+            int[] winners = new int[k];
+            for (int node = k - 1; node >= 1; node--) {
+                int left = 2 * node;
+                int right = left + 1;
+                int a = (left >= k) ? left - k : winners[left];
+                int b = (right >= k) ? right - k : winners[right];
+                if (beats(a, b)) {
+                    winners[node] = a;
+                    tree[node] = b;
+                } else {
+                    winners[node] = b;
+                    tree[node] = a;
+                }
+            }
+            tree[0] = (k == 1) ? 0 : winners[1];
         }
 
         private void replaceItem(int index) {
             Iterator<T> it = inputs.get(index);
             if (it.hasNext()) {
                 T tuple = it.next();
-                minHeap.add(new Item<>(index, tuple, comp));
+                heads[index] = tuple;
+                if (keyComp != null)
+                    keys[index] = keyComp.sortKey(tuple);
+            } else {
+                heads[index] = null;
+                keys[index] = null;
+                exhausted[index] = true;
             }
         }
 
+        /** Does the current item of input a come before that of input b? Exhausted inputs come last. */
+        @SuppressWarnings("unchecked")
+        private boolean beats(int a, int b) {
+            if (exhausted[a])
+                return false;
+            if (exhausted[b])
+                return true;
+            T t1 = (T)heads[a];
+            T t2 = (T)heads[b];
+            int x;
+            if (keyComp != null)
+                x = keyComp.compare(keys[a], t1, keys[b], t2);
+            else if (comp != null)
+                x = comp.compare(t1, t2);
+            else
+                x = ((Comparable<T>)t1).compareTo(t2);
+            // Ties go to the earlier input.
+            return x < 0 || (x == 0 && a < b);
+        }
+
         @Override
         public boolean hasNext() {
-            return (minHeap.peek() != null);
+            return k > 0 && !exhausted[tree[0]];
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public T next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            Item<T> curr = minHeap.poll();
-            // Read replacement item
-            replaceItem(curr.getIndex());
-
-            return curr.getTuple();
+            int winner = tree[0];
+            T tuple = (T)heads[winner];
+            // Read replacement item and replay its path to the root.
+            replaceItem(winner);
+            int s = winner;
+            for (int node = (winner + k) / 2; node >= 1; node /= 2) {
+                if (beats(tree[node], s)) {
+                    int t = tree[node];
+                    tree[node] = s;
+                    s = t;
+                }
+            }
+            tree[0] = s;
+            return tuple;
         }
 
         @Override
@@ -356,48 +512,5 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
                 Iter.close(it);
             }
         }
-
-        private final class Item<U> implements Comparable<Item<U>> {
-            private final int index;
-            private final U tuple;
-            private final Comparator<? super U> c;
-
-            public Item(int index, U tuple, Comparator<? super U> c) {
-                this.index = index;
-                this.tuple = tuple;
-                this.c = c;
-            }
-
-            public int getIndex() {
-                return index;
-            }
-
-            public U getTuple() {
-                return tuple;
-            }
-
-            @Override
-            @SuppressWarnings("unchecked")
-            public int compareTo(Item<U> o) {
-                return (null != c) ? c.compare(tuple, o.getTuple()) : ((Comparable<U>) tuple).compareTo(o.getTuple());
-            }
-
-            @SuppressWarnings("unchecked")
-            @Override
-            public boolean equals(Object obj) {
-                if (obj instanceof Item) {
-                    return compareTo((Item<U>) obj) == 0;
-                }
-
-                return false;
-            }
-
-            @Override
-            public int hashCode() {
-                return tuple.hashCode();
-            }
-        }
-
     }
-
 }
@@ -275,17 +275,103 @@ public class ARQ
      * choosing the value.
      * <p/>
      * Operations currently affected by this symbol: <br>
-     * ORDER BY, SPARQL Update, CONSTRUCT (optionally)
+     * ORDER BY, DISTINCT, GROUP BY, hash joins, SPARQL Update, CONSTRUCT (optionally)
      * <p/>
      * TODO: Give a reasonable suggested value here.  10,000?
      * <p/>
      * @see <a href="https://issues.apache.org/jira/browse/JENA-119">JENA-119</a>
      */
     // Some possible additions to the list:
-    // Sort: DISTINCT, merge joins<br>
-    // Hash table: GROUP BY, MINUS, SERVICE, VALUES, and hash joins <br>
+    // Sort: merge joins<br>
+    // Hash table: MINUS, SERVICE, VALUES <br>
     public static final Symbol spillToDiskThreshold = SystemARQ.allocSymbol("spillToDiskThreshold") ;
 
+    /**
+     * Maximum number of bindings that operators such as FILTER, BIND, hash and nested loop joins
+     * read from their input in one call ({@link org.apache.jena.sparql.engine.QueryIterator#nextBatch}).
+     * Reads start small and grow up to this size so that LIMIT and ASK do not read ahead much.
+     * Default 1024; a value of 1 or less means row-at-a-time.
+     */
+    public static final Symbol iteratorBatchSize = SystemARQ.allocSymbol("iteratorBatchSize") ;
+
+    /**
+     * Evaluate independent parts of a query, the branches of a UNION and the
+     * right hand side of a join, on other threads.
+     * Default: false.
+     * <p>
+     * Datasets with thread-bound transactions are evaluated sequentially unless
+     * the query engine for the dataset supports parallel execution (TDB2 for read transactions).
+     */
+    public static final Symbol parallelExecution = SystemARQ.allocSymbol("parallelExecution") ;
+
+    /**
+     * Reuse the optimized algebra of queries that have been executed before.
+     * The value is either a {@link org.apache.jena.sparql.engine.PlanCache} or
+     * "true" for the shared, system-wide plan cache.
+     * Default: no plan cache.
+     */
+    public static final Symbol planCache = SystemARQ.allocSymbol("planCache") ;
+
+    /**
+     * Compile the expressions of FILTER and BIND before execution rather than
+     * interpret the expression tree for each solution.
+     * Default: true.
+     */
+    public static final Symbol compileExpressions = SystemARQ.allocSymbol("compileExpressions") ;
+
+    /**
+     * Record per-operator row counts and timings while executing a query ("EXPLAIN ANALYZE").
+     * The value is an {@link org.apache.jena.sparql.engine.main.ExecutionProfile} which
+     * holds the annotated algebra after execution.
+     * Default: not set.
+     */
+    public static final Symbol executionProfile = SystemARQ.allocSymbol("executionProfile") ;
+
+    /**
+     * Execute with flat bindings: each row is one array of values indexed by a
+     * per-query table of variable slots ({@link org.apache.jena.sparql.engine.binding.BindingArray})
+     * rather than a chain of bindings, one for each time the row is extended.
+     * Default: false.
+     */
+    public static final Symbol flatBindings = SystemARQ.allocSymbol("flatBindings") ;
+
+    /**
+     * When the bindings can be read from another thread, sort large ORDER BY
+     * buffers in parallel, and sort and write spill files in the background
+     * (see {@link org.apache.jena.atlas.data.SortedDataBag}). Bindings can not be
+     * read from another thread when the dataset is in a transaction.
+     * Default: true.
+     */
+    public static final Symbol parallelSort = SystemARQ.allocSymbol("parallelSort") ;
+
+    /**
+     * Pass the join key values of the build side of a hash join to the scans of the
+     * other side, so that storage can drop matches that cannot join before making
+     * bindings for them (see {@link org.apache.jena.sparql.engine.join.JoinFilter}).
+     * Default: true.
+     */
+    public static final Symbol runtimeJoinFilter = SystemARQ.allocSymbol("runtimeJoinFilter") ;
+
+    /**
+     * Evaluate {@code FILTER EXISTS} and {@code FILTER NOT EXISTS} as a hash semi-join
+     * or anti-join, with the pattern evaluated once, when there are more than this
+     * number of rows to filter and the pattern does not depend on the row other than
+     * through shared variables. The hashed pattern spills to disk as for a hash join
+     * (see {@link #spillToDiskThreshold}). A negative value means always evaluate
+     * by substitution for each row, and evaluate {@code MINUS} with an in-memory
+     * index of the right hand side instead of a hash join.
+     * Default: 1000.
+     */
+    public static final Symbol hashExistsThreshold = SystemARQ.allocSymbol("hashExistsThreshold") ;
+
+    /**
+     * Evaluate parts of a query that occur more than once, such as the same pattern
+     * in several branches of a UNION, once and replay the results
+     * (see {@link org.apache.jena.sparql.engine.main.SharedSubplans}).
+     * Default: true.
+     */
+    public static final Symbol shareSubplans = SystemARQ.allocSymbol("shareSubplans") ;
+
     // Optimizer controls.
 
     /**
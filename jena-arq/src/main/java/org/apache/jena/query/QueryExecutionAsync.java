@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.system.Txn;
+
+/**
+ * Asynchronous execution of a {@link QueryExecution}.
+ * <p>
+ * The query runs on an {@link Executor}; the caller gets a {@link CompletableFuture} of
+ * the complete results, or a {@link Flow.Publisher} that streams the results as they are
+ * requested. Cancelling the future, or the subscription, aborts the query execution.
+ * <p>
+ * The executor, if not given, is the {@linkplain #getDefaultExecutor() default executor}.
+ * This uses a virtual thread for each query when the Java runtime provides them
+ * and a pool of daemon threads otherwise.
+ * <p>
+ * The query execution is closed when the query finishes. For a local dataset that
+ * supports transactions, the query is run inside a read transaction on the thread
+ * that executes it. A transaction of the calling thread does not apply to that thread.
+ * <p>
+ * A {@link QueryExecution} can be executed once: it must not be used after being passed
+ * to one of these operations.
+ */
+public class QueryExecutionAsync {
+
+    private static Executor defaultExecutor = null;
+
+    /**
+     * The executor used when none is given.
+     * Virtual threads if the Java runtime provides them, else a pool of daemon threads.
+     */
+    public static synchronized Executor getDefaultExecutor() {
+        if ( defaultExecutor == null )
+            defaultExecutor = createDefaultExecutor();
+        return defaultExecutor;
+    }
+
+    /** Set the executor used when none is given; null resets to the built-in default. */
+    public static synchronized void setDefaultExecutor(Executor executor) {
+        defaultExecutor = executor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            // Java 21 and later.
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor)m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {}
+        AtomicInteger counter = new AtomicInteger(0);
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ARQ-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Execute a SELECT query; the future completes with all the results. */
+    public static CompletableFuture<ResultSetRewindable> select(QueryExecution qExec) {
+        return select(qExec, getDefaultExecutor());
+    }
+
+    /** Execute a SELECT query on the executor; the future completes with all the results. */
+    public static CompletableFuture<ResultSetRewindable> select(QueryExecution qExec, Executor executor) {
+        return async(qExec, executor, qe -> ResultSetFactory.copyResults(qe.execSelect()));
+    }
+
+    /** Execute a CONSTRUCT query; the future completes with the model of the results. */
+    public static CompletableFuture<Model> construct(QueryExecution qExec) {
+        return construct(qExec, getDefaultExecutor());
+    }
+
+    /** Execute a CONSTRUCT query on the executor; the future completes with the model of the results. */
+    public static CompletableFuture<Model> construct(QueryExecution qExec, Executor executor) {
+        return async(qExec, executor, qe -> qe.execConstruct());
+    }
+
+    /** Execute an ASK query. */
+    public static CompletableFuture<Boolean> ask(QueryExecution qExec) {
+        return ask(qExec, getDefaultExecutor());
+    }
+
+    /** Execute an ASK query on the executor. */
+    public static CompletableFuture<Boolean> ask(QueryExecution qExec, Executor executor) {
+        return async(qExec, executor, qe -> qe.execAsk());
+    }
+
+    /**
+     * A publisher of the results of a SELECT query.
+     * The query starts when there is a subscriber, and the rows are produced as they are requested.
+     * There can be only one subscriber.
+     */
+    public static Flow.Publisher<QuerySolution> selectPublisher(QueryExecution qExec) {
+        return selectPublisher(qExec, getDefaultExecutor());
+    }
+
+    /** A publisher of the results of a SELECT query, executed on the executor. */
+    public static Flow.Publisher<QuerySolution> selectPublisher(QueryExecution qExec, Executor executor) {
+        return new ResultsPublisher<>(qExec, executor, qe -> qe.execSelect());
+    }
+
+    /**
+     * A publisher of the triples of a CONSTRUCT query.
+     * The query starts when there is a subscriber, and the triples are produced as they are requested.
+     * There can be only one subscriber.
+     */
+    public static Flow.Publisher<Triple> constructPublisher(QueryExecution qExec) {
+        return constructPublisher(qExec, getDefaultExecutor());
+    }
+
+    /** A publisher of the triples of a CONSTRUCT query, executed on the executor. */
+    public static Flow.Publisher<Triple> constructPublisher(QueryExecution qExec, Executor executor) {
+        return new ResultsPublisher<>(qExec, executor, qe -> qe.execConstructTriples());
+    }
+
+    private static <X> CompletableFuture<X> async(QueryExecution qExec, Executor executor, Function<QueryExecution, X> action) {
+        Objects.requireNonNull(qExec, "QueryExecution");
+        Objects.requireNonNull(executor, "Executor");
+        CompletableFuture<X> future = new CompletableFuture<>();
+        future.whenComplete((x, ex) -> {
+            if ( future.isCancelled() )
+                qExec.abort();
+        });
+        Runnable task = () -> {
+            if ( future.isDone() ) {
+                qExec.close();
+                return;
+            }
+            X result = null;
+            Throwable error = null;
+            try {
+                result = inRead(qExec, () -> action.apply(qExec));
+            } catch (Throwable th) {
+                error = th;
+            } finally {
+                qExec.close();
+            }
+            if ( error != null )
+                future.completeExceptionally(error);
+            else
+                future.complete(result);
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            qExec.close();
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /** Run in a read transaction if the execution is on a local dataset that supports transactions. */
+    private static <X> X inRead(QueryExecution qExec, Supplier<X> action) {
+        Dataset dataset = qExec.getDataset();
+        if ( dataset != null && dataset.supportsTransactions() )
+            return Txn.calculateRead(dataset, action);
+        return action.get();
+    }
+
+    /** Publisher for a single subscriber of the results of a query execution. */
+    private static class ResultsPublisher<T> implements Flow.Publisher<T> {
+        private final QueryExecution qExec;
+        private final Executor executor;
+        private final Function<QueryExecution, Iterator<T>> results;
+        private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+        ResultsPublisher(QueryExecution qExec, Executor executor, Function<QueryExecution, Iterator<T>> results) {
+            this.qExec = Objects.requireNonNull(qExec, "QueryExecution");
+            this.executor = Objects.requireNonNull(executor, "Executor");
+            this.results = results;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            Objects.requireNonNull(subscriber);
+            if ( ! subscribed.compareAndSet(false, true) ) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override public void request(long n) {}
+                    @Override public void cancel() {}
+                });
+                subscriber.onError(new IllegalStateException("Query results already subscribed to"));
+                return;
+            }
+            ResultsSubscription<T> subscription = new ResultsSubscription<>(qExec, subscriber);
+            subscriber.onSubscribe(subscription);
+            try {
+                executor.execute(() -> subscription.run(results));
+            } catch (RejectedExecutionException ex) {
+                qExec.close();
+                subscriber.onError(ex);
+            }
+        }
+    }
+
+    /**
+     * The subscription: the results are pulled from the query on the executor thread,
+     * which waits while there is no outstanding demand.
+     */
+    private static class ResultsSubscription<T> implements Flow.Subscription {
+        private final QueryExecution qExec;
+        private final Flow.Subscriber<? super T> subscriber;
+        // Guarded by "this".
+        private long demand = 0;
+        private boolean cancelled = false;
+        private IllegalArgumentException badRequest = null;
+
+        ResultsSubscription(QueryExecution qExec, Flow.Subscriber<? super T> subscriber) {
+            this.qExec = qExec;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if ( n <= 0 ) {
+                if ( badRequest == null )
+                    badRequest = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand += n;
+                // Overflow: effectively unbounded.
+                if ( demand < 0 )
+                    demand = Long.MAX_VALUE;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if ( cancelled )
+                    return;
+                cancelled = true;
+                notifyAll();
+            }
+            qExec.abort();
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Wait for demand. Returns false if the subscription has been cancelled. */
+        private synchronized boolean awaitDemand() throws InterruptedException {
+            while ( demand == 0 && ! cancelled && badRequest == null )
+                wait();
+            if ( cancelled )
+                return false;
+            if ( badRequest != null )
+                throw badRequest;
+            demand--;
+            return true;
+        }
+
+        void run(Function<QueryExecution, Iterator<T>> results) {
+            Throwable error = null;
+            try {
+                inRead(qExec, () -> {
+                    Iterator<T> iter = results.apply(qExec);
+                    try {
+                        // Check for the end first so that completion does not wait for demand.
+                        while ( iter.hasNext() && awaitDemand() )
+                            subscriber.onNext(iter.next());
+                    } catch (InterruptedException ex) {
+                        cancel();
+                    }
+                    return null;
+                });
+            } catch (Throwable th) {
+                error = th;
+            } finally {
+                qExec.close();
+            }
+            // Signal the end after the query execution, and any transaction, has finished.
+            if ( isCancelled() )
+                return;
+            if ( error == null ) {
+                subscriber.onComplete();
+                return;
+            }
+            synchronized (this) { cancelled = true; }
+            subscriber.onError(error);
+        }
+    }
+}
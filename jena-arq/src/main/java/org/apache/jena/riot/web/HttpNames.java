@@ -73,6 +73,7 @@ public class HttpNames
     public static final String paramCallback        = "callback" ;
     public static final String paramForceAccept     = "force-accept" ;  // Force the accept header at the last moment
     public static final String paramTimeout         = "timeout" ;
+    public static final String paramAnalyze         = "analyze" ;  // Return per-operator execution statistics
 
     public static final String paramUpdate          = "update" ;
     public static final String paramRequest         = "request" ;
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.TransformCopy;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
+
+/**
+ * Reorder the operands of a group of inner joins using cardinality estimates.
+ * <p>
+ * Nested {@link OpJoin}s are flattened into a list of operands and rebuilt as a
+ * left-deep join, choosing greedily: start with the operand with the smallest
+ * estimate, then repeatedly add the operand connected to the ones already
+ * chosen (it has a shared variable) that gives the smallest intermediate result.
+ * Operands that are not inner joins (OPTIONAL, MINUS, UNION, subqueries, ...)
+ * are treated as single units. If any operand can not be estimated, the join is
+ * left unchanged.
+ */
+public class TransformJoinOrder extends TransformCopy
+{
+    private final CardinalityEstimator estimator;
+
+    public TransformJoinOrder(CardinalityEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    @Override
+    public Op transform(OpJoin opJoin, Op left, Op right) {
+        List<Op> operands = new ArrayList<>();
+        flatten(left, operands);
+        flatten(right, operands);
+        if ( operands.size() < 2 )
+            return super.transform(opJoin, left, right);
+
+        int N = operands.size();
+        double[] estimates = new double[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            estimates[i] = estimator.estimate(operands.get(i));
+            if ( estimates[i] < 0 )
+                return super.transform(opJoin, left, right);
+        }
+
+        List<Integer> order = order(operands, estimates);
+        boolean changed = false;
+        for ( int i = 0 ; i < N ; i++ ) {
+            if ( order.get(i) != i ) {
+                changed = true;
+                break;
+            }
+        }
+        if ( !changed )
+            return super.transform(opJoin, left, right);
+
+        Op op = operands.get(order.get(0));
+        for ( int i = 1 ; i < N ; i++ )
+            op = OpJoin.create(op, operands.get(order.get(i)));
+        return op;
+    }
+
+    // Join operands are transformed bottom-up so the inner joins have already
+    // been rebuilt: flatten them again, then reorder the whole group.
+    private static void flatten(Op op, List<Op> acc) {
+        if ( op instanceof OpJoin ) {
+            OpJoin opJoin = (OpJoin)op;
+            flatten(opJoin.getLeft(), acc);
+            flatten(opJoin.getRight(), acc);
+            return;
+        }
+        acc.add(op);
+    }
+
+    private List<Integer> order(List<Op> operands, double[] estimates) {
+        int N = operands.size();
+        List<Integer> order = new ArrayList<>(N);
+        boolean[] used = new boolean[N];
+
+        // Start with the smallest; ties keep the written order.
+        int first = 0;
+        for ( int i = 1 ; i < N ; i++ ) {
+            if ( estimates[i] < estimates[first] )
+                first = i;
+        }
+        order.add(first);
+        used[first] = true;
+        Op acc = operands.get(first);
+        double accEst = estimates[first];
+        Set<Var> accVars = OpVars.visibleVars(acc);
+
+        while ( order.size() < N ) {
+            int best = -1;
+            double bestEst = 0;
+            boolean bestConnected = false;
+            for ( int i = 0 ; i < N ; i++ ) {
+                if ( used[i] )
+                    continue;
+                Op op = operands.get(i);
+                boolean connected = isConnected(accVars, op);
+                double est = estimator.joinEstimate(acc, accEst, op, estimates[i]);
+                // Avoid cross products whenever possible.
+                if ( best < 0 || (connected && !bestConnected) || (connected == bestConnected && est < bestEst) ) {
+                    best = i;
+                    bestEst = est;
+                    bestConnected = connected;
+                }
+            }
+            order.add(best);
+            used[best] = true;
+            Op op = operands.get(best);
+            acc = OpJoin.create(acc, op);
+            accEst = bestEst;
+            accVars.addAll(OpVars.visibleVars(op));
+        }
+        return order;
+    }
+
+    private static boolean isConnected(Set<Var> vars, Op op) {
+        for ( Var v : OpVars.visibleVars(op) ) {
+            if ( vars.contains(v) )
+                return true;
+        }
+        return false;
+    }
+}
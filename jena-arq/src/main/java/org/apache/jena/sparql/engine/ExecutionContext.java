@@ -18,9 +18,9 @@
 
 package org.apache.jena.sparql.engine;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.jena.graph.Graph;
 import org.apache.jena.query.ARQ;
@@ -39,6 +39,7 @@ public class ExecutionContext implements FunctionEnv
     private DatasetGraph dataset  = null;
 
     // Iterator tracking
+    // Concurrent: with parallel execution, iterators are created and closed on worker threads.
     private Collection<QueryIterator> openIterators    = null;
     // Tracking all iterators leads to a build up of state,
     private Collection<QueryIterator> allIterators     = null;
@@ -63,6 +64,13 @@ public class ExecutionContext implements FunctionEnv
         this.activeGraph = activeGraph;
     }
 
+    /** Clone and change the context - shares tracking */
+    public ExecutionContext(ExecutionContext other, Context context)
+    {
+        this(other);
+        this.context = context;
+    }
+
     /** Setup with defaults of global settings */
     public ExecutionContext(DatasetGraph dataset) {
         this(dataset, QC.getFactory(ARQ.getContext()));
@@ -76,9 +84,9 @@ public class ExecutionContext implements FunctionEnv
     public ExecutionContext(Context params, Graph activeGraph, DatasetGraph dataset, OpExecutorFactory factory) {
         this.context = params;
         this.dataset = dataset;
-        this.openIterators = new ArrayList<>();
+        this.openIterators = new ConcurrentLinkedQueue<>();
         if ( TrackAllIterators )
-            this.allIterators  = new ArrayList<>();
+            this.allIterators  = new ConcurrentLinkedQueue<>();
         this.activeGraph = activeGraph;
         this.executor = factory;
     }
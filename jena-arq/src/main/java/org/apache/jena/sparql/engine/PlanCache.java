@@ -0,0 +1,257 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.CacheFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.ARQConstants;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.TransformCopy;
+import org.apache.jena.sparql.algebra.Transformer;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.expr.ExprTransformCopy;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+/**
+ * A bounded, thread-safe cache of optimized algebra expressions, so that queries
+ * that are executed repeatedly are not compiled and optimized each time.
+ * <p>
+ * Entries are keyed by the normalized (serialized) query, the query engine, the
+ * dataset and the settings in the execution context that change the optimization
+ * (see {@link #addPlanningSymbol}). Queries with an initial binding are not cached.
+ * <p>
+ * Algebra expressions are not immutable: function calls are bound to their
+ * implementation when first evaluated. Each execution gets its own copy of the
+ * cached algebra.
+ * <p>
+ * A query engine uses the plan cache when the context has {@link ARQ#planCache} set,
+ * either to a {@code PlanCache} or to "true" for the system-wide cache, {@link #get()}.
+ */
+public class PlanCache
+{
+    public static final int DefaultSize = 1000;
+
+    private static PlanCache systemPlanCache = null;
+
+    /** The system-wide plan cache. */
+    public static synchronized PlanCache get() {
+        if ( systemPlanCache == null )
+            systemPlanCache = new PlanCache(DefaultSize);
+        return systemPlanCache;
+    }
+
+    /** The plan cache for a context, or null if plan caching is not enabled. */
+    public static PlanCache get(Context context) {
+        if ( context == null )
+            return null;
+        Object x = context.get(ARQ.planCache);
+        if ( x == null )
+            return null;
+        if ( x instanceof PlanCache )
+            return (PlanCache)x;
+        if ( context.isTrue(ARQ.planCache) )
+            return get();
+        return null;
+    }
+
+    // Context settings, other than the ARQ "opt" settings, that change the optimization.
+    private static final Set<Symbol> planningSymbols = ConcurrentHashMap.newKeySet();
+    static {
+        planningSymbols.add(ARQ.enablePropertyFunctions);
+        planningSymbols.add(ARQ.propertyFunctions);
+        planningSymbols.add(ARQConstants.sysOptimizer);
+        planningSymbols.add(ARQConstants.sysOptimizerFactory);
+    }
+
+    /**
+     * Add a context setting that changes how a query engine optimizes queries.
+     * The setting becomes part of the plan cache key. The optimizer settings of ARQ,
+     * {@link ARQ#optimization} and the "opt" settings, are always part of the key.
+     */
+    public static void addPlanningSymbol(Symbol symbol) {
+        planningSymbols.add(symbol);
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    public PlanCache(int size) {
+        this.cache = CacheFactory.createCache(size);
+    }
+
+    /**
+     * Create the key for a query execution.
+     * The engine class is part of the key because engines optimize differently.
+     */
+    public static Key key(Query query, DatasetGraph dataset, Context context, Class<?> engine) {
+        return new Key(query.toString(), query.getBaseURI(), engine.getName(), dataset, settings(context));
+    }
+
+    /**
+     * A copy of the cached algebra for the key, or null. Records a cache hit or
+     * miss.
+     */
+    public Entry get(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        if ( entry == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.copy();
+    }
+
+    /**
+     * Cache the algebra for a query: {@code algebra} is the algebra recorded for the
+     * execution, {@code op} is the optimized algebra that is evaluated.
+     */
+    public void put(Key key, Op algebra, Op op) {
+        cache.put(key, new Entry(algebra, op).copy());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static boolean isPlanningSymbol(Symbol symbol) {
+        if ( planningSymbols.contains(symbol) )
+            return true;
+        // ARQ.optimization and the ARQ.opt* settings.
+        return symbol.getSymbol().startsWith(ARQ.arqParamNS + "opt");
+    }
+
+    // Context settings that change the optimization. Values that are not plain
+    // settings (e.g. a property function registry) are recorded by identity.
+    private static Map<String, String> settings(Context context) {
+        Map<String, String> settings = new TreeMap<>();
+        if ( context == null )
+            return settings;
+        for ( Symbol symbol : context.keys() ) {
+            if ( ! isPlanningSymbol(symbol) )
+                continue;
+            Object value = context.get(symbol);
+            String str;
+            if ( value == null )
+                str = "";
+            else if ( value instanceof String || value instanceof Boolean || value instanceof Number || value instanceof Enum<?> )
+                str = value.toString();
+            else
+                str = value.getClass().getName() + "@" + System.identityHashCode(value);
+            settings.put(symbol.getSymbol(), str);
+        }
+        return settings;
+    }
+
+    /** Cached algebra. */
+    public static final class Entry {
+        private final Op algebra;
+        private final Op op;
+
+        private Entry(Op algebra, Op op) {
+            this.algebra = algebra;
+            this.op = op;
+        }
+
+        /** The algebra recorded for the execution (the context's current algebra). */
+        public Op getAlgebra() {
+            return algebra;
+        }
+
+        /** The optimized algebra to evaluate. */
+        public Op getOp() {
+            return op;
+        }
+
+        private Entry copy() {
+            Op op2 = copy(op);
+            Op algebra2 = ( algebra == op ) ? op2 : copy(algebra);
+            return new Entry(algebra2, op2);
+        }
+
+        // Copy, including expressions, so that no state is shared between executions.
+        private static Op copy(Op op) {
+            return Transformer.transform(new TransformCopy(TransformCopy.COPY_ALWAYS),
+                                         new ExprTransformCopy(ExprTransformCopy.COPY_ALWAYS), op);
+        }
+    }
+
+    /** Plan cache key. The dataset is held weakly and compared by identity. */
+    public static final class Key {
+        private final String queryString;
+        private final String baseURI;
+        private final String engine;
+        private final WeakReference<DatasetGraph> dataset;
+        private final Map<String, String> settings;
+        private final int hashCode;
+
+        private Key(String queryString, String baseURI, String engine, DatasetGraph dataset, Map<String, String> settings) {
+            this.queryString = queryString;
+            this.baseURI = baseURI;
+            this.engine = engine;
+            this.dataset = new WeakReference<>(dataset);
+            this.settings = settings;
+            this.hashCode = Objects.hash(queryString, baseURI, engine, System.identityHashCode(dataset), settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof Key) )
+                return false;
+            Key other = (Key)obj;
+            DatasetGraph dsg = dataset.get();
+            // A collected dataset matches nothing.
+            if ( dsg == null || dsg != other.dataset.get() )
+                return false;
+            return hashCode == other.hashCode && queryString.equals(other.queryString) && Objects.equals(baseURI, other.baseURI)
+                   && engine.equals(other.engine) && settings.equals(other.settings);
+        }
+    }
+}
@@ -50,13 +50,29 @@ public abstract class QueryEngineBase implements OpEval, Closeable
     private Query query = null ;
     private Op queryOp = null ;
     private Plan plan = null ;
+    // Plan cache, and the key for this execution, if the plan can be cached.
+    private PlanCache planCache = null ;
+    private PlanCache.Key planCacheKey = null ;
+    // Set when the algebra came from the plan cache and is already optimized.
+    private Op cachedOp = null ;
 
     protected QueryEngineBase(Query query, DatasetGraph dsg, Binding input, Context cxt) {
         this(dsg, input, cxt) ;
         this.query = query ;
         query.setResultVars() ;
-        // Unoptimized so far.
-        setOp(createOp(query)) ;
+        planCache = PlanCache.get(context) ;
+        if ( planCache != null && dsg != null && startBinding.isEmpty() ) {
+            planCacheKey = PlanCache.key(query, dsg, context, getClass()) ;
+            PlanCache.Entry entry = planCache.get(planCacheKey) ;
+            if ( entry != null ) {
+                // As recorded when the plan was created.
+                setOp(entry.getAlgebra()) ;
+                cachedOp = entry.getOp() ;
+            }
+        }
+        if ( cachedOp == null )
+            // Unoptimized so far.
+            setOp(createOp(query)) ;
         dataset = prepareDataset(dsg, query);
     }
 
@@ -118,13 +134,20 @@ public abstract class QueryEngineBase implements OpEval, Closeable
     {
         // Decide the algebra to actually execute.
         Op op = queryOp ;
-        if ( ! startBinding.isEmpty() ) {
-            op = Substitute.substitute(op, startBinding) ;
-            context.put(ARQConstants.sysCurrentAlgebra, op) ;
-            // Don't reset the startBinding because it also is
-            // needed in the output.
+        if ( cachedOp != null ) {
+            op = cachedOp ;
+            Explain.explain(context, "Plan cache hit") ;
+        } else {
+            if ( ! startBinding.isEmpty() ) {
+                op = Substitute.substitute(op, startBinding) ;
+                context.put(ARQConstants.sysCurrentAlgebra, op) ;
+                // Don't reset the startBinding because it also is
+                // needed in the output.
+            }
+            op = modifyOp(op) ;
+            if ( planCacheKey != null )
+                planCache.put(planCacheKey, queryOp, op) ;
         }
-        op = modifyOp(op) ;
 
         QueryIterator queryIterator = null ;
         if ( dataset != null )
@@ -31,6 +31,22 @@ public interface QueryIterator extends Closeable, Iterator<Binding>, PrintSerial
     /** Get next binding */
     public Binding nextBinding() ;
 
+    /**
+     * Get up to {@code len} bindings in one call, writing them into
+     * {@code batch} starting at {@code off}. Returns the number of bindings
+     * written, which may be less than {@code len} even if there are more to come;
+     * returns 0 when the iterator is exhausted (and {@code len > 0}).
+     * <p>
+     * The default implementation is row-at-a-time; iterators that can do better
+     * override this.
+     */
+    public default int nextBatch(Binding[] batch, int off, int len) {
+        int n = 0 ;
+        while ( n < len && hasNext() )
+            batch[off + n++] = nextBinding() ;
+        return n ;
+    }
+
     /**
      * Cancels the query as soon as is possible for the given iterator
      */
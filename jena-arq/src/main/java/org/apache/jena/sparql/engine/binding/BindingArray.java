@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.binding;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * A binding with no parent that holds its values in an array indexed by the slot
+ * number of the variable in a per-query {@link VarSlots} table.
+ * <p>
+ * Lookup of a variable is a slot lookup, not a walk of a chain of parent bindings.
+ * Extending the binding copies the array: one binding object and one array for each
+ * row, however many times the row has been extended. {@link BindingBuilder} and
+ * {@link BindingFactory} create a {@code BindingArray} when the parent is one, so
+ * once a query execution starts from a {@code BindingArray}, the bindings derived
+ * from it are flat as well.
+ * <p>
+ * Setting a variable that is already bound replaces the value, as a binding in a
+ * child replaces the one in the parent.
+ */
+public class BindingArray extends BindingBase {
+    private final VarSlots slots;
+    // Indexed by slot; may be shorter than the slot table.
+    private final Node[] values;
+    private final int size;
+
+    /** A binding with the pairs of another binding, using the slot table. */
+    public static BindingArray create(VarSlots slots, Binding binding) {
+        BindingArray empty = new BindingArray(slots, new Node[slots.size()], 0);
+        if ( binding == null || binding.isEmpty() )
+            return empty;
+        int count = binding.size();
+        Var[] vars = new Var[count];
+        Node[] nodes = new Node[count];
+        int i = 0;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; i++ ) {
+            vars[i] = iter.next();
+            nodes[i] = binding.get(vars[i]);
+        }
+        return empty.extend(vars, nodes, i);
+    }
+
+    private BindingArray(VarSlots slots, Node[] values, int size) {
+        super(null);
+        this.slots = slots;
+        this.values = values;
+        this.size = size;
+    }
+
+    /** The slot table of this binding. */
+    public VarSlots getSlots() {
+        return slots;
+    }
+
+    /** This binding with one more (var, value) pair. */
+    public BindingArray extend(Var var, Node node) {
+        Objects.requireNonNull(var);
+        Objects.requireNonNull(node);
+        int idx = slots.slot(var);
+        Node[] array = Arrays.copyOf(values, Math.max(values.length, slots.size()));
+        int n = ( array[idx] == null ) ? size+1 : size;
+        array[idx] = node;
+        return new BindingArray(slots, array, n);
+    }
+
+    /** This binding with more (var, value) pairs: the first {@code count} entries of the arrays. */
+    public BindingArray extend(Var[] vars, Node[] nodes, int count) {
+        int[] idx = new int[count];
+        for ( int i = 0 ; i < count ; i++ )
+            idx[i] = slots.slot(Objects.requireNonNull(vars[i]));
+        Node[] array = Arrays.copyOf(values, Math.max(values.length, slots.size()));
+        int n = size;
+        for ( int i = 0 ; i < count ; i++ ) {
+            if ( array[idx[i]] == null )
+                n++;
+            array[idx[i]] = Objects.requireNonNull(nodes[i]);
+        }
+        return new BindingArray(slots, array, n);
+    }
+
+    @Override
+    protected Iterator<Var> vars1() {
+        return new Iterator<Var>() {
+            private int i = advance(0);
+
+            private int advance(int from) {
+                while ( from < values.length && values[from] == null )
+                    from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return i < values.length;
+            }
+
+            @Override
+            public Var next() {
+                if ( ! hasNext() )
+                    throw new NoSuchElementException();
+                Var v = slots.var(i);
+                i = advance(i+1);
+                return v;
+            }
+        };
+    }
+
+    @Override
+    protected void forEach1(BiConsumer<Var, Node> action) {
+        for ( int i = 0 ; i < values.length ; i++ ) {
+            if ( values[i] != null )
+                action.accept(slots.var(i), values[i]);
+        }
+    }
+
+    @Override
+    protected int size1() {
+        return size;
+    }
+
+    @Override
+    protected boolean isEmpty1() {
+        return size == 0;
+    }
+
+    @Override
+    protected boolean contains1(Var var) {
+        return get1(var) != null;
+    }
+
+    @Override
+    protected Node get1(Var var) {
+        int idx = slots.indexOf(var);
+        return ( idx >= 0 && idx < values.length ) ? values[idx] : null;
+    }
+}
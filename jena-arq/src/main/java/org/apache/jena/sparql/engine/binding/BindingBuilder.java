@@ -451,6 +451,8 @@ public class BindingBuilder
     }
 
     private Binding construct(boolean isFinal) {
+        if ( parent instanceof BindingArray )
+            return constructArray((BindingArray)parent);
         if ( map != null ) {
             Map<Var, Node> m = map;
             // If pure isolation. The contract in the javadoc makes this unnecessary.
@@ -470,6 +472,29 @@ public class BindingBuilder
         return new Binding0(parent);
     }
 
+    /** Flat binding: the parent's values and these pairs in one array. */
+    private Binding constructArray(BindingArray parentArray) {
+        if ( map != null ) {
+            Var[] vars = new Var[map.size()];
+            Node[] nodes = new Node[map.size()];
+            int i = 0;
+            for ( Map.Entry<Var, Node> e : map.entrySet() ) {
+                vars[i] = e.getKey();
+                nodes[i] = e.getValue();
+                i++;
+            }
+            return parentArray.extend(vars, nodes, i);
+        }
+        if ( var1 == null )
+            return parentArray;
+        if ( var2 == null )
+            return parentArray.extend(var1, node1);
+        int count = countSlots();
+        Var[] vars = { var1, var2, var3, var4 };
+        Node[] nodes = { node1, node2, node3, node4 };
+        return parentArray.extend(vars, nodes, count);
+    }
+
     @Override
     public String toString() {
         if ( isEmpty1() )
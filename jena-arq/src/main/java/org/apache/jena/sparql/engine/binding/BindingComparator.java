@@ -25,6 +25,7 @@ import java.util.Comparator ;
 import java.util.Iterator ;
 import java.util.List ;
 
+import org.apache.jena.atlas.data.SortKeyComparator ;
 import org.apache.jena.atlas.logging.Log ;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.query.Query ;
@@ -40,7 +41,7 @@ import org.apache.jena.sparql.function.FunctionEnv ;
 import org.apache.jena.sparql.function.FunctionEnvBase ;
 import org.apache.jena.sparql.util.NodeUtils ;
 
-public class BindingComparator implements java.util.Comparator<Binding>
+public class BindingComparator implements SortKeyComparator<Binding, NodeValue[]>
 {
     private static Comparator<Var> varComparator = new Comparator<Var>()
         {
@@ -77,51 +78,63 @@ public class BindingComparator implements java.util.Comparator<Binding>
     {
         for ( SortCondition sc : conditions )
         {
-            if ( sc.expression == null )
-            {
-                throw new QueryExecException( "Broken sort condition" );
-            }
-
-            NodeValue nv1 = null;
-            NodeValue nv2 = null;
-
-            try
-            {
-                nv1 = sc.expression.eval( bind1, env );
-            }
-            catch ( VariableNotBoundException ex )
-            {
-            }
-            catch ( ExprEvalException ex )
+            NodeValue nv1 = eval( sc, bind1 );
+            NodeValue nv2 = eval( sc, bind2 );
+            int x = compareNodes( nv1, nv2, sc.direction );
+            if ( x != Expr.CMP_EQUAL )
             {
-                Log.warn( this, ex.getMessage() );
+                return x;
             }
+        }
+        // Same by the SortConditions - now do any extra tests to make sure they are unique.
+        return compareBindingsSyntactic(bind1, bind2) ;
+        //return 0 ;
+    }
 
-            try
-            {
-                nv2 = sc.expression.eval( bind2, env );
-            }
-            catch ( VariableNotBoundException ex )
-            {
-            }
-            catch ( ExprEvalException ex )
-            {
-                Log.warn( this, ex.getMessage() );
-            }
+    /** The values of the sort conditions for a binding; null for unbound or error. */
+    @Override
+    public NodeValue[] sortKey(Binding binding)
+    {
+        NodeValue[] key = new NodeValue[conditions.size()] ;
+        for ( int i = 0 ; i < key.length ; i++ )
+            key[i] = eval( conditions.get(i), binding ) ;
+        return key ;
+    }
 
-            Node n1 = NodeValue.toNode( nv1 );
-            Node n2 = NodeValue.toNode( nv2 );
-            int x = compareNodes( nv1, nv2, sc.direction );
+    @Override
+    public int compare(NodeValue[] key1, Binding bind1, NodeValue[] key2, Binding bind2)
+    {
+        for ( int i = 0 ; i < key1.length ; i++ )
+        {
+            int x = compareNodes( key1[i], key2[i], conditions.get(i).direction );
             if ( x != Expr.CMP_EQUAL )
             {
                 return x;
             }
         }
-        // Same by the SortConditions - now do any extra tests to make sure they are unique.
         return compareBindingsSyntactic(bind1, bind2) ;
-        //return 0 ;
     }
-    
+
+    private NodeValue eval(SortCondition sc, Binding binding)
+    {
+        if ( sc.expression == null )
+        {
+            throw new QueryExecException( "Broken sort condition" );
+        }
+        try
+        {
+            return sc.expression.eval( binding, env );
+        }
+        catch ( VariableNotBoundException ex )
+        {
+        }
+        catch ( ExprEvalException ex )
+        {
+            Log.warn( this, ex.getMessage() );
+        }
+        return null;
+    }
+
     private static int compareNodes(NodeValue nv1, NodeValue nv2, int direction)
     {
         int x = compareNodesRaw(nv1, nv2) ;
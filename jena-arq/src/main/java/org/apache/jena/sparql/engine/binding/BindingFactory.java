@@ -50,6 +50,8 @@ public class BindingFactory
 
     /** Create a binding of no pairs */
     public static Binding binding(Binding parent) {
+        if ( parent instanceof BindingArray )
+            return parent;
         return new Binding0(parent);
     }
 
@@ -75,24 +77,32 @@ public class BindingFactory
 
     /** Create a binding of one (var, value) pair */
     public static Binding binding(Binding parent, Var var, Node node) {
+        if ( parent instanceof BindingArray )
+            return ((BindingArray)parent).extend(var, node);
         return new Binding1(parent, var, node);
     }
 
     /** Create a binding of two (var, value) pairs */
     public static Binding binding(Binding parent, Var var1, Node node1, Var var2, Node node2) {
         allDifferent2(var1, var2);
+        if ( parent instanceof BindingArray )
+            return ((BindingArray)parent).extend(new Var[] {var1, var2}, new Node[] {node1, node2}, 2);
         return new Binding2(parent, var1, node1, var2, node2);
     }
 
     /** Create a binding of three (var, value) pairs */
     public static Binding binding(Binding parent, Var var1, Node node1, Var var2, Node node2, Var var3, Node node3) {
         allDifferent3(var1, var2, var3);
+        if ( parent instanceof BindingArray )
+            return ((BindingArray)parent).extend(new Var[] {var1, var2, var3}, new Node[] {node1, node2, node3}, 3);
         return new Binding3(parent, var1, node1, var2, node2, var3, node3);
     }
 
     /** Create a binding of four (var, value) pairs */
     public static Binding binding(Binding parent, Var var1, Node node1, Var var2, Node node2, Var var3, Node node3, Var var4, Node node4) {
         allDifferent4(var1, var2, var3, var4);
+        if ( parent instanceof BindingArray )
+            return ((BindingArray)parent).extend(new Var[] {var1, var2, var3, var4}, new Node[] {node1, node2, node3, node4}, 4);
         return new Binding4(parent, var1, node1, var2, node2, var3, node3, var4, node4);
     }
 
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.binding;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * A table giving each variable of a query execution a slot number, for
+ * {@link BindingArray}. The table is built from the variables of the algebra
+ * expression before execution; a variable that first appears during execution is
+ * given the next free slot. Slots are never reused or removed.
+ * <p>
+ * Looking up a slot does not take a lock. Adding a variable does.
+ */
+public class VarSlots {
+    // Copy-on-write: readers see a complete table.
+    private volatile Map<Var, Integer> index;
+    private volatile Var[] vars;
+
+    /** Create a slot table with slots for the variables. */
+    public static VarSlots create(Collection<Var> vars) {
+        return new VarSlots(vars);
+    }
+
+    private VarSlots(Collection<Var> initial) {
+        Map<Var, Integer> map = new HashMap<>();
+        Var[] array = new Var[initial.size()];
+        for ( Var v : initial ) {
+            if ( map.containsKey(v) )
+                continue;
+            array[map.size()] = v;
+            map.put(v, map.size());
+        }
+        this.index = map;
+        this.vars = ( map.size() == array.length ) ? array : Arrays.copyOf(array, map.size());
+    }
+
+    /** The slot of a variable, or -1 if it does not have one. */
+    public int indexOf(Var var) {
+        Integer idx = index.get(var);
+        return ( idx == null ) ? -1 : idx;
+    }
+
+    /** The slot of a variable, giving it a new slot if it does not have one. */
+    public int slot(Var var) {
+        Integer idx = index.get(var);
+        if ( idx != null )
+            return idx;
+        return addSlot(var);
+    }
+
+    private synchronized int addSlot(Var var) {
+        Integer idx = index.get(var);
+        if ( idx != null )
+            return idx;
+        int n = vars.length;
+        Var[] array = Arrays.copyOf(vars, n+1);
+        array[n] = var;
+        Map<Var, Integer> map = new HashMap<>(index);
+        map.put(var, n);
+        // Order: a reader that finds the slot in the index finds the variable in the array.
+        vars = array;
+        index = map;
+        return n;
+    }
+
+    /** The variable in a slot. */
+    public Var var(int slot) {
+        return vars[slot];
+    }
+
+    /** The current number of slots. */
+    public int size() {
+        return vars.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(vars);
+    }
+}
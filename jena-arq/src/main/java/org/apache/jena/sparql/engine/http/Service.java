@@ -90,6 +90,20 @@ public class Service {
      */
     public static final Symbol queryTimeout = SystemARQ.allocSymbol(base, "queryTimeout");
 
+    /**
+     * Number of solutions of the input to SERVICE sent in one request. The solutions
+     * are sent as a {@code VALUES} block joined with the service pattern, and the
+     * results are matched back to the solutions they extend. Not set, or a value of
+     * 0 or 1, means one request for each solution.
+     */
+    public static final Symbol serviceBulkBindings = SystemARQ.allocSymbol(base, "serviceBulkBindings");
+
+    /**
+     * Maximum number of requests of {@link #serviceBulkBindings} solutions
+     * in progress at the same time. Default 1.
+     */
+    public static final Symbol serviceBulkRequests = SystemARQ.allocSymbol(base, "serviceBulkRequests");
+
     /**
      * Executes a service operator
      * 
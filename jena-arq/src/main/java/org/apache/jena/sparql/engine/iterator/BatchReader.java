@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * Read a {@link QueryIterator} in batches using {@link QueryIterator#nextBatch}.
+ * <p>
+ * The batch size starts at 1 and doubles on each read up to the maximum, so a
+ * consumer that only wants a few rows (LIMIT, ASK) reads little more than it needs
+ * while a consumer of the whole input makes one call per batch.
+ * <p>
+ * This does not close the underlying iterator.
+ */
+public class BatchReader implements Iterator<Binding> {
+    public static final int DefaultBatchSize = 1024;
+
+    private final QueryIterator input;
+    private final int maxBatchSize;
+    private Binding[] buffer;
+    private int idx = 0;
+    private int count = 0;
+    private boolean exhausted = false;
+
+    /** Batch size for the execution context: see {@link ARQ#iteratorBatchSize}. */
+    public static int batchSize(ExecutionContext execCxt) {
+        if ( execCxt == null || execCxt.getContext() == null )
+            return DefaultBatchSize;
+        return Math.max(1, execCxt.getContext().getInt(ARQ.iteratorBatchSize, DefaultBatchSize));
+    }
+
+    public static BatchReader create(QueryIterator input, ExecutionContext execCxt) {
+        return new BatchReader(input, batchSize(execCxt));
+    }
+
+    public BatchReader(QueryIterator input, int maxBatchSize) {
+        this.input = input;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.buffer = new Binding[1];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( idx < count )
+            return true;
+        return fill();
+    }
+
+    @Override
+    public Binding next() {
+        if ( !hasNext() )
+            throw new NoSuchElementException("BatchReader");
+        Binding b = buffer[idx];
+        buffer[idx] = null;
+        idx++;
+        return b;
+    }
+
+    /**
+     * Read up to {@code len} bindings into {@code dest}, buffered bindings first.
+     * Returns the number read, 0 when there are no more.
+     */
+    public int read(Binding[] dest, int off, int len) {
+        if ( len <= 0 )
+            return 0;
+        int n = count - idx;
+        if ( n > 0 ) {
+            n = Math.min(n, len);
+            System.arraycopy(buffer, idx, dest, off, n);
+            Arrays.fill(buffer, idx, idx + n, null);
+            idx += n;
+            return n;
+        }
+        if ( exhausted )
+            return 0;
+        n = input.nextBatch(dest, off, len);
+        if ( n == 0 )
+            exhausted = true;
+        return n;
+    }
+
+    private boolean fill() {
+        if ( exhausted )
+            return false;
+        // The buffer is empty: grow it for the next read.
+        if ( count > 0 && buffer.length < maxBatchSize )
+            buffer = new Binding[Math.min(maxBatchSize, 2 * buffer.length)];
+        idx = 0;
+        count = input.nextBatch(buffer, 0, buffer.length);
+        if ( count == 0 ) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -30,6 +30,10 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.binding.BindingBuilder;
 import org.apache.jena.sparql.expr.Expr ;
+import org.apache.jena.sparql.expr.ExprEvalException ;
+import org.apache.jena.sparql.expr.NodeValue ;
+import org.apache.jena.sparql.expr.compile.CompiledExpr ;
+import org.apache.jena.sparql.expr.compile.ExprCompiler ;
 import org.apache.jena.sparql.serializer.SerializationContext ;
 
 /** Extend each solution by a (var, expression) */
@@ -37,6 +41,8 @@ import org.apache.jena.sparql.serializer.SerializationContext ;
 public class QueryIterAssign extends QueryIterProcessBinding
 {
     private VarExprList exprs ;
+    // Compiled expressions, in the order of exprs.getVars(); null for a variable without an expression.
+    private final CompiledExpr[] compiled ;
     private final boolean mustBeNewVar ;
 
     public QueryIterAssign(QueryIterator input, Var var, Expr expr, ExecutionContext qCxt) {
@@ -51,6 +57,12 @@ public class QueryIterAssign extends QueryIterProcessBinding
         super(input, qCxt) ;
         this.exprs = exprs ;
         this.mustBeNewVar = mustBeNewVar ;
+        this.compiled = new CompiledExpr[exprs.size()] ;
+        int i = 0 ;
+        for ( Var v : exprs.getVars() ) {
+            Expr expr = exprs.getExpr(v) ;
+            compiled[i++] = ( expr == null ) ? null : ExprCompiler.compile(expr, qCxt == null ? null : qCxt.getContext()) ;
+        }
     }
 
     @Override
@@ -58,10 +70,11 @@ public class QueryIterAssign extends QueryIterProcessBinding
         // XXX Assumes ExprList.get(, Binding, )
         //BindingMap b = BindingFactory.create(binding);
         BindingBuilder b = Binding.builder(binding);
+        int i = 0 ;
         for ( Var v : exprs.getVars() ) {
             // if "binding", not "b" used, we get (Lisp) "let"
             // semantics, not the desired "let*" semantics
-            Node n = exprs.get(v, b.snapshot(), getExecContext());
+            Node n = eval(v, compiled[i++], b.snapshot());
 
             if ( n == null )
                 // Expression failed to evaluate - no assignment
@@ -89,6 +102,18 @@ public class QueryIterAssign extends QueryIterProcessBinding
         return b.build() ;
     }
 
+    /** As {@link VarExprList#get}, using the compiled expression. */
+    private Node eval(Var v, CompiledExpr expr, Binding binding) {
+        if ( expr == null )
+            return binding.get(v) ;
+        try {
+            NodeValue nv = expr.eval(binding, getExecContext()) ;
+            return ( nv == null ) ? null : nv.asNode() ;
+        } catch (ExprEvalException ex) {
+            return null ;
+        }
+    }
+
     @Override
     protected void details(IndentedWriter out, SerializationContext cxt) {
         out.print(Lib.className(this));
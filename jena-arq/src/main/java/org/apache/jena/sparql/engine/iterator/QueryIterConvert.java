@@ -37,6 +37,7 @@ public class QueryIterConvert extends QueryIter1
     }
     
     Converter converter ; 
+    private BatchReader input = null ;
     
     public QueryIterConvert(QueryIterator iter, Converter c, ExecutionContext context)
     { 
@@ -44,6 +45,13 @@ public class QueryIterConvert extends QueryIter1
         converter = c ;
     }
     
+    private BatchReader input()
+    {
+        if ( input == null )
+            input = BatchReader.create(getInput(), getExecContext()) ;
+        return input ;
+    }
+
     @Override
     protected void 
     closeSubIterator() {}
@@ -55,13 +63,22 @@ public class QueryIterConvert extends QueryIter1
     @Override
     public boolean hasNextBinding()
     {
-        return getInput().hasNext() ;
+        return input().hasNext() ;
     }
 
     @Override
     public Binding moveToNextBinding()
     {
-        return converter.convert(getInput().nextBinding()) ;
+        return converter.convert(input().next()) ;
+    }
+
+    @Override
+    protected int moveToNextBatch(Binding[] batch, int off, int len)
+    {
+        int n = input().read(batch, off, len) ;
+        for ( int i = off ; i < off + n ; i++ )
+            batch[i] = converter.convert(batch[i]) ;
+        return n ;
     }
 
     @Override
@@ -26,6 +26,8 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
 import org.apache.jena.sparql.expr.ExprException ;
+import org.apache.jena.sparql.expr.compile.CompiledExpr ;
+import org.apache.jena.sparql.expr.compile.ExprCompiler ;
 import org.apache.jena.sparql.serializer.SerializationContext ;
 import org.apache.jena.sparql.util.ExprUtils ;
 
@@ -35,18 +37,20 @@ import org.apache.jena.sparql.util.ExprUtils ;
 public class QueryIterFilterExpr extends QueryIterProcessBinding
 {
     private final Expr expr ;
+    private final CompiledExpr compiled ;
     
     public QueryIterFilterExpr(QueryIterator input, Expr expr, ExecutionContext context)
     {
         super(input, context) ;
         this.expr = expr ;
+        this.compiled = ExprCompiler.compile(expr, context == null ? null : context.getContext()) ;
     }
     
     @Override
     public Binding accept(Binding binding)
     {
         try {
-            if ( expr.isSatisfied(binding, super.getExecContext()) )
+            if ( compiled.isSatisfied(binding, super.getExecContext()) )
                 return binding ;
             return null ;
         } catch (ExprException ex)
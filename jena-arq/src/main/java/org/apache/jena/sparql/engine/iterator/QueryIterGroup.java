@@ -20,15 +20,24 @@ package org.apache.jena.sparql.engine.iterator;
 
 import java.util.ArrayList ;
 import java.util.Collection ;
+import java.util.Comparator ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.NoSuchElementException ;
 
+import org.apache.jena.atlas.data.BagFactory ;
+import org.apache.jena.atlas.data.SortedDataBag ;
+import org.apache.jena.atlas.data.ThresholdPolicy ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
 import org.apache.jena.atlas.lib.Pair ;
 import org.apache.jena.ext.com.google.common.collect.Multimap;
 import org.apache.jena.ext.com.google.common.collect.MultimapBuilder;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.query.QueryCancelledException ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.core.VarExprList ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
@@ -39,37 +48,60 @@ import org.apache.jena.sparql.engine.binding.BindingFactory ;
 import org.apache.jena.sparql.expr.ExprAggregator ;
 import org.apache.jena.sparql.expr.NodeValue ;
 import org.apache.jena.sparql.expr.aggregate.Accumulator ;
+import org.apache.jena.sparql.system.SerializationFactoryFinder ;
+import org.apache.jena.sparql.util.NodeUtils ;
 
+/**
+ * Grouping and aggregation.
+ * <p>
+ * By default, groups and their accumulators are kept in an in-memory hash table.
+ * If {@link ARQ#spillToDiskThreshold} is set, the input is instead sorted on the
+ * group key with a {@link SortedDataBag}, which spills to disk when the threshold is
+ * passed, and the groups are then calculated one at a time as the sorted input is
+ * read back. Only the accumulators of the current group are held in memory.
+ */
 public class QueryIterGroup extends QueryIterPlainWrapper
 {
 	private final QueryIterator embeddedIterator;
+	// Set if the external (sort-based) mode is used.
+	private SortedDataBag<Binding> db = null;
 
 	public QueryIterGroup(QueryIterator qIter,
                           VarExprList groupVars,
                           List<ExprAggregator> aggregators,
                           ExecutionContext execCxt) {
+        super(null, execCxt);
+        this.embeddedIterator = qIter;
 	    // Delayed initalization
 	    // Does the group calculation when first used (typically hasNext)
-        super(calc(qIter, groupVars, aggregators, execCxt),
-              execCxt);
-        this.embeddedIterator = qIter;
+        this.setIterator(calc(qIter, groupVars, aggregators, execCxt));
     }
 
     @Override
     public void requestCancel() {
+        if ( this.db != null )
+            this.db.cancel();
         this.embeddedIterator.cancel();
         super.requestCancel();
     }
 
     @Override
     protected void closeIterator() {
+        if ( this.db != null )
+            this.db.close();
         this.embeddedIterator.close();
         super.closeIterator();
     }
 
+    private static boolean useExternalGrouping(ExecutionContext execCxt) {
+        if ( execCxt == null || execCxt.getContext() == null )
+            return false;
+        return execCxt.getContext().getLong(ARQ.spillToDiskThreshold, -1) >= 0 ;
+    }
+
 	private static Pair<Var, Accumulator> placeholder = Pair.create((Var)null, (Accumulator)null) ;
 
-    private static Iterator<Binding> calc(final QueryIterator iter,
+    private Iterator<Binding> calc(final QueryIterator iter,
                                           final VarExprList groupVarExpr,
                                           final List<ExprAggregator> aggregators,
                                           final ExecutionContext execCxt) {
@@ -105,6 +137,9 @@ public class QueryIterGroup extends QueryIterPlainWrapper
                 }
 
                 // Case: there is input.
+                if ( useExternalGrouping(execCxt) )
+                    return calcExternal(iter, groupVarExpr, aggregators, execCxt);
+
                 // Phase 1 : Create keys and aggregators per key, and pump bindings through the aggregators.
                 Multimap<Binding, Pair<Var, Accumulator>> accumulators = MultimapBuilder.hashKeys().arrayListValues().build();
                 while (iter.hasNext()) {
@@ -158,6 +193,117 @@ public class QueryIterGroup extends QueryIterPlainWrapper
         };
     }
 
+    /**
+     * Sort the input on the group key, spilling to disk if necessary, then
+     * stream the groups, one at a time, from the sorted input.
+     */
+    private Iterator<Binding> calcExternal(QueryIterator iter, VarExprList groupVarExpr,
+                                           List<ExprAggregator> aggregators, ExecutionContext execCxt) {
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(execCxt.getContext());
+        Comparator<Binding> comparator = new GroupKeyComparator(groupVarExpr, execCxt);
+        db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator);
+        try {
+            db.addAll(iter);
+        } catch (QueryCancelledException e) {
+            close();
+            throw e;
+        }
+        return new IterSortedGroups(db.iterator(), groupVarExpr, aggregators, execCxt);
+    }
+
+    /** Order bindings by the value of the group key, compared as RDF terms. */
+    private static class GroupKeyComparator implements Comparator<Binding> {
+        private final VarExprList groupVarExpr;
+        private final ExecutionContext execCxt;
+
+        GroupKeyComparator(VarExprList groupVarExpr, ExecutionContext execCxt) {
+            this.groupVarExpr = groupVarExpr;
+            this.execCxt = execCxt;
+        }
+
+        @Override
+        public int compare(Binding b1, Binding b2) {
+            for ( Var var : groupVarExpr.getVars() ) {
+                Node n1 = groupVarExpr.get(var, b1, execCxt);
+                Node n2 = groupVarExpr.get(var, b2, execCxt);
+                // Equal only if the same term, or both null (unbound or error).
+                int x = NodeUtils.compareRDFTerms(n1, n2);
+                if ( x != 0 )
+                    return x;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Calculate groups from input sorted by group key.
+     * All the bindings of one group are adjacent.
+     */
+    private static class IterSortedGroups extends IteratorSlotted<Binding> {
+        private final Iterator<Binding> sorted;
+        private final VarExprList groupVarExpr;
+        private final List<ExprAggregator> aggregators;
+        private final ExecutionContext execCxt;
+        // The first binding of the next group, if any.
+        private Binding pending = null;
+        private Binding pendingKey = null;
+
+        IterSortedGroups(Iterator<Binding> sorted, VarExprList groupVarExpr,
+                         List<ExprAggregator> aggregators, ExecutionContext execCxt) {
+            this.sorted = sorted;
+            this.groupVarExpr = groupVarExpr;
+            this.aggregators = ( aggregators == null ) ? List.of() : aggregators;
+            this.execCxt = execCxt;
+            advance();
+        }
+
+        private void advance() {
+            if ( sorted.hasNext() ) {
+                pending = sorted.next();
+                pendingKey = genKey(groupVarExpr, pending, execCxt);
+            } else {
+                pending = null;
+                pendingKey = null;
+            }
+        }
+
+        @Override
+        protected boolean hasMore() {
+            return pending != null;
+        }
+
+        @Override
+        protected Binding moveToNext() {
+            if ( pending == null )
+                throw new NoSuchElementException("IterSortedGroups");
+            Binding key = pendingKey;
+            List<Pair<Var, Accumulator>> accs = new ArrayList<>(aggregators.size());
+            for ( ExprAggregator agg : aggregators )
+                accs.add(Pair.create(agg.getVar(), agg.getAggregator().createAccumulator()));
+            // Consume the group.
+            while ( pending != null && key.equals(pendingKey) ) {
+                for ( Pair<Var, Accumulator> pair : accs )
+                    pair.getRight().accumulate(pending, execCxt);
+                advance();
+            }
+            if ( accs.isEmpty() )
+                return key;
+            BindingBuilder builder = Binding.builder(key);
+            for ( Pair<Var, Accumulator> pair : accs ) {
+                NodeValue value = pair.getRight().getValue();
+                if ( value == null )
+                    continue;
+                builder.add(pair.getLeft(), value.asNode());
+            }
+            return builder.build();
+        }
+
+        @Override
+        protected void closeIterator() {
+            Iter.close(sorted);
+        }
+    }
+
     static private Binding genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) {
         return copyProject(vars, binding, execCxt);
     }
@@ -62,6 +62,22 @@ public class QueryIterPlainWrapper extends QueryIter
     @Override
     protected Binding moveToNextBinding() { return iterator.next(); }
 
+    @Override
+    protected int moveToNextBatch(Binding[] batch, int off, int len) {
+        if ( iterator instanceof QueryIterator )
+            return ((QueryIterator)iterator).nextBatch(batch, off, len);
+        int n = 0;
+        while ( n < len ) {
+            if ( !iterator.hasNext() ) {
+                // Some iterators do not allow hasNext() after it has returned false.
+                close();
+                break;
+            }
+            batch[off + n++] = iterator.next();
+        }
+        return n;
+    }
+
     @Override
     protected void closeIterator() {
         if ( iterator != null ) {
@@ -39,12 +39,22 @@ public abstract class QueryIterProcessBinding extends QueryIter1 {
     abstract public Binding accept(Binding binding) ;
 
     private Binding nextBinding ;
+    private BatchReader input = null ;
 
     public QueryIterProcessBinding(QueryIterator qIter, ExecutionContext context) {
         super(qIter, context) ;
         nextBinding = null ;
     }
 
+    private BatchReader input() {
+        // Null iterator.
+        if ( getInput() == null )
+            throw new ARQInternalErrorException(Lib.className(this) + ": Null iterator") ;
+        if ( input == null )
+            input = BatchReader.create(getInput(), getExecContext()) ;
+        return input ;
+    }
+
     /**
      * Are there any more acceptable objects.
      * 
@@ -59,13 +69,10 @@ public abstract class QueryIterProcessBinding extends QueryIter1 {
         if ( nextBinding != null )
             return true ;
 
-        // Null iterator.
-        if ( getInput() == null )
-            throw new ARQInternalErrorException(Lib.className(this) + ": Null iterator") ;
-
-        while (getInput().hasNext()) {
+        BatchReader iter = input() ;
+        while (iter.hasNext()) {
             // Skip forward until a binding to return is found.
-            Binding input = getInput().nextBinding() ;
+            Binding input = iter.next() ;
             Binding output = accept(input) ;
             if ( output != null ) {
                 nextBinding = output ;
@@ -91,6 +98,31 @@ public abstract class QueryIterProcessBinding extends QueryIter1 {
         throw new NoSuchElementException() ;
     }
 
+    /** Process a batch of input bindings in place. */
+    @Override
+    protected int moveToNextBatch(Binding[] batch, int off, int len) {
+        int n = 0 ;
+        if ( nextBinding != null ) {
+            batch[off + n++] = nextBinding ;
+            nextBinding = null ;
+        }
+        BatchReader iter = input() ;
+        while ( n < len ) {
+            int start = off + n ;
+            int k = iter.read(batch, start, len - n) ;
+            if ( k == 0 )
+                break ;
+            int end = start + k ;
+            for ( int i = start ; i < end ; i++ ) {
+                Binding output = accept(batch[i]) ;
+                batch[i] = null ;
+                if ( output != null )
+                    batch[off + n++] = output ;
+            }
+        }
+        return n ;
+    }
+
     @Override
     protected void closeSubIterator() {}
 
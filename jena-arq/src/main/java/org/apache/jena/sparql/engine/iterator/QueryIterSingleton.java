@@ -58,6 +58,9 @@ public class QueryIterSingleton extends QueryIterYieldN
         out.print("QueryIterSingleton "+binding);
     }
     
+    @Override
+    public boolean isJoinIdentity() { return binding.isEmpty() ; }
+
 //    @Override
 //    public void closeIterator() { super.closeIterator() ; }
 }
@@ -28,13 +28,16 @@ import org.apache.jena.atlas.data.ThresholdPolicy;
 import org.apache.jena.atlas.data.ThresholdPolicyFactory;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization;
 import org.apache.jena.atlas.lib.Closeable;
+import org.apache.jena.query.ARQ;
 import org.apache.jena.query.QueryCancelledException;
 import org.apache.jena.query.SortCondition;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.binding.BindingComparator;
+import org.apache.jena.sparql.engine.main.ParallelExecution;
 import org.apache.jena.sparql.system.SerializationFactoryFinder;
+import org.apache.jena.sparql.util.Context;
 
 /**
  * Sort a query iterator. The sort will happen in-memory unless the size of the
@@ -57,6 +60,13 @@ public class QueryIterSort extends QueryIterPlainWrapper {
         this.embeddedIterator = qIter;
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(context.getContext());
         this.db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator);
+        Context cxt = context.getContext();
+        // Sort and spill on other threads only if the bindings can be read on another thread.
+        // Comparing bindings with equal sort keys reads the bindings.
+        if ( ( cxt == null || cxt.isTrueOrUndef(ARQ.parallelSort) ) && ParallelExecution.defaultSetup(context) != null ) {
+            this.db.setParallelSort(true);
+            this.db.setAsyncSpill(true);
+        }
         this.setIterator(new SortedBindingIterator(qIter));
     }
 
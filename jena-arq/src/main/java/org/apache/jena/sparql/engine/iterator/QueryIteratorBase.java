@@ -79,6 +79,29 @@ public abstract class QueryIteratorBase
         Returning null is turned into NoSuchElementException 
         Does not need to call hasNext (can presume it is true) */
     protected abstract Binding moveToNextBinding() ;
+
+    /** Override this, not nextBatch(), to produce several bindings in one call.
+     *  Return the number of bindings written into {@code batch}, 0 for no more.
+     *  The default implementation calls hasNextBinding/moveToNextBinding
+     *  for each row and closes the iterator when there are no more. */
+    protected int moveToNextBatch(Binding[] batch, int off, int len)
+    {
+        int n = 0 ;
+        while ( n < len )
+        {
+            if ( ! hasNextBinding() )
+            {
+                // As hasNext(): do not ask again.
+                close() ;
+                break ;
+            }
+            Binding obj = moveToNextBinding() ;
+            if ( obj == null )
+                break ;
+            batch[off + n++] = obj ;
+        }
+        return n ;
+    }
     
     /** Close the iterator. */
     protected abstract void closeIterator() ;
@@ -172,6 +195,34 @@ public abstract class QueryIteratorBase
         }
     }
     
+    /** final - subclasses implement moveToNextBatch() */
+    @Override
+    public final int nextBatch(Binding[] batch, int off, int len)
+    {
+        try {
+            boolean shouldCancel = requestingCancel;
+
+            if ( shouldCancel && abortIterator )
+            {
+                close() ;
+                throw new QueryCancelledException() ;
+            }
+
+            if ( finished || len <= 0 )
+                return 0 ;
+
+            int n = moveToNextBatch(batch, off, len) ;
+            // No more, or a continuing iterator that has been cancelled.
+            if ( n == 0 || ( shouldCancel && ! finished ) )
+                close() ;
+            return n ;
+        } catch (QueryFatalException ex)
+        {
+            Log.error(this, "QueryFatalException", ex) ;
+            throw ex ;
+        }
+    }
+
     @Override
     public final void remove()
     {
@@ -43,6 +43,11 @@ public class QueryIteratorWrapper extends QueryIteratorBase {
         return iterator.nextBinding();
     }
 
+    @Override
+    protected int moveToNextBatch(Binding[] batch, int off, int len) {
+        return iterator.nextBatch(batch, off, len);
+    }
+
     @Override
     protected void closeIterator() {
         if ( iterator != null ) {
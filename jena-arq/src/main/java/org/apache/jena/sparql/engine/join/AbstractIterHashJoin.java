@@ -18,15 +18,19 @@
 
 package org.apache.jena.sparql.engine.join;
 
+import java.util.HashSet ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.Set ;
 
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.engine.iterator.BatchReader ;
 import org.apache.jena.sparql.engine.iterator.QueryIter2 ;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
 
@@ -34,6 +38,10 @@ import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
  *  
  * This code materializes one input into the probe table
  * then hash joins the other input from the stream side.
+ * <p>
+ * If {@link ARQ#spillToDiskThreshold} is set and the probe table grows past it,
+ * both inputs are partitioned by join key into disk-backed bags
+ * (see {@link HashJoinPartitions}) and the join is done one partition at a time.
  */
 
 public abstract class AbstractIterHashJoin extends QueryIter2 {
@@ -44,14 +52,27 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
     // See also stats in the probe table.
     
     protected final JoinKey               joinKey ;
-    protected final HashProbeTable        hashTable ;
+    // Changes for each partition after spilling.
+    protected HashProbeTable              hashTable ;
 
     private QueryIterator               iterStream ;
+    // The stream side rows being joined: iterStream, or a partition after spilling.
+    private Iterator<Binding>           iterStreamRows ;
+    
+    // Spill control.
+    private static final int            numPartitions   = 32 ;
+    private final long                  spillThreshold ;
+    private HashJoinPartitions          partitions      = null ;
+    private int                         partitionIdx    = -1 ;
+    // After spilling, stream rows without the join key are compared with all probe rows.
+    private boolean                     scanAllProbe    = false ;
     private Binding                     rowStream       = null ;
     private Iterator<Binding>           iterCurrent ;
     private boolean                     yielded ;       // Flag to note when current probe causes a result. 
     // Hanlde any "post join" additions.
     private Iterator<Binding>           iterTail        = null ;
+    // Probe rows that have matched, before spilling, for outer joins of the probe side.
+    private Set<Binding>                probeHits       = null ;
     
     enum Phase { INIT, HASH , STREAM, TRAILER, DONE }
     Phase state = Phase.INIT ;
@@ -77,23 +98,120 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
         
         this.joinKey = joinKey ;
         this.iterStream = streamIter ;
+        this.iterStreamRows = BatchReader.create(streamIter, execCxt) ;
         this.hashTable = new HashProbeTable(joinKey) ;
         this.iterCurrent = null ;
-        buildHashTable(probeIter) ;
+        this.spillThreshold = spillThreshold(execCxt) ;
+        buildHashTable(probeIter, BatchReader.batchSize(execCxt)) ;
         
     }
+
+    private static long spillThreshold(ExecutionContext execCxt) {
+        if ( execCxt == null || execCxt.getContext() == null )
+            return -1 ;
+        return execCxt.getContext().getLong(ARQ.spillToDiskThreshold, -1) ;
+    }
         
-    private void buildHashTable(QueryIterator iter1) {
+    private void buildHashTable(QueryIterator iter1, int batchSize) {
         state = Phase.HASH ;
-        for (; iter1.hasNext();) {
-            Binding row1 = iter1.next() ;
-            s_countProbe ++ ;
-            hashTable.put(row1) ;
+        // The probe side is read completely: take it in full batches.
+        Binding[] batch = new Binding[batchSize] ;
+        for (int n; (n = iter1.nextBatch(batch, 0, batchSize)) > 0 ;) {
+            for ( int i = 0 ; i < n ; i++ ) {
+                Binding row1 = batch[i] ;
+                batch[i] = null ;
+                s_countProbe ++ ;
+                if ( partitions != null ) {
+                    partitions.addProbe(row1) ;
+                    continue ;
+                }
+                hashTable.put(row1) ;
+                if ( spillThreshold >= 0 && hashTable.s_count > spillThreshold )
+                    spill() ;
+            }
         }
         iter1.close() ;
+        if ( partitions != null )
+            partitionStream() ;
         state = Phase.STREAM ;
     }
 
+    /** Switch from the in-memory probe table to partitions. */
+    private void spill() {
+        partitions = new HashJoinPartitions(joinKey, numPartitions, spillThreshold) ;
+        hashTable.values().forEachRemaining(partitions::addProbe) ;
+        hashTable.clear() ;
+    }
+
+    /** Partition the stream side then set up for the first partition. */
+    private void partitionStream() {
+        iterStreamRows.forEachRemaining(partitions::addStream) ;
+        iterStreamRows = Iter.nullIterator() ;
+        nextPartition() ;
+    }
+
+    /**
+     * Move to the next partition to join, or to the stream rows with no join key,
+     * after spilling. Return false when there is nothing more.
+     */
+    private boolean nextPartition() {
+        if ( partitions == null || scanAllProbe )
+            return false ;
+        Iter.close(iterStreamRows) ;
+        partitionIdx++ ;
+        if ( partitionIdx < partitions.numPartitions() ) {
+            hashTable = partitions.probeTable(partitionIdx) ;
+            iterStreamRows = partitions.streamRows(partitionIdx) ;
+            return true ;
+        }
+        hashTable = new HashProbeTable(joinKey) ;
+        if ( ! partitions.hasStreamRowsNoKey() )
+            return false ;
+        scanAllProbe = true ;
+        iterStreamRows = partitions.streamRowsNoKey() ;
+        return true ;
+    }
+
+    /**
+     * Publish the join key values of the hash table to the scans of the stream side.
+     * Nothing is published if the table has spilled to disk or has rows without the key.
+     */
+    protected void publishJoinFilter(JoinFilter joinFilter) {
+        if ( partitions != null || joinKey.isEmpty() )
+            return ;
+        Var var = joinKey.getVarKey() ;
+        if ( ! hashTable.getNoKey$().isEmpty() )
+            return ;
+        joinFilter.publish(var, hashTable.values()) ;
+    }
+
+    /** All the rows of the probe side. */
+    protected Iterator<Binding> probeValues() {
+        if ( partitions != null )
+            return partitions.probeRows() ;
+        return hashTable.values() ;
+    }
+
+    /** Note that a probe side row has matched, for {@link #probeValuesNoHit}. */
+    protected void probeHit(Binding rowProbe) {
+        if ( partitions != null ) {
+            partitions.addProbeHit(rowProbe) ;
+            return ;
+        }
+        if ( probeHits == null )
+            probeHits = new HashSet<>() ;
+        probeHits.add(rowProbe) ;
+    }
+
+    /** The rows of the probe side that have not been noted by {@link #probeHit}. */
+    protected Iterator<Binding> probeValuesNoHit() {
+        if ( partitions != null )
+            return partitions.probeRowsNoHit() ;
+        if ( probeHits == null )
+            return hashTable.values() ;
+        return Iter.filter(hashTable.values(), b -> ! probeHits.contains(b)) ;
+    }
+
     @Override
     protected boolean hasNextBinding() {
         if ( isFinished() ) 
@@ -134,16 +252,18 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
             // Ensure we are processing a row. 
             while ( iterCurrent == null ) {
                 // Move on to the next row from the right.
-                if ( ! iterStream.hasNext() ) {
+                if ( ! iterStreamRows.hasNext() ) {
+                    if ( nextPartition() )
+                        continue ;
                     state = Phase.TRAILER ;
                     iterTail = joinFinished() ;
                     if ( iterTail != null )
                         return doOneTail() ;
                     return null ;
                 }
-                rowStream = iterStream.next() ;
+                rowStream = iterStreamRows.next() ;
                 s_countScan ++ ;
-                iterCurrent = hashTable.getCandidates(rowStream) ;
+                iterCurrent = scanAllProbe ? probeValues() : hashTable.getCandidates(rowStream) ;
                 yielded = false ;
             }
             
@@ -193,6 +313,17 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
         return null ;
     }
     
+    /**
+     * Note that the current stream row has matched, and skip the rest of the probe
+     * table candidates for it. {@link #noYieldedRows} is not called for the row.
+     * For semi-joins and anti-joins, where the first match decides.
+     */
+    protected final void matchFound() {
+        Iter.close(iterCurrent) ;
+        iterCurrent = Iter.nullIterator() ;
+        yielded = true ;
+    }
+
     /**
      * Signal about to return a result.
      * @param rowCurrentProbe
@@ -226,9 +357,17 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
                          hashTable.s_countScanMiss, hashTable.s_maxBucketSize, hashTable.s_noKeyBucketSize) ;
             System.out.println(x) ;
         }
+        HashJoinStats stats = HashJoinStats.get(getExecContext()) ;
+        if ( stats != null )
+            stats.record(s_countProbe, s_countScan, s_countResults,
+                         partitions != null, partitions == null ? 0 : partitions.spillCount()) ;
         // In case it's a peek iterator.
         iterStream.close() ;
         hashTable.clear(); 
+        if ( partitions != null ) {
+            Iter.close(iterStreamRows) ;
+            partitions.close() ;
+        }
     }
 
     @Override
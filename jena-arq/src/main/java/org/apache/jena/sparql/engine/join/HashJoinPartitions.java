@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.apache.jena.atlas.data.BagFactory;
+import org.apache.jena.atlas.data.DataBag;
+import org.apache.jena.atlas.data.ThresholdPolicy;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.system.SerializationFactoryFinder;
+
+/**
+ * The partitioned, disk-backed, form of the two sides of a hash join
+ * (a "grace" hash join).
+ * <p>
+ * Rows with a join key are put into one of a fixed number of partitions
+ * by the hash of the key; matching rows from the two sides are always in
+ * the same partition so the join can be done one partition at a time,
+ * with only the probe table of one partition in memory.
+ * <p>
+ * Rows of the probe side without a join key match any stream row; they are
+ * kept in memory and added to the probe table of every partition. Rows of the
+ * stream side without a join key are kept separately and need to be compared
+ * with all the probe side rows.
+ * <p>
+ * For outer joins, the probe side rows that have matched are recorded by
+ * partition, so that the unmatched rows can be found one partition at a time.
+ * <p>
+ * The rows are stored using the same binding serialization as
+ * {@link org.apache.jena.atlas.data.SortedDataBag} in the sort and distinct operations.
+ */
+class HashJoinPartitions {
+    private final JoinKey                joinKey;
+    private final List<DataBag<Binding>> probeParts;
+    private final List<DataBag<Binding>> streamParts;
+    private final DataBag<Binding>       streamNoKey;
+    private final List<Binding>          probeNoKey = new ArrayList<>();
+    private final long                   partThreshold;
+    // Probe side rows that have matched: the rows of one partition in memory,
+    // written to a bag for that partition when a row of another partition matches.
+    private List<DataBag<Binding>>       probeHitParts  = null;
+    private final Set<Binding>           probeHits      = new HashSet<>();
+    private int                          probeHitsIdx   = -1;
+    private final Set<Binding>           probeNoKeyHits = new HashSet<>();
+
+    /*package*/ long s_probeCount  = 0;
+    /*package*/ long s_streamCount = 0;
+
+    /**
+     * @param joinKey       The join key.
+     * @param numPartitions Number of partitions.
+     * @param threshold     Number of rows kept in memory by all the partitions of one side.
+     */
+    HashJoinPartitions(JoinKey joinKey, int numPartitions, long threshold) {
+        this.joinKey = joinKey;
+        this.partThreshold = Math.max(0, threshold / numPartitions);
+        this.probeParts = createBags(numPartitions, partThreshold);
+        this.streamParts = createBags(numPartitions, partThreshold);
+        this.streamNoKey = createBag(partThreshold);
+    }
+
+    private static List<DataBag<Binding>> createBags(int n, long threshold) {
+        List<DataBag<Binding>> bags = new ArrayList<>(n);
+        for ( int i = 0 ; i < n ; i++ )
+            bags.add(createBag(threshold));
+        return bags;
+    }
+
+    private static DataBag<Binding> createBag(long threshold) {
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.count(threshold);
+        return BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory());
+    }
+
+    public int numPartitions() {
+        return probeParts.size();
+    }
+
+    private int partition(Object hash) {
+        long h = (Long)hash;
+        return Math.floorMod(Long.hashCode(h), probeParts.size());
+    }
+
+    public void addProbe(Binding row) {
+        s_probeCount++;
+        Object hash = JoinLib.hash(joinKey, row);
+        if ( hash == JoinLib.noKeyHash ) {
+            probeNoKey.add(row);
+            return;
+        }
+        probeParts.get(partition(hash)).add(row);
+    }
+
+    public void addStream(Binding row) {
+        s_streamCount++;
+        Object hash = JoinLib.hash(joinKey, row);
+        if ( hash == JoinLib.noKeyHash ) {
+            streamNoKey.add(row);
+            return;
+        }
+        streamParts.get(partition(hash)).add(row);
+    }
+
+    /** Build the in-memory probe table for one partition. */
+    public HashProbeTable probeTable(int idx) {
+        HashProbeTable table = new HashProbeTable(joinKey);
+        Iterator<Binding> iter = probeParts.get(idx).iterator();
+        try {
+            iter.forEachRemaining(table::put);
+        } finally {
+            Iter.close(iter);
+        }
+        probeNoKey.forEach(table::put);
+        return table;
+    }
+
+    /** The stream side rows for one partition. */
+    public Iterator<Binding> streamRows(int idx) {
+        return streamParts.get(idx).iterator();
+    }
+
+    /** The stream side rows that do not have a join key. */
+    public Iterator<Binding> streamRowsNoKey() {
+        return streamNoKey.iterator();
+    }
+
+    public boolean hasStreamRowsNoKey() {
+        return streamNoKey.size() > 0;
+    }
+
+    /** All the probe side rows, read from one partition at a time. */
+    public Iterator<Binding> probeRows() {
+        return Iter.concat(probeNoKey.iterator(), Iter.flatMap(probeParts.iterator(), DataBag::iterator));
+    }
+
+    /** Note that a probe side row has matched. */
+    public void addProbeHit(Binding row) {
+        Object hash = JoinLib.hash(joinKey, row);
+        if ( hash == JoinLib.noKeyHash ) {
+            probeNoKeyHits.add(row);
+            return;
+        }
+        int idx = partition(hash);
+        if ( idx != probeHitsIdx ) {
+            flushProbeHits();
+            probeHitsIdx = idx;
+        }
+        probeHits.add(row);
+    }
+
+    private void flushProbeHits() {
+        if ( probeHitsIdx < 0 )
+            return;
+        if ( probeHitParts == null )
+            probeHitParts = createBags(numPartitions(), partThreshold);
+        DataBag<Binding> bag = probeHitParts.get(probeHitsIdx);
+        probeHits.forEach(bag::add);
+        probeHits.clear();
+        probeHitsIdx = -1;
+    }
+
+    /**
+     * The probe side rows that have not been noted by {@link #addProbeHit},
+     * read one partition at a time. Call after the join has finished.
+     */
+    public Iterator<Binding> probeRowsNoHit() {
+        flushProbeHits();
+        Iterator<Binding> iter = Iter.filter(probeNoKey.iterator(), row -> ! probeNoKeyHits.contains(row));
+        return Iter.concat(iter, Iter.flatMap(IntStream.range(0, numPartitions()).iterator(), this::probeRowsNoHit));
+    }
+
+    private Iterator<Binding> probeRowsNoHit(int idx) {
+        Set<Binding> hits = new HashSet<>();
+        if ( probeHitParts != null ) {
+            Iterator<Binding> iter = probeHitParts.get(idx).iterator();
+            try {
+                iter.forEachRemaining(hits::add);
+            } finally {
+                Iter.close(iter);
+            }
+        }
+        return Iter.filter(probeParts.get(idx).iterator(), row -> ! hits.contains(row));
+    }
+
+    /** Number of partitions, of either side, that have been written to disk. */
+    public long spillCount() {
+        long x = 0;
+        for ( DataBag<Binding> bag : probeParts )
+            x += spilled(bag);
+        for ( DataBag<Binding> bag : streamParts )
+            x += spilled(bag);
+        x += spilled(streamNoKey);
+        return x;
+    }
+
+    private int spilled(DataBag<Binding> bag) {
+        // A bag goes to disk when the count threshold is passed.
+        return bag.size() > partThreshold ? 1 : 0;
+    }
+
+    public void close() {
+        probeParts.forEach(DataBag::close);
+        streamParts.forEach(DataBag::close);
+        streamNoKey.close();
+        if ( probeHitParts != null )
+            probeHitParts.forEach(DataBag::close);
+        probeNoKey.clear();
+        probeHits.clear();
+        probeNoKeyHits.clear();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.sparql.SystemARQ;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+/**
+ * Counters for the hash joins of a query execution.
+ * <p>
+ * Collecting is enabled by putting a {@code HashJoinStats} object in the context
+ * of the query execution under the symbol {@link #symbol}; each hash join adds its
+ * figures when it finishes.
+ * <pre>
+ *    HashJoinStats stats = new HashJoinStats();
+ *    queryExecution.getContext().set(HashJoinStats.symbol, stats);
+ * </pre>
+ */
+public class HashJoinStats {
+    /** Context symbol for the {@code HashJoinStats} of a query execution. */
+    public static final Symbol symbol = SystemARQ.allocSymbol("hashJoinStats");
+
+    private final AtomicLong joins        = new AtomicLong(0);
+    private final AtomicLong buildRows    = new AtomicLong(0);
+    private final AtomicLong probeRows    = new AtomicLong(0);
+    private final AtomicLong results      = new AtomicLong(0);
+    private final AtomicLong spilledJoins = new AtomicLong(0);
+    private final AtomicLong spills       = new AtomicLong(0);
+
+    public HashJoinStats() {}
+
+    /** Get the {@code HashJoinStats} for the execution, or null if not enabled. */
+    public static HashJoinStats get(ExecutionContext execCxt) {
+        if ( execCxt == null )
+            return null;
+        Context cxt = execCxt.getContext();
+        if ( cxt == null )
+            return null;
+        Object obj = cxt.get(symbol);
+        return ( obj instanceof HashJoinStats ) ? (HashJoinStats)obj : null;
+    }
+
+    /*package*/ void record(long buildCount, long probeCount, long resultCount, boolean spilled, long spillCount) {
+        joins.incrementAndGet();
+        buildRows.addAndGet(buildCount);
+        probeRows.addAndGet(probeCount);
+        results.addAndGet(resultCount);
+        if ( spilled ) {
+            spilledJoins.incrementAndGet();
+            spills.addAndGet(spillCount);
+        }
+    }
+
+    /** Number of hash joins that have finished. */
+    public long getJoins()          { return joins.get(); }
+
+    /** Total number of rows put in the hash tables (the build side). */
+    public long getBuildRows()      { return buildRows.get(); }
+
+    /** Total number of rows looked up in the hash tables (the probe side, streamed). */
+    public long getProbeRows()      { return probeRows.get(); }
+
+    /** Total number of results. */
+    public long getResults()        { return results.get(); }
+
+    /** Number of hash joins that went over the memory threshold and partitioned their inputs. */
+    public long getSpilledJoins()   { return spilledJoins.get(); }
+
+    /** Number of partitions written to disk. */
+    public long getSpills()         { return spills.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("HashJoinStats: joins=%d build=%d probe=%d results=%d spilledJoins=%d spills=%d",
+                             getJoins(), getBuildRows(), getProbeRows(), getResults(), getSpilledJoins(), getSpills());
+    }
+}
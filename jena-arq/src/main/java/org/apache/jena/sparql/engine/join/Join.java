@@ -19,12 +19,14 @@
 package org.apache.jena.sparql.engine.join;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.algebra.Table ;
 import org.apache.jena.sparql.algebra.TableFactory ;
+import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
@@ -58,6 +60,22 @@ public class Join {
         return hashJoin(left, right, execCxt) ;
     }
 
+    /**
+     * Join of two streams where the right side was set up with a {@link JoinFilter}
+     * ({@link JoinFilter#execContext}). The join publishes the join key values of the
+     * left side to it.
+     * @param left
+     * @param right
+     * @param joinFilter
+     * @param execCxt
+     * @return QueryIterator
+     */
+    public static QueryIterator join(QueryIterator left, QueryIterator right, JoinFilter joinFilter, ExecutionContext execCxt) {
+        if ( joinFilter == null || useNestedLoopJoin )
+            return join(left, right, execCxt) ;
+        return QueryIterHashJoin.create(null, left, right, joinFilter, execCxt) ;
+    }
+
     /** Standard entry point to a left join of two streams.
      * This is not a substitution/index join.
      * (See {@link OpExecutor} for streamed execution using substitution).
@@ -127,6 +145,45 @@ public class Join {
         return QueryIterHashJoin.create(joinKey, left, right, execCxt) ;
     }
 
+    /**
+     * Semi-join by hashing the right hand side and streaming the left:
+     * the rows of the left that are compatible with a row of the right.
+     * @param joinKey   The key for the probe table.
+     * @param left      Left hand side
+     * @param right     Right hand side
+     * @param execCxt   ExecutionContext
+     * @return          QueryIterator
+     */
+    public static QueryIterator hashSemiJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        return QueryIterHashSemiJoin.createSemiJoin(joinKey, left, right, execCxt) ;
+    }
+
+    /**
+     * Anti-join by hashing the right hand side and streaming the left:
+     * the rows of the left that are not compatible with any row of the right.
+     * @param joinKey   The key for the probe table.
+     * @param left      Left hand side
+     * @param right     Right hand side
+     * @param execCxt   ExecutionContext
+     * @return          QueryIterator
+     */
+    public static QueryIterator hashAntiJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        return QueryIterHashSemiJoin.createAntiJoin(joinKey, left, right, execCxt) ;
+    }
+
+    /**
+     * SPARQL MINUS by hashing the right hand side and streaming the left.
+     * @param joinKey    The key for the probe table; one of the common variables.
+     * @param left       Left hand side
+     * @param right      Right hand side
+     * @param commonVars Variables that can be in both sides
+     * @param execCxt    ExecutionContext
+     * @return           QueryIterator
+     */
+    public static QueryIterator hashMinus(JoinKey joinKey, QueryIterator left, QueryIterator right, Collection<Var> commonVars, ExecutionContext execCxt) {
+        return QueryIterHashSemiJoin.createMinus(joinKey, left, right, commonVars, execCxt) ;
+    }
+
     /**
      * Left outer join by using hash join. Normally, this is
      * hashing the right hand side and streaming the left.  The reverse
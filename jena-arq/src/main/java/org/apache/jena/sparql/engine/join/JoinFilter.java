@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.jena.atlas.lib.BloomFilter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.SystemARQ;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+/**
+ * A runtime join filter: the values of the join key on the build side of a hash
+ * join, made available to the evaluation of the other side of the join.
+ * <p>
+ * The streamed side of the join is executed with a copy of the execution context
+ * that carries the {@code JoinFilter} (see {@link #get(ExecutionContext)}). When
+ * the hash table has been built, the join publishes the join variable and its
+ * values. From then on, a scan of the streamed side that binds the join variable
+ * can drop any match whose value is not in the filter: that row could not have
+ * joined with anything. Storage layers build their own filter of internal ids
+ * from the published values with {@link #derive}.
+ * <p>
+ * A filter is only offered when every row made by a scan of the streamed side
+ * reaches the join unchanged or not at all, so dropping it early does not
+ * change the results. There is no filter below OPTIONAL, MINUS, sub-queries,
+ * grouping, slicing or {@code EXISTS}.
+ */
+public class JoinFilter {
+    /** Context symbol for the {@code JoinFilter} of the innermost join. */
+    public static final Symbol symbol = SystemARQ.allocSymbol("joinFilter");
+
+    /** Largest build side, in distinct key values, that is published. */
+    public static int MaxKeys = 1_000_000;
+
+    private static final double falsePositiveRate = 0.01;
+
+    private final JoinFilter parent;
+    private Node[] keys = null;
+    private BloomFilter filter = null;
+    // Set last when publishing.
+    private volatile Var var = null;
+    private final Map<Object, Object> derived = new ConcurrentHashMap<>();
+
+    private JoinFilter(JoinFilter parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Create a {@code JoinFilter} for a join whose streamed side is {@code opStream},
+     * or return null if runtime join filters are disabled or not safe for this
+     * operator.
+     */
+    public static JoinFilter create(Op opStream, ExecutionContext execCxt) {
+        Context cxt = execCxt.getContext();
+        if ( cxt == null || ! cxt.isTrueOrUndef(ARQ.runtimeJoinFilter) )
+            return null;
+        if ( ! safe(opStream) )
+            return null;
+        return new JoinFilter(get(execCxt));
+    }
+
+    /** The {@code JoinFilter} of the innermost join being evaluated, or null. */
+    public static JoinFilter get(ExecutionContext execCxt) {
+        if ( execCxt == null || execCxt.getContext() == null )
+            return null;
+        Object obj = execCxt.getContext().get(symbol);
+        return ( obj instanceof JoinFilter ) ? (JoinFilter)obj : null;
+    }
+
+    /** An execution context, for the streamed side of the join, that carries this filter. */
+    public ExecutionContext execContext(ExecutionContext execCxt) {
+        Context cxt = execCxt.getContext().copy();
+        cxt.set(symbol, this);
+        return new ExecutionContext(execCxt, cxt);
+    }
+
+    /** The {@code JoinFilter} of the enclosing join, if any. Its filter also applies. */
+    public JoinFilter getParent() {
+        return parent;
+    }
+
+    /** Whether the build side has been published. */
+    public boolean isPublished() {
+        return var != null;
+    }
+
+    /** The join variable, or null if not published yet. */
+    public Var getVar() {
+        return var;
+    }
+
+    /**
+     * Test a value of the join variable.
+     * False means no row of the build side has this value.
+     * True if the filter has not been published.
+     */
+    public boolean mightContain(Node node) {
+        if ( var == null )
+            return true;
+        return filter.mightContain(hash(node));
+    }
+
+    /**
+     * Get, or build once, a form of the filter specific to {@code key} (for
+     * example, over the internal ids of a storage layer) from the join key
+     * values. Returns null if the filter has not been published.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derive(Object key, Function<Node[], T> builder) {
+        if ( var == null )
+            return null;
+        return (T)derived.computeIfAbsent(key, k->builder.apply(keys));
+    }
+
+    /**
+     * Publish the join key values of the build side. Every row must bind {@code v};
+     * if not, or there are too many values, nothing is published.
+     */
+    /*package*/ void publish(Var v, Iterator<Binding> rows) {
+        Set<Node> values = new HashSet<>();
+        while ( rows.hasNext() ) {
+            Node n = rows.next().get(v);
+            if ( n == null )
+                return;
+            values.add(n);
+            if ( values.size() > MaxKeys )
+                return;
+        }
+        BloomFilter bloom = BloomFilter.create(values.size(), falsePositiveRate);
+        values.forEach(n->bloom.add(hash(n)));
+        this.keys = values.toArray(new Node[0]);
+        this.filter = bloom;
+        this.var = v;
+    }
+
+    private static long hash(Node node) {
+        return BloomFilter.hash(node.hashCode());
+    }
+
+    /**
+     * Whether each row of a pattern match in {@code op} reaches the results of
+     * {@code op} with the same bindings, or not at all.
+     */
+    private static boolean safe(Op op) {
+        if ( op instanceof OpBGP || op instanceof OpTriple || op instanceof OpQuadPattern
+             || op instanceof OpQuad || op instanceof OpQuadBlock || op instanceof OpTable )
+            return true;
+        if ( op instanceof OpFilter ) {
+            OpFilter opFilter = (OpFilter)op;
+            for ( Expr expr : opFilter.getExprs() ) {
+                if ( hasPattern(expr) )
+                    return false;
+            }
+            return safe(opFilter.getSubOp());
+        }
+        if ( op instanceof OpExtend || op instanceof OpAssign ) {
+            VarExprList exprs = ( op instanceof OpExtend ) ? ((OpExtend)op).getVarExprList() : ((OpAssign)op).getVarExprList();
+            for ( Var v : exprs.getVars() ) {
+                if ( hasPattern(exprs.getExpr(v)) )
+                    return false;
+            }
+            return safe(((Op1)op).getSubOp());
+        }
+        if ( op instanceof OpGraph || op instanceof OpDistinct || op instanceof OpReduced )
+            return safe(((Op1)op).getSubOp());
+        if ( op instanceof OpJoin || op instanceof OpUnion )
+            return safe(((Op2)op).getLeft()) && safe(((Op2)op).getRight());
+        if ( op instanceof OpSequence || op instanceof OpDisjunction ) {
+            for ( Op sub : ((OpN)op).getElements() ) {
+                if ( ! safe(sub) )
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean hasPattern(Expr expr) {
+        if ( expr == null )
+            return false;
+        if ( expr instanceof ExprFunctionOp )
+            return true;
+        if ( expr.isFunction() ) {
+            for ( Expr arg : expr.getFunction().getArgs() ) {
+                if ( hasPattern(arg) )
+                    return true;
+            }
+        }
+        return false;
+    }
+}
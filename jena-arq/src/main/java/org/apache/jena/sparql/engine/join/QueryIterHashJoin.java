@@ -43,6 +43,20 @@ public class QueryIterHashJoin extends AbstractIterHashJoin {
      * @return QueryIterator
      */
     public static QueryIterator create(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        return create(joinKey, left, right, null, execCxt) ;
+    }
+
+    /**
+     * Create a hashjoin QueryIterator that publishes the join key values of the
+     * left side to the evaluation of the right side.
+     * @param joinKey  Join key - if null, one is guessed by snooping the input QueryIterators
+     * @param left
+     * @param right
+     * @param joinFilter Runtime join filter the right side was set up with, or null.
+     * @param execCxt
+     * @return QueryIterator
+     */
+    public static QueryIterator create(JoinKey joinKey, QueryIterator left, QueryIterator right, JoinFilter joinFilter, ExecutionContext execCxt) {
         // Easy cases.
         if ( ! left.hasNext() || ! right.hasNext() ) {
             left.close() ;
@@ -51,7 +65,7 @@ public class QueryIterHashJoin extends AbstractIterHashJoin {
         }
         if ( joinKey != null && joinKey.length() > 1 )
             Log.warn(QueryIterHashJoin.class, "Multivariable join key") ; 
-        return new QueryIterHashJoin(joinKey, left, right, execCxt) ; 
+        return new QueryIterHashJoin(joinKey, left, right, joinFilter, execCxt) ; 
     }
     
     /**
@@ -66,8 +80,10 @@ public class QueryIterHashJoin extends AbstractIterHashJoin {
         return create(null, left, right, execCxt) ;
     }
     
-    private QueryIterHashJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+    private QueryIterHashJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, JoinFilter joinFilter, ExecutionContext execCxt) {
         super(joinKey, left, right, execCxt) ;
+        if ( joinFilter != null )
+            publishJoinFilter(joinFilter) ;
     }
 
     @Override
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.path.*;
+
+/**
+ * Hash semi-join and anti-join: the rows of the left that have (or, for the
+ * anti-join, do not have) a compatible row on the right. The right is
+ * materialized into the probe table, and spills to disk like the hash join
+ * (see {@link ARQ#spillToDiskThreshold}), and the left is streamed. Each left row is
+ * returned unchanged, at most once.
+ * <p>
+ * These are {@code FILTER EXISTS} and {@code FILTER NOT EXISTS} when the pattern
+ * gives the same answers by substitution as by join, and, with the additional
+ * condition that the rows share a variable, {@code MINUS}.
+ */
+public class QueryIterHashSemiJoin extends AbstractIterHashJoin {
+    private enum Mode { SEMI, ANTI, MINUS }
+
+    private final Mode            mode;
+    private final Collection<Var> commonVars;
+
+    /**
+     * Semi-join: the rows of the left that are compatible with at least one row of the right.
+     * @param joinKey   Join key - the empty key if there are no variables in common.
+     * @param left
+     * @param right
+     * @param execCxt
+     * @return QueryIterator
+     */
+    public static QueryIterator createSemiJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        if ( ! left.hasNext() || ! right.hasNext() ) {
+            left.close();
+            right.close();
+            return QueryIterNullIterator.create(execCxt);
+        }
+        return new QueryIterHashSemiJoin(Mode.SEMI, joinKey, null, left, right, execCxt);
+    }
+
+    /**
+     * Anti-join: the rows of the left that are not compatible with any row of the right.
+     * @param joinKey   Join key - the empty key if there are no variables in common.
+     * @param left
+     * @param right
+     * @param execCxt
+     * @return QueryIterator
+     */
+    public static QueryIterator createAntiJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        if ( ! right.hasNext() ) {
+            right.close();
+            return left;
+        }
+        return new QueryIterHashSemiJoin(Mode.ANTI, joinKey, null, left, right, execCxt);
+    }
+
+    /**
+     * SPARQL MINUS: the rows of the left except those compatible with, and sharing
+     * a variable with, a row of the right.
+     * @param joinKey    Join key, one of the common variables.
+     * @param left
+     * @param right
+     * @param commonVars Variables that can be in both sides.
+     * @param execCxt
+     * @return QueryIterator
+     */
+    public static QueryIterator createMinus(JoinKey joinKey, QueryIterator left, QueryIterator right, Collection<Var> commonVars, ExecutionContext execCxt) {
+        if ( commonVars.isEmpty() || ! right.hasNext() ) {
+            // No row can share a variable.
+            right.close();
+            return left;
+        }
+        return new QueryIterHashSemiJoin(Mode.MINUS, joinKey, commonVars, left, right, execCxt);
+    }
+
+    private QueryIterHashSemiJoin(Mode mode, JoinKey joinKey, Collection<Var> commonVars,
+                                  QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
+        // Hash the right, stream the left.
+        super(joinKey, right, left, execCxt);
+        this.mode = mode;
+        this.commonVars = commonVars;
+    }
+
+    @Override
+    protected Binding yieldOneResult(Binding rowCurrentProbe, Binding rowStream, Binding rowResult) {
+        if ( mode == Mode.MINUS && ! sharesVar(rowCurrentProbe, rowStream) )
+            return null;
+        matchFound();
+        return ( mode == Mode.SEMI ) ? rowStream : null;
+    }
+
+    private boolean sharesVar(Binding rowRight, Binding rowLeft) {
+        for ( Var v : commonVars ) {
+            if ( rowRight.contains(v) && rowLeft.contains(v) )
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Binding noYieldedRows(Binding rowStream) {
+        return ( mode == Mode.SEMI ) ? null : rowStream;
+    }
+
+    @Override
+    protected QueryIterator joinFinished() {
+        return null;
+    }
+
+    /**
+     * Whether evaluating {@code pattern} with the variables of a row substituted
+     * gives the same answers as the rows of {@code pattern} compatible with that row.
+     * If so, {@code EXISTS} and {@code NOT EXISTS} can be done with a semi-join
+     * and anti-join of the pattern evaluated once.
+     */
+    public static boolean substitutionIsJoin(Op pattern) {
+        if ( pattern instanceof OpBGP || pattern instanceof OpTriple || pattern instanceof OpQuadPattern
+             || pattern instanceof OpQuad || pattern instanceof OpQuadBlock )
+            return true;
+        if ( pattern instanceof OpPath )
+            // A zero length match relates a term to itself, even if the term is not in the graph.
+            return ! matchesZeroLength(((OpPath)pattern).getTriplePath().getPath());
+        if ( pattern instanceof OpTable )
+            return ((OpTable)pattern).isJoinIdentity();
+        if ( pattern instanceof OpFilter ) {
+            // The filter only sees variables that are always bound by the pattern,
+            // so a substituted value is the value the filter would have seen.
+            OpFilter opFilter = (OpFilter)pattern;
+            Set<Var> fixed = OpVars.fixedVars(opFilter.getSubOp());
+            for ( Expr expr : opFilter.getExprs() ) {
+                if ( ! fixed.containsAll(expr.getVarsMentioned()) || hasPattern(expr) )
+                    return false;
+            }
+            return substitutionIsJoin(opFilter.getSubOp());
+        }
+        if ( pattern instanceof OpGraph || pattern instanceof OpDistinct || pattern instanceof OpReduced )
+            return substitutionIsJoin(((Op1)pattern).getSubOp());
+        if ( pattern instanceof OpJoin || pattern instanceof OpUnion )
+            return substitutionIsJoin(((Op2)pattern).getLeft()) && substitutionIsJoin(((Op2)pattern).getRight());
+        if ( pattern instanceof OpSequence || pattern instanceof OpDisjunction ) {
+            for ( Op sub : ((OpN)pattern).getElements() ) {
+                if ( ! substitutionIsJoin(sub) )
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Whether a path can match with length zero. */
+    private static boolean matchesZeroLength(Path path) {
+        if ( path instanceof P_Path0 )
+            return false;
+        if ( path instanceof P_ZeroOrMore1 || path instanceof P_ZeroOrMoreN || path instanceof P_ZeroOrOne )
+            return true;
+        // Minimum of zero, or not set.
+        if ( path instanceof P_Mod && ((P_Mod)path).getMin() <= 0 )
+            return true;
+        if ( path instanceof P_FixedLength && ((P_FixedLength)path).getCount() == 0 )
+            return true;
+        if ( path instanceof P_Path1 )
+            return matchesZeroLength(((P_Path1)path).getSubPath());
+        if ( path instanceof P_Seq )
+            return matchesZeroLength(((P_Seq)path).getLeft()) && matchesZeroLength(((P_Seq)path).getRight());
+        if ( path instanceof P_Alt )
+            return matchesZeroLength(((P_Alt)path).getLeft()) || matchesZeroLength(((P_Alt)path).getRight());
+        return true;
+    }
+
+    private static boolean hasPattern(Expr expr) {
+        if ( expr instanceof ExprFunctionOp )
+            return true;
+        if ( expr.isFunction() ) {
+            for ( Expr arg : expr.getFunction().getArgs() ) {
+                if ( arg != null && hasPattern(arg) )
+                    return true;
+            }
+        }
+        return false;
+    }
+}
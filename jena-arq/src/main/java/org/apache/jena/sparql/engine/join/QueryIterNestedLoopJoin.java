@@ -26,6 +26,7 @@ import org.apache.jena.sparql.algebra.Algebra;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.BatchReader;
 import org.apache.jena.sparql.engine.iterator.QueryIter2;
 
 /**
@@ -42,7 +43,7 @@ public class QueryIterNestedLoopJoin extends QueryIter2 {
 
     private final List<Binding> leftRows;
     private Iterator<Binding>   left     = null;
-    private QueryIterator       right;
+    private Iterator<Binding>   right;
     private Binding             rowRight = null;
 
     private Binding slot     = null;
@@ -52,7 +53,7 @@ public class QueryIterNestedLoopJoin extends QueryIter2 {
         super(left, right, cxt);
         leftRows = Iter.toList(left);
         s_countLHS = leftRows.size();
-        this.right = right;
+        this.right = BatchReader.create(right, cxt);
     }
 
     @Override
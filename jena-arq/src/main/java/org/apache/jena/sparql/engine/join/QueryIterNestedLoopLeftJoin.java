@@ -26,6 +26,7 @@ import org.apache.jena.sparql.algebra.Algebra;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.BatchReader;
 import org.apache.jena.sparql.engine.iterator.QueryIter2;
 import org.apache.jena.sparql.expr.ExprList ;
 
@@ -46,7 +47,7 @@ public class QueryIterNestedLoopLeftJoin extends QueryIter2 {
     private final ExprList conditions;
     private final List<Binding> rightRows;
     private Iterator<Binding>   right     = null;
-    private QueryIterator       left;
+    private Iterator<Binding>   left;
     private Binding             rowLeft = null;
     private boolean foundMatch ;
 
@@ -58,7 +59,7 @@ public class QueryIterNestedLoopLeftJoin extends QueryIter2 {
         conditions = exprList ;
         rightRows =  Iter.toList(right);
         s_countRHS = rightRows.size();
-        this.left = left;
+        this.left = BatchReader.create(left, cxt);
     }
 
     @Override
@@ -0,0 +1,427 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.data.AbstractDataBag;
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonNumber;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIteratorWrapper;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Per-operator statistics for one execution of a query ("EXPLAIN ANALYZE").
+ * <p>
+ * Put an {@code ExecutionProfile} in the context of a query execution under
+ * {@link ARQ#executionProfile} and execute the query as usual. Each operator built
+ * by {@link OpExecutor}, including the TDB2 executor, records:
+ * <ul>
+ * <li>the number of times it was executed ("opens"),
+ * <li>rows read from its input (not counted when the input is the start of the query),
+ * <li>rows returned,
+ * <li>wall-clock and CPU time, including the operators below it,
+ * <li>the number of times a data bag spilled to disk while it was running.
+ * </ul>
+ * When the results have been consumed, {@link #asSSE()} and {@link #asJson()} give
+ * the algebra annotated with these figures.
+ * <p>
+ * Operators that are executed again for each solution with variables substituted,
+ * such as the right hand side of an OPTIONAL with a filter, are recorded against the
+ * matching operator of the plan. Work that can not be matched to the plan is included
+ * in the time of the operator that caused it.
+ */
+public class ExecutionProfile {
+    private static final ThreadMXBean threadBean    = ManagementFactory.getThreadMXBean();
+    private static final boolean      cpuSupported  = threadBean.isCurrentThreadCpuTimeSupported();
+    // The operator running on this thread.
+    private static final ThreadLocal<OpStats> current = new ThreadLocal<>();
+
+    private volatile OpStats root = null;
+    private final Map<Op, OpStats> plan = new IdentityHashMap<>();
+
+    public ExecutionProfile() {}
+
+    /** Return the {@code ExecutionProfile} in the context, or null. */
+    public static ExecutionProfile get(Context context) {
+        if ( context == null )
+            return null;
+        Object x = context.get(ARQ.executionProfile);
+        return ( x instanceof ExecutionProfile ) ? (ExecutionProfile)x : null;
+    }
+
+    /** The statistics for the top of the plan, or null if the query has not been executed. */
+    public OpStats getRoot() {
+        return root;
+    }
+
+    /** The statistics for an operator of the plan, or null. */
+    public OpStats getStats(Op op) {
+        return ( root == null ) ? null : plan.get(op);
+    }
+
+    /**
+     * The executed algebra with each operator wrapped in a {@code (label "...")}
+     * giving its statistics, or null if the query has not been executed.
+     */
+    public Op annotatedOp() {
+        OpStats r = root;
+        return ( r == null ) ? null : annotate(r);
+    }
+
+    /** The annotated algebra as an SSE string. */
+    public String asSSE() {
+        Op op = annotatedOp();
+        return ( op == null ) ? "" : op.toString();
+    }
+
+    /** The annotated algebra as JSON. */
+    public JsonObject asJson() {
+        OpStats r = root;
+        return ( r == null ) ? new JsonObject() : r.asJson();
+    }
+
+    @Override
+    public String toString() {
+        return asSSE();
+    }
+
+    private static Op annotate(OpStats stats) {
+        Op op = stats.op;
+        List<Op> subOps = new ArrayList<>(stats.children.size());
+        for ( OpStats child : stats.children )
+            subOps.add(annotate(child));
+        if ( op instanceof Op1 )
+            op = ((Op1)op).copy(subOps.get(0));
+        else if ( op instanceof Op2 )
+            op = ((Op2)op).copy(subOps.get(0), subOps.get(1));
+        else if ( op instanceof OpN )
+            op = ((OpN)op).copy(subOps);
+        return OpLabel.create(stats.summary(), op);
+    }
+
+    /** The sub-operators of an operator, in order. */
+    private static List<Op> subOps(Op op) {
+        if ( op instanceof Op1 )
+            return Collections.singletonList(((Op1)op).getSubOp());
+        if ( op instanceof Op2 )
+            return Arrays.asList(((Op2)op).getLeft(), ((Op2)op).getRight());
+        if ( op instanceof OpN )
+            return ((OpN)op).getElements();
+        return Collections.emptyList();
+    }
+
+    private synchronized OpStats setRoot(Op op) {
+        if ( root == null ) {
+            OpStats r = build(op);
+            root = r;
+        }
+        return root;
+    }
+
+    private OpStats build(Op op) {
+        List<OpStats> children = new ArrayList<>();
+        for ( Op sub : subOps(op) )
+            children.add(build(sub));
+        OpStats stats = new OpStats(op, children);
+        plan.putIfAbsent(op, stats);
+        return stats;
+    }
+
+    /** Find the statistics for an operator about to be executed. */
+    private OpStats resolve(Op op, Frame parent) {
+        if ( root == null )
+            return setRoot(op);
+        OpStats stats = plan.get(op);
+        if ( stats != null )
+            return stats;
+        if ( parent != null ) {
+            // Inside a rewritten operator : match by position.
+            if ( parent.stats == null )
+                return null;
+            List<Op> actual = subOps(parent.op);
+            List<OpStats> expected = parent.stats.children;
+            if ( actual.size() != expected.size() )
+                return null;
+            for ( int i = 0 ; i < actual.size() ; i++ ) {
+                if ( actual.get(i) == op )
+                    return sameKind(expected.get(i), op) ? expected.get(i) : null;
+            }
+            return null;
+        }
+        // Start of a nested execution, from an iterator of the operator running now.
+        OpStats running = current.get();
+        if ( running == null )
+            return null;
+        OpStats match = null;
+        // Substitution into a sub-operator is for joins, and is usually for the last
+        // argument (OPTIONAL, MINUS). Nested executions below other operators
+        // are patterns in expressions (EXISTS) which are not part of the plan.
+        if ( running.op instanceof Op2 || running.op instanceof OpN ) {
+            for ( OpStats child : running.children ) {
+                if ( sameKind(child, op) )
+                    match = child;
+            }
+        }
+        if ( match == null && sameKind(running, op) )
+            match = running;
+        return match;
+    }
+
+    private static boolean sameKind(OpStats stats, Op op) {
+        return stats.op.getClass() == op.getClass();
+    }
+
+    /** Statistics for one operator of the plan. */
+    public static class OpStats {
+        private final Op op;
+        private final List<OpStats> children;
+        private final LongAdder opens     = new LongAdder();
+        private final LongAdder rowsIn    = new LongAdder();
+        private final LongAdder rowsOut   = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos  = new LongAdder();
+        private final LongAdder spills    = new LongAdder();
+        private final Runnable spillAction = spills::increment;
+
+        private OpStats(Op op, List<OpStats> children) {
+            this.op = op;
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public Op getOp()                   { return op; }
+        public List<OpStats> getChildren()  { return children; }
+        public long getOpens()              { return opens.sum(); }
+        public long getRowsIn()             { return rowsIn.sum(); }
+        public long getRowsOut()            { return rowsOut.sum(); }
+        /** Wall-clock time, in nanoseconds, including the operators below this one. */
+        public long getWallNanos()          { return wallNanos.sum(); }
+        /** CPU time, in nanoseconds, including the operators below this one; 0 if the JVM does not support thread CPU time. */
+        public long getCpuNanos()           { return cpuNanos.sum(); }
+        public long getSpills()             { return spills.sum(); }
+
+        private String summary() {
+            if ( getOpens() == 0 )
+                return "not executed";
+            return String.format(Locale.ROOT, "rows=%d in=%d opens=%d time=%.3fms cpu=%.3fms spills=%d",
+                                 getRowsOut(), getRowsIn(), getOpens(), millis(getWallNanos()), millis(getCpuNanos()), getSpills());
+        }
+
+        private JsonObject asJson() {
+            JsonObject obj = new JsonObject();
+            obj.put("op", op.getName());
+            if ( children.isEmpty() )
+                obj.put("algebra", op.toString().trim());
+            obj.put("opens", getOpens());
+            obj.put("rowsIn", getRowsIn());
+            obj.put("rowsOut", getRowsOut());
+            obj.put("timeMs", JsonNumber.value(millis(getWallNanos())));
+            obj.put("cpuMs", JsonNumber.value(millis(getCpuNanos())));
+            obj.put("spills", getSpills());
+            if ( ! children.isEmpty() ) {
+                JsonArray array = new JsonArray();
+                for ( OpStats child : children )
+                    array.add(child.asJson());
+                obj.put("children", array);
+            }
+            return obj;
+        }
+
+        @Override
+        public String toString() {
+            return op.getName() + " " + summary();
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    // ---- Recording
+
+    /** Per-{@link OpExecutor} state : the operators being built. */
+    /*package*/ Tracker tracker() {
+        return new Tracker();
+    }
+
+    /*package*/ class Tracker {
+        private final Deque<Frame> stack = new ArrayDeque<>();
+
+        /** Build the iterator for an operator, recording statistics. */
+        QueryIterator exec(Op op, QueryIterator input, ExecutionDispatch dispatcher) {
+            OpStats stats = resolve(op, stack.peek());
+            // The operator running now, re-executing itself, is already being counted.
+            boolean recorded = stats != null && stats != current.get();
+            stack.push(new Frame(op, stats));
+            try {
+                if ( ! recorded )
+                    return dispatcher.exec(op, input);
+                stats.opens.increment();
+                if ( ! ( input instanceof QueryIterRoot ) )
+                    input = new QueryIterCountInput(input, stats);
+                QueryIterator qIter;
+                Timing timing = Timing.start(stats);
+                try {
+                    qIter = dispatcher.exec(op, input);
+                } finally {
+                    timing.finish();
+                }
+                return new QueryIterProfile(qIter, stats);
+            } finally {
+                stack.pop();
+            }
+        }
+    }
+
+    private static class Frame {
+        final Op op;
+        final OpStats stats;
+        Frame(Op op, OpStats stats) {
+            this.op = op;
+            this.stats = stats;
+        }
+    }
+
+    /** Time a step of an operator and make it the current operator while the step runs. */
+    private static class Timing {
+        private final OpStats stats;
+        private final OpStats outer;
+        private final long wallStart;
+        private final long cpuStart;
+
+        static Timing start(OpStats stats) {
+            return new Timing(stats);
+        }
+
+        private Timing(OpStats stats) {
+            this.stats = stats;
+            this.outer = current.get();
+            current.set(stats);
+            AbstractDataBag.setSpillAction(stats.spillAction);
+            this.cpuStart = cpuTime();
+            this.wallStart = System.nanoTime();
+        }
+
+        void finish() {
+            stats.wallNanos.add(System.nanoTime() - wallStart);
+            if ( cpuSupported )
+                stats.cpuNanos.add(cpuTime() - cpuStart);
+            if ( outer == null ) {
+                current.remove();
+                AbstractDataBag.setSpillAction(null);
+            } else {
+                current.set(outer);
+                AbstractDataBag.setSpillAction(outer.spillAction);
+            }
+        }
+
+        private static long cpuTime() {
+            return cpuSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+        }
+    }
+
+    /** The results of an operator. */
+    private static class QueryIterProfile extends QueryIteratorWrapper {
+        private final OpStats stats;
+
+        QueryIterProfile(QueryIterator qIter, OpStats stats) {
+            super(qIter);
+            this.stats = stats;
+        }
+
+        @Override
+        protected boolean hasNextBinding() {
+            Timing timing = Timing.start(stats);
+            try {
+                return super.hasNextBinding();
+            } finally {
+                timing.finish();
+            }
+        }
+
+        @Override
+        protected Binding moveToNextBinding() {
+            Timing timing = Timing.start(stats);
+            try {
+                Binding binding = super.moveToNextBinding();
+                stats.rowsOut.increment();
+                return binding;
+            } finally {
+                timing.finish();
+            }
+        }
+
+        @Override
+        protected int moveToNextBatch(Binding[] batch, int off, int len) {
+            Timing timing = Timing.start(stats);
+            try {
+                int n = super.moveToNextBatch(batch, off, len);
+                stats.rowsOut.add(n);
+                return n;
+            } finally {
+                timing.finish();
+            }
+        }
+
+        @Override
+        protected void closeIterator() {
+            Timing timing = Timing.start(stats);
+            try {
+                super.closeIterator();
+            } finally {
+                timing.finish();
+            }
+        }
+    }
+
+    /** The input of an operator. */
+    private static class QueryIterCountInput extends QueryIteratorWrapper {
+        private final OpStats stats;
+
+        QueryIterCountInput(QueryIterator qIter, OpStats stats) {
+            super(qIter);
+            this.stats = stats;
+        }
+
+        @Override
+        protected Binding moveToNextBinding() {
+            Binding binding = super.moveToNextBinding();
+            stats.rowsIn.increment();
+            return binding;
+        }
+
+        @Override
+        protected int moveToNextBatch(Binding[] batch, int off, int len) {
+            int n = super.moveToNextBatch(batch, off, len);
+            stats.rowsIn.add(n);
+            return n;
+        }
+    }
+}
@@ -19,9 +19,12 @@
 package org.apache.jena.sparql.engine.main ;
 
 import java.util.ArrayList ;
+import java.util.Collection ;
+import java.util.HashSet ;
 import java.util.Iterator ;
 import java.util.List ;
 import java.util.Set ;
+import java.util.function.Supplier ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.graph.Node ;
@@ -40,8 +43,14 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.* ;
 import org.apache.jena.sparql.engine.join.Join ;
+import org.apache.jena.sparql.engine.join.JoinFilter ;
+import org.apache.jena.sparql.engine.join.JoinKey ;
+import org.apache.jena.sparql.engine.join.QueryIterHashSemiJoin ;
 import org.apache.jena.sparql.engine.main.iterator.* ;
+import org.apache.jena.sparql.expr.E_Exists ;
+import org.apache.jena.sparql.expr.E_NotExists ;
 import org.apache.jena.sparql.expr.Expr ;
+import org.apache.jena.sparql.expr.ExprFunctionOp ;
 import org.apache.jena.sparql.expr.ExprList ;
 import org.apache.jena.sparql.procedure.ProcEval ;
 import org.apache.jena.sparql.procedure.Procedure ;
@@ -98,6 +107,12 @@ public class OpExecutor
     protected int                  level      = TOP_LEVEL - 1 ;
     private final boolean          hideBNodeVars ;
     protected final StageGenerator stageGenerator ;
+    // Set while compiling below an operator that does not depend on the order of its input.
+    private boolean                orderInsensitive = false ;
+    // Set when recording per-operator statistics.
+    private final ExecutionProfile.Tracker profile ;
+    // Repeated parts of the query, evaluated once.
+    private final SharedSubplans sharedSubplans ;
 
     protected OpExecutor(ExecutionContext execCxt)
     {
@@ -105,6 +120,9 @@ public class OpExecutor
         this.dispatcher = new ExecutionDispatch(this) ;
         this.hideBNodeVars = execCxt.getContext().isTrue(ARQ.hideNonDistiguishedVariables) ;
         this.stageGenerator = StageBuilder.chooseStageGenerator(execCxt.getContext()) ;
+        ExecutionProfile executionProfile = ExecutionProfile.get(execCxt.getContext()) ;
+        this.profile = ( executionProfile == null ) ? null : executionProfile.tracker() ;
+        this.sharedSubplans = SharedSubplans.get(execCxt) ;
     }
 
     // Public interface
@@ -115,9 +133,18 @@ public class OpExecutor
     // ---- The recursive step.
     protected QueryIterator exec(Op op, QueryIterator input) {
         level++ ;
-        QueryIterator qIter = dispatcher.exec(op, input) ;
+        boolean outerOrderInsensitive = orderInsensitive ;
+        if ( op instanceof OpOrder || op instanceof OpTopN || op instanceof OpGroup
+             || op instanceof OpDistinct || op instanceof OpReduced )
+            orderInsensitive = true ;
+        QueryIterator qIter = ( profile == null )
+            ? dispatcher.exec(op, input)
+            : profile.exec(op, input, dispatcher) ;
+        if ( sharedSubplans != null )
+            qIter = sharedSubplans.execute(op, input, qIter, execCxt) ;
         // Intentionally not try/finally so exceptions leave some evidence
         // around.
+        orderInsensitive = outerOrderInsensitive ;
         level-- ;
         return qIter ;
     }
@@ -214,7 +241,25 @@ public class OpExecutor
             QueryIterator qIter = Join.join(left, right, execCxt) ;
             return qIter ;
         }
+        ParallelExecution.WorkerSetup setup = parallelWorkerSetup() ;
+        if ( setup != null && input instanceof QueryIterRoot ) {
+            // The right side does not depend on the input: start it on another thread.
+            Op opRight = opJoin.getRight() ;
+            QueryIterParallelConcat right = new QueryIterParallelConcat(
+                List.of(()->QC.execute(opRight, root(), execCxt)), true, setup, execCxt) ;
+            right.start() ;
+            QueryIterator left = exec(opJoin.getLeft(), input) ;
+            return Join.join(left, right, execCxt) ;
+        }
+
         QueryIterator left = exec(opJoin.getLeft(), input) ;
+        JoinFilter joinFilter = JoinFilter.create(opJoin.getRight(), execCxt) ;
+        if ( joinFilter != null ) {
+            // The right side sees the join key values of the left side once the hash table is built.
+            ExecutionContext execCxtRight = joinFilter.execContext(execCxt) ;
+            QueryIterator right = QC.execute(opJoin.getRight(), createRootQueryIterator(execCxtRight), execCxtRight) ;
+            return Join.join(left, right, joinFilter, execCxt) ;
+        }
         QueryIterator right = exec(opJoin.getRight(), root()) ;
         // Join key.
         QueryIterator qIter = Join.join(left, right, execCxt) ;
@@ -260,7 +305,14 @@ public class OpExecutor
         Set<Var> commonVars = OpVars.visibleVars(lhsOp) ;
         commonVars.retainAll(OpVars.visibleVars(rhsOp)) ;
 
-        return QueryIterMinus.create(left, right, commonVars, execCxt) ;
+        if ( execCxt.getContext().getLong(ARQ.hashExistsThreshold, 1000) < 0 )
+            return QueryIterMinus.create(left, right, commonVars, execCxt) ;
+
+        // Hash on a common variable, preferably one that is always bound on the right.
+        Set<Var> fixedVars = OpVars.fixedVars(rhsOp) ;
+        fixedVars.retainAll(commonVars) ;
+        JoinKey joinKey = joinKey(fixedVars, commonVars) ;
+        return Join.hashMinus(joinKey, left, right, commonVars, execCxt) ;
     }
 
     protected QueryIterator execute(OpDisjunction opDisjunction, QueryIterator input) {
@@ -270,6 +322,15 @@ public class OpExecutor
 
     protected QueryIterator execute(OpUnion opUnion, QueryIterator input) {
         List<Op> x = flattenUnion(opUnion) ;
+        ParallelExecution.WorkerSetup setup = parallelWorkerSetup() ;
+        if ( setup != null && input instanceof QueryIterRoot ) {
+            // Run the branches on other threads.
+            input.close() ;
+            List<Supplier<QueryIterator>> branches = new ArrayList<>(x.size()) ;
+            for ( Op subOp : x )
+                branches.add(()->QC.execute(subOp, root(), execCxt)) ;
+            return new QueryIterParallelConcat(branches, !orderInsensitive, setup, execCxt) ;
+        }
         QueryIterator cIter = new QueryIterUnion(input, x, execCxt) ;
         return cIter ;
     }
@@ -300,11 +361,58 @@ public class OpExecutor
         QueryIterator qIter = exec(base, input) ;
 
         for (Expr expr : exprs)
-            qIter = new QueryIterFilterExpr(qIter, expr, execCxt) ;
+            qIter = filter(qIter, base, expr) ;
         return qIter ;
     }
 
+    /**
+     * Filter the results of {@code opBase} by one expression of a FILTER.
+     * <p>
+     * {@code FILTER EXISTS} and {@code FILTER NOT EXISTS} are evaluated by substitution
+     * for each row unless there are more than {@link ARQ#hashExistsThreshold} rows and
+     * the pattern can be evaluated once, independently of the row
+     * ({@link #isHashExists}). Then it is a hash semi-join or anti-join.
+     * The rows are counted when the results are first requested
+     * (see {@link QueryIterFilterExists}).
+     */
+    protected QueryIterator filter(QueryIterator qIter, Op opBase, Expr expr) {
+        if ( ! isHashExists(expr) )
+            return new QueryIterFilterExpr(qIter, expr, execCxt) ;
+        long threshold = execCxt.getContext().getLong(ARQ.hashExistsThreshold, 1000) ;
+        Op pattern = ((ExprFunctionOp)expr).getGraphPattern() ;
+        // Hash on a variable always bound by the pattern, preferably one of the rows.
+        Set<Var> fixedVars = OpVars.fixedVars(pattern) ;
+        Set<Var> commonVars = new HashSet<>(fixedVars) ;
+        commonVars.retainAll(OpVars.visibleVars(opBase)) ;
+        JoinKey joinKey = joinKey(commonVars, fixedVars) ;
+        return new QueryIterFilterExists(qIter, (ExprFunctionOp)expr, joinKey, threshold, execCxt) ;
+    }
+
+    /**
+     * Whether {@code expr} is {@code EXISTS} or {@code NOT EXISTS} that may be
+     * evaluated as a hash semi-join or anti-join.
+     */
+    protected boolean isHashExists(Expr expr) {
+        if ( ! ( expr instanceof E_Exists ) && ! ( expr instanceof E_NotExists ) )
+            return false ;
+        if ( execCxt.getContext().getLong(ARQ.hashExistsThreshold, 1000) < 0 )
+            return false ;
+        Op pattern = ((ExprFunctionOp)expr).getGraphPattern() ;
+        return pattern != null && QueryIterHashSemiJoin.substitutionIsJoin(pattern) ;
+    }
+
+    /** A single variable join key: the first of {@code preferred}, else of {@code others}, else the empty key. */
+    private static JoinKey joinKey(Collection<Var> preferred, Collection<Var> others) {
+        if ( ! preferred.isEmpty() )
+            return JoinKey.create(preferred.iterator().next()) ;
+        if ( ! others.isEmpty() )
+            return JoinKey.create(others.iterator().next()) ;
+        return new JoinKey.Builder().build() ;
+    }
+
     protected QueryIterator execute(OpService opService, QueryIterator input) {
+        if ( QueryIterServiceBulk.isBulk(opService, execCxt) )
+            return new QueryIterServiceBulk(input, opService, execCxt) ;
         return new QueryIterService(input, opService, execCxt) ;
     }
 
@@ -450,6 +558,17 @@ public class OpExecutor
         return QueryIterRoot.create(execCxt) ;
     }
 
+    /**
+     * How a worker thread gets the same view of the data as this thread, if parallel
+     * execution is enabled and possible, else null.
+     * Executors for datasets with thread-bound transactions override this.
+     */
+    protected ParallelExecution.WorkerSetup parallelWorkerSetup() {
+        if ( ! ParallelExecution.isEnabled(execCxt) )
+            return null ;
+        return ParallelExecution.defaultSetup(execCxt) ;
+    }
+
     protected QueryIterator root() {
         return createRootQueryIterator(execCxt) ;
     }
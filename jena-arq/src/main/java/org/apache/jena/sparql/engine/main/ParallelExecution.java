@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.main;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.ExecutionContext;
+
+/**
+ * Support for running independent parts of a query on other threads.
+ * <p>
+ * Enabled by setting {@link ARQ#parallelExecution}. Work runs on a shared, bounded
+ * pool of daemon threads. Parts of a query that are already running on a pool thread
+ * are executed sequentially so that the pool can not be exhausted by waiting tasks.
+ * <p>
+ * A worker thread must see the same data as the thread executing the query. The
+ * {@link OpExecutor} provides a {@link WorkerSetup} for that; it is {@code null}
+ * when the dataset can not be shared with another thread, in which case execution
+ * is sequential.
+ */
+public class ParallelExecution {
+
+    /** Establish, on a worker thread, the same view of the data as the query thread. */
+    public interface WorkerSetup {
+        /**
+         * Called on the worker thread before executing part of the query.
+         * Return false if the worker can not see the same data, in which case
+         * that part of the query is executed on the query thread.
+         */
+        public boolean begin();
+
+        /** Called on the worker thread after a successful {@link #begin()}. */
+        public void end();
+    }
+
+    /** Setup for a dataset without thread-bound state. */
+    public static final WorkerSetup noSetup = new WorkerSetup() {
+        @Override public boolean begin() { return true; }
+        @Override public void end() {}
+    };
+
+    private static final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static ExecutorService executor = null;
+
+    /** Is parallel execution enabled for this execution? */
+    public static boolean isEnabled(ExecutionContext execCxt) {
+        if ( execCxt == null || execCxt.getContext() == null )
+            return false;
+        return execCxt.getContext().isTrue(ARQ.parallelExecution) && ! isWorkerThread();
+    }
+
+    /**
+     * The default {@link WorkerSetup}: only datasets that are not being used in a
+     * transaction by the query thread can be shared.
+     */
+    public static WorkerSetup defaultSetup(ExecutionContext execCxt) {
+        DatasetGraph dsg = execCxt.getDataset();
+        if ( dsg == null )
+            return noSetup;
+        if ( dsg.supportsTransactions() && dsg.isInTransaction() )
+            return null;
+        return noSetup;
+    }
+
+    /** Is the current thread a worker thread for parallel execution? */
+    public static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof WorkerThread;
+    }
+
+    /** The shared executor for parallel execution. */
+    public static synchronized ExecutorService executor() {
+        if ( executor == null ) {
+            AtomicInteger counter = new AtomicInteger(0);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(),
+                                                             r -> new WorkerThread(r, "ARQ-parallel-" + counter.incrementAndGet()));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    private static class WorkerThread extends Thread {
+        WorkerThread(Runnable r, String name) {
+            super(r, name);
+            setDaemon(true);
+        }
+    }
+}
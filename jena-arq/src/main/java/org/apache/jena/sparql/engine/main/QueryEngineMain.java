@@ -22,10 +22,13 @@ import org.apache.jena.query.ARQ ;
 import org.apache.jena.query.Query ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.algebra.Op ;
+import org.apache.jena.sparql.algebra.OpVars ;
 import org.apache.jena.sparql.algebra.optimize.Optimize;
 import org.apache.jena.sparql.core.DatasetGraph ;
 import org.apache.jena.sparql.engine.* ;
 import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.engine.binding.BindingArray ;
+import org.apache.jena.sparql.engine.binding.VarSlots ;
 import org.apache.jena.sparql.engine.iterator.QueryIterRoot ;
 import org.apache.jena.sparql.engine.iterator.QueryIteratorCheck ;
 import org.apache.jena.sparql.engine.iterator.QueryIteratorTiming ;
@@ -49,10 +52,19 @@ public class QueryEngineMain extends QueryEngineBase
     public QueryIterator eval(Op op, DatasetGraph dsg, Binding input, Context context)
     {
         ExecutionContext execCxt = new ExecutionContext(context, dsg.getDefaultGraph(), dsg, QC.getFactory(context)) ;
-        QueryIterator qIter1 = 
-            ( input.isEmpty() ) ? QueryIterRoot.create(execCxt) 
-                                : QueryIterRoot.create(input, execCxt);
+        QueryIterator qIter1;
+        if ( context.isTrue(ARQ.flatBindings) )
+            // Slots for the variables of the query; more are added if needed.
+            qIter1 = QueryIterRoot.create(BindingArray.create(VarSlots.create(OpVars.mentionedVars(op)), input), execCxt);
+        else
+            qIter1 = ( input.isEmpty() ) ? QueryIterRoot.create(execCxt) 
+                                         : QueryIterRoot.create(input, execCxt);
+        SharedSubplans sharedSubplans = SharedSubplans.create(op, context) ;
+        if ( sharedSubplans != null )
+            context.set(SharedSubplans.symbol, sharedSubplans) ;
         QueryIterator qIter = QC.execute(op, qIter1, execCxt) ;
+        if ( sharedSubplans != null )
+            qIter = sharedSubplans.closeWith(qIter) ;
         // Wrap with something to check for closed iterators.
         qIter = QueryIteratorCheck.check(qIter, execCxt) ;
         // Need call back.
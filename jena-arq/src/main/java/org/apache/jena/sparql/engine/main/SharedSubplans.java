@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.main;
+
+import java.util.*;
+
+import org.apache.jena.atlas.data.BagFactory;
+import org.apache.jena.atlas.data.DataBag;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory;
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.SystemARQ;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.algebra.walker.Walker;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIter;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.iterator.QueryIteratorWrapper;
+import org.apache.jena.sparql.engine.join.JoinFilter;
+import org.apache.jena.sparql.expr.*;
+import org.apache.jena.sparql.serializer.SerializationContext;
+import org.apache.jena.sparql.system.SerializationFactoryFinder;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+/**
+ * Evaluate repeated parts of a query once.
+ * <p>
+ * Generated queries often have the same pattern in several branches of a
+ * {@code UNION} or {@code OPTIONAL}. When execution starts, the algebra (after
+ * scope renaming and optimization) is searched for subtrees that occur more than
+ * once; equal subtrees, by {@link Op#equals}, are one shared subplan.
+ * <p>
+ * A shared subplan is only reused when it is executed from the join identity
+ * (the start of the query, a branch of a {@code UNION} at the top of the query,
+ * the right hand side of a non-linear join) because then its results do not depend
+ * on where it is. The first such execution that is read records its results in a
+ * data bag, which spills to disk as set by {@link ARQ#spillToDiskThreshold}. Later
+ * executions replay the recording. If the first execution is not read to the end,
+ * or makes more than {@link #MaxRows} rows, the subplan is evaluated each time as
+ * usual.
+ * <p>
+ * Subtrees containing {@code RAND}, {@code BNODE}, {@code UUID} or
+ * {@code STRUUID} are not shared because each evaluation gives different values.
+ */
+public class SharedSubplans {
+    /** Context symbol for the {@code SharedSubplans} of a query execution. */
+    public static final Symbol symbol = SystemARQ.allocSymbol("sharedSubplans");
+
+    /** Largest number of rows recorded for one subplan. */
+    public static long MaxRows = 100_000;
+
+    private final Set<Op> shared;
+    // Keyed by the active graph (GRAPH in triple form) as well as the subplan.
+    private final Map<Op, Map<Graph, Recording>> recordings = new HashMap<>();
+    private boolean closed = false;
+
+    private SharedSubplans(Set<Op> shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Find the repeated subtrees of {@code op}. Returns null if there are none or
+     * {@link ARQ#shareSubplans} is false.
+     */
+    public static SharedSubplans create(Op op, Context context) {
+        if ( context != null && ! context.isTrueOrUndef(ARQ.shareSubplans) )
+            return null;
+        Map<Op, Integer> counts = new HashMap<>();
+        count(op, counts);
+        Set<Op> shared = new HashSet<>();
+        choose(op, counts, shared);
+        if ( shared.isEmpty() )
+            return null;
+        return new SharedSubplans(shared);
+    }
+
+    /** Return the {@code SharedSubplans} of the execution, or null. */
+    public static SharedSubplans get(ExecutionContext execCxt) {
+        Object x = execCxt.getContext().get(symbol);
+        return ( x instanceof SharedSubplans ) ? (SharedSubplans)x : null;
+    }
+
+    /** Is {@code op} one of the shared subplans? */
+    public boolean isShared(Op op) {
+        return shared.contains(op);
+    }
+
+    /**
+     * Return an iterator for the results of {@code op}, where {@code qIter} is the
+     * usual execution of {@code op} from {@code input}. If {@code op} is shared, the
+     * choice between reading {@code qIter}, recording it, or replaying an earlier
+     * recording, is made when the iterator is first read.
+     */
+    public QueryIterator execute(Op op, QueryIterator input, QueryIterator qIter, ExecutionContext execCxt) {
+        if ( ! input.isJoinIdentity() || ! shared.contains(op) )
+            return qIter;
+        // The other side of a hash join drops rows early.
+        if ( JoinFilter.get(execCxt) != null )
+            return qIter;
+        Recording recording;
+        synchronized(this) {
+            if ( closed )
+                return qIter;
+            recording = recordings.computeIfAbsent(op, k->new IdentityHashMap<>())
+                                  .computeIfAbsent(execCxt.getActiveGraph(), g->new Recording());
+        }
+        return new QueryIterShared(qIter, recording, execCxt);
+    }
+
+    /** Wrap the top iterator of the query so that recordings are released when it is closed. */
+    public QueryIterator closeWith(QueryIterator qIter) {
+        return new QueryIteratorWrapper(qIter) {
+            @Override
+            protected void closeIterator() {
+                try { super.closeIterator(); }
+                finally { SharedSubplans.this.close(); }
+            }
+        };
+    }
+
+    /** Release all recordings. */
+    public synchronized void close() {
+        closed = true;
+        recordings.values().forEach(m->m.values().forEach(Recording::abandon));
+        recordings.clear();
+    }
+
+    // ---- Finding the subplans.
+
+    private static void count(Op op, Map<Op, Integer> counts) {
+        counts.merge(op, 1, Integer::sum);
+        // The sub-pattern is evaluated for another graph or elsewhere.
+        if ( op instanceof OpGraph || op instanceof OpService )
+            return;
+        subOps(op).forEach(sub->count(sub, counts));
+    }
+
+    private static void choose(Op op, Map<Op, Integer> counts, Set<Op> shared) {
+        if ( counts.getOrDefault(op, 0) > 1 && worthSharing(op) ) {
+            shared.add(op);
+            return;
+        }
+        if ( op instanceof OpGraph || op instanceof OpService )
+            return;
+        subOps(op).forEach(sub->choose(sub, counts, shared));
+    }
+
+    private static List<Op> subOps(Op op) {
+        if ( op instanceof Op1 )
+            return List.of(((Op1)op).getSubOp());
+        if ( op instanceof Op2 )
+            return List.of(((Op2)op).getLeft(), ((Op2)op).getRight());
+        if ( op instanceof OpN )
+            return ((OpN)op).getElements();
+        return List.of();
+    }
+
+    private static boolean worthSharing(Op op) {
+        // Single access to the data, or already a table.
+        if ( op instanceof OpTable || op instanceof OpNull || op instanceof OpLabel
+             || op instanceof OpTriple || op instanceof OpQuad || op instanceof OpDatasetNames )
+            return false;
+        if ( op instanceof OpBGP && ((OpBGP)op).getPattern().size() < 2 )
+            return false;
+        if ( op instanceof OpQuadPattern && ((OpQuadPattern)op).getPattern().size() < 2 )
+            return false;
+        return deterministic(op);
+    }
+
+    private static boolean deterministic(Op op) {
+        boolean[] result = { true };
+        ExprVisitor exprVisitor = new ExprVisitorFunction() {
+            @Override
+            protected void visitExprFunction(ExprFunction func) {
+                if ( func instanceof E_Random || func instanceof E_BNode || func instanceof E_UUID || func instanceof E_StrUUID )
+                    result[0] = false;
+            }
+            @Override public void visit(ExprFunctionOp funcOp)      {}
+            @Override public void visit(NodeValue nv)               {}
+            @Override public void visit(ExprTripleTerm tripleTerm)  {}
+            @Override public void visit(ExprVar nv)                 {}
+            @Override public void visit(ExprAggregator eAgg)        {}
+            @Override public void visit(ExprNone exprNone)          {}
+        };
+        Walker.walk(op, new OpVisitorBase(), exprVisitor);
+        return result[0];
+    }
+
+    // ---- Recording and replaying.
+
+    private enum State { NEW, RECORDING, DONE, ABANDONED }
+
+    private class Recording {
+        private State state = State.NEW;
+        private DataBag<Binding> bag = null;
+
+        // Called with the lock held.
+        private void start(ExecutionContext execCxt) {
+            state = State.RECORDING;
+            bag = BagFactory.newDefaultBag(ThresholdPolicyFactory.policyFromContext(execCxt.getContext()),
+                                           SerializationFactoryFinder.bindingSerializationFactory());
+        }
+
+        private void add(Binding binding) {
+            synchronized(SharedSubplans.this) {
+                if ( state != State.RECORDING )
+                    return;
+                bag.add(binding);
+                if ( bag.size() > MaxRows )
+                    abandon();
+            }
+        }
+
+        private void finish() {
+            synchronized(SharedSubplans.this) {
+                if ( state == State.RECORDING )
+                    state = State.DONE;
+            }
+        }
+
+        // Called with the lock held.
+        private void abandon() {
+            state = State.ABANDONED;
+            if ( bag != null ) {
+                bag.close();
+                bag = null;
+            }
+        }
+    }
+
+    private class QueryIterShared extends QueryIter {
+        private final Recording recording;
+        private QueryIterator live;
+        private QueryIterator current = null;
+        private boolean recordRows = false;
+
+        QueryIterShared(QueryIterator live, Recording recording, ExecutionContext execCxt) {
+            super(execCxt);
+            this.live = live;
+            this.recording = recording;
+        }
+
+        private QueryIterator current() {
+            if ( current != null )
+                return current;
+            synchronized(SharedSubplans.this) {
+                switch (recording.state) {
+                    case DONE :
+                        live.close();
+                        live = null;
+                        current = QueryIterPlainWrapper.create(recording.bag.iterator(), getExecContext());
+                        break;
+                    case NEW :
+                        if ( ! closed ) {
+                            recording.start(getExecContext());
+                            recordRows = true;
+                        }
+                        current = live;
+                        break;
+                    default :
+                        current = live;
+                }
+            }
+            return current;
+        }
+
+        @Override
+        protected boolean hasNextBinding() {
+            boolean b = current().hasNext();
+            if ( ! b && recordRows ) {
+                recording.finish();
+                recordRows = false;
+            }
+            return b;
+        }
+
+        @Override
+        protected Binding moveToNextBinding() {
+            Binding binding = current().next();
+            if ( recordRows )
+                recording.add(binding);
+            return binding;
+        }
+
+        @Override
+        protected void closeIterator() {
+            if ( recordRows ) {
+                // Not read to the end.
+                synchronized(SharedSubplans.this) {
+                    if ( recording.state == State.RECORDING )
+                        recording.abandon();
+                }
+                recordRows = false;
+            }
+            if ( current != null )
+                current.close();
+            if ( live != null && live != current )
+                live.close();
+        }
+
+        @Override
+        protected void requestCancel() {
+            if ( current != null )
+                current.cancel();
+            else if ( live != null )
+                live.cancel();
+        }
+
+        @Override
+        public void output(IndentedWriter out, SerializationContext sCxt) {
+            out.print(Lib.className(this));
+            out.incIndent();
+            out.println();
+            if ( live != null )
+                live.output(out, sCxt);
+            out.decIndent();
+        }
+    }
+}
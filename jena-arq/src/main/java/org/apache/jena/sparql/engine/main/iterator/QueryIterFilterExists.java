@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.main.iterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.*;
+import org.apache.jena.sparql.engine.join.Join;
+import org.apache.jena.sparql.engine.join.JoinKey;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.expr.E_NotExists;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+
+/**
+ * {@code FILTER EXISTS} or {@code FILTER NOT EXISTS} evaluated by substitution for
+ * each row or, if there are more than {@code threshold} rows, as a hash semi-join or
+ * anti-join with the pattern evaluated once.
+ * <p>
+ * The choice is made on the first call of {@code hasNext}, by reading up to
+ * {@code threshold}+1 rows, so no input is read while the iterators are being built.
+ */
+public class QueryIterFilterExists extends QueryIterSub
+{
+    private final ExprFunctionOp expr;
+    private final JoinKey joinKey;
+    private final long threshold;
+    private QueryIterator results = null;
+
+    public QueryIterFilterExists(QueryIterator input, ExprFunctionOp expr, JoinKey joinKey, long threshold, ExecutionContext execCxt) {
+        super(input, execCxt);
+        this.expr = expr;
+        this.joinKey = joinKey;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if ( results == null )
+            results = decide();
+        return results.hasNext();
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        return results.next();
+    }
+
+    private QueryIterator decide() {
+        ExecutionContext execCxt = getExecContext();
+        // Few rows are quicker by substitution.
+        List<Binding> rows = new ArrayList<>();
+        while ( rows.size() <= threshold && iter.hasNext() )
+            rows.add(iter.next());
+        QueryIterator qIterRows = QueryIterPlainWrapper.create(rows.iterator(), execCxt);
+        if ( rows.size() <= threshold )
+            return new QueryIterFilterExpr(qIterRows, expr, execCxt);
+        QueryIterConcat left = new QueryIterConcat(execCxt);
+        left.add(qIterRows);
+        left.add(iter);
+        Op pattern = expr.getGraphPattern();
+        QueryIterator right = QC.execute(pattern, QueryIterRoot.create(execCxt), execCxt);
+        if ( expr instanceof E_NotExists )
+            return Join.hashAntiJoin(joinKey, left, right, execCxt);
+        return Join.hashSemiJoin(joinKey, left, right, execCxt);
+    }
+
+    @Override
+    protected void requestSubCancel() {
+        performRequestCancel(results);
+    }
+
+    @Override
+    protected void closeSubIterator() {
+        performClose(results);
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.main.iterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.BatchReader;
+import org.apache.jena.sparql.engine.iterator.QueryIter;
+import org.apache.jena.sparql.engine.main.ParallelExecution;
+import org.apache.jena.sparql.engine.main.ParallelExecution.WorkerSetup;
+import org.apache.jena.sparql.serializer.SerializationContext;
+
+/**
+ * The concatenation of several independent query iterators, each created and
+ * run on a worker thread of {@link ParallelExecution#executor()}.
+ * <p>
+ * Results are passed back in batches through a bounded queue per branch.
+ * If "ordered", the results are in the same order as sequential concatenation;
+ * otherwise batches are returned as they become available.
+ * <p>
+ * A branch that has not started on a worker thread when its results are needed,
+ * or that can not be run on a worker thread (see {@link WorkerSetup}), is
+ * executed on the calling thread instead.
+ */
+public class QueryIterParallelConcat extends QueryIter
+{
+    private static final int    QueueLength = 16;
+    private static final long   PollMillis  = 100;
+
+    // Branch states.
+    private static final int PENDING  = 0;
+    private static final int RUNNING  = 1;
+    private static final int INLINE   = 2;
+
+    // Queue item for the end of a branch.
+    private static final Object END = new Object();
+
+    private final List<Branch>  branches = new ArrayList<>();
+    private final boolean       ordered;
+    private final WorkerSetup   setup;
+    private final int           batchSize;
+    // Count of items in all the queues; used when not "ordered".
+    private final Semaphore     available = new Semaphore(0);
+    private volatile boolean    cancelled = false;
+    private boolean             started   = false;
+
+    // Consumer state.
+    private Binding[]           chunk     = null;
+    private int                 chunkIdx  = 0;
+    private QueryIterator       inline    = null;
+    private Branch              current   = null;
+    private int                 nextBranch = 0;
+    private int                 remaining;
+
+    public QueryIterParallelConcat(List<Supplier<QueryIterator>> subIterators, boolean ordered,
+                                   WorkerSetup setup, ExecutionContext execCxt) {
+        super(execCxt);
+        for ( Supplier<QueryIterator> s : subIterators )
+            branches.add(new Branch(s));
+        this.ordered = ordered;
+        this.setup = setup;
+        this.batchSize = BatchReader.batchSize(execCxt);
+        this.remaining = branches.size();
+    }
+
+    /**
+     * Submit the branches for execution. This happens on the first call of
+     * {@code hasNext} if not called before.
+     */
+    public void start() {
+        if ( started )
+            return;
+        started = true;
+        for ( Branch b : branches )
+            ParallelExecution.executor().execute(b);
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if ( isFinished() )
+            return false;
+        start();
+        for ( ;; ) {
+            if ( chunk != null ) {
+                if ( chunkIdx < chunk.length )
+                    return true;
+                chunk = null;
+            }
+            if ( inline != null ) {
+                if ( inline.hasNext() )
+                    return true;
+                inline.close();
+                inline = null;
+                remaining--;
+            }
+            if ( remaining == 0 )
+                return false;
+            if ( ordered )
+                nextOrdered();
+            else
+                nextUnordered();
+        }
+    }
+
+    // Advance by one queue item or inline branch, reading the branches in order.
+    private void nextOrdered() {
+        if ( current == null ) {
+            current = branches.get(nextBranch++);
+            if ( current.state.compareAndSet(PENDING, INLINE) ) {
+                runInline(current);
+                current = null;
+                return;
+            }
+        }
+        Object item = poll(current.queue);
+        if ( item == null )
+            return;
+        if ( process(item) )
+            current = null;
+    }
+
+    // Advance by one queue item or inline branch, from whichever branch is ready.
+    private void nextUnordered() {
+        if ( ! available.tryAcquire() ) {
+            // Nothing ready: run a branch that has not been started.
+            for ( Branch b : branches ) {
+                if ( b.state.compareAndSet(PENDING, INLINE) ) {
+                    runInline(b);
+                    return;
+                }
+            }
+            if ( ! acquire() )
+                return;
+        }
+        // There is an item in some queue.
+        for ( Branch b : branches ) {
+            Object item = b.queue.poll();
+            if ( item != null ) {
+                process(item);
+                return;
+            }
+        }
+        throw new QueryExecException("No item available");
+    }
+
+    /** Handle a queue item; return true if the end of the branch has been reached. */
+    private boolean process(Object item) {
+        if ( item instanceof Binding[] ) {
+            chunk = (Binding[])item;
+            chunkIdx = 0;
+            return false;
+        }
+        if ( item == END ) {
+            remaining--;
+            return true;
+        }
+        if ( item instanceof Branch ) {
+            // Could not run on a worker thread.
+            runInline((Branch)item);
+            return true;
+        }
+        Throwable th = (Throwable)item;
+        if ( th instanceof RuntimeException )
+            throw (RuntimeException)th;
+        if ( th instanceof Error )
+            throw (Error)th;
+        throw new QueryExecException(th);
+    }
+
+    private void runInline(Branch branch) {
+        inline = branch.supplier.get();
+        if ( cancelled )
+            inline.cancel();
+    }
+
+    private Object poll(BlockingQueue<Object> queue) {
+        try {
+            Object item = queue.poll(PollMillis, TimeUnit.MILLISECONDS);
+            if ( item == null )
+                checkCancelled();
+            return item;
+        } catch (InterruptedException ex) {
+            throw new QueryCancelledException();
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            if ( available.tryAcquire(PollMillis, TimeUnit.MILLISECONDS) )
+                return true;
+            checkCancelled();
+            return false;
+        } catch (InterruptedException ex) {
+            throw new QueryCancelledException();
+        }
+    }
+
+    private void checkCancelled() {
+        if ( cancelled )
+            throw new QueryCancelledException();
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        if ( ! hasNextBinding() )
+            throw new NoSuchElementException(Lib.className(this));
+        if ( chunk != null ) {
+            Binding b = chunk[chunkIdx];
+            chunk[chunkIdx++] = null;
+            return b;
+        }
+        return inline.nextBinding();
+    }
+
+    @Override
+    protected int moveToNextBatch(Binding[] batch, int off, int len) {
+        if ( ! hasNextBinding() )
+            return 0;
+        if ( chunk != null ) {
+            int n = Math.min(len, chunk.length - chunkIdx);
+            System.arraycopy(chunk, chunkIdx, batch, off, n);
+            Arrays.fill(chunk, chunkIdx, chunkIdx + n, null);
+            chunkIdx += n;
+            return n;
+        }
+        return inline.nextBatch(batch, off, len);
+    }
+
+    @Override
+    protected void closeIterator() {
+        stop();
+        performClose(inline);
+        inline = null;
+        chunk = null;
+        for ( Branch b : branches )
+            b.queue.clear();
+    }
+
+    @Override
+    protected void requestCancel() {
+        stop();
+        performRequestCancel(inline);
+    }
+
+    // Stop all branches: worker threads close their own iterators.
+    private void stop() {
+        cancelled = true;
+        for ( Branch b : branches ) {
+            // Not yet started - now it will not be.
+            b.state.compareAndSet(PENDING, INLINE);
+            performRequestCancel(b.qIter);
+        }
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt) {
+        out.println(Lib.className(this) + (ordered ? " ordered" : " unordered") + " branches=" + branches.size());
+    }
+
+    private class Branch implements Runnable {
+        final Supplier<QueryIterator> supplier;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QueueLength);
+        volatile QueryIterator qIter = null;
+
+        Branch(Supplier<QueryIterator> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            if ( ! state.compareAndSet(PENDING, RUNNING) )
+                return;
+            boolean ok;
+            try {
+                ok = setup.begin();
+            } catch (Throwable th) {
+                put(th);
+                return;
+            }
+            if ( ! ok ) {
+                // Hand back to the calling thread.
+                put(this);
+                return;
+            }
+            try {
+                qIter = supplier.get();
+                if ( cancelled )
+                    qIter.cancel();
+                while ( ! cancelled ) {
+                    Binding[] batch = new Binding[batchSize];
+                    int n = qIter.nextBatch(batch, 0, batchSize);
+                    if ( n == 0 )
+                        break;
+                    put(n == batchSize ? batch : Arrays.copyOf(batch, n));
+                }
+                put(END);
+            } catch (Throwable th) {
+                put(th);
+            } finally {
+                try { performClose(qIter); } catch (RuntimeException ex) {}
+                setup.end();
+            }
+        }
+
+        // Blocks while the queue is full; gives up if the iterator is stopped.
+        private void put(Object item) {
+            try {
+                while ( ! cancelled ) {
+                    if ( queue.offer(item, PollMillis, TimeUnit.MILLISECONDS) ) {
+                        available.release();
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {}
+        }
+    }
+}
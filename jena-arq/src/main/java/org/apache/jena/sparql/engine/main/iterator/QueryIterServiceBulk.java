@@ -0,0 +1,336 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.main.iterator;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.table.TableN;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.http.Service;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.sparql.engine.main.ParallelExecution;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * SERVICE evaluated for groups of solutions of the input.
+ * <p>
+ * The input is read in chunks of {@link Service#serviceBulkBindings} solutions.
+ * Each chunk is sent as one request: the solutions are a {@code VALUES} block,
+ * with an extra column numbering the rows, joined with the service pattern. Each
+ * result is joined with the input solution of its row. Up to
+ * {@link Service#serviceBulkRequests} requests are in progress at once; the results
+ * are returned in the order of the input, as with one request per solution.
+ * Only the remote requests are made on other threads; the input solutions are read,
+ * and the results joined with them, on the query thread.
+ * <p>
+ * Solutions that can not be sent as {@code VALUES}, because a value is a blank
+ * node or because a variable is used in the pattern but not visible from it (for
+ * example, only in a filter in a subquery), are evaluated by substitution, one
+ * request each, as {@link QueryIterService} does.
+ */
+public class QueryIterServiceBulk extends QueryIter1
+{
+    private final OpService opService;
+    private final int chunkSize;
+    private final int maxRequests;
+    private final Set<Var> visibleVars;
+    private final Set<Var> mentionedVars;
+    private final Var rowVar;
+
+    private final Deque<Future<Chunk>> requests = new ArrayDeque<>();
+    private Iterator<Binding> current = null;
+    private volatile boolean cancelled = false;
+
+    /** Whether to use bulk evaluation of this SERVICE. */
+    public static boolean isBulk(OpService opService, ExecutionContext execCxt) {
+        if ( ! opService.getService().isURI() )
+            return false;
+        return chunkSize(execCxt) > 1;
+    }
+
+    private static int chunkSize(ExecutionContext execCxt) {
+        if ( execCxt.getContext() == null )
+            return 0;
+        return execCxt.getContext().getInt(Service.serviceBulkBindings, 0);
+    }
+
+    public QueryIterServiceBulk(QueryIterator input, OpService opService, ExecutionContext execCxt) {
+        super(input, execCxt);
+        if ( execCxt.getContext().isFalse(Service.serviceAllowed) )
+            throw new QueryExecException("SERVICE not allowed");
+        this.opService = opService;
+        this.chunkSize = Math.max(1, chunkSize(execCxt));
+        // Requests on a pool thread could wait for each other.
+        this.maxRequests = ParallelExecution.isWorkerThread()
+            ? 1
+            : Math.max(1, execCxt.getContext().getInt(Service.serviceBulkRequests, 1));
+        this.visibleVars = OpVars.visibleVars(opService.getSubOp());
+        this.mentionedVars = new HashSet<>(OpVars.mentionedVars(opService.getSubOp()));
+        Var v = Var.alloc("__row");
+        while ( mentionedVars.contains(v) )
+            v = Var.alloc(v.getVarName() + "_");
+        this.rowVar = v;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        for ( ;; ) {
+            if ( current != null && current.hasNext() )
+                return true;
+            current = null;
+            if ( cancelled )
+                throw new QueryCancelledException();
+            while ( requests.size() < maxRequests && getInput().hasNext() ) {
+                List<Binding> chunk = new ArrayList<>(chunkSize);
+                while ( chunk.size() < chunkSize && getInput().hasNext() )
+                    chunk.add(getInput().next());
+                requests.add(submit(new Chunk(chunk)));
+            }
+            if ( requests.isEmpty() )
+                return false;
+            current = result(requests.removeFirst()).results().iterator();
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        if ( ! hasNextBinding() )
+            throw new NoSuchElementException(Lib.className(this) + ".next()/finished");
+        return current.next();
+    }
+
+    private Future<Chunk> submit(Chunk chunk) {
+        if ( maxRequests == 1 ) {
+            // Execute now, on this thread.
+            chunk.fetch();
+            return new Future<Chunk>() {
+                @Override public boolean cancel(boolean mayInterruptIfRunning) { return false; }
+                @Override public boolean isCancelled() { return false; }
+                @Override public boolean isDone() { return true; }
+                @Override public Chunk get() { return chunk; }
+                @Override public Chunk get(long timeout, TimeUnit unit) { return chunk; }
+            };
+        }
+        // Only the remote requests run on the pool thread.
+        return ParallelExecution.executor().submit(() -> { chunk.fetch(); return chunk; });
+    }
+
+    private static Chunk result(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException();
+        } catch (ExecutionException ex) {
+            if ( ex.getCause() instanceof RuntimeException )
+                throw (RuntimeException)ex.getCause();
+            if ( ex.getCause() instanceof Error )
+                throw (Error)ex.getCause();
+            throw new QueryExecException(ex.getCause());
+        }
+    }
+
+    /**
+     * A chunk of input solutions. The requests are built, and the results joined
+     * with the input solutions, on the query thread: the input solutions may only be
+     * readable on that thread. {@link #fetch} makes the remote requests and can be
+     * called on any thread; it does not use the {@link ExecutionContext}.
+     */
+    private class Chunk {
+        private final List<Binding> input;
+        private final Context context;
+        // The request for the rows sent as VALUES, or null.
+        private final OpService opBulk;
+        // For each row, null if sent as VALUES, else the SERVICE with the row substituted.
+        private final OpService[] opSingle;
+        // Results of the requests: List<Binding> or RuntimeException.
+        private Object bulkResults = null;
+        private final Object[] singleResults;
+
+        Chunk(List<Binding> input) {
+            this.input = input;
+            this.context = getExecContext().getContext();
+            this.opSingle = new OpService[input.size()];
+            this.singleResults = new Object[input.size()];
+            // The row number is the first column.
+            TableN table = new TableN(new ArrayList<>(Arrays.asList(rowVar)));
+            boolean bulk = false;
+            for ( int i = 0 ; i < input.size() ; i++ ) {
+                Binding binding = input.get(i);
+                if ( ! sendAsValues(binding) ) {
+                    opSingle[i] = (OpService)QC.substitute(opService, binding);
+                    continue;
+                }
+                BindingBuilder builder = Binding.builder();
+                builder.add(rowVar, NodeValue.makeInteger(i).asNode());
+                binding.forEach((v, n) -> {
+                    if ( visibleVars.contains(v) )
+                        builder.add(v, n);
+                });
+                table.addBinding(builder.build());
+                bulk = true;
+            }
+            if ( bulk ) {
+                Op op = OpJoin.create(OpTable.create(table), opService.getSubOp());
+                this.opBulk = new OpService(opService.getService(), op, opService.getSilent());
+            } else
+                this.opBulk = null;
+        }
+
+        /** Make the remote requests. */
+        void fetch() {
+            if ( opBulk != null )
+                bulkResults = request(opBulk);
+            for ( int i = 0 ; i < opSingle.length ; i++ ) {
+                if ( cancelled )
+                    return;
+                if ( opSingle[i] != null )
+                    singleResults[i] = request(opSingle[i]);
+            }
+        }
+
+        private Object request(OpService op) {
+            try {
+                QueryIterator qIter = Service.exec(op, context);
+                try {
+                    List<Binding> results = new ArrayList<>();
+                    qIter.forEachRemaining(results::add);
+                    return results;
+                } finally { qIter.close(); }
+            } catch (RuntimeException ex) {
+                return ex;
+            }
+        }
+
+        /** The results, joined with the input solutions, in the order of the input. */
+        List<Binding> results() {
+            if ( cancelled )
+                throw new QueryCancelledException();
+            // Results for each input row.
+            List<List<Binding>> rows = new ArrayList<>(input.size());
+            for ( int i = 0 ; i < input.size() ; i++ )
+                rows.add(new ArrayList<>());
+            if ( opBulk != null ) {
+                List<Binding> results = resultsOrInput(bulkResults);
+                if ( results == null ) {
+                    // As with one request per solution, the input solutions are the results.
+                    for ( int i = 0 ; i < input.size() ; i++ ) {
+                        if ( opSingle[i] == null )
+                            rows.get(i).add(input.get(i));
+                    }
+                } else {
+                    for ( Binding result : results ) {
+                        int i = Integer.parseInt(result.get(rowVar).getLiteralLexicalForm());
+                        Binding r = Algebra.merge(input.get(i), removeRowVar(result));
+                        if ( r != null )
+                            rows.get(i).add(r);
+                    }
+                }
+            }
+            for ( int i = 0 ; i < input.size() ; i++ ) {
+                if ( opSingle[i] == null )
+                    continue;
+                List<Binding> results = resultsOrInput(singleResults[i]);
+                if ( results == null ) {
+                    rows.get(i).add(input.get(i));
+                    continue;
+                }
+                for ( Binding result : results ) {
+                    Binding r = Algebra.merge(input.get(i), result);
+                    if ( r != null )
+                        rows.get(i).add(r);
+                }
+            }
+            List<Binding> results = new ArrayList<>();
+            rows.forEach(results::addAll);
+            return results;
+        }
+
+        // The results of a request, or null if it failed and the SERVICE is SILENT.
+        @SuppressWarnings("unchecked")
+        private List<Binding> resultsOrInput(Object x) {
+            if ( x instanceof RuntimeException ) {
+                RuntimeException ex = (RuntimeException)x;
+                if ( ! opService.getSilent() )
+                    throw ex;
+                Log.warn(QueryIterServiceBulk.this, "SERVICE <" + opService.getService().toString() + ">: " + ex.getMessage());
+                return null;
+            }
+            return (List<Binding>)x;
+        }
+    }
+
+    private boolean sendAsValues(Binding binding) {
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; ) {
+            Var v = iter.next();
+            if ( ! mentionedVars.contains(v) )
+                continue;
+            if ( ! visibleVars.contains(v) )
+                return false;
+            Node n = binding.get(v);
+            if ( n == null || n.isBlank() )
+                return false;
+        }
+        return true;
+    }
+
+    private Binding removeRowVar(Binding result) {
+        BindingBuilder builder = Binding.builder();
+        result.forEach((v, n) -> {
+            if ( ! rowVar.equals(v) )
+                builder.add(v, n);
+        });
+        return builder.build();
+    }
+
+    @Override
+    protected void requestSubCancel() {
+        cancelled = true;
+        for ( Future<Chunk> f : requests )
+            f.cancel(true);
+    }
+
+    @Override
+    protected void closeSubIterator() {
+        for ( Future<Chunk> f : requests )
+            f.cancel(true);
+        requests.clear();
+    }
+}
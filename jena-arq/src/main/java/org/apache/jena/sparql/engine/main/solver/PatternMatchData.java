@@ -33,6 +33,7 @@ import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.iterator.Abortable;
+import org.apache.jena.sparql.engine.iterator.BatchReader;
 import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
 
 /**
@@ -50,7 +51,7 @@ public class PatternMatchData {
     {
         List<Triple> triples = pattern.getList();
 
-        Iterator<Binding> chain = input;
+        Iterator<Binding> chain = BatchReader.create(input, execCxt);
         List<Abortable> killList = new ArrayList<>();
 
         for ( Triple triple : triples ) {
@@ -89,7 +90,7 @@ public class PatternMatchData {
         boolean isDefaultGraph = (graphNode == null);
         boolean anyGraph = isDefaultGraph ? false : (Node.ANY.equals(graphNode));
 
-        Iterator<Binding> chain = input;
+        Iterator<Binding> chain = BatchReader.create(input, execCxt);
         List<Abortable> killList = new ArrayList<>();
 
         for ( Triple triple : triples ) {
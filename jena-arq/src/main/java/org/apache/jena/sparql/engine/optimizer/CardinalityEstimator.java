@@ -0,0 +1,454 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.optimizer;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.*;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.ItemList;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+
+/**
+ * Estimate the number of results of triple patterns and algebra expressions
+ * from per-predicate statistics ({@link PredicateStats}).
+ * <p>
+ * The statistics are read from the "predicates" section of a stats file:
+ * <pre>(stats
+ *    (meta ...)
+ *    ...
+ *    (predicates
+ *       (&lt;predicate uri&gt; (count N) (subjects N) (objects N) (histogram v1 v2 ...))
+ *       ...
+ *    ))</pre>
+ * Estimates are for ordering joins; they are not exact.
+ */
+public class CardinalityEstimator
+{
+    public static final String PREDICATES   = "predicates";
+    public static final String SUBJECTS     = "subjects";
+    public static final String OBJECTS      = "objects";
+    public static final String HISTOGRAM    = "histogram";
+
+    /** Selectivity of a range filter when there is no histogram. */
+    public static final double RangeSelectivity     = 1.0/3;
+    /** Selectivity of a filter that can not be estimated. */
+    public static final double DefaultSelectivity   = 0.5;
+
+    private final Map<Node, PredicateStats> predicates;
+    private final long total;
+    private final long totalSubjects;
+    private final long totalObjects;
+
+    public CardinalityEstimator(Map<Node, PredicateStats> predicates, long total) {
+        this.predicates = predicates;
+        long t = 0;
+        long s = 0;
+        long o = 0;
+        for ( PredicateStats ps : predicates.values() ) {
+            t += ps.getCount();
+            s = Math.max(s, ps.getDistinctSubjects());
+            o = Math.max(o, ps.getDistinctObjects());
+        }
+        this.total = Math.max(1, total >= 0 ? total : t);
+        this.totalSubjects = Math.max(1, s);
+        this.totalObjects = Math.max(1, o);
+    }
+
+    /**
+     * Read a stats file. Returns null if the file does not have
+     * per-predicate statistics.
+     */
+    public static CardinalityEstimator read(String filename) {
+        Item stats = SSE.readFile(filename);
+        if ( stats.isNil() )
+            return null;
+        return create(stats);
+    }
+
+    /**
+     * Create from stats (see {@link StatsMatcher}). Returns null if there are no
+     * per-predicate statistics.
+     */
+    public static CardinalityEstimator create(Item stats) {
+        if ( !stats.isTagged(StatsMatcher.STATS) )
+            return null;
+        long count = -1;
+        Item section = null;
+        for ( Item elt : stats.getList().cdr() ) {
+            if ( elt.isTagged(StatsMatcher.META) ) {
+                Item x = Item.find(elt.getList(), StatsMatcher.COUNT);
+                if ( x != null )
+                    count = x.getList().get(1).asInteger();
+            }
+            if ( elt.isTagged(PREDICATES) )
+                section = elt;
+        }
+        if ( section == null )
+            return null;
+        Map<Node, PredicateStats> predicates = new HashMap<>();
+        for ( Item elt : section.getList().cdr() ) {
+            if ( !elt.isList() || elt.getList().size() < 2 || !elt.getList().get(0).isNodeURI() ) {
+                Log.warn(CardinalityEstimator.class, "Not understood: " + elt);
+                continue;
+            }
+            Node p = elt.getList().get(0).getNode();
+            ItemList props = elt.getList().cdr();
+            long n = integer(props, StatsMatcher.COUNT, 0);
+            long s = integer(props, SUBJECTS, n);
+            long o = integer(props, OBJECTS, n);
+            double[] histogram = null;
+            Item h = Item.find(props, HISTOGRAM);
+            if ( h != null ) {
+                ItemList values = h.getList().cdr();
+                histogram = new double[values.size()];
+                for ( int i = 0 ; i < histogram.length ; i++ )
+                    histogram[i] = values.get(i).getDouble();
+            }
+            predicates.put(p, new PredicateStats(n, s, o, histogram));
+        }
+        return new CardinalityEstimator(predicates, count);
+    }
+
+    private static long integer(ItemList list, String key, long dft) {
+        Item x = Item.find(list, key);
+        if ( x == null )
+            return dft;
+        return x.getList().get(1).asInteger();
+    }
+
+    /** Format per-predicate statistics as the "predicates" section of a stats file. */
+    public static Item format(Map<Node, PredicateStats> predicates) {
+        Item section = Item.createTagged(PREDICATES);
+        for ( Map.Entry<Node, PredicateStats> e : predicates.entrySet() ) {
+            PredicateStats ps = e.getValue();
+            Item x = Item.createList();
+            ItemList list = x.getList();
+            list.add(Item.createNode(e.getKey()));
+            Item.addPair(list, StatsMatcher.COUNT, NodeFactoryExtra.intToNode(ps.getCount()));
+            Item.addPair(list, SUBJECTS, NodeFactoryExtra.intToNode(ps.getDistinctSubjects()));
+            Item.addPair(list, OBJECTS, NodeFactoryExtra.intToNode(ps.getDistinctObjects()));
+            if ( ps.getHistogram() != null ) {
+                Item h = Item.createTagged(HISTOGRAM);
+                for ( double d : ps.getHistogram() )
+                    h.getList().add(Item.createNode(numberToNode(d)));
+                list.add(h);
+            }
+            section.getList().add(x);
+        }
+        return section;
+    }
+
+    // Short form: integer or decimal, not double.
+    private static Node numberToNode(double d) {
+        if ( d == Math.rint(d) && Math.abs(d) < Long.MAX_VALUE )
+            return NodeFactoryExtra.intToNode((long)d);
+        if ( Double.isNaN(d) || Double.isInfinite(d) )
+            return NodeFactoryExtra.doubleToNode(d);
+        return NodeFactory.createLiteral(BigDecimal.valueOf(d).toPlainString(), XSDDatatype.XSDdecimal);
+    }
+
+    /** Statistics for a predicate, or null. */
+    public PredicateStats getStats(Node predicate) {
+        return predicates.get(predicate);
+    }
+
+    // ---- Triple patterns
+
+    /**
+     * Estimated number of matches of a triple pattern, where the variables in
+     * {@code bound} already have values (i.e. the number of matches for each
+     * binding of those variables).
+     */
+    public double estimate(Triple triple, Set<Var> bound) {
+        boolean sBound = isBound(triple.getSubject(), bound);
+        boolean pBound = isBound(triple.getPredicate(), bound);
+        boolean oBound = isBound(triple.getObject(), bound);
+        Node p = triple.getPredicate();
+        if ( p.isConcrete() ) {
+            PredicateStats ps = predicates.get(p);
+            if ( ps == null )
+                // Not in the statistics.
+                return 1;
+            double est = ps.getCount();
+            if ( sBound )
+                est = est / ps.getDistinctSubjects();
+            if ( oBound )
+                est = est / ps.getDistinctObjects();
+            return est;
+        }
+        double est = total;
+        if ( pBound )
+            est = est / Math.max(1, predicates.size());
+        if ( sBound )
+            est = est / totalSubjects;
+        if ( oBound )
+            est = est / totalObjects;
+        return est;
+    }
+
+    /** Estimated number of distinct values of {@code var} in the matches of a triple pattern. */
+    public double distinct(Triple triple, Var var) {
+        Node p = triple.getPredicate();
+        PredicateStats ps = p.isConcrete() ? predicates.get(p) : null;
+        if ( var.equals(triple.getPredicate()) )
+            return Math.max(1, predicates.size());
+        if ( var.equals(triple.getSubject()) )
+            return ps == null ? ( p.isConcrete() ? 1 : totalSubjects ) : ps.getDistinctSubjects();
+        if ( var.equals(triple.getObject()) )
+            return ps == null ? ( p.isConcrete() ? 1 : totalObjects ) : ps.getDistinctObjects();
+        return 1;
+    }
+
+    private static boolean isBound(Node node, Set<Var> bound) {
+        if ( Var.isVar(node) )
+            return bound.contains(Var.alloc(node));
+        return node.isConcrete();
+    }
+
+    // ---- Algebra expressions
+
+    /** Estimated number of results of an algebra expression; -1 for unknown. */
+    public double estimate(Op op) {
+        if ( op instanceof OpBGP )
+            return estimate(((OpBGP)op).getPattern().getList());
+        if ( op instanceof OpTriple )
+            return estimate(Collections.singletonList(((OpTriple)op).getTriple()));
+        if ( op instanceof OpQuadPattern )
+            return estimate(((OpQuadPattern)op).getBasicPattern().getList());
+        if ( op instanceof OpFilter ) {
+            OpFilter opFilter = (OpFilter)op;
+            double est = estimate(opFilter.getSubOp());
+            if ( est < 0 )
+                return est;
+            return est * selectivity(opFilter.getExprs(), opFilter.getSubOp());
+        }
+        if ( op instanceof OpJoin || op instanceof OpSequence ) {
+            List<Op> elts = ( op instanceof OpJoin )
+                ? Arrays.asList(((OpJoin)op).getLeft(), ((OpJoin)op).getRight())
+                : ((OpSequence)op).getElements();
+            double est = -1;
+            Op acc = null;
+            for ( Op elt : elts ) {
+                double x = estimate(elt);
+                if ( x < 0 )
+                    return -1;
+                est = ( acc == null ) ? x : joinEstimate(acc, est, elt, x);
+                acc = ( acc == null ) ? elt : OpJoin.create(acc, elt);
+            }
+            return est;
+        }
+        if ( op instanceof OpLeftJoin )
+            return estimate(((OpLeftJoin)op).getLeft());
+        if ( op instanceof OpConditional )
+            return estimate(((OpConditional)op).getLeft());
+        if ( op instanceof OpMinus )
+            return estimate(((OpMinus)op).getLeft());
+        if ( op instanceof OpUnion ) {
+            double l = estimate(((OpUnion)op).getLeft());
+            double r = estimate(((OpUnion)op).getRight());
+            return ( l < 0 || r < 0 ) ? -1 : l + r;
+        }
+        if ( op instanceof OpSlice ) {
+            OpSlice opSlice = (OpSlice)op;
+            double est = estimate(opSlice.getSubOp());
+            if ( est < 0 || opSlice.getLength() < 0 )
+                return est;
+            return Math.min(est, opSlice.getLength());
+        }
+        if ( op instanceof OpTopN ) {
+            double est = estimate(((OpTopN)op).getSubOp());
+            return est < 0 ? est : Math.min(est, ((OpTopN)op).getLimit());
+        }
+        if ( op instanceof OpTable )
+            return ((OpTable)op).getTable().size();
+        if ( op instanceof OpGraph )
+            return estimate(((OpGraph)op).getSubOp());
+        if ( op instanceof OpExtendAssign || op instanceof OpProject || op instanceof OpDistinct
+             || op instanceof OpReduced || op instanceof OpOrder || op instanceof OpGroup || op instanceof OpLabel )
+            return estimate(((Op1)op).getSubOp());
+        return -1;
+    }
+
+    /** Estimate a basic graph pattern evaluated in a good order. */
+    private double estimate(List<Triple> triples) {
+        List<Triple> remaining = new ArrayList<>(triples);
+        Set<Var> bound = new HashSet<>();
+        double est = 1;
+        while ( !remaining.isEmpty() ) {
+            Triple best = null;
+            double bestEst = Double.MAX_VALUE;
+            boolean bestConnected = false;
+            for ( Triple t : remaining ) {
+                boolean connected = isConnected(t, bound);
+                double x = estimate(t, bound);
+                // Prefer triples connected to the ones already chosen.
+                if ( best == null || (connected && !bestConnected) || (connected == bestConnected && x < bestEst) ) {
+                    best = t;
+                    bestEst = x;
+                    bestConnected = connected;
+                }
+            }
+            est = est * bestEst;
+            remaining.remove(best);
+            addVars(bound, best);
+        }
+        return est;
+    }
+
+    private static boolean isConnected(Triple t, Set<Var> bound) {
+        return isBoundVar(t.getSubject(), bound) || isBoundVar(t.getPredicate(), bound) || isBoundVar(t.getObject(), bound);
+    }
+
+    private static boolean isBoundVar(Node node, Set<Var> bound) {
+        return Var.isVar(node) && bound.contains(Var.alloc(node));
+    }
+
+    private static void addVars(Set<Var> acc, Triple t) {
+        addVar(acc, t.getSubject());
+        addVar(acc, t.getPredicate());
+        addVar(acc, t.getObject());
+    }
+
+    private static void addVar(Set<Var> acc, Node node) {
+        if ( Var.isVar(node) )
+            acc.add(Var.alloc(node));
+    }
+
+    /**
+     * Estimated number of distinct values of {@code var} in the results of
+     * {@code op}, at most {@code estimate}.
+     */
+    public double distinct(Op op, Var var, double estimate) {
+        double d = estimate;
+        for ( Triple t : triples(op) ) {
+            if ( var.equals(t.getSubject()) || var.equals(t.getPredicate()) || var.equals(t.getObject()) )
+                d = Math.min(d, distinct(t, var));
+        }
+        return Math.max(1, d);
+    }
+
+    /**
+     * Estimated number of results of joining two expressions with estimates
+     * {@code leftEst} and {@code rightEst}.
+     */
+    public double joinEstimate(Op left, double leftEst, Op right, double rightEst) {
+        double est = leftEst * rightEst;
+        Set<Var> vars = OpVars.visibleVars(left);
+        vars.retainAll(OpVars.visibleVars(right));
+        double best = est;
+        for ( Var v : vars ) {
+            double d = Math.max(distinct(left, v, leftEst), distinct(right, v, rightEst));
+            best = Math.min(best, est / d);
+        }
+        return best;
+    }
+
+    // ---- Filters
+
+    /** Estimated fraction of the results of {@code op} that pass the filter. */
+    public double selectivity(ExprList exprs, Op op) {
+        double s = 1;
+        for ( Expr expr : exprs )
+            s = s * selectivity(expr, op);
+        return s;
+    }
+
+    /** Estimated fraction of the results of {@code op} that pass the filter expression. */
+    public double selectivity(Expr expr, Op op) {
+        if ( expr instanceof E_LogicalAnd ) {
+            E_LogicalAnd e = (E_LogicalAnd)expr;
+            return selectivity(e.getArg1(), op) * selectivity(e.getArg2(), op);
+        }
+        if ( expr instanceof E_LogicalOr ) {
+            E_LogicalOr e = (E_LogicalOr)expr;
+            return Math.min(1, selectivity(e.getArg1(), op) + selectivity(e.getArg2(), op));
+        }
+        if ( expr instanceof E_LogicalNot )
+            return 1 - selectivity(((E_LogicalNot)expr).getArg(), op);
+        if ( !(expr instanceof ExprFunction2) )
+            return DefaultSelectivity;
+
+        ExprFunction2 f = (ExprFunction2)expr;
+        Expr arg1 = f.getArg1();
+        Expr arg2 = f.getArg2();
+        boolean varFirst = arg1.isVariable() && arg2.isConstant();
+        if ( !varFirst && !(arg2.isVariable() && arg1.isConstant()) )
+            return DefaultSelectivity;
+        Var var = varFirst ? arg1.asVar() : arg2.asVar();
+        NodeValue value = varFirst ? arg2.getConstant() : arg1.getConstant();
+
+        if ( expr instanceof E_Equals || expr instanceof E_SameTerm )
+            return 1 / distinct(op, var, Double.MAX_VALUE);
+        if ( expr instanceof E_NotEquals )
+            return 1 - 1 / distinct(op, var, Double.MAX_VALUE);
+
+        boolean less;
+        if ( expr instanceof E_LessThan || expr instanceof E_LessThanOrEqual )
+            less = varFirst;
+        else if ( expr instanceof E_GreaterThan || expr instanceof E_GreaterThanOrEqual )
+            less = !varFirst;
+        else
+            return DefaultSelectivity;
+        double below = fractionBelow(op, var, value);
+        if ( below < 0 )
+            return RangeSelectivity;
+        return less ? below : 1 - below;
+    }
+
+    // Fraction of values of var, the object of a triple pattern in op, that are below value.
+    private double fractionBelow(Op op, Var var, NodeValue value) {
+        if ( !value.isNumber() || !(value.asNode().getLiteralValue() instanceof Number) )
+            return -1;
+        double d = ((Number)value.asNode().getLiteralValue()).doubleValue();
+        for ( Triple t : triples(op) ) {
+            if ( !var.equals(t.getObject()) || !t.getPredicate().isConcrete() )
+                continue;
+            PredicateStats ps = predicates.get(t.getPredicate());
+            if ( ps != null && ps.getHistogram() != null )
+                return ps.fractionBelow(d);
+        }
+        return -1;
+    }
+
+    private static List<Triple> triples(Op op) {
+        List<Triple> acc = new ArrayList<>();
+        OpWalker.walk(op, new OpVisitorBase() {
+            @Override public void visit(OpBGP opBGP)                { acc.addAll(opBGP.getPattern().getList()); }
+            @Override public void visit(OpTriple opTriple)          { acc.add(opTriple.getTriple()); }
+            @Override public void visit(OpQuadPattern quadPattern)  { acc.addAll(quadPattern.getBasicPattern().getList()); }
+        });
+        return acc;
+    }
+}
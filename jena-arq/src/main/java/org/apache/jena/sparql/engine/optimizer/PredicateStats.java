@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.optimizer;
+
+import java.util.Arrays;
+
+/**
+ * Statistics for one predicate: number of triples, estimated number of distinct
+ * subjects and objects, and (optionally) an equi-depth histogram of the numeric
+ * object values as bucket boundaries.
+ */
+public class PredicateStats
+{
+    private final long count;
+    private final long distinctSubjects;
+    private final long distinctObjects;
+    private final double[] histogram;
+
+    public PredicateStats(long count, long distinctSubjects, long distinctObjects, double[] histogram) {
+        this.count = count;
+        this.distinctSubjects = Math.max(1, Math.min(count, distinctSubjects));
+        this.distinctObjects = Math.max(1, Math.min(count, distinctObjects));
+        this.histogram = histogram;
+    }
+
+    /** Number of triples with this predicate. */
+    public long getCount()              { return count; }
+
+    /** Estimated number of distinct subjects for this predicate. */
+    public long getDistinctSubjects()   { return distinctSubjects; }
+
+    /** Estimated number of distinct objects for this predicate. */
+    public long getDistinctObjects()    { return distinctObjects; }
+
+    /**
+     * Bucket boundaries, in increasing order, of an equi-depth histogram of numeric object values;
+     * null if there is no histogram. Each bucket has the same share of the values.
+     */
+    public double[] getHistogram()      { return histogram; }
+
+    /**
+     * Estimated fraction of the numeric object values that are less than {@code value}.
+     * Returns -1 if there is no histogram.
+     */
+    public double fractionBelow(double value) {
+        if ( histogram == null || histogram.length < 2 )
+            return -1;
+        int buckets = histogram.length - 1;
+        if ( value <= histogram[0] )
+            return 0;
+        if ( value > histogram[buckets] )
+            return 1;
+        for ( int i = 0 ; i < buckets ; i++ ) {
+            double lo = histogram[i];
+            double hi = histogram[i + 1];
+            if ( value <= hi ) {
+                double inBucket = ( hi > lo ) ? (value - lo) / (hi - lo) : 0.5;
+                return (i + inBucket) / buckets;
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "PredicateStats[count=" + count + ", subjects=" + distinctSubjects + ", objects=" + distinctObjects
+               + (histogram == null ? "" : ", histogram=" + Arrays.toString(histogram)) + "]";
+    }
+}
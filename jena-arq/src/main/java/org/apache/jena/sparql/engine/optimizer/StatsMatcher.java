@@ -127,6 +127,9 @@ public final class StatsMatcher
         {
             Item elt = list.car() ;
             list = list.cdr();
+            if ( elt.isTagged(CardinalityEstimator.PREDICATES) )
+                // Per-predicate statistics - see CardinalityEstimator.
+                continue ;
             onePattern(elt) ;
         }
     }
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.expr.compile;
+
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionEnv;
+
+/**
+ * An expression prepared for repeated evaluation by {@link ExprCompiler}.
+ * The results are the same as {@link Expr#eval} and {@link Expr#isSatisfied}.
+ */
+public interface CompiledExpr {
+    /**
+     * Evaluate the expression.
+     * @throws org.apache.jena.sparql.expr.ExprEvalException on evaluation error.
+     */
+    public NodeValue eval(Binding binding, FunctionEnv env);
+
+    /** The effective boolean value of the expression, with evaluation errors as false. */
+    public boolean isSatisfied(Binding binding, FunctionEnv env);
+
+    /** The expression that was compiled. */
+    public Expr getExpr();
+}
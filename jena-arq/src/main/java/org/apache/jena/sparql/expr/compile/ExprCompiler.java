@@ -0,0 +1,495 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.expr.compile;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.expr.*;
+import org.apache.jena.sparql.expr.nodevalue.XSDFuncOp;
+import org.apache.jena.sparql.function.FunctionEnv;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Compile an {@link Expr} into a tree of evaluators specialized for the operators
+ * and argument kinds of the expression.
+ * <ul>
+ * <li>Constant sub-expressions are folded.
+ * <li>{@code &&}, {@code ||}, {@code !} and {@code BOUND} are evaluated as
+ *     true/false/error without {@code NodeValue}s or exceptions.
+ * <li>Comparisons of variables and constants work on the {@code Node}s, using
+ *     the cached values of literals for numbers, dateTimes and strings.
+ * <li>{@code +}, {@code -} and {@code *} on xsd:integer and xsd:double variables
+ *     and constants use Java arithmetic.
+ * <li>{@code IN} and {@code NOT IN} with a list of IRIs use a hash set.
+ * </ul>
+ * Everything else, and any case not covered when evaluating, falls back to the
+ * expression's own {@link Expr#eval}, so the results are those of the interpreter.
+ * <p>
+ * Compilation is controlled by the context setting {@link ARQ#compileExpressions}.
+ */
+public class ExprCompiler {
+
+    /** Whether expressions should be compiled for execution in this context. */
+    public static boolean isEnabled(Context context) {
+        return context == null || context.isTrueOrUndef(ARQ.compileExpressions);
+    }
+
+    /**
+     * Prepare an expression for execution. If compiling is not enabled in the
+     * context, the expression is used as it is.
+     */
+    public static CompiledExpr compile(Expr expr, Context context) {
+        if ( ! isEnabled(context) )
+            return new Interpreted(expr);
+        if ( context == null || context.isTrueOrUndef(ARQ.optExprConstantFolding) )
+            expr = ExprLib.foldConstants(expr);
+        return compile(expr);
+    }
+
+    /** Compile an expression. */
+    public static CompiledExpr compile(Expr expr) {
+        Test test = compileTest(expr);
+        if ( test != null )
+            return test;
+        return compileValue(expr);
+    }
+
+    // ---- Expressions with a boolean result.
+
+    private static Test compileTest(Expr expr) {
+        if ( expr instanceof E_LogicalAnd ) {
+            E_LogicalAnd e = (E_LogicalAnd)expr;
+            return new And(e, testOf(e.getArg1()), testOf(e.getArg2()));
+        }
+        if ( expr instanceof E_LogicalOr ) {
+            E_LogicalOr e = (E_LogicalOr)expr;
+            return new Or(e, testOf(e.getArg1()), testOf(e.getArg2()));
+        }
+        if ( expr instanceof E_LogicalNot ) {
+            E_LogicalNot e = (E_LogicalNot)expr;
+            return new Not(e, testOf(e.getArg()));
+        }
+        if ( expr instanceof E_Bound ) {
+            E_Bound e = (E_Bound)expr;
+            if ( e.getArg().isVariable() )
+                return new Bound(e, e.getArg().asVar());
+            return null;
+        }
+        if ( expr instanceof E_OneOfBase )
+            return compileOneOf((E_OneOfBase)expr);
+
+        int op = compareOp(expr);
+        if ( op != NoOp ) {
+            ExprFunction2 e = (ExprFunction2)expr;
+            Operand left = operand(e.getArg1());
+            Operand right = operand(e.getArg2());
+            if ( left != null && right != null )
+                return new Compare(e, op, left, right);
+        }
+        return null;
+    }
+
+    private static Test testOf(Expr expr) {
+        Test test = compileTest(expr);
+        if ( test != null )
+            return test;
+        return new EffectiveBooleanValue(compileValue(expr));
+    }
+
+    private static Test compileOneOf(E_OneOfBase expr) {
+        Operand operand = operand(expr.getLHS());
+        if ( operand == null )
+            return null;
+        Set<Node> iris = new HashSet<>();
+        for ( Expr e : expr.getRHS() ) {
+            if ( ! e.isConstant() || ! e.getConstant().asNode().isURI() )
+                return null;
+            iris.add(e.getConstant().asNode());
+        }
+        return new OneOfIRI(expr, operand, iris, expr instanceof E_NotOneOf);
+    }
+
+    // ---- Expressions with a value
+
+    private static CompiledExpr compileValue(Expr expr) {
+        if ( expr.isConstant() )
+            return new Constant(expr);
+        int op = arithmeticOp(expr);
+        if ( op != NoOp ) {
+            ExprFunction2 e = (ExprFunction2)expr;
+            Operand left = operand(e.getArg1());
+            Operand right = operand(e.getArg2());
+            if ( left != null && right != null )
+                return new Arithmetic(e, op, left, right);
+        }
+        return new Interpreted(expr);
+    }
+
+    // ---- Operators
+
+    private static final int NoOp = 0;
+    private static final int OpEQ = 1;
+    private static final int OpNE = 2;
+    private static final int OpLT = 3;
+    private static final int OpLE = 4;
+    private static final int OpGT = 5;
+    private static final int OpGE = 6;
+
+    private static final int OpAdd = 11;
+    private static final int OpSub = 12;
+    private static final int OpMul = 13;
+
+    private static int compareOp(Expr expr) {
+        if ( expr instanceof E_Equals )             return OpEQ;
+        if ( expr instanceof E_NotEquals )          return OpNE;
+        if ( expr instanceof E_LessThan )           return OpLT;
+        if ( expr instanceof E_LessThanOrEqual )    return OpLE;
+        if ( expr instanceof E_GreaterThan )        return OpGT;
+        if ( expr instanceof E_GreaterThanOrEqual ) return OpGE;
+        return NoOp;
+    }
+
+    private static int arithmeticOp(Expr expr) {
+        if ( expr instanceof E_Add )        return OpAdd;
+        if ( expr instanceof E_Subtract )   return OpSub;
+        if ( expr instanceof E_Multiply )   return OpMul;
+        return NoOp;
+    }
+
+    // ---- Arguments that are variables or constants.
+
+    /** The {@code Node} for a variable or constant; null if a variable is unbound. */
+    private interface Operand {
+        Node node(Binding binding);
+    }
+
+    private static Operand operand(Expr expr) {
+        if ( expr.isVariable() ) {
+            Var var = expr.asVar();
+            return binding -> binding.get(var);
+        }
+        if ( expr.isConstant() ) {
+            Node node = expr.getConstant().asNode();
+            return binding -> node;
+        }
+        return null;
+    }
+
+    // ---- Evaluators
+
+    /** Expressions evaluated as true, false or error. */
+    private static abstract class Test implements CompiledExpr {
+        static final int FALSE = 0;
+        static final int TRUE  = 1;
+        static final int ERROR = -1;
+
+        protected final Expr expr;
+
+        Test(Expr expr) { this.expr = expr; }
+
+        abstract int test(Binding binding, FunctionEnv env);
+
+        @Override
+        public NodeValue eval(Binding binding, FunctionEnv env) {
+            switch (test(binding, env)) {
+                case TRUE:  return NodeValue.TRUE;
+                case FALSE: return NodeValue.FALSE;
+                // Evaluation error: evaluate again for the exception.
+                default:    return expr.eval(binding, env);
+            }
+        }
+
+        @Override
+        public boolean isSatisfied(Binding binding, FunctionEnv env) {
+            return test(binding, env) == TRUE;
+        }
+
+        @Override
+        public Expr getExpr() { return expr; }
+
+        /** Evaluate {@code expr} by the interpreter. */
+        protected static int interpret(Expr expr, Binding binding, FunctionEnv env) {
+            try {
+                return XSDFuncOp.booleanEffectiveValue(expr.eval(binding, env)) ? TRUE : FALSE;
+            } catch (ExprEvalException ex) {
+                return ERROR;
+            }
+        }
+    }
+
+    private static class And extends Test {
+        private final Test left, right;
+
+        And(Expr expr, Test left, Test right) {
+            super(expr);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            // Error && false is false.
+            int x = left.test(binding, env);
+            if ( x == FALSE )
+                return FALSE;
+            int y = right.test(binding, env);
+            if ( y == FALSE )
+                return FALSE;
+            return ( x == ERROR || y == ERROR ) ? ERROR : TRUE;
+        }
+    }
+
+    private static class Or extends Test {
+        private final Test left, right;
+
+        Or(Expr expr, Test left, Test right) {
+            super(expr);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            // Error || true is true.
+            int x = left.test(binding, env);
+            if ( x == TRUE )
+                return TRUE;
+            int y = right.test(binding, env);
+            if ( y == TRUE )
+                return TRUE;
+            return ( x == ERROR || y == ERROR ) ? ERROR : FALSE;
+        }
+    }
+
+    private static class Not extends Test {
+        private final Test sub;
+
+        Not(Expr expr, Test sub) {
+            super(expr);
+            this.sub = sub;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            int x = sub.test(binding, env);
+            if ( x == ERROR )
+                return ERROR;
+            return ( x == TRUE ) ? FALSE : TRUE;
+        }
+    }
+
+    private static class Bound extends Test {
+        private final Var var;
+
+        Bound(Expr expr, Var var) {
+            super(expr);
+            this.var = var;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            return binding.contains(var) ? TRUE : FALSE;
+        }
+    }
+
+    private static class Compare extends Test {
+        private final int op;
+        private final Operand left, right;
+
+        Compare(Expr expr, int op, Operand left, Operand right) {
+            super(expr);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            Node x = left.node(binding);
+            Node y = right.node(binding);
+            if ( x == null || y == null )
+                // Unbound variable.
+                return ERROR;
+            if ( op == OpEQ || op == OpNE ) {
+                int r = NodeCompare.equals(x, y);
+                if ( r == NodeCompare.NoCompare )
+                    return interpret(expr, binding, env);
+                boolean same = ( r == 1 );
+                return ( same == (op == OpEQ) ) ? TRUE : FALSE;
+            }
+            int c = NodeCompare.compare(x, y);
+            if ( c == NodeCompare.NoCompare )
+                return interpret(expr, binding, env);
+            boolean b;
+            switch (op) {
+                case OpLT: b = ( c == Expr.CMP_LESS );      break;
+                case OpLE: b = ( c != Expr.CMP_GREATER );   break;
+                case OpGT: b = ( c == Expr.CMP_GREATER );   break;
+                case OpGE: b = ( c != Expr.CMP_LESS );      break;
+                default:   return interpret(expr, binding, env);
+            }
+            return b ? TRUE : FALSE;
+        }
+    }
+
+    private static class OneOfIRI extends Test {
+        private final Operand operand;
+        private final Set<Node> iris;
+        private final boolean negated;
+
+        OneOfIRI(Expr expr, Operand operand, Set<Node> iris, boolean negated) {
+            super(expr);
+            this.operand = operand;
+            this.iris = iris;
+            this.negated = negated;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            Node x = operand.node(binding);
+            if ( x == null )
+                return ERROR;
+            if ( ! x.isURI() && ! x.isBlank() )
+                return interpret(expr, binding, env);
+            return ( iris.contains(x) != negated ) ? TRUE : FALSE;
+        }
+    }
+
+    /** The effective boolean value of any expression. */
+    private static class EffectiveBooleanValue extends Test {
+        private final CompiledExpr value;
+
+        EffectiveBooleanValue(CompiledExpr value) {
+            super(value.getExpr());
+            this.value = value;
+        }
+
+        @Override
+        int test(Binding binding, FunctionEnv env) {
+            try {
+                return XSDFuncOp.booleanEffectiveValue(value.eval(binding, env)) ? TRUE : FALSE;
+            } catch (ExprEvalException ex) {
+                return ERROR;
+            }
+        }
+    }
+
+    /** Expressions evaluated to a {@code NodeValue}. */
+    private static abstract class Value implements CompiledExpr {
+        protected final Expr expr;
+
+        Value(Expr expr) { this.expr = expr; }
+
+        @Override
+        public boolean isSatisfied(Binding binding, FunctionEnv env) {
+            try {
+                return XSDFuncOp.booleanEffectiveValue(eval(binding, env));
+            } catch (ExprEvalException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        public Expr getExpr() { return expr; }
+    }
+
+    private static class Constant extends Value {
+        private final NodeValue nv;
+
+        Constant(Expr expr) {
+            super(expr);
+            this.nv = expr.getConstant();
+        }
+
+        @Override
+        public NodeValue eval(Binding binding, FunctionEnv env) {
+            return nv;
+        }
+    }
+
+    private static class Arithmetic extends Value {
+        private final int op;
+        private final Operand left, right;
+
+        Arithmetic(Expr expr, int op, Operand left, Operand right) {
+            super(expr);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public NodeValue eval(Binding binding, FunctionEnv env) {
+            Node x = left.node(binding);
+            Node y = right.node(binding);
+            if ( x != null && y != null && x.isLiteral() && y.isLiteral() ) {
+                if ( isType(x, XSDDatatype.XSDinteger) && isType(y, XSDDatatype.XSDinteger) ) {
+                    Object vx = x.getLiteralValue();
+                    Object vy = y.getLiteralValue();
+                    if ( ( vx instanceof Integer || vx instanceof Long ) && ( vy instanceof Integer || vy instanceof Long ) ) {
+                        long a = ((Number)vx).longValue();
+                        long b = ((Number)vy).longValue();
+                        try {
+                            switch (op) {
+                                case OpAdd: return NodeValue.makeInteger(Math.addExact(a, b));
+                                case OpSub: return NodeValue.makeInteger(Math.subtractExact(a, b));
+                                case OpMul: return NodeValue.makeInteger(Math.multiplyExact(a, b));
+                            }
+                        } catch (ArithmeticException ex) { /* Overflow: use BigIntegers. */ }
+                    }
+                } else if ( isType(x, XSDDatatype.XSDdouble) && isType(y, XSDDatatype.XSDdouble) ) {
+                    double a = ((Number)x.getLiteralValue()).doubleValue();
+                    double b = ((Number)y.getLiteralValue()).doubleValue();
+                    switch (op) {
+                        case OpAdd: return NodeValue.makeDouble(a + b);
+                        case OpSub: return NodeValue.makeDouble(a - b);
+                        case OpMul: return NodeValue.makeDouble(a * b);
+                    }
+                }
+            }
+            return expr.eval(binding, env);
+        }
+
+        private static boolean isType(Node n, XSDDatatype dt) {
+            return n.getLiteralDatatype() == dt && n.getLiteral().isWellFormed();
+        }
+    }
+
+    /** Evaluation by the expression itself. */
+    private static class Interpreted extends Value {
+        Interpreted(Expr expr) { super(expr); }
+
+        @Override
+        public NodeValue eval(Binding binding, FunctionEnv env) {
+            return expr.eval(binding, env);
+        }
+
+        @Override
+        public boolean isSatisfied(Binding binding, FunctionEnv env) {
+            return expr.isSatisfied(binding, env);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.expr.compile;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.impl.LiteralLabel;
+import org.apache.jena.sparql.expr.Expr;
+
+/**
+ * Comparison of RDF terms, directly on the {@link Node}, for the common cases of
+ * numbers, dateTimes with timezones, and strings. The value of a literal is taken
+ * from the {@link LiteralLabel}, where it is calculated once.
+ * <p>
+ * The results are those of {@link org.apache.jena.sparql.expr.NodeValue#compare};
+ * any other case, including errors, returns {@link #NoCompare} and the caller uses
+ * the general code.
+ */
+class NodeCompare {
+    /** Returned when the comparison is not a case handled here. */
+    static final int NoCompare = Integer.MIN_VALUE;
+
+    // Kinds of value, in numeric promotion order.
+    private static final int K_OTHER    = 0;
+    private static final int K_INTEGER  = 1;
+    private static final int K_DECIMAL  = 2;
+    private static final int K_FLOAT    = 3;
+    private static final int K_DOUBLE   = 4;
+    private static final int K_DATETIME = 5;
+    private static final int K_STRING   = 6;
+
+    private static final Set<RDFDatatype> integerTypes = new HashSet<>();
+    static {
+        integerTypes.add(XSDDatatype.XSDinteger);
+        integerTypes.add(XSDDatatype.XSDlong);
+        integerTypes.add(XSDDatatype.XSDint);
+        integerTypes.add(XSDDatatype.XSDshort);
+        integerTypes.add(XSDDatatype.XSDbyte);
+        integerTypes.add(XSDDatatype.XSDnonNegativeInteger);
+        integerTypes.add(XSDDatatype.XSDnonPositiveInteger);
+        integerTypes.add(XSDDatatype.XSDpositiveInteger);
+        integerTypes.add(XSDDatatype.XSDnegativeInteger);
+        integerTypes.add(XSDDatatype.XSDunsignedLong);
+        integerTypes.add(XSDDatatype.XSDunsignedInt);
+        integerTypes.add(XSDDatatype.XSDunsignedShort);
+        integerTypes.add(XSDDatatype.XSDunsignedByte);
+    }
+
+    /**
+     * Compare two nodes as values, returning one of {@link Expr#CMP_LESS},
+     * {@link Expr#CMP_EQUAL}, {@link Expr#CMP_GREATER}, or {@link #NoCompare}.
+     */
+    static int compare(Node x, Node y) {
+        int kx = kind(x);
+        if ( kx == K_OTHER )
+            return NoCompare;
+        int ky = kind(y);
+        if ( ky == K_OTHER )
+            return NoCompare;
+        if ( kx == K_STRING || ky == K_STRING ) {
+            if ( kx != ky )
+                return NoCompare;
+            return result(x.getLiteralLexicalForm().compareTo(y.getLiteralLexicalForm()));
+        }
+        if ( kx == K_DATETIME || ky == K_DATETIME ) {
+            if ( kx != ky )
+                return NoCompare;
+            return compareDateTime(x, y);
+        }
+        return compareNumbers(Math.max(kx, ky), (Number)x.getLiteralValue(), (Number)y.getLiteralValue());
+    }
+
+    /**
+     * Test whether two nodes are equal as values ({@code =}), returning 1 (true),
+     * 0 (false) or {@link #NoCompare}.
+     * IRIs and blank nodes are equal only if they are the same term.
+     */
+    static int equals(Node x, Node y) {
+        if ( isResource(x) && isResource(y) )
+            return x.equals(y) ? 1 : 0;
+        int c = compare(x, y);
+        if ( c == NoCompare )
+            return NoCompare;
+        return ( c == Expr.CMP_EQUAL ) ? 1 : 0;
+    }
+
+    private static boolean isResource(Node n) {
+        return n.isURI() || n.isBlank();
+    }
+
+    private static int kind(Node n) {
+        if ( ! n.isLiteral() )
+            return K_OTHER;
+        RDFDatatype dt = n.getLiteralDatatype();
+        if ( dt == XSDDatatype.XSDstring )
+            return K_STRING;
+        if ( ! n.getLiteral().isWellFormed() )
+            return K_OTHER;
+        if ( integerTypes.contains(dt) )
+            return K_INTEGER;
+        if ( dt == XSDDatatype.XSDdecimal )
+            return K_DECIMAL;
+        if ( dt == XSDDatatype.XSDdouble )
+            return K_DOUBLE;
+        if ( dt == XSDDatatype.XSDfloat )
+            return K_FLOAT;
+        if ( ( dt == XSDDatatype.XSDdateTime || dt == XSDDatatype.XSDdateTimeStamp ) && simpleDateTime(n.getLiteralLexicalForm()) )
+            return K_DATETIME;
+        return K_OTHER;
+    }
+
+    private static int compareNumbers(int kind, Number x, Number y) {
+        switch (kind) {
+            case K_INTEGER:
+                if ( isLong(x) && isLong(y) )
+                    return result(Long.compare(x.longValue(), y.longValue()));
+                return result(bigInteger(x).compareTo(bigInteger(y)));
+            case K_DECIMAL:
+                return result(bigDecimal(x).compareTo(bigDecimal(y)));
+            case K_FLOAT:
+                return result(Float.compare(x.floatValue(), y.floatValue()));
+            case K_DOUBLE:
+                return result(Double.compare(x.doubleValue(), y.doubleValue()));
+            default:
+                return NoCompare;
+        }
+    }
+
+    private static boolean isLong(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    private static BigInteger bigInteger(Number n) {
+        if ( n instanceof BigInteger )
+            return (BigInteger)n;
+        return BigInteger.valueOf(n.longValue());
+    }
+
+    private static BigDecimal bigDecimal(Number n) {
+        if ( n instanceof BigDecimal )
+            return (BigDecimal)n;
+        if ( n instanceof BigInteger )
+            return new BigDecimal((BigInteger)n);
+        return BigDecimal.valueOf(n.longValue());
+    }
+
+    // Both have a timezone so the order is determinate.
+    private static int compareDateTime(Node x, Node y) {
+        Object vx = x.getLiteralValue();
+        Object vy = y.getLiteralValue();
+        if ( !(vx instanceof XSDDateTime) || !(vy instanceof XSDDateTime) )
+            return NoCompare;
+        int c = ((XSDDateTime)vx).compare((XSDDateTime)vy);
+        switch (c) {
+            case XSDDateTime.LESS_THAN:     return Expr.CMP_LESS;
+            case XSDDateTime.EQUAL:         return Expr.CMP_EQUAL;
+            case XSDDateTime.GREATER_THAN:  return Expr.CMP_GREATER;
+            default:                        return NoCompare;
+        }
+    }
+
+    /**
+     * A dateTime with a timezone, a four digit year and at most nine digits of
+     * fractional seconds.
+     */
+    private static boolean simpleDateTime(String lex) {
+        int len = lex.length();
+        // yyyy-mm-ddThh:mm:ssZ
+        if ( len < 20 || lex.charAt(4) != '-' )
+            return false;
+        boolean timezone = lex.charAt(len - 1) == 'Z' ||
+            ( len >= 25 && lex.charAt(len - 3) == ':' && ( lex.charAt(len - 6) == '+' || lex.charAt(len - 6) == '-' ) );
+        if ( ! timezone )
+            return false;
+        int dot = lex.indexOf('.');
+        if ( dot < 0 )
+            return true;
+        int i = dot + 1;
+        while ( i < len && Character.isDigit(lex.charAt(i)) )
+            i++;
+        return i - dot - 1 <= 9;
+    }
+
+    private static int result(int x) {
+        if ( x < 0 )
+            return Expr.CMP_LESS;
+        if ( x > 0 )
+            return Expr.CMP_GREATER;
+        return Expr.CMP_EQUAL;
+    }
+}
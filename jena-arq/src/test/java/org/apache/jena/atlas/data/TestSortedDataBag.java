@@ -47,7 +47,44 @@ public class TestSortedDataBag
         testSorting(500, 10);
     }
 
+    @Test public void testSortingParallel()
+    {
+        // In memory, above the parallel sort threshold.
+        testSorting(20000, 100000, true, false);
+    }
+
+    @Test public void testSortingAsyncSpill()
+    {
+        testSorting(500, 10, false, true);
+        testSorting(1000, 7, true, true);
+    }
+
+    @Test public void testSortingParallelAsyncSpill()
+    {
+        // Spills above the parallel sort threshold.
+        testSorting(30000, 10000, true, true);
+    }
+
+    @Test public void testSortingWithPreMergeAsyncSpill()
+    {
+        int origMaxSpillFiles = SortedDataBag.MAX_SPILL_FILES;
+        try
+        {
+            SortedDataBag.MAX_SPILL_FILES = 3;    testSorting(1000, 10, true, true);
+            SortedDataBag.MAX_SPILL_FILES = 7;    testSorting(500, 9, true, true);
+        }
+        finally
+        {
+            SortedDataBag.MAX_SPILL_FILES = origMaxSpillFiles;
+        }
+    }
+
     private void testSorting(int numBindings, int threshold)
+    {
+        testSorting(numBindings, threshold, false, false);
+    }
+
+    private void testSorting(int numBindings, int threshold, boolean parallelSort, boolean asyncSpill)
     {
         List<Binding> unsorted = randomBindings(numBindings);
 
@@ -63,6 +100,8 @@ public class TestSortedDataBag
                 new ThresholdPolicyCount<Binding>(threshold),
                 SerializationFactoryFinder.bindingSerializationFactory(),
                 comparator);
+        db.setParallelSort(parallelSort);
+        db.setAsyncSpill(asyncSpill);
         try
         {
             db.addAll(unsorted);
@@ -36,6 +36,7 @@ import org.junit.runners.Suite ;
     , TestTransformPromoteTableEmpty.class
     , TestTransformEliminateAssignments.class
     , TestTransformTopN.class
+    , TestTransformJoinOrder.class
     , TestOptimizer.class
 })
 
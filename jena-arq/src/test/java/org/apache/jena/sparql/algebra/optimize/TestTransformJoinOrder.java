@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.atlas.lib.StrUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
+import org.apache.jena.sparql.engine.optimizer.PredicateStats;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+
+public class TestTransformJoinOrder extends AbstractTestTransform {
+
+    private static String statsBase = StrUtils.strjoinNL
+        ("(stats (meta (count 1000))"
+        ,"  (<http://example/big> 900)"
+        ,"  (<http://example/small> 10)"
+        ,"  (<http://example/age> 90)"
+        ,"  (other 0)"
+        );
+
+    private static String statsPredicates = StrUtils.strjoinNL
+        ("  (predicates"
+        ,"     (<http://example/big> (count 900) (subjects 300) (objects 900))"
+        ,"     (<http://example/small> (count 10) (subjects 10) (objects 5))"
+        ,"     (<http://example/age> (count 90) (subjects 90) (objects 50) (histogram 0 10 20 30 40 50 60 70 80 90))"
+        ,"  ))"
+        );
+
+    private static Item stats = SSE.parse(statsBase + statsPredicates);
+    private static CardinalityEstimator estimator = CardinalityEstimator.create(stats);
+
+    private static void testJoin(String input, String... output) {
+        AbstractTestTransform t = new AbstractTestTransform() {};
+        t.testOp(input, new TransformJoinOrder(estimator), output);
+    }
+
+    @Test public void joinOrder_01() {
+        testJoin("(join (bgp (?s <http://example/big> ?o)) (bgp (?s <http://example/small> ?x)))",
+                 "(join (bgp (?s <http://example/small> ?x)) (bgp (?s <http://example/big> ?o)))");
+    }
+
+    @Test public void joinOrder_02() {
+        // Already in order.
+        testJoin("(join (bgp (?s <http://example/small> ?x)) (bgp (?s <http://example/big> ?o)))",
+                 (String[])null);
+    }
+
+    @Test public void joinOrder_03() {
+        // Avoid the cross product.
+        testJoin(StrUtils.strjoinNL
+                 ("(join"
+                 ,"  (join (bgp (?a <http://example/small> ?b)) (bgp (?c <http://example/big> ?d)))"
+                 ,"  (bgp (?b <http://example/big> ?c)))"),
+                 StrUtils.strjoinNL
+                 ("(join"
+                 ,"  (join (bgp (?a <http://example/small> ?b)) (bgp (?b <http://example/big> ?c)))"
+                 ,"  (bgp (?c <http://example/big> ?d)))"));
+    }
+
+    @Test public void joinOrder_04() {
+        // No estimate for SERVICE - unchanged.
+        testJoin("(join (bgp (?s <http://example/big> ?o)) (service <http://example/sparql> (bgp (?s <http://example/small> ?x))))",
+                 (String[])null);
+    }
+
+    @Test public void joinOrder_05() {
+        // OPTIONAL is a unit.
+        testJoin(StrUtils.strjoinNL
+                 ("(join"
+                 ,"  (leftjoin (bgp (?s <http://example/big> ?o)) (bgp (?o <http://example/small> ?z)))"
+                 ,"  (bgp (?s <http://example/small> ?x)))"),
+                 StrUtils.strjoinNL
+                 ("(join"
+                 ,"  (bgp (?s <http://example/small> ?x))"
+                 ,"  (leftjoin (bgp (?s <http://example/big> ?o)) (bgp (?o <http://example/small> ?z))))"));
+    }
+
+    @Test public void estimate_bgp_01() {
+        assertEquals(900, estimate("(bgp (?s <http://example/big> ?o))"), 0.001);
+    }
+
+    @Test public void estimate_bgp_02() {
+        // 10 rows of small, 900/300 = 3 rows of big for each subject.
+        assertEquals(30, estimate("(bgp (?s <http://example/big> ?o) (?s <http://example/small> ?x))"), 0.001);
+    }
+
+    @Test public void estimate_bgp_03() {
+        // Not in the statistics.
+        assertEquals(1, estimate("(bgp (?s <http://example/other> ?o))"), 0.001);
+    }
+
+    @Test public void estimate_filter_eq() {
+        assertEquals(2, estimate("(filter (= ?x 1) (bgp (?s <http://example/small> ?x)))"), 0.001);
+    }
+
+    @Test public void estimate_filter_range_01() {
+        assertEquals(30, estimate("(filter (< ?age 30) (bgp (?s <http://example/age> ?age)))"), 0.001);
+    }
+
+    @Test public void estimate_filter_range_02() {
+        assertEquals(60, estimate("(filter (< 30 ?age) (bgp (?s <http://example/age> ?age)))"), 0.001);
+    }
+
+    @Test public void estimate_filter_range_03() {
+        // No histogram.
+        assertEquals(300, estimate("(filter (> ?o 30) (bgp (?s <http://example/big> ?o)))"), 0.001);
+    }
+
+    @Test public void estimate_unknown() {
+        assertEquals(-1, estimate("(service <http://example/sparql> (bgp (?s ?p ?o)))"), 0.001);
+    }
+
+    @Test public void estimate_triple_bound() {
+        Triple t = SSE.parseTriple("(?s <http://example/big> ?o)");
+        Var s = Var.alloc("s");
+        assertEquals(3, estimator.estimate(t, java.util.Collections.singleton(s)), 0.001);
+    }
+
+    @Test public void stats_format() {
+        Map<Node, PredicateStats> map = new HashMap<>();
+        Node p = NodeFactory.createURI("http://example/p");
+        map.put(p, new PredicateStats(100, 10, 20, new double[] {1, 5, 9}));
+        Item item = SSE.parse("(stats (meta (count 100)))");
+        item.getList().add(CardinalityEstimator.format(map));
+        PredicateStats ps = CardinalityEstimator.create(item).getStats(p);
+        assertEquals(100, ps.getCount());
+        assertEquals(10, ps.getDistinctSubjects());
+        assertEquals(20, ps.getDistinctObjects());
+        assertEquals(0.5, ps.fractionBelow(5), 0.001);
+    }
+
+    @Test public void stats_noPredicates() {
+        assertNull(CardinalityEstimator.create(SSE.parse(statsBase + ")")));
+    }
+
+    @Test public void stats_matcher() {
+        // The predicates section does not change the BGP reorder weights.
+        StatsMatcher m1 = new StatsMatcher(SSE.parse(statsBase + ")"));
+        StatsMatcher m2 = new StatsMatcher(stats);
+        Triple t = SSE.parseTriple("(?s <http://example/big> ?o)");
+        assertEquals(m1.match(t), m2.match(t), 0.001);
+    }
+
+    private static double estimate(String string) {
+        Op op = SSE.parseOp(string);
+        return estimator.estimate(op);
+    }
+}
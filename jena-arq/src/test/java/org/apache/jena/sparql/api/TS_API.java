@@ -26,6 +26,7 @@ import org.junit.runners.Suite.SuiteClasses ;
 @SuiteClasses( {
     TestAPI.class
     , TestQueryExecutionCancel.class
+    , TestQueryExecutionAsync.class
     , TestQueryExecutionTimeout1.class
     , TestQueryExecutionTimeout2.class
 })
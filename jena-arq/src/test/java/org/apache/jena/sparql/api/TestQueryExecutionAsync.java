@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.sparql.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.apache.jena.sparql.function.library.wait;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestQueryExecutionAsync {
+
+    private static final String ns = "http://example/ns#";
+    private static final String PREFIXES = "PREFIX ex: <" + ns + ">\n";
+
+    static Model m = GraphFactory.makeJenaDefaultModel();
+    static Property p = m.createProperty(ns+"p");
+    static {
+        for ( int i = 0 ; i < 20 ; i++ )
+            m.addLiteral(m.createResource(ns+"s"+i), p, i);
+    }
+
+    @BeforeClass public static void beforeClass() { FunctionRegistry.get().put(ns + "wait", wait.class); }
+    @AfterClass  public static void afterClass() { FunctionRegistry.get().remove(ns + "wait"); }
+
+    @Test public void async_select() throws Exception {
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o }");
+        ResultSetRewindable rs = QueryExecutionAsync.select(qExec).get(5, TimeUnit.SECONDS);
+        assertEquals(20, rs.size());
+        assertTrue(qExec.isClosed());
+    }
+
+    @Test public void async_construct() throws Exception {
+        QueryExecution qExec = makeQExec("CONSTRUCT { ?s ex:q ?o } WHERE { ?s ex:p ?o FILTER(?o < 5) }");
+        Model model = QueryExecutionAsync.construct(qExec).get(5, TimeUnit.SECONDS);
+        assertEquals(5, model.size());
+    }
+
+    @Test public void async_ask() throws Exception {
+        QueryExecution qExec = makeQExec("ASK { ?s ex:p 10 }");
+        assertTrue(QueryExecutionAsync.ask(qExec).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test public void async_executor() throws Exception {
+        // Run on the calling thread.
+        QueryExecution qExec = makeQExec("ASK { ?s ex:p 99 }");
+        CompletableFuture<Boolean> future = QueryExecutionAsync.ask(qExec, Runnable::run);
+        assertTrue(future.isDone());
+        assertFalse(future.get());
+    }
+
+    @Test public void async_error() throws Exception {
+        QueryExecution qExec = makeQExec("ASK { ?s ex:p 99 }");
+        CompletableFuture<ResultSetRewindable> future = QueryExecutionAsync.select(qExec);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof QueryExecException);
+            return;
+        }
+        throw new AssertionError("No exception");
+    }
+
+    @Test public void async_cancel() throws Exception {
+        // 20 rows at 100ms each if not cancelled. The argument is not a constant so it is called for each row.
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o FILTER ex:wait(?o - ?o + 100) }");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<ResultSetRewindable> future = QueryExecutionAsync.select(qExec, executor);
+        Thread.sleep(150);
+        future.cancel(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+        assertTrue(qExec.isClosed());
+    }
+
+    @Test public void publisher_select() throws Exception {
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o }");
+        Collector<QuerySolution> collector = new Collector<>(3);
+        QueryExecutionAsync.selectPublisher(qExec).subscribe(collector);
+        assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        assertEquals(20, collector.items.size());
+        assertEquals(null, collector.error);
+    }
+
+    @Test public void publisher_construct() throws Exception {
+        QueryExecution qExec = makeQExec("CONSTRUCT { ?s ex:q ?o } WHERE { ?s ex:p ?o FILTER(?o < 5) }");
+        Collector<Triple> collector = new Collector<>(1);
+        QueryExecutionAsync.constructPublisher(qExec).subscribe(collector);
+        assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        assertEquals(5, collector.items.size());
+    }
+
+    @Test public void publisher_cancel() throws Exception {
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o }");
+        Collector<QuerySolution> collector = new Collector<>(1);
+        collector.cancelAfter = 4;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        QueryExecutionAsync.selectPublisher(qExec, executor).subscribe(collector);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(4, collector.items.size());
+        // Neither onComplete nor onError after cancel.
+        assertEquals(1, collector.done.getCount());
+        assertTrue(qExec.isClosed());
+    }
+
+    @Test public void publisher_exactDemand() throws Exception {
+        // Request exactly the number of rows, once: completes without further demand.
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o }");
+        Collector<QuerySolution> collector = new Collector<>(20);
+        collector.requestMore = false;
+        QueryExecutionAsync.selectPublisher(qExec).subscribe(collector);
+        assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        assertEquals(20, collector.items.size());
+        assertEquals(null, collector.error);
+        assertTrue(qExec.isClosed());
+    }
+
+    @Test public void publisher_empty() throws Exception {
+        // No demand at all: an empty result still completes.
+        QueryExecution qExec = makeQExec("SELECT * { ?s ex:p 99 }");
+        Collector<QuerySolution> collector = new Collector<>(0);
+        QueryExecutionAsync.selectPublisher(qExec).subscribe(collector);
+        assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, collector.items.size());
+        assertEquals(null, collector.error);
+        assertTrue(qExec.isClosed());
+    }
+
+    @Test public void publisher_subscribeTwice() throws Exception {
+        QueryExecution qExec = makeQExec("SELECT * { ?s ?p ?o }");
+        Flow.Publisher<QuerySolution> publisher = QueryExecutionAsync.selectPublisher(qExec);
+        Collector<QuerySolution> collector1 = new Collector<>(100);
+        Collector<QuerySolution> collector2 = new Collector<>(100);
+        publisher.subscribe(collector1);
+        publisher.subscribe(collector2);
+        assertTrue(collector1.done.await(5, TimeUnit.SECONDS));
+        assertTrue(collector2.done.await(5, TimeUnit.SECONDS));
+        assertEquals(20, collector1.items.size());
+        assertTrue(collector2.error instanceof IllegalStateException);
+    }
+
+    private static QueryExecution makeQExec(String queryString) {
+        Query q = QueryFactory.create(PREFIXES + queryString);
+        return QueryExecutionFactory.create(q, m);
+    }
+
+    /** Request in batches, or only once; optionally cancel after a number of items. */
+    static class Collector<T> implements Flow.Subscriber<T> {
+        final List<T> items = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final int batchSize;
+        int cancelAfter = -1;
+        boolean requestMore = true;
+        volatile Throwable error = null;
+        private Flow.Subscription subscription;
+        private int outstanding = 0;
+
+        Collector(int batchSize) { this.batchSize = batchSize; }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            outstanding = batchSize;
+            if ( batchSize > 0 )
+                subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            if ( items.size() == cancelAfter ) {
+                subscription.cancel();
+                return;
+            }
+            if ( --outstanding == 0 && requestMore ) {
+                outstanding = batchSize;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -19,10 +19,12 @@
 package org.apache.jena.sparql.engine;
 
 import org.apache.jena.sparql.engine.binding.TestBinding;
+import org.apache.jena.sparql.engine.binding.TestBindingArray;
 import org.apache.jena.sparql.engine.binding.TestBindingStreams ;
 import org.apache.jena.sparql.engine.binding.TestItr;
 import org.apache.jena.sparql.engine.http.TestQueryEngineHTTP ;
 import org.apache.jena.sparql.engine.http.TestService ;
+import org.apache.jena.sparql.engine.http.TestServiceBulk ;
 import org.apache.jena.sparql.engine.ref.TestTableJoin ;
 import org.junit.runner.RunWith ;
 import org.junit.runners.Suite ;
@@ -31,14 +33,20 @@ import org.junit.runners.Suite ;
 @Suite.SuiteClasses( {
         TestItr.class
       , TestBinding.class
+      , TestBindingArray.class
       , TestBindingStreams.class
 
       , TestTableJoin.class
 
       , TestService.class
+      , TestServiceBulk.class
       , TestQueryEngineHTTP.class
 
       , TestQueryEngineMultiThreaded.class
+      , TestParallelExecution.class
+      , TestPlanCache.class
+      , TestExecutionProfile.class
+      , TestSharedSubplans.class
       , TestJsonIterator.class
       , TestJsonEval.class
 })
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpLabel;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.main.ExecutionProfile;
+import org.apache.jena.sparql.engine.main.ExecutionProfile.OpStats;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** Tests for {@link ExecutionProfile} */
+public class TestExecutionProfile {
+    private static final String PREFIX = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph data() {
+        DatasetGraph dsg = DatasetGraphFactory.create();
+        for ( int i = 1 ; i <= 10 ; i++ )
+            dsg.add(SSE.parseQuad("(_ :s"+i+" :p "+i+")"));
+        dsg.add(SSE.parseQuad("(_ :s1 :q 'a')"));
+        dsg.add(SSE.parseQuad("(_ :s2 :q 'b')"));
+        return dsg;
+    }
+
+    private static ExecutionProfile exec(String queryString, Context cxt) {
+        ExecutionProfile profile = new ExecutionProfile();
+        cxt.set(ARQ.executionProfile, profile);
+        try ( QueryExecution qExec = QueryExecution.create().query(PREFIX+queryString).dataset(data()).context(cxt).build() ) {
+            ResultSetFormatter.consume(qExec.execSelect());
+        }
+        return profile;
+    }
+
+    private static ExecutionProfile exec(String queryString) {
+        return exec(queryString, new Context());
+    }
+
+    private static OpStats find(OpStats stats, String name) {
+        if ( stats.getOp().getName().equals(name) )
+            return stats;
+        for ( OpStats child : stats.getChildren() ) {
+            OpStats x = find(child, name);
+            if ( x != null )
+                return x;
+        }
+        return null;
+    }
+
+    @Test public void profile_none() {
+        ExecutionProfile profile = new ExecutionProfile();
+        assertNull(profile.getRoot());
+        assertNull(profile.annotatedOp());
+        assertEquals("", profile.asSSE());
+    }
+
+    @Test public void profile_rows() {
+        ExecutionProfile profile = exec("SELECT ?o { ?s :p ?o FILTER(?o > 3) }");
+        OpStats root = profile.getRoot();
+        assertNotNull(root);
+        assertEquals(1, root.getOpens());
+        assertEquals(7, root.getRowsOut());
+        OpStats filter = find(root, "filter");
+        assertNotNull(filter);
+        assertEquals(7, filter.getRowsOut());
+        OpStats bgp = find(root, "bgp");
+        assertEquals(10, bgp.getRowsOut());
+        assertTrue(root.getWallNanos() >= bgp.getWallNanos());
+    }
+
+    @Test public void profile_exists() {
+        // The pattern of NOT EXISTS is not part of the plan.
+        ExecutionProfile profile = exec("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :q ?x } }");
+        OpStats root = profile.getRoot();
+        assertEquals(8, root.getRowsOut());
+        OpStats bgp = find(root, "bgp");
+        assertEquals(1, bgp.getOpens());
+        assertEquals(10, bgp.getRowsOut());
+    }
+
+    @Test public void profile_substitution() {
+        // OPTIONAL with a filter is executed by substitution:
+        // the right hand side is executed once for each row of the left.
+        Context cxt = new Context();
+        ExecutionProfile profile = exec("SELECT * { ?s :p ?o OPTIONAL { ?s :q ?x FILTER(?o < 2) } }", cxt);
+        OpStats root = profile.getRoot();
+        assertEquals(10, root.getRowsOut());
+        OpStats right = root;
+        while ( ! right.getChildren().isEmpty() )
+            right = right.getChildren().get(right.getChildren().size()-1);
+        assertEquals(10, right.getOpens());
+    }
+
+    @Test public void profile_spill() {
+        Context cxt = new Context();
+        cxt.set(ARQ.spillToDiskThreshold, 2L);
+        ExecutionProfile profile = exec("SELECT ?o { ?s :p ?o } ORDER BY DESC(?o)", cxt);
+        OpStats order = find(profile.getRoot(), "order");
+        assertNotNull(order);
+        assertEquals(10, order.getRowsOut());
+        assertTrue(order.getSpills() > 0);
+        assertEquals(0, find(profile.getRoot(), "bgp").getSpills());
+    }
+
+    @Test public void profile_sse() {
+        ExecutionProfile profile = exec("SELECT ?o { ?s :p ?o FILTER(?o > 3) }");
+        Op op = profile.annotatedOp();
+        assertTrue(op instanceof OpLabel);
+        assertTrue(profile.asSSE().contains("rows=7"));
+        // Valid SSE.
+        Op op2 = SSE.parseOp(profile.asSSE());
+        assertEquals(op, op2);
+    }
+
+    @Test public void profile_json() {
+        ExecutionProfile profile = exec("SELECT ?o { ?s :p ?o FILTER(?o > 3) }");
+        JsonObject obj = profile.asJson();
+        assertEquals(7, obj.get("rowsOut").getAsNumber().value().intValue());
+        assertEquals(1, obj.get("opens").getAsNumber().value().intValue());
+        assertTrue(obj.hasKey("children"));
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.main.ParallelExecution;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.engine.main.iterator.QueryIterParallelConcat;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.system.Txn;
+import org.junit.Test;
+
+/** Tests for {@link ARQ#parallelExecution} */
+public class TestParallelExecution {
+    private static final String PREFIX = "PREFIX : <http://example/>\n";
+    private static Var var_x = Var.alloc("x");
+
+    private static Model data() {
+        Model model = ModelFactory.createDefaultModel();
+        Property p = model.createProperty("http://example/p");
+        Property q = model.createProperty("http://example/q");
+        for ( int i = 0 ; i < 2000 ; i++ ) {
+            Resource r = model.createResource("http://example/s" + i);
+            r.addLiteral(p, i);
+            if ( i % 3 == 0 )
+                r.addLiteral(q, i);
+        }
+        return model;
+    }
+
+    @Test public void parallel_union_1() {
+        testOrdered(PREFIX + "SELECT * { { ?s :p ?o } UNION { ?s :q ?o } UNION { ?s :p ?o FILTER(?o < 10) } }");
+    }
+
+    @Test public void parallel_union_2() {
+        testUnordered(PREFIX + "SELECT ?o (count(*) AS ?c) { { ?s :p ?o } UNION { ?s :q ?o } } GROUP BY ?o");
+    }
+
+    @Test public void parallel_union_3() {
+        testUnordered(PREFIX + "SELECT DISTINCT ?o { { ?s :p ?o } UNION { ?s :q ?o } UNION { ?s :q ?o } }");
+    }
+
+    @Test public void parallel_union_4() {
+        testOrdered(PREFIX + "SELECT * { { ?s :p ?o } UNION { ?s :q ?o } } LIMIT 5");
+    }
+
+    @Test public void parallel_union_5() {
+        // Nested union.
+        testOrdered(PREFIX + "SELECT * { { ?s :p ?o } UNION { { ?s :q ?o } UNION { ?s :q ?o FILTER(?o > 1900) } } }");
+    }
+
+    @Test public void parallel_join_1() {
+        testUnordered(PREFIX + "SELECT * { { ?s :p ?o } { SELECT ?s { ?s :q ?z } LIMIT 100 } }");
+    }
+
+    @Test public void parallel_tracking() {
+        // Iterators are created and closed on worker threads.
+        DatasetGraph dsg = DatasetGraphFactory.wrap(data().getGraph());
+        // Each OPTIONAL creates and closes an iterator for each row on the left.
+        String branch = "{ ?s :q ?o OPTIONAL { ?s :p ?z } }";
+        String qs = PREFIX + "SELECT * { "+branch+" UNION "+branch+" UNION "+branch+" UNION { "+branch+" { ?s :p ?w } } }";
+        Op op = Algebra.optimize(Algebra.compile(QueryFactory.create(qs)));
+        for ( int i = 0 ; i < 20 ; i++ ) {
+            Context cxt = ARQ.getContext().copy();
+            cxt.set(ARQ.parallelExecution, true);
+            ExecutionContext execCxt = new ExecutionContext(cxt, dsg.getDefaultGraph(), dsg, QC.getFactory(cxt));
+            QueryIterator qIter = QC.execute(op, BindingRoot.create(), execCxt);
+            assertEquals(4 * 667, Iter.count(qIter));
+            qIter.close();
+            assertFalse(execCxt.listOpenIterators().hasNext());
+        }
+    }
+
+    @Test public void parallel_txn_1() {
+        // Transactional dataset: sequential execution.
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg, ()->GraphUtil.addInto(dsg.getDefaultGraph(), data().getGraph()));
+        Txn.executeRead(dsg, ()->{
+            Dataset ds = DatasetFactory.wrap(dsg);
+            String qs = PREFIX + "SELECT * { { ?s :p ?o } UNION { ?s :q ?o } }";
+            ResultSetRewindable rs1 = run(ds, qs, false);
+            ResultSetRewindable rs2 = run(ds, qs, true);
+            assertEquals(2667, rs1.size());
+            assertTrue(ResultSetCompare.equalsByTermAndOrder(rs1, rs2));
+        });
+    }
+
+    @Test public void parallel_concat_1() {
+        ExecutionContext execCxt = execCxt();
+        List<Supplier<QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            int base = 100 * i;
+            branches.add(()->iterator(base, 50, execCxt));
+        }
+        QueryIterator qIter = new QueryIterParallelConcat(branches, true, ParallelExecution.noSetup, execCxt);
+        List<Binding> results = Iter.toList(qIter);
+        assertEquals(250, results.size());
+        for ( int i = 0 ; i < 5 ; i++ )
+            for ( int j = 0 ; j < 50 ; j++ )
+                assertEquals(binding(100 * i + j), results.get(50 * i + j));
+    }
+
+    @Test public void parallel_concat_2() {
+        ExecutionContext execCxt = execCxt();
+        List<Supplier<QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 8 ; i++ ) {
+            int base = 10000 * i;
+            branches.add(()->iterator(base, 5000, execCxt));
+        }
+        QueryIterator qIter = new QueryIterParallelConcat(branches, false, ParallelExecution.noSetup, execCxt);
+        assertEquals(40000, Iter.count(qIter));
+    }
+
+    @Test public void parallel_concat_tracking() {
+        // Branches create and close many iterators on the shared execution context.
+        ExecutionContext execCxt = execCxt();
+        List<Supplier<QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 4 ; i++ ) {
+            int base = 100 * i;
+            branches.add(()->{
+                for ( int j = 0 ; j < 50_000 ; j++ )
+                    iterator(j, 1, execCxt).close();
+                return iterator(base, 10, execCxt);
+            });
+        }
+        QueryIterator qIter = new QueryIterParallelConcat(branches, false, ParallelExecution.noSetup, execCxt);
+        assertEquals(40, Iter.count(qIter));
+        qIter.close();
+        assertFalse(execCxt.listOpenIterators().hasNext());
+    }
+
+    @Test public void parallel_concat_error() {
+        ExecutionContext execCxt = execCxt();
+        List<Supplier<QueryIterator>> branches = Arrays.asList(()->iterator(0, 10, execCxt),
+                                                               ()->{ throw new QueryExecException("Branch"); });
+        QueryIterator qIter = new QueryIterParallelConcat(branches, true, ParallelExecution.noSetup, execCxt);
+        try {
+            Iter.count(qIter);
+            fail("Expected exception");
+        } catch (QueryExecException ex) {
+            assertEquals("Branch", ex.getMessage());
+        }
+    }
+
+    @Test public void parallel_concat_setup() {
+        // Worker threads can not be used: the branches run on the calling thread.
+        ParallelExecution.WorkerSetup noWorkers = new ParallelExecution.WorkerSetup() {
+            @Override public boolean begin() { return false; }
+            @Override public void end() { fail("end() called"); }
+        };
+        ExecutionContext execCxt = execCxt();
+        Thread thread = Thread.currentThread();
+        List<Supplier<QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            branches.add(()->{
+                assertEquals(thread, Thread.currentThread());
+                return iterator(0, 10, execCxt);
+            });
+        }
+        QueryIterator qIter = new QueryIterParallelConcat(branches, false, noWorkers, execCxt);
+        assertEquals(30, Iter.count(qIter));
+    }
+
+    @Test(expected=QueryCancelledException.class)
+    public void parallel_concat_cancel() {
+        ExecutionContext execCxt = execCxt();
+        // Endless branch.
+        Supplier<QueryIterator> endless = ()->QueryIterPlainWrapper.create(new Iterator<Binding>() {
+            int i = 0;
+            @Override public boolean hasNext() { return true; }
+            @Override public Binding next() { return binding(i++); }
+        }, execCxt);
+        QueryIterator qIter = new QueryIterParallelConcat(Arrays.asList(endless, endless), false, ParallelExecution.noSetup, execCxt);
+        for ( int i = 0 ; i < 10000 ; i++ )
+            qIter.next();
+        qIter.cancel();
+        qIter.hasNext();
+    }
+
+    private static void testOrdered(String qs) {
+        Dataset ds = DatasetFactory.wrap(data());
+        ResultSetRewindable rs1 = run(ds, qs, false);
+        ResultSetRewindable rs2 = run(ds, qs, true);
+        assertTrue(rs1.size() > 0);
+        assertTrue(ResultSetCompare.equalsByTermAndOrder(rs1, rs2));
+    }
+
+    private static void testUnordered(String qs) {
+        Dataset ds = DatasetFactory.wrap(data());
+        ResultSetRewindable rs1 = run(ds, qs, false);
+        ResultSetRewindable rs2 = run(ds, qs, true);
+        assertTrue(rs1.size() > 0);
+        assertTrue(ResultSetCompare.equalsByTerm(rs1, rs2));
+    }
+
+    private static ResultSetRewindable run(Dataset ds, String qs, boolean parallel) {
+        try ( QueryExecution qExec = QueryExecutionFactory.create(qs, ds) ) {
+            qExec.getContext().set(ARQ.parallelExecution, parallel);
+            return ResultSetFactory.copyResults(qExec.execSelect());
+        }
+    }
+
+    private static QueryIterator iterator(int start, int count, ExecutionContext execCxt) {
+        List<Binding> x = new ArrayList<>();
+        for ( int i = 0 ; i < count ; i++ )
+            x.add(binding(start + i));
+        return QueryIterPlainWrapper.create(x.iterator(), execCxt);
+    }
+
+    private static Binding binding(int i) {
+        return BindingFactory.binding(var_x, NodeFactory.createLiteral(Integer.toString(i)));
+    }
+
+    private static ExecutionContext execCxt() {
+        Context cxt = new Context();
+        cxt.set(ARQ.parallelExecution, true);
+        return new ExecutionContext(cxt, null, null, null);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.ARQConstants;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase1;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+import org.junit.Test;
+
+/** Tests for {@link PlanCache} */
+public class TestPlanCache {
+    private static final String PREFIX = "PREFIX : <http://example/>\n";
+    private static final String QUERY = PREFIX + "SELECT ?o { ?s :p ?o FILTER(?o > 1) } ORDER BY ?o";
+
+    private static DatasetGraph data() {
+        DatasetGraph dsg = DatasetGraphFactory.create();
+        dsg.add(SSE.parseQuad("(_ :s1 :p 1)"));
+        dsg.add(SSE.parseQuad("(_ :s2 :p 2)"));
+        dsg.add(SSE.parseQuad("(_ :s3 :p 3)"));
+        return dsg;
+    }
+
+    private static List<QuerySolution> exec(String queryString, DatasetGraph dsg, Context cxt) {
+        return exec(queryString, dsg, cxt, null);
+    }
+
+    private static List<QuerySolution> exec(String queryString, DatasetGraph dsg, Context cxt, Binding initial) {
+        QueryExecutionBuilder builder = QueryExecution.create().query(queryString).dataset(dsg).context(cxt);
+        if ( initial != null )
+            builder.initialBinding(initial);
+        try ( QueryExecution qExec = builder.build() ) {
+            return ResultSetFormatter.toList(qExec.execSelect());
+        }
+    }
+
+    private static Context context(PlanCache planCache) {
+        Context cxt = new Context();
+        cxt.set(ARQ.planCache, planCache);
+        return cxt;
+    }
+
+    @Test public void planCache_1() {
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        List<QuerySolution> x1 = exec(QUERY, dsg, context(planCache));
+        List<QuerySolution> x2 = exec(QUERY, dsg, context(planCache));
+        assertEquals(1, planCache.getMisses());
+        assertEquals(1, planCache.getHits());
+        assertEquals(1, planCache.size());
+        assertEquals(2, x1.size());
+        assertEquals(x1.toString(), x2.toString());
+    }
+
+    @Test public void planCache_normalized() {
+        // Layout and comments do not matter.
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        exec(QUERY, dsg, context(planCache));
+        exec(PREFIX + "# Comment\nSELECT  ?o\nWHERE { ?s :p ?o .\n FILTER ( ?o > 1 ) }\nORDER BY ?o", dsg, context(planCache));
+        assertEquals(1, planCache.getHits());
+    }
+
+    @Test public void planCache_differentQuery() {
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        exec(QUERY, dsg, context(planCache));
+        List<QuerySolution> x = exec(PREFIX + "SELECT ?o { ?s :p ?o FILTER(?o > 2) }", dsg, context(planCache));
+        assertEquals(0, planCache.getHits());
+        assertEquals(2, planCache.getMisses());
+        assertEquals(1, x.size());
+    }
+
+    @Test public void planCache_differentDataset() {
+        PlanCache planCache = new PlanCache(10);
+        exec(QUERY, data(), context(planCache));
+        exec(QUERY, data(), context(planCache));
+        assertEquals(0, planCache.getHits());
+        assertEquals(2, planCache.getMisses());
+    }
+
+    @Test public void planCache_differentSettings() {
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        exec(QUERY, dsg, context(planCache));
+        Context cxt = context(planCache);
+        cxt.set(ARQ.optimization, false);
+        List<QuerySolution> x = exec(QUERY, dsg, cxt);
+        assertEquals(0, planCache.getHits());
+        assertEquals(2, x.size());
+        exec(QUERY, dsg, cxt);
+        assertEquals(1, planCache.getHits());
+    }
+
+    @Test public void planCache_requestObjects() {
+        // Context entries that do not change the optimization are not part of the key.
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            Context cxt = context(planCache);
+            cxt.set(Symbol.create("http://example/request"), new Object());
+            exec(QUERY, dsg, cxt);
+        }
+        assertEquals(2, planCache.getHits());
+    }
+
+    @Test public void planCache_functions() {
+        // Each execution binds functions with its own registry.
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        String queryString = PREFIX + "SELECT ?o { ?s :p ?o FILTER(<http://example/f>(?o)) }";
+        List<QuerySolution> x1 = exec(queryString, dsg, functionContext(planCache, true));
+        List<QuerySolution> x2 = exec(queryString, dsg, functionContext(planCache, false));
+        assertEquals(1, planCache.getHits());
+        assertEquals(3, x1.size());
+        assertEquals(0, x2.size());
+    }
+
+    private static Context functionContext(PlanCache planCache, boolean result) {
+        Context cxt = context(planCache);
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.put("http://example/f", uri -> new FunctionBase1() {
+            @Override public NodeValue exec(NodeValue v) { return NodeValue.booleanReturn(result); }
+        });
+        FunctionRegistry.set(cxt, registry);
+        return cxt;
+    }
+
+    @Test public void planCache_currentAlgebra() {
+        // The algebra recorded in the context is the same for a hit.
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        Op op1 = currentAlgebra(dsg, context(planCache));
+        Op op2 = currentAlgebra(dsg, context(planCache));
+        assertEquals(1, planCache.getHits());
+        assertNotNull(op1);
+        assertEquals(op1, op2);
+    }
+
+    private static Op currentAlgebra(DatasetGraph dsg, Context cxt) {
+        try ( QueryExecution qExec = QueryExecution.create().query(QUERY).dataset(dsg).context(cxt).build() ) {
+            ResultSetFormatter.consume(qExec.execSelect());
+            return qExec.getContext().get(ARQConstants.sysCurrentAlgebra);
+        }
+    }
+
+    @Test public void planCache_initialBinding() {
+        PlanCache planCache = new PlanCache(10);
+        DatasetGraph dsg = data();
+        Binding b = BindingFactory.binding(Var.alloc("s"), NodeFactory.createURI("http://example/s3"));
+        exec(QUERY, dsg, context(planCache), b);
+        List<QuerySolution> x = exec(QUERY, dsg, context(planCache), b);
+        assertEquals(0, planCache.getHits());
+        assertEquals(0, planCache.size());
+        assertEquals(1, x.size());
+    }
+
+    @Test public void planCache_context() {
+        assertNull(PlanCache.get(new Context()));
+        Context cxt = new Context();
+        cxt.set(ARQ.planCache, "true");
+        assertSame(PlanCache.get(), PlanCache.get(cxt));
+        PlanCache planCache = new PlanCache(10);
+        assertSame(planCache, PlanCache.get(context(planCache)));
+    }
+
+    @Test public void planCache_bounded() {
+        PlanCache planCache = new PlanCache(2);
+        DatasetGraph dsg = data();
+        for ( int i = 0 ; i < 10 ; i++ )
+            exec(PREFIX + "SELECT * { ?s :p " + i + " }", dsg, context(planCache));
+        assertEquals(10, planCache.getMisses());
+        assertTrue(planCache.size() <= 2);
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.main.SharedSubplans;
+import org.apache.jena.sparql.graph.GraphWrapper;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests for {@link SharedSubplans} */
+public class TestSharedSubplans {
+    private static final String PREFIX = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsg;
+    private static final AtomicInteger finds = new AtomicInteger();
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIX);
+        for ( int i = 0 ; i < 200 ; i++ ) {
+            sb.append(String.format(":s%d :p %d .\n", i, i));
+            if ( i % 2 == 0 )
+                sb.append(String.format(":s%d :q %d .\n", i, i));
+            if ( i % 3 == 0 )
+                sb.append(String.format(":s%d :r %d .\n", i, i));
+            if ( i % 5 == 0 )
+                sb.append(String.format(":s%d :t %d .\n", i, i));
+            if ( i % 7 == 0 )
+                sb.append(String.format(":g { :s%d :p %d . :s%d :q %d }\n", i, i, i, i));
+        }
+        DatasetGraph dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        // Count the accesses to the default graph.
+        Graph graph = new GraphWrapper(dsgMem.getDefaultGraph()) {
+            @Override
+            public ExtendedIterator<Triple> find(Triple triple) {
+                finds.incrementAndGet();
+                return super.find(triple);
+            }
+            @Override
+            public ExtendedIterator<Triple> find(Node s, Node p, Node o) {
+                finds.incrementAndGet();
+                return super.find(s, p, o);
+            }
+        };
+        dsg = DatasetGraphFactory.createGeneral();
+        dsg.setDefaultGraph(graph);
+        dsgMem.listGraphNodes().forEachRemaining(gn->dsg.addGraph(gn, dsgMem.getGraph(gn)));
+    }
+
+    @AfterClass public static void afterClass() {
+        SharedSubplans.MaxRows = 100_000;
+    }
+
+    private static final String pattern = "{ ?s :p ?o . ?s :q ?z }";
+
+    @Test public void shared_plan_01() {
+        testPlan("SELECT * { "+pattern+" UNION "+pattern+" }", true);
+    }
+
+    @Test public void shared_plan_02() {
+        // One triple pattern.
+        testPlan("SELECT * { { ?s :p ?o } UNION { ?s :p ?o } }", false);
+    }
+
+    @Test public void shared_plan_03() {
+        // Different values each time: the BIND is not shared, the pattern is.
+        testPlan("SELECT * { { ?s :p ?o . ?s :q ?z BIND(RAND() AS ?x) } UNION { ?s :p ?o . ?s :q ?z BIND(RAND() AS ?x) } }", true);
+        testPlan("SELECT * { { ?s :p ?o BIND(RAND() AS ?x) } UNION { ?s :p ?o BIND(RAND() AS ?x) } }", false);
+    }
+
+    @Test public void shared_plan_04() {
+        testPlan("SELECT * { "+pattern+" }", false);
+    }
+
+    @Test public void shared_plan_05() {
+        // Evaluated for the named graph.
+        testPlan("SELECT * { { GRAPH :g "+pattern+" } UNION "+pattern+" }", false);
+    }
+
+    @Test public void shared_plan_disabled() {
+        Op op = Algebra.optimize(Algebra.compile(QueryFactory.create(PREFIX+"SELECT * { "+pattern+" UNION "+pattern+" }")));
+        Context context = new Context();
+        context.set(ARQ.shareSubplans, false);
+        assertNull(SharedSubplans.create(op, context));
+    }
+
+    @Test public void shared_01() {
+        test("SELECT * { "+pattern+" UNION "+pattern+" }", true);
+    }
+
+    @Test public void shared_02() {
+        test("SELECT * { "+pattern+" UNION "+pattern+" UNION "+pattern+" }", true);
+    }
+
+    @Test public void shared_03() {
+        // The same pattern on the left of each OPTIONAL.
+        test("SELECT * { { ?s :p ?o . ?s :q ?z OPTIONAL { ?s :r ?w } } UNION { ?s :p ?o . ?s :q ?z OPTIONAL { ?s :t ?w } } }", true);
+    }
+
+    @Test public void shared_04() {
+        String subQuery = "{ SELECT ?s (count(*) AS ?c) { ?s ?p ?o } GROUP BY ?s }";
+        test("SELECT * { "+subQuery+" UNION "+subQuery+" }", true);
+    }
+
+    @Test public void shared_05() {
+        test("SELECT * { { "+pattern+" UNION "+pattern+" } ?s :r ?w }", false);
+    }
+
+    @Test public void shared_06() {
+        test("SELECT * { "+pattern+" UNION "+pattern+" } LIMIT 5", false);
+    }
+
+    @Test public void shared_07() {
+        test("SELECT * { { GRAPH :g "+pattern+" } UNION { GRAPH :g "+pattern+" } UNION "+pattern+" }", false);
+    }
+
+    @Test public void shared_08() {
+        test("SELECT * { "+pattern+" UNION { ?s :p ?o . ?s :q ?z FILTER(?o < 50) } UNION "+pattern+" }", true);
+    }
+
+    @Test public void shared_09() {
+        test("SELECT * { "+pattern+" MINUS { ?s :r ?w } } ", false);
+    }
+
+    @Test public void shared_spill() {
+        Context context = new Context();
+        context.set(ARQ.spillToDiskThreshold, 10);
+        test("SELECT * { "+pattern+" UNION "+pattern+" }", context, true);
+    }
+
+    @Test public void shared_too_big() {
+        SharedSubplans.MaxRows = 10;
+        try {
+            test("SELECT * { "+pattern+" UNION "+pattern+" }", false);
+        } finally {
+            SharedSubplans.MaxRows = 100_000;
+        }
+    }
+
+    private static void testPlan(String queryString, boolean shared) {
+        Op op = Algebra.optimize(Algebra.compile(QueryFactory.create(PREFIX+queryString)));
+        SharedSubplans sharedSubplans = SharedSubplans.create(op, null);
+        if ( shared )
+            assertTrue(sharedSubplans != null && sharedSubplans.isShared(SSE.parseOp("(bgp (?s :p ?o) (?s :q ?z))", SSE.getPrefixMapRead())));
+        else
+            assertNull(sharedSubplans);
+    }
+
+    private static void test(String queryString, boolean fewerFinds) {
+        test(queryString, new Context(), fewerFinds);
+    }
+
+    private static void test(String queryString, Context context, boolean fewerFinds) {
+        Query query = QueryFactory.create(PREFIX+queryString);
+        Context context1 = context.copy();
+        context1.set(ARQ.shareSubplans, false);
+        finds.set(0);
+        ResultSetRewindable expected = exec(query, context1);
+        int findsExpected = finds.get();
+        finds.set(0);
+        ResultSetRewindable actual = exec(query, context);
+        int findsActual = finds.get();
+
+        boolean b = ResultSetCompare.equalsByTermAndOrder(expected, actual);
+        if ( ! b ) {
+            expected.reset();
+            actual.reset();
+            ResultSetFormatter.out(expected);
+            ResultSetFormatter.out(actual);
+        }
+        assertTrue(b);
+        if ( fewerFinds )
+            assertTrue("Finds: "+findsActual+" / "+findsExpected, findsActual < findsExpected);
+        else
+            assertFalse("Finds: "+findsActual+" / "+findsExpected, findsActual > findsExpected);
+    }
+
+    private static ResultSetRewindable exec(Query query, Context context) {
+        try ( QueryExecution qExec = QueryExecution.create().query(query).dataset(dsg).context(context).build() ) {
+            return ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+    }
+}
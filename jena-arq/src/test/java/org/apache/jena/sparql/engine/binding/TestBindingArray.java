@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.sparql.engine.binding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+
+public class TestBindingArray {
+    private static Node n_1 = SSE.parseNode("'1'");
+    private static Node n_2 = SSE.parseNode("'2'");
+    private static Node n_3 = SSE.parseNode("'3'");
+    private static Node n_4 = SSE.parseNode("'4'");
+    private static Node n_5 = SSE.parseNode("'5'");
+
+    private static Var var1 = Var.alloc("v1");
+    private static Var var2 = Var.alloc("v2");
+    private static Var var3 = Var.alloc("v3");
+    private static Var var4 = Var.alloc("v4");
+    private static Var var5 = Var.alloc("v5");
+
+    private static BindingArray root() {
+        return BindingArray.create(VarSlots.create(Arrays.asList(var1, var2, var3)), null);
+    }
+
+    @Test public void bindingArray_slots() {
+        VarSlots slots = VarSlots.create(Arrays.asList(var1, var2, var1));
+        assertEquals(2, slots.size());
+        assertEquals(0, slots.indexOf(var1));
+        assertEquals(1, slots.indexOf(var2));
+        assertEquals(-1, slots.indexOf(var3));
+        assertEquals(2, slots.slot(var3));
+        assertEquals(2, slots.indexOf(var3));
+        assertEquals(var3, slots.var(2));
+    }
+
+    @Test public void bindingArray_0() {
+        Binding b = root();
+        assertTrue(b.isEmpty());
+        assertEquals(0, b.size());
+        assertEquals(0, Iter.count(b.vars()));
+        assertEquals(BindingFactory.binding(), b);
+    }
+
+    @Test public void bindingArray_1() {
+        Binding b = BindingFactory.binding(root(), var1, n_1);
+        assertTrue(b instanceof BindingArray);
+        assertEquals(1, b.size());
+        assertEquals(n_1, b.get(var1));
+        assertNull(b.get(var2));
+        assertFalse(b.contains(var2));
+        assertEquals(BindingFactory.binding(var1, n_1), b);
+    }
+
+    @Test public void bindingArray_extend() {
+        BindingArray b0 = root();
+        Binding b1 = BindingFactory.binding(b0, var2, n_2);
+        Binding b2 = BindingFactory.binding(b1, var1, n_1, var3, n_3);
+        assertTrue(b2 instanceof BindingArray);
+        assertEquals(3, b2.size());
+        // Unchanged
+        assertEquals(1, b1.size());
+        assertNull(b1.get(var1));
+        assertTrue(b0.isEmpty());
+        assertEquals(BindingFactory.binding(var1, n_1, var2, n_2, var3, n_3), b2);
+    }
+
+    @Test public void bindingArray_newSlot() {
+        // Variables not in the slot table.
+        Binding b = BindingFactory.binding(root(), var4, n_4, var5, n_5);
+        assertTrue(b instanceof BindingArray);
+        assertEquals(2, b.size());
+        assertEquals(n_4, b.get(var4));
+        assertEquals(n_5, b.get(var5));
+        List<Var> vars = Iter.toList(b.vars());
+        assertEquals(Arrays.asList(var4, var5), vars);
+    }
+
+    @Test public void bindingArray_builder() {
+        Binding b1 = BindingFactory.binding(root(), var1, n_1);
+        Binding b2 = Binding.builder(b1).add(var2, n_2).add(var3, n_3).add(var4, n_4).add(var5, n_5).build();
+        assertTrue(b2 instanceof BindingArray);
+        assertEquals(5, b2.size());
+        Binding expected = Binding.builder().add(var1, n_1).add(var2, n_2).add(var3, n_3).add(var4, n_4).add(var5, n_5).build();
+        assertEquals(expected, b2);
+        assertEquals(expected.hashCode(), b2.hashCode());
+        // No new pairs.
+        assertSame(b1, Binding.builder(b1).build());
+    }
+
+    @Test public void bindingArray_replace() {
+        Binding b1 = BindingFactory.binding(root(), var1, n_1);
+        Binding b2 = BindingFactory.binding(b1, var1, n_2);
+        assertEquals(1, b2.size());
+        assertEquals(n_2, b2.get(var1));
+    }
+
+    @Test public void bindingArray_copy() {
+        Binding b = BindingFactory.binding(BindingFactory.binding(var1, n_1), var2, n_2);
+        BindingArray b2 = BindingArray.create(VarSlots.create(Arrays.asList(var2)), b);
+        assertEquals(b, b2);
+    }
+
+    private static String DATA = String.join("\n",
+        "PREFIX : <http://example/>",
+        ":s1 :p 1 ; :q 'a' .",
+        ":s2 :p 2 ; :q 'b' ; :r :s1 .",
+        ":s3 :p 3 .",
+        ":g { :s1 :p 10 . :s3 :q 'c' }"
+        );
+
+    @Test public void flatBindings_query_1() { testQuery("SELECT * { ?s :p ?o OPTIONAL { ?s :q ?q } }"); }
+    @Test public void flatBindings_query_2() { testQuery("SELECT * { ?s :p ?o BIND(?o+1 AS ?z) FILTER(?z > 2) }"); }
+    @Test public void flatBindings_query_3() { testQuery("SELECT ?s (COUNT(*) AS ?c) { ?s ?p ?o } GROUP BY ?s"); }
+    @Test public void flatBindings_query_4() { testQuery("SELECT * { { ?s :p ?o } UNION { GRAPH ?g { ?s :p ?o } } }"); }
+    @Test public void flatBindings_query_5() { testQuery("SELECT * { ?x :r ?s . ?s :p ?o MINUS { ?s :q 'b' } }"); }
+    @Test public void flatBindings_query_6() { testQuery("SELECT * { VALUES ?s { :s1 :s3 } ?s :p ?o FILTER NOT EXISTS { ?s :q ?q } }"); }
+    @Test public void flatBindings_query_7() { testQuery("SELECT * { ?s :p ?o { SELECT ?s (STR(?q) AS ?str) { ?s :q ?q } } } ORDER BY ?s"); }
+
+    private static void testQuery(String queryString) {
+        Dataset ds = DatasetFactory.create();
+        RDFParser.fromString(DATA).lang(Lang.TRIG).parse(ds);
+        Query query = QueryFactory.create("PREFIX : <http://example/> " + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, ds) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, ds) ) {
+            qExec.getContext().set(ARQ.flatBindings, true);
+            ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+            assertTrue(expected.size() > 0);
+            assertTrue(ResultSetCompare.equalsByTerm(expected, actual));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBase;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.main.iterator.QueryIterServiceBulk;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** SERVICE with several solutions of the input in each request, against a local stand-in for a SPARQL endpoint. */
+public class TestServiceBulk {
+    private static final String PREFIXES = "PREFIX : <http://example/>\n";
+    private static final String DATA = PREFIXES + String.join("\n"
+        , ":s1 :p 1 . :s2 :p 2 . :s3 :p 3 . :s3 :p 33 . :s5 :p 5 . :s7 :p 7 . :s8 :p 8 ."
+        , ":s1 :q 'a' . :s2 :q 'b' ."
+        );
+
+    private static HttpServer server;
+    private static String endpoint;
+    private static String badEndpoint;
+    private static DatasetGraph dsg;
+    // Queries received by the stand-in endpoint.
+    private static final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        dsg = DatasetGraphFactory.create();
+        RDFParser.fromString(DATA).lang(Lang.TTL).parse(dsg);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/sparql", TestServiceBulk::handle);
+        server.createContext("/bad", exchange -> { exchange.sendResponseHeaders(500, -1); exchange.close(); });
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort() + "/sparql";
+        badEndpoint = "http://localhost:" + server.getAddress().getPort() + "/bad";
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void before() {
+        requests.clear();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String params;
+        if ( "POST".equals(exchange.getRequestMethod()) )
+            params = IO.readWholeFileAsUTF8(exchange.getRequestBody());
+        else
+            params = exchange.getRequestURI().getRawQuery();
+        String queryString = null;
+        for ( String p : params.split("&") ) {
+            if ( p.startsWith("query=") )
+                queryString = URLDecoder.decode(p.substring("query=".length()), "UTF-8");
+        }
+        requests.add(queryString);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( QueryExecution qExec = QueryExecutionFactory.create(queryString, DatasetFactory.wrap(dsg)) ) {
+            ResultSetFormatter.outputAsXML(out, qExec.execSelect());
+        }
+        byte[] bytes = out.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try ( OutputStream os = exchange.getResponseBody() ) {
+            os.write(bytes);
+        }
+        try ( InputStream in = exchange.getRequestBody() ) {}
+    }
+
+    private static final String VALUES = "VALUES ?s { :s1 :s2 :s3 :s4 :s5 :s6 :s7 :s8 :s9 :s10 }";
+
+    @Test public void serviceBulk_01() {
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        // 10 solutions, 4 in each request.
+        test(qs, 4, 1, 3);
+    }
+
+    @Test public void serviceBulk_02() {
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        test(qs, 3, 3, 4);
+    }
+
+    @Test public void serviceBulk_03() {
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + endpoint + "> { ?s :p ?o OPTIONAL { ?s :q ?z } } }";
+        test(qs, 100, 1, 1);
+    }
+
+    @Test public void serviceBulk_04() {
+        // Variables in the input that are not used by the SERVICE pattern.
+        String qs = "SELECT * { VALUES (?s ?x) { (:s1 1) (:s2 UNDEF) (:s3 3) } SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        test(qs, 2, 1, 2);
+    }
+
+    @Test public void serviceBulk_05() {
+        // Blank nodes are sent one solution at a time.
+        String qs = "SELECT * { { " + VALUES + " } UNION { BIND(bnode() AS ?s) } SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        test(qs, 20, 1, 2);
+    }
+
+    @Test public void serviceBulk_06() {
+        // Not enabled.
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        test(qs, 0, 1, 10);
+    }
+
+    @Test public void serviceBulk_07() {
+        // Same results as evaluating the pattern locally.
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + endpoint + "> { ?s :p ?o } }";
+        ResultSetRewindable actual = exec(qs, 4, 2);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(PREFIXES + "SELECT * { " + VALUES + " ?s :p ?o }", DatasetFactory.wrap(dsg)) ) {
+            ResultSetRewindable expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+            assertTrue(ResultSetCompare.equalsByTerm(expected, actual));
+        }
+    }
+
+    @Test public void serviceBulk_silent() {
+        String qs = "SELECT * { " + VALUES + " SERVICE SILENT <" + badEndpoint + "> { ?s :p ?o } }";
+        ResultSetRewindable rs = exec(qs, 4, 2);
+        assertEquals(10, rs.size());
+    }
+
+    @Test(expected=QueryExceptionHTTP.class)
+    public void serviceBulk_error() {
+        String qs = "SELECT * { " + VALUES + " SERVICE <" + badEndpoint + "> { ?s :p ?o } }";
+        exec(qs, 4, 2);
+    }
+
+    @Test public void serviceBulk_thread() {
+        // Input solutions that can only be read on the query thread, as with TDB2.
+        Thread thread = Thread.currentThread();
+        List<Binding> input = new ArrayList<>();
+        for ( int i = 1 ; i <= 10 ; i++ )
+            input.add(new ThreadBinding(BindingFactory.binding(Var.alloc("s"), SSE.parseNode("<http://example/s"+i+">")), thread));
+        // And one with a blank node, sent by substitution.
+        input.add(new ThreadBinding(BindingFactory.binding(Var.alloc("s"), SSE.parseNode("_:b")), thread));
+        Context cxt = new Context();
+        cxt.set(Service.serviceBulkBindings, 2);
+        cxt.set(Service.serviceBulkRequests, 3);
+        ExecutionContext execCxt = new ExecutionContext(cxt, null, null, null);
+        OpService opService = (OpService)SSE.parseOp("(service <" + endpoint + "> (bgp (?s <http://example/p> ?o)))");
+        QueryIterator qIter = new QueryIterServiceBulk(QueryIterPlainWrapper.create(input.iterator(), execCxt), opService, execCxt);
+        // The blank node is a variable in the remote query: it matches all 7 triples.
+        assertEquals(7 + 7, Iter.count(qIter));
+        assertEquals(6, requests.size());
+    }
+
+    /** A binding that can only be used on one thread. */
+    private static class ThreadBinding extends BindingBase {
+        private final Binding binding;
+        private final Thread thread;
+
+        ThreadBinding(Binding binding, Thread thread) {
+            super(null);
+            this.binding = binding;
+            this.thread = thread;
+        }
+
+        private void check() {
+            if ( Thread.currentThread() != thread )
+                throw new IllegalStateException("Binding used on another thread");
+        }
+
+        @Override protected Iterator<Var> vars1()       { check(); return binding.vars(); }
+        @Override protected int size1()                 { check(); return binding.size(); }
+        @Override protected boolean isEmpty1()          { check(); return binding.isEmpty(); }
+        @Override protected boolean contains1(Var var)  { check(); return binding.contains(var); }
+        @Override protected Node get1(Var var)          { check(); return binding.get(var); }
+    }
+
+    private static void test(String queryString, int bulkBindings, int bulkRequests, int expectedRequests) {
+        // The same query, with one request for each solution.
+        ResultSetRewindable expected = exec(queryString, 0, 1);
+        requests.clear();
+        ResultSetRewindable actual = exec(queryString, bulkBindings, bulkRequests);
+        boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+        if ( ! b ) {
+            expected.reset();
+            actual.reset();
+            ResultSetFormatter.out(expected);
+            ResultSetFormatter.out(actual);
+        }
+        assertTrue(b);
+        assertEquals(expectedRequests, requests.size());
+    }
+
+    private static ResultSetRewindable exec(String queryString, int bulkBindings, int bulkRequests) {
+        Context cxt = new Context();
+        cxt.set(Service.serviceBulkBindings, bulkBindings);
+        cxt.set(Service.serviceBulkRequests, bulkRequests);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(PREFIXES + queryString, DatasetFactory.create()) ) {
+            qExec.getContext().putAll(cxt);
+            return ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+    }
+}
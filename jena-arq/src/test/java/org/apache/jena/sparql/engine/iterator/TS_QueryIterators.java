@@ -24,6 +24,8 @@ import org.junit.runners.Suite ;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
     TestQueryIterSort.class
+    , TestQueryIterGroup.class
+    , TestQueryIterBatch.class
     , TestDistinctMem.class
     , TestDistinctDataBag.class 
     , TestDistinctDataBagLimited.class 
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+public class TestQueryIterBatch {
+
+    private static Var var_a = Var.alloc("a");
+    private static Var var_b = Var.alloc("b");
+
+    @Test public void batch_filter_1()      { testFilter(1, 5, 100); }
+    @Test public void batch_filter_2()      { testFilter(4, 3, 100); }
+    @Test public void batch_filter_3()      { testFilter(1024, 7, 100); }
+    @Test public void batch_filter_4()      { testFilter(8, 1024, 0); }
+    @Test public void batch_filter_5()      { testFilter(8, 1, 1); }
+
+    @Test public void batch_convert_1()     { testConvert(1, 5, 50); }
+    @Test public void batch_convert_2()     { testConvert(16, 3, 50); }
+
+    @Test public void batch_reader_1() {
+        List<Binding> input = input(20);
+        BatchReader reader = new BatchReader(QueryIterPlainWrapper.create(input.iterator()), 4);
+        List<Binding> results = new ArrayList<>();
+        // Mix row and batch reads.
+        results.add(reader.next());
+        results.add(reader.next());
+        Binding[] batch = new Binding[10];
+        for ( int n; (n = reader.read(batch, 1, 9)) > 0 ; ) {
+            for ( int i = 1 ; i <= n ; i++ )
+                results.add(batch[i]);
+            if ( reader.hasNext() )
+                results.add(reader.next());
+        }
+        assertNull(batch[0]);
+        assertFalse(reader.hasNext());
+        assertEquals(input, results);
+    }
+
+    @Test public void batch_empty() {
+        QueryIterator qIter = filter(QueryIterPlainWrapper.create(Iter.nullIterator()), execCxt(8));
+        Binding[] batch = new Binding[8];
+        assertEquals(0, qIter.nextBatch(batch, 0, batch.length));
+        assertFalse(qIter.hasNext());
+    }
+
+    @Test public void batch_endOnce() {
+        // An iterator that does not allow hasNext() after the end.
+        Iterator<Binding> iter = new Iterator<Binding>() {
+            private Iterator<Binding> base = input(10).iterator();
+            @Override
+            public boolean hasNext() {
+                if ( base == null )
+                    throw new IllegalStateException();
+                boolean b = base.hasNext();
+                if ( !b )
+                    base = null;
+                return b;
+            }
+            @Override
+            public Binding next() { return base.next(); }
+        };
+        QueryIterator qIter = filter(QueryIterPlainWrapper.create(iter), execCxt(4));
+        assertEquals(5, readBatches(qIter, 3).size());
+    }
+
+    @Test(expected=QueryCancelledException.class)
+    public void batch_cancel() {
+        QueryIterator qIter = filter(QueryIterPlainWrapper.create(input(100).iterator()), execCxt(8));
+        Binding[] batch = new Binding[8];
+        assertTrue(qIter.nextBatch(batch, 0, batch.length) > 0);
+        qIter.cancel();
+        qIter.nextBatch(batch, 0, batch.length);
+    }
+
+    private static void testFilter(int batchSize, int readSize, int N) {
+        List<Binding> input = input(N);
+        ExecutionContext execCxt = execCxt(batchSize);
+        List<Binding> expected = Iter.toList(filter(QueryIterPlainWrapper.create(input.iterator()), execCxt));
+        List<Binding> actual = readBatches(filter(QueryIterPlainWrapper.create(input.iterator()), execCxt), readSize);
+        assertEquals((N+1)/2, expected.size());
+        assertEquals(expected, actual);
+        // Filter over filter; row reads.
+        List<Binding> actual2 = Iter.toList(filter(filter(QueryIterPlainWrapper.create(input.iterator()), execCxt), execCxt));
+        assertEquals(expected, actual2);
+    }
+
+    private static void testConvert(int batchSize, int readSize, int N) {
+        List<Binding> input = input(N);
+        ExecutionContext execCxt = execCxt(batchSize);
+        QueryIterator qIter1 = new QueryIterConvert(filter(QueryIterPlainWrapper.create(input.iterator()), execCxt), TestQueryIterBatch::dropB, execCxt);
+        QueryIterator qIter2 = new QueryIterConvert(filter(QueryIterPlainWrapper.create(input.iterator()), execCxt), TestQueryIterBatch::dropB, execCxt);
+        List<Binding> expected = Iter.toList(qIter1);
+        List<Binding> actual = readBatches(qIter2, readSize);
+        assertEquals((N+1)/2, expected.size());
+        assertEquals(expected, actual);
+        expected.forEach(b->assertFalse(b.contains(var_b)));
+    }
+
+    private static List<Binding> readBatches(QueryIterator qIter, int readSize) {
+        List<Binding> results = new ArrayList<>();
+        Binding[] batch = new Binding[readSize];
+        for ( int n; (n = qIter.nextBatch(batch, 0, readSize)) > 0 ; ) {
+            for ( int i = 0 ; i < n ; i++ )
+                results.add(batch[i]);
+        }
+        assertFalse(qIter.hasNext());
+        return results;
+    }
+
+    /** Keep rows where ?a is even. */
+    private static QueryIterator filter(QueryIterator input, ExecutionContext execCxt) {
+        return new QueryIterProcessBinding(input, execCxt) {
+            @Override
+            public Binding accept(Binding binding) {
+                int i = Integer.parseInt(binding.get(var_a).getLiteralLexicalForm());
+                return ( i % 2 == 0 ) ? binding : null;
+            }
+        };
+    }
+
+    private static Binding dropB(Binding binding) {
+        return BindingFactory.binding(var_a, binding.get(var_a));
+    }
+
+    private static ExecutionContext execCxt(int batchSize) {
+        Context cxt = new Context();
+        cxt.set(ARQ.iteratorBatchSize, batchSize);
+        return new ExecutionContext(cxt, null, null, null);
+    }
+
+    private static List<Binding> input(int N) {
+        List<Binding> input = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            input.add(BindingFactory.binding(var_a, NodeFactory.createLiteral(Integer.toString(i)),
+                                             var_b, NodeFactory.createLiteral("b"+i)));
+        return input;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.* ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.core.VarExprList ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.engine.binding.BindingFactory ;
+import org.apache.jena.sparql.expr.ExprAggregator ;
+import org.apache.jena.sparql.expr.ExprVar ;
+import org.apache.jena.sparql.expr.aggregate.AggregatorFactory ;
+import org.apache.jena.sparql.util.Context ;
+import org.junit.Test ;
+
+public class TestQueryIterGroup {
+
+    private static Var var_a = Var.alloc("a") ;
+    private static Var var_b = Var.alloc("b") ;
+    private static Var var_c = Var.alloc("c") ;
+    private static Var var_s = Var.alloc("s") ;
+
+    // Pairs of (a, b)
+    private static int[][] data = { {1, 10}, {2, 20}, {1, 30}, {3, 40}, {2, 50}, {1, 60}, {4, 70}, {3, 80} } ;
+
+    @Test public void group_mem_1()         { test(-1) ; }
+    @Test public void group_spill_0()       { test(0) ; }
+    @Test public void group_spill_1()       { test(1) ; }
+    @Test public void group_spill_3()       { test(3) ; }
+    @Test public void group_spill_100()     { test(100) ; }
+
+    @Test public void group_noAgg_mem()     { testNoAggregators(-1) ; }
+    @Test public void group_noAgg_spill()   { testNoAggregators(2) ; }
+
+    @Test public void group_noInput_spill() {
+        QueryIterator qIter = group(new ArrayList<>(), 2, true) ;
+        assertEquals(0, Iter.count(qIter)) ;
+    }
+
+    private static void test(long threshold) {
+        QueryIterator qIter = group(input(), threshold, true) ;
+        Map<Node, Binding> results = new HashMap<>() ;
+        qIter.forEachRemaining(b->results.put(b.get(var_a), b)) ;
+        qIter.close() ;
+
+        assertEquals(4, results.size()) ;
+        check(results, 1, 3, 100) ;
+        check(results, 2, 2, 70) ;
+        check(results, 3, 2, 120) ;
+        check(results, 4, 1, 70) ;
+    }
+
+    private static void testNoAggregators(long threshold) {
+        QueryIterator qIter = group(input(), threshold, false) ;
+        Set<Binding> results = new HashSet<>() ;
+        qIter.forEachRemaining(results::add) ;
+        qIter.close() ;
+        assertEquals(4, results.size()) ;
+        for ( int i = 1 ; i <= 4 ; i++ )
+            assertTrue(results.contains(BindingFactory.binding(var_a, integer(i)))) ;
+    }
+
+    private static void check(Map<Node, Binding> results, int key, int count, int sum) {
+        Binding b = results.get(integer(key)) ;
+        assertEquals(integer(count), b.get(var_c)) ;
+        assertEquals(integer(sum), b.get(var_s)) ;
+    }
+
+    private static QueryIterator group(List<Binding> input, long threshold, boolean withAggregators) {
+        Context cxt = new Context() ;
+        if ( threshold >= 0 )
+            cxt.set(ARQ.spillToDiskThreshold, threshold) ;
+        ExecutionContext execCxt = new ExecutionContext(cxt, null, null, null) ;
+        VarExprList groupVars = new VarExprList(Arrays.asList(var_a)) ;
+        List<ExprAggregator> aggregators = new ArrayList<>() ;
+        if ( withAggregators ) {
+            aggregators.add(new ExprAggregator(var_c, AggregatorFactory.createCount(false))) ;
+            aggregators.add(new ExprAggregator(var_s, AggregatorFactory.createSum(false, new ExprVar(var_b)))) ;
+        }
+        QueryIterator qIter = QueryIterPlainWrapper.create(input.iterator(), execCxt) ;
+        return new QueryIterGroup(qIter, groupVars, aggregators, execCxt) ;
+    }
+
+    private static List<Binding> input() {
+        List<Binding> input = new ArrayList<>() ;
+        for ( int[] row : data )
+            input.add(BindingFactory.binding(var_a, integer(row[0]), var_b, integer(row[1]))) ;
+        return input ;
+    }
+
+    private static Node integer(int i) {
+        return NodeFactory.createLiteral(Integer.toString(i), XSDDatatype.XSDinteger) ;
+    }
+}
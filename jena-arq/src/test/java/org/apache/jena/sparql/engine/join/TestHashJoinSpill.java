@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.sparql.algebra.Table ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.expr.ExprList ;
+import org.apache.jena.sparql.util.Context ;
+import org.junit.Test ;
+
+/** Inner hash join, forced to partition its inputs to disk */
+public class TestHashJoinSpill extends AbstractTestInnerJoin {
+    @Override
+    public QueryIterator join(JoinKey joinKey, Table left, Table right, ExprList conditions) {
+        return Join.hashJoin(joinKey, left.iterator(null), right.iterator(null), spillingExecCxt()) ;
+    }
+
+    @Test public void hashJoinStats() {
+        ExecutionContext execCxt = spillingExecCxt() ;
+        HashJoinStats stats = new HashJoinStats() ;
+        execCxt.getContext().set(HashJoinStats.symbol, stats) ;
+        Table left = parseTableInt("(table", "  (row (?a 1) (?b 2))", "  (row (?a 2) (?b 3))", "  (row (?b 4))", ")") ;
+        Table right = parseTableInt("(table", "  (row (?a 1) (?c 5))", "  (row (?a 1) (?c 6))", "  (row (?c 7))", ")") ;
+        QueryIterator qIter = Join.hashJoin(JoinKey.create(Var.alloc("a")), left.iterator(null), right.iterator(null), execCxt) ;
+        // (1,2)x(1,5), (1,2)x(1,6), (1,2)x(7), (2,3)x(7), (4)x(1,5), (4)x(1,6), (4)x(7)
+        assertEquals(7, Iter.count(qIter)) ;
+        qIter.close() ;
+        assertEquals(1, stats.getJoins()) ;
+        assertEquals(1, stats.getSpilledJoins()) ;
+        assertEquals(3, stats.getBuildRows()) ;
+        assertEquals(3, stats.getProbeRows()) ;
+        assertEquals(7, stats.getResults()) ;
+    }
+
+    static ExecutionContext spillingExecCxt() {
+        Context cxt = new Context() ;
+        cxt.set(ARQ.spillToDiskThreshold, 0L) ;
+        return new ExecutionContext(cxt, null, null, null) ;
+    }
+}
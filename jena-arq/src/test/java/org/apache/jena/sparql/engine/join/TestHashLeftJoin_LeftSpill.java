@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.List ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.ListUtils ;
+import org.apache.jena.sparql.algebra.Table ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.expr.ExprList ;
+import org.apache.jena.sparql.sse.SSE ;
+import org.apache.jena.sparql.util.Context ;
+import org.junit.Test ;
+
+/** Left outer join where the left hand side used to create the hash probe table, forced to partition its inputs to disk */
+public class TestHashLeftJoin_LeftSpill extends AbstractTestLeftJoin {
+    @Override
+    public QueryIterator join(JoinKey joinKey, Table left, Table right, ExprList conditions) {
+        return QueryIterHashLeftJoin_Left.create(joinKey, left.iterator(null), right.iterator(null), conditions, TestHashJoinSpill.spillingExecCxt()) ;
+    }
+
+    @Test public void leftJoinSpill_unmatched() {
+        // Matches in many partitions, and from right rows without the key.
+        StringBuilder sbLeft = new StringBuilder("(table") ;
+        for ( int i = 0 ; i < 200 ; i++ )
+            sbLeft.append(String.format(" (row (?a %d) (?b %d))", i, i)) ;
+        sbLeft.append(" (row (?b 5)) (row (?b 500)))") ;
+        StringBuilder sbRight = new StringBuilder("(table") ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            sbRight.append(String.format(" (row (?a %d) (?c %d))", 2*i, i)) ;
+        sbRight.append(" (row (?c -1)))") ;
+        Table left = SSE.parseTable(sbLeft.toString()) ;
+        Table right = SSE.parseTable(sbRight.toString()) ;
+        ExprList conditions = new ExprList(SSE.parseExpr("(|| (< ?b 10) (> ?c 0))")) ;
+        JoinKey joinKey = JoinKey.create(Var.alloc("a")) ;
+
+        ExecutionContext execCxt = new ExecutionContext(new Context(), null, null, null) ;
+        List<Binding> expected = Iter.toList(QueryIterHashLeftJoin_Left.create(joinKey, left.iterator(null), right.iterator(null), conditions, execCxt)) ;
+        List<Binding> results = Iter.toList(join(joinKey, left, right, conditions)) ;
+        assertTrue(ListUtils.equalsUnordered(expected, results)) ;
+        // Odd ?a from 11: no match.
+        long unmatched = results.stream().filter(b -> ! b.contains(Var.alloc("c"))).count() ;
+        assertEquals(95, unmatched) ;
+    }
+}
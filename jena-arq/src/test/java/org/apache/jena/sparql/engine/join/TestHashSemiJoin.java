@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.ListUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.graph.GraphWrapper;
+import org.apache.jena.sparql.engine.main.QueryEngineMain;
+import org.apache.jena.sparql.engine.ref.QueryEngineRef;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Hash semi-join, anti-join and MINUS, and FILTER (NOT) EXISTS evaluated with them. */
+public class TestHashSemiJoin {
+    private static Table left = SSE.parseTable("(table (row (?a 1) (?b 2)) (row (?a 2) (?b 3)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    private static Table right = SSE.parseTable("(table (row (?a 1) (?c 5)) (row (?a 1) (?c 6)) (row (?a 3) (?c 7)))");
+    private static Table rightUndef = SSE.parseTable("(table (row (?a 1) (?c 5)) (row (?c 7)))");
+
+    private static JoinKey keyA = JoinKey.create(Var.alloc("a"));
+
+    @Test public void semiJoin_01() {
+        test(Join.hashSemiJoin(keyA, left.iterator(null), right.iterator(null), execCxt(false)),
+             "(table (row (?a 1) (?b 2)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    @Test public void semiJoin_02() {
+        // Every left row is compatible with (?c 7).
+        test(Join.hashSemiJoin(keyA, left.iterator(null), rightUndef.iterator(null), execCxt(false)),
+             "(table (row (?a 1) (?b 2)) (row (?a 2) (?b 3)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    @Test public void semiJoin_03() {
+        test(Join.hashSemiJoin(keyA, left.iterator(null), right.iterator(null), execCxt(true)),
+             "(table (row (?a 1) (?b 2)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    @Test public void antiJoin_01() {
+        test(Join.hashAntiJoin(keyA, left.iterator(null), right.iterator(null), execCxt(false)),
+             "(table (row (?a 2) (?b 3)))");
+    }
+
+    @Test public void antiJoin_02() {
+        test(Join.hashAntiJoin(keyA, left.iterator(null), rightUndef.iterator(null), execCxt(false)),
+             "(table)");
+    }
+
+    @Test public void antiJoin_03() {
+        test(Join.hashAntiJoin(keyA, left.iterator(null), right.iterator(null), execCxt(true)),
+             "(table (row (?a 2) (?b 3)))");
+    }
+
+    @Test public void antiJoin_04() {
+        // Empty key.
+        Table right2 = SSE.parseTable("(table (row (?a 1) (?b 2)))");
+        test(Join.hashAntiJoin(new JoinKey.Builder().build(), left.iterator(null), right2.iterator(null), execCxt(false)),
+             "(table (row (?a 2) (?b 3)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    @Test public void minus_01() {
+        test(Join.hashMinus(keyA, left.iterator(null), right.iterator(null), List.of(Var.alloc("a")), execCxt(false)),
+             "(table (row (?a 2) (?b 3)) (row (?b 5)))");
+    }
+
+    @Test public void minus_02() {
+        // (?c 7) shares no variable with any row.
+        test(Join.hashMinus(keyA, left.iterator(null), rightUndef.iterator(null), List.of(Var.alloc("a")), execCxt(false)),
+             "(table (row (?a 2) (?b 3)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    @Test public void minus_03() {
+        test(Join.hashMinus(keyA, left.iterator(null), right.iterator(null), List.of(Var.alloc("a")), execCxt(true)),
+             "(table (row (?a 2) (?b 3)) (row (?b 5)))");
+    }
+
+    @Test public void minus_04() {
+        test(Join.hashMinus(keyA, left.iterator(null), right.iterator(null), List.of(), execCxt(false)),
+             "(table (row (?a 1) (?b 2)) (row (?a 2) (?b 3)) (row (?a 3) (?b 4)) (row (?b 5)))");
+    }
+
+    // Queries: the main engine, with and without hash joins, against the reference engine.
+
+    private static DatasetGraph dsg;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder("PREFIX : <http://example/>\n");
+        for ( int i = 0 ; i < 50 ; i++ ) {
+            sb.append(String.format(":s%d :p %d .\n", i, i));
+            if ( i % 3 == 0 )
+                sb.append(String.format(":s%d :label \"s%d\" .\n", i, i));
+            if ( i % 5 == 0 )
+                sb.append(String.format(":s%d :q :s%d .\n", i, i+1));
+            if ( i % 7 == 0 )
+                sb.append(String.format(":g { :s%d :label \"g%d\" }\n", i, i));
+        }
+        dsg = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsg);
+    }
+
+    @Test public void query_01() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l } }"); }
+    @Test public void query_02() { testQuery("SELECT * { ?s :p ?o FILTER EXISTS { ?s :label ?l } }"); }
+    @Test public void query_03() { testQuery("SELECT * { ?s :p ?o MINUS { ?s :label ?l } }"); }
+    @Test public void query_04() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l FILTER(?l != 's3') } }"); }
+    @Test public void query_05() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { GRAPH ?g { ?s :label ?l } } }"); }
+    @Test public void query_06() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { { ?s :label ?l } UNION { ?s :q ?z } } }"); }
+    @Test public void query_07() { testQuery("SELECT * { ?s :p ?o FILTER EXISTS { ?s :q ?z . ?z :p ?v } }"); }
+    @Test public void query_08() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?z :q ?s } }"); }
+    @Test public void query_09() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?x :q ?y } }"); }
+    @Test public void query_10() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?x :unknown ?y } }"); }
+    @Test public void query_11() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l } FILTER (?o > 10) }"); }
+    // By substitution: filter of a variable of the outer row.
+    @Test public void query_12() { testQuery("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l FILTER(?o > 20) } }"); }
+    @Test public void query_13() { testQuery("SELECT * { ?s :p ?o OPTIONAL { ?s :q ?z } FILTER NOT EXISTS { ?z :label ?l } }"); }
+    @Test public void query_14() { testQuery("SELECT * { ?s :p ?o OPTIONAL { ?s :q ?z } MINUS { ?z :label ?l } }"); }
+    @Test public void query_15() { testQuery("SELECT * { ?s :p ?o MINUS { ?x :label ?l } }"); }
+
+    // Zero length paths: :x is not in the graph but :x :p* :x matches.
+    @Test public void query_path_01() { testQuery("SELECT * { VALUES ?s { :x :s1 } FILTER EXISTS { ?s :q* ?z } }"); }
+    @Test public void query_path_02() { testQuery("SELECT * { VALUES ?s { :x :s1 } FILTER NOT EXISTS { ?s :q? ?z } }"); }
+    @Test public void query_path_03() { testQuery("SELECT * { VALUES ?s { :x :s5 } FILTER EXISTS { ?s :q{0,2} ?z } }"); }
+    @Test public void query_path_04() { testQuery("SELECT * { VALUES ?s { :x :s5 } FILTER EXISTS { ?s :q+ ?z } }"); }
+    @Test public void query_path_05() { testQuery("SELECT * { VALUES ?s { :x :s5 } FILTER NOT EXISTS { ?s :q/:p* ?z } }"); }
+
+    @Test public void substitutionIsJoin_path() {
+        assertFalse(substitutionIsJoin("(path ?s (path* :q) ?z)"));
+        assertFalse(substitutionIsJoin("(path ?s (path? :q) ?z)"));
+        assertFalse(substitutionIsJoin("(path ?s (mod 0 2 :q) ?z)"));
+        assertFalse(substitutionIsJoin("(path ?s (alt :p (path* :q)) ?z)"));
+        assertTrue(substitutionIsJoin("(path ?s (path+ :q) ?z)"));
+        assertTrue(substitutionIsJoin("(path ?s (seq :q (path* :p)) ?z)"));
+        assertTrue(substitutionIsJoin("(path ?s (mod 1 2 :q) ?z)"));
+    }
+
+    private static boolean substitutionIsJoin(String opStr) {
+        return QueryIterHashSemiJoin.substitutionIsJoin(SSE.parseOp("(prefix ((: <http://example/>)) "+opStr+")"));
+    }
+
+    @Test public void query_threshold() {
+        Query query = QueryFactory.create("PREFIX : <http://example/> SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l } }");
+        assertEquals(1, hashJoins(query, 0));
+        assertEquals(1, hashJoins(query, 49));
+        // 50 rows.
+        assertEquals(0, hashJoins(query, 50));
+        assertEquals(0, hashJoins(query, -1));
+    }
+
+    @Test public void query_threshold_minus() {
+        Query query = QueryFactory.create("PREFIX : <http://example/> SELECT * { ?s :p ?o MINUS { ?s :label ?l } }");
+        assertEquals(1, hashJoins(query, 1000));
+        assertEquals(0, hashJoins(query, -1));
+    }
+
+    @Test public void query_threshold_lazy() {
+        // The rows are counted when the results are requested, not when the iterators are built.
+        AtomicInteger reads = new AtomicInteger();
+        Graph graph = new GraphWrapper(dsg.getDefaultGraph()) {
+            @Override
+            public ExtendedIterator<Triple> find(Node s, Node p, Node o) {
+                return super.find(s, p, o).mapWith(t->{ reads.incrementAndGet(); return t; });
+            }
+        };
+        Op op = SSE.parseOp("(prefix ((: <http://example/>)) (filter (notexists (bgp (?s :label ?l))) (bgp (?s :p ?o))))");
+        ExecutionContext execCxt = new ExecutionContext(DatasetGraphFactory.wrap(graph));
+        execCxt.getContext().set(ARQ.hashExistsThreshold, 10);
+        QueryIterator qIter = QC.execute(op, QueryIterRoot.create(execCxt), execCxt);
+        assertEquals(0, reads.get());
+        try {
+            assertEquals(33, Iter.count(qIter));
+        } finally { qIter.close(); }
+    }
+
+    private static long hashJoins(Query query, long threshold) {
+        Context cxt = ARQ.getContext().copy();
+        cxt.set(ARQ.hashExistsThreshold, threshold);
+        HashJoinStats stats = new HashJoinStats();
+        cxt.set(HashJoinStats.symbol, stats);
+        assertEquals(33, exec(query, QueryEngineMain.getFactory(), cxt).size());
+        return stats.getJoins();
+    }
+
+    private static void testQuery(String queryString) {
+        Query query = QueryFactory.create("PREFIX : <http://example/>\n" + queryString);
+        List<Binding> expected = exec(query, QueryEngineRef.getFactory(), ARQ.getContext());
+        Context cxt = ARQ.getContext().copy();
+        cxt.set(ARQ.hashExistsThreshold, -1);
+        List<Binding> bySubstitution = exec(query, QueryEngineMain.getFactory(), cxt);
+        cxt.set(ARQ.hashExistsThreshold, 0);
+        List<Binding> byHash = exec(query, QueryEngineMain.getFactory(), cxt);
+        cxt.set(ARQ.spillToDiskThreshold, 2L);
+        List<Binding> bySpill = exec(query, QueryEngineMain.getFactory(), cxt);
+        assertTrue("Substitution: "+bySubstitution, ListUtils.equalsUnordered(expected, bySubstitution));
+        assertTrue("Hash: "+byHash, ListUtils.equalsUnordered(expected, byHash));
+        assertTrue("Spill: "+bySpill, ListUtils.equalsUnordered(expected, bySpill));
+    }
+
+    private static List<Binding> exec(Query query, QueryEngineFactory factory, Context cxt) {
+        QueryIterator qIter = factory.create(query, dsg, BindingRoot.create(), cxt).iterator();
+        try {
+            return Iter.toList(qIter);
+        } finally { qIter.close(); }
+    }
+
+    private static void test(QueryIterator qIter, String expectedStr) {
+        Table expected = SSE.parseTable(expectedStr);
+        List<Binding> x = Iter.toList(qIter);
+        qIter.close();
+        List<Binding> y = Iter.toList(expected.rows());
+        assertEquals(y.size(), x.size());
+        assertTrue(x.toString(), ListUtils.equalsUnordered(y, x));
+    }
+
+    private static ExecutionContext execCxt(boolean spill) {
+        Context cxt = new Context();
+        if ( spill )
+            cxt.set(ARQ.spillToDiskThreshold, 0L);
+        return new ExecutionContext(cxt, null, null, null);
+    }
+}
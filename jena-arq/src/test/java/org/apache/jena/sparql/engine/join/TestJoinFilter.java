@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** Runtime join filters published by hash joins. */
+public class TestJoinFilter {
+    private static Table left = SSE.parseTable("(table (row (?a 1) (?b 2)) (row (?a 2) (?b 3)) (row (?a 2) (?b 4)))");
+    private static Table right = SSE.parseTable("(table (row (?a 1) (?c 5)) (row (?a 3) (?c 6)) (row (?c 7)))");
+
+    @Test public void joinFilter_safe_01()  { safe("(bgp (?s ?p ?o))", true); }
+    @Test public void joinFilter_safe_02()  { safe("(filter (> ?o 1) (bgp (?s ?p ?o)))", true); }
+    @Test public void joinFilter_safe_03()  { safe("(union (bgp (?s ?p ?o)) (join (bgp (?s ?p ?o)) (table unit)))", true); }
+    @Test public void joinFilter_safe_04()  { safe("(graph ?g (sequence (bgp (?s ?p ?o)) (bgp (?o ?p ?z))))", true); }
+    @Test public void joinFilter_safe_05()  { safe("(extend ((?x 1)) (distinct (bgp (?s ?p ?o))))", true); }
+
+    @Test public void joinFilter_safe_10()  { safe("(leftjoin (bgp (?s ?p ?o)) (bgp (?o ?p ?z)))", false); }
+    @Test public void joinFilter_safe_11()  { safe("(minus (bgp (?s ?p ?o)) (bgp (?o ?p ?z)))", false); }
+    @Test public void joinFilter_safe_12()  { safe("(project (?s) (bgp (?s ?p ?o)))", false); }
+    @Test public void joinFilter_safe_13()  { safe("(slice _ 5 (bgp (?s ?p ?o)))", false); }
+    @Test public void joinFilter_safe_14()  { safe("(group (?s) ((?c (count))) (bgp (?s ?p ?o)))", false); }
+    @Test public void joinFilter_safe_15()  { safe("(filter (notexists (bgp (?s ?p ?z))) (bgp (?s ?p ?o)))", false); }
+    @Test public void joinFilter_safe_16()  { safe("(extend ((?x (exists (bgp (?s ?p ?z))))) (bgp (?s ?p ?o)))", false); }
+    @Test public void joinFilter_safe_17()  { safe("(union (bgp (?s ?p ?o)) (leftjoin (bgp (?s ?p ?o)) (bgp (?o ?p ?z))))", false); }
+
+    @Test public void joinFilter_disabled() {
+        ExecutionContext execCxt = execCxt();
+        execCxt.getContext().set(ARQ.runtimeJoinFilter, false);
+        assertNull(JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt));
+    }
+
+    @Test public void joinFilter_context() {
+        ExecutionContext execCxt = execCxt();
+        JoinFilter joinFilter = JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt);
+        assertNull(JoinFilter.get(execCxt));
+        ExecutionContext execCxt2 = joinFilter.execContext(execCxt);
+        assertSame(joinFilter, JoinFilter.get(execCxt2));
+        assertNull(joinFilter.getParent());
+        JoinFilter joinFilter2 = JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt2);
+        assertSame(joinFilter, joinFilter2.getParent());
+        // Original context unchanged.
+        assertNull(JoinFilter.get(execCxt));
+    }
+
+    @Test public void joinFilter_publish_01() {
+        ExecutionContext execCxt = execCxt();
+        JoinFilter joinFilter = JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt);
+        assertFalse(joinFilter.isPublished());
+        assertTrue(joinFilter.mightContain(NodeFactory.createLiteral("anything")));
+        QueryIterator qIter = QueryIterHashJoin.create(null, left.iterator(null), right.iterator(null), joinFilter, execCxt);
+        assertTrue(joinFilter.isPublished());
+        assertEquals(Var.alloc("a"), joinFilter.getVar());
+        assertTrue(joinFilter.mightContain(SSE.parseNode("1")));
+        assertTrue(joinFilter.mightContain(SSE.parseNode("2")));
+        // Two distinct values.
+        assertEquals(Integer.valueOf(2), joinFilter.derive("test", keys->keys.length));
+        // (1,2)x(1,5), (2,3)x(7), (2,4)x(7), (1,2)x(7)
+        assertEquals(4, Iter.count(qIter));
+        qIter.close();
+    }
+
+    @Test public void joinFilter_publish_02() {
+        // A row of the build side without the join key.
+        Table left2 = SSE.parseTable("(table (row (?a 1) (?b 2)) (row (?b 3)))");
+        ExecutionContext execCxt = execCxt();
+        JoinFilter joinFilter = JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt);
+        QueryIterator qIter = QueryIterHashJoin.create(JoinKey.create(Var.alloc("a")), left2.iterator(null), right.iterator(null), joinFilter, execCxt);
+        assertFalse(joinFilter.isPublished());
+        assertNull(joinFilter.derive("test", keys->keys.length));
+        qIter.close();
+    }
+
+    @Test public void joinFilter_publish_03() {
+        // Spilled build side.
+        ExecutionContext execCxt = TestHashJoinSpill.spillingExecCxt();
+        JoinFilter joinFilter = JoinFilter.create(SSE.parseOp("(bgp (?s ?p ?o))"), execCxt);
+        assertNotNull(joinFilter);
+        QueryIterator qIter = QueryIterHashJoin.create(JoinKey.create(Var.alloc("a")), left.iterator(null), right.iterator(null), joinFilter, execCxt);
+        assertFalse(joinFilter.isPublished());
+        assertEquals(4, Iter.count(qIter));
+        qIter.close();
+    }
+
+    private static void safe(String opStr, boolean expected) {
+        JoinFilter joinFilter = JoinFilter.create(SSE.parseOp(opStr), execCxt());
+        assertEquals(expected, joinFilter != null);
+    }
+
+    private static ExecutionContext execCxt() {
+        return new ExecutionContext(new Context(), null, null, null);
+    }
+}
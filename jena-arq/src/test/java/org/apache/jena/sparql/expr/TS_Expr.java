@@ -18,6 +18,7 @@
 
 package org.apache.jena.sparql.expr;
 
+import org.apache.jena.sparql.expr.compile.TestExprCompiler;
 import org.apache.jena.sparql.expr.nodevalue.TestNodeValueSortKey;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -48,6 +49,7 @@ import org.junit.runners.Suite.SuiteClasses;
     , TestStatisticsAggregates.class
     , TestFunctionDynamic.class
     , TestNodeValueSortKey.class
+    , TestExprCompiler.class
 })
 
 public class TS_Expr
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.expr.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprEvalException;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionEnv;
+import org.apache.jena.sparql.function.FunctionEnvBase;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.ExprUtils;
+import org.junit.Test;
+
+/** Compiled expressions give the same results as the expression interpreter. */
+public class TestExprCompiler {
+
+    private static final Var x = Var.alloc("x");
+    private static final Var y = Var.alloc("y");
+
+    // Values for ?x and ?y; null is "unbound".
+    private static final List<String> values = Arrays.asList(
+        null,
+        "1", "2", "-5", "'1'^^xsd:int", "'01'^^xsd:integer", "'abc'^^xsd:integer",
+        "1.0", "2.5", "'1.50'^^xsd:decimal",
+        "'1.0'^^xsd:float", "1.0e0", "2.5e0", "'NaN'^^xsd:double", "'INF'^^xsd:double", "'-0.0'^^xsd:double",
+        "9223372036854775807", "-9223372036854775808", "123456789012345678901234567890",
+        "'abc'", "'abd'", "''", "'abc'@en", "'abc'^^xsd:normalizedString",
+        "'2021-01-01T00:00:00Z'^^xsd:dateTime", "'2021-01-01T01:00:00+01:00'^^xsd:dateTime",
+        "'2021-01-01T00:00:00.5Z'^^xsd:dateTime", "'2021-01-01T00:00:00'^^xsd:dateTime",
+        "'2021-01-01'^^xsd:date",
+        "true", "false",
+        "<http://example/a>", "<http://example/b>", "_:b",
+        "'x'^^<http://example/dt>"
+    );
+
+    private static final List<String> expressions = Arrays.asList(
+        "?x = ?y", "?x != ?y", "?x < ?y", "?x <= ?y", "?x > ?y", "?x >= ?y",
+        "?x = 1", "?x < 2.0", "?x > '2021-01-01T00:00:00Z'^^xsd:dateTime", "?x >= 'abc'", "?x = <http://example/a>",
+        "?x + ?y", "?x - ?y", "?x * ?y", "?x + 1", "?x * 1.0e0",
+        "?x < ?y && ?x != 1", "?x < ?y || ?x = 1", "!(?x < ?y)", "!?x",
+        "(?x = 1) && (?y = 1)", "(?x = 1) || (?y = 1)",
+        "bound(?x) && ?x > 1", "!bound(?y) || ?y < 2",
+        "?x IN (<http://example/a>, <http://example/c>)",
+        "?x NOT IN (<http://example/a>, <http://example/c>)",
+        "?x IN (1, 2)",
+        "?x", "str(?x) = 'abc'", "1 + 2 < ?x", "?x + ?y > 2"
+    );
+
+    @Test public void compile_agrees_with_interpreter() {
+        FunctionEnv env = new FunctionEnvBase();
+        for ( String exprStr : expressions ) {
+            Expr expr = ExprUtils.parse(exprStr);
+            CompiledExpr compiled = ExprCompiler.compile(expr, null);
+            for ( String xs : values ) {
+                for ( String ys : values ) {
+                    Binding binding = binding(xs, ys);
+                    String label = exprStr+" : ?x="+xs+" ?y="+ys;
+                    assertEquals(label, expr.isSatisfied(binding, env), compiled.isSatisfied(binding, env));
+                    assertEquals(label, evalOrError(expr, binding, env), evalOrError(compiled, binding, env));
+                }
+            }
+        }
+    }
+
+    @Test public void compile_error_rethrown() {
+        CompiledExpr compiled = ExprCompiler.compile(ExprUtils.parse("?x < 1"), null);
+        try {
+            compiled.eval(binding("'abc'", null), new FunctionEnvBase());
+            fail("Expected an evaluation exception");
+        } catch (ExprEvalException ex) {}
+    }
+
+    @Test public void compile_and_error_false() {
+        // error && false is false; error || true is true.
+        Binding binding = binding("1", null);
+        FunctionEnv env = new FunctionEnvBase();
+        assertEquals(NodeValue.FALSE, ExprCompiler.compile(ExprUtils.parse("?y > 0 && ?x = 2"), null).eval(binding, env));
+        assertEquals(NodeValue.TRUE, ExprCompiler.compile(ExprUtils.parse("?y > 0 || ?x = 1"), null).eval(binding, env));
+    }
+
+    @Test public void compile_integer_overflow() {
+        CompiledExpr compiled = ExprCompiler.compile(ExprUtils.parse("?x + 1"), null);
+        NodeValue nv = compiled.eval(binding("9223372036854775807", null), new FunctionEnvBase());
+        assertEquals(NodeValue.makeInteger("9223372036854775808"), nv);
+    }
+
+    @Test public void compile_disabled() {
+        Context cxt = new Context();
+        cxt.set(ARQ.compileExpressions, false);
+        assertFalse(ExprCompiler.isEnabled(cxt));
+        assertTrue(ExprCompiler.isEnabled(new Context()));
+        Expr expr = ExprUtils.parse("?x = 1");
+        CompiledExpr compiled = ExprCompiler.compile(expr, cxt);
+        assertNotNull(compiled);
+        assertEquals(expr, compiled.getExpr());
+        assertTrue(compiled.isSatisfied(binding("1", null), new FunctionEnvBase()));
+    }
+
+    private static Object evalOrError(Expr expr, Binding binding, FunctionEnv env) {
+        try {
+            return expr.eval(binding, env);
+        } catch (ExprEvalException ex) {
+            return "error";
+        }
+    }
+
+    private static Object evalOrError(CompiledExpr expr, Binding binding, FunctionEnv env) {
+        try {
+            return expr.eval(binding, env);
+        } catch (ExprEvalException ex) {
+            return "error";
+        }
+    }
+
+    private static Binding binding(String xs, String ys) {
+        BindingBuilder builder = Binding.builder();
+        if ( xs != null )
+            builder.add(x, node(xs));
+        if ( ys != null )
+            builder.add(y, node(ys));
+        return builder.build();
+    }
+
+    private static Node node(String str) {
+        return SSE.parseNode(str.replace('\'', '"'));
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over 64 bit hash values.
+ * <p>
+ * {@link #mightContain} is never false for a value that has been added, and is true
+ * for a value that has not been added at roughly the false positive rate the
+ * filter was created for. Callers supply a good 64 bit hash of each item;
+ * {@link #hash(long)} spreads the bits of a value that is not already well mixed.
+ * <p>
+ * Adding is not thread safe; once built, a filter can be read from any number of threads.
+ */
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final long[] words;
+    private final long   numBits;
+    private final int    numHashes;
+
+    /**
+     * Create a filter sized for {@code expectedItems} items at the false positive
+     * rate {@code fpp} (0 &lt; fpp &lt; 1).
+     */
+    public static BloomFilter create(long expectedItems, double fpp) {
+        if ( fpp <= 0 || fpp >= 1 )
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + fpp);
+        expectedItems = Math.max(1, expectedItems);
+        // m = -n ln(p) / (ln 2)^2 ; k = m/n ln 2
+        long numBits = (long)Math.ceil(-expectedItems * Math.log(fpp) / (LN2 * LN2));
+        numBits = Math.max(Long.SIZE, numBits);
+        int numHashes = (int)Math.max(1, Math.round((double)numBits / expectedItems * LN2));
+        return new BloomFilter(numBits, numHashes);
+    }
+
+    /** Create an empty filter of {@code numBits} bits, each item setting {@code numHashes} bits. */
+    public BloomFilter(long numBits, int numHashes) {
+        if ( numBits <= 0 || numHashes <= 0 )
+            throw new IllegalArgumentException("Bad Bloom filter size: bits=" + numBits + " hashes=" + numHashes);
+        long numWords = (numBits + Long.SIZE - 1) / Long.SIZE;
+        if ( numWords > Integer.MAX_VALUE - 8 )
+            throw new IllegalArgumentException("Bloom filter too large: bits=" + numBits);
+        this.words = new long[(int)numWords];
+        this.numBits = numWords * Long.SIZE;
+        this.numHashes = numHashes;
+    }
+
+    /** Add an item, given as its 64 bit hash. */
+    public void add(long hash) {
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for ( int i = 0 ; i < numHashes ; i++ ) {
+            long bit = Long.remainderUnsigned(h1, numBits);
+            words[(int)(bit >>> 6)] |= 1L << bit;
+            h1 += h2;
+        }
+    }
+
+    /** Test for an item, given as its 64 bit hash. False means it has definitely not been added. */
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for ( int i = 0 ; i < numHashes ; i++ ) {
+            long bit = Long.remainderUnsigned(h1, numBits);
+            if ( (words[(int)(bit >>> 6)] & (1L << bit)) == 0 )
+                return false;
+            h1 += h2;
+        }
+        return true;
+    }
+
+    /** Number of bits in the filter. */
+    public long numBits() {
+        return numBits;
+    }
+
+    /** Number of bits set for each item. */
+    public int numHashes() {
+        return numHashes;
+    }
+
+    /** Write the filter. See {@link #read}. */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(numBits);
+        out.writeInt(numHashes);
+        for ( long w : words )
+            out.writeLong(w);
+    }
+
+    /** Read a filter written by {@link #write}. */
+    public static BloomFilter read(DataInput in) throws IOException {
+        long numBits = in.readLong();
+        int numHashes = in.readInt();
+        BloomFilter bloom = new BloomFilter(numBits, numHashes);
+        if ( bloom.numBits != numBits )
+            throw new IOException("Bad Bloom filter size: bits=" + numBits);
+        for ( int i = 0 ; i < bloom.words.length ; i++ )
+            bloom.words[i] = in.readLong();
+        return bloom;
+    }
+
+    /** Spread the bits of a value (the 64 bit finalizer of MurmurHash3). */
+    public static long hash(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
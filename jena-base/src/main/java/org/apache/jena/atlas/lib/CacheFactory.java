@@ -31,6 +31,19 @@ public class CacheFactory {
         return new CacheGuava<>(maxSize) ;
     }
 
+    /**
+     * Create a cache which has space for up to a certain number of objects,
+     * with lookups that do not take a lock and an eviction policy that is not
+     * upset by a scan of many objects each used once.
+     * The cache returns null for a cache miss.
+     * The cache is thread-safe for single operations.
+     *
+     * @see CacheS3FIFO
+     */
+    public static <Key, Value> Cache<Key, Value> createScanResistantCache(int maxSize) {
+        return new CacheS3FIFO<>(maxSize) ;
+    }
+
     /** Create a null cache */
     public static <Key, Value> Cache<Key, Value> createNullCache() {
         return new Cache0<>() ;
@@ -0,0 +1,284 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib.cache;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.logging.Log;
+
+/**
+ * A concurrent, scan-resistant cache using the S3-FIFO policy.
+ * <p>
+ * New entries go into a small FIFO queue (10% of the cache). An entry that has not
+ * been used again when it reaches the end of that queue is dropped, and its key is
+ * remembered in a "ghost" queue; an entry that has been used moves to the main
+ * queue. The main queue is a CLOCK: an entry that has been used since it was last
+ * looked at goes round again. A key that is seen again while in the ghost queue goes
+ * straight into the main queue. A scan of many keys, each used once, only passes
+ * through the small queue and does not push out the working set.
+ * <p>
+ * Lookups do not take a lock: {@link #getIfPresent} is a read of a
+ * {@link ConcurrentHashMap} and a counter update. Changes to the queues, on
+ * {@link #put} and {@link #remove}, are done holding a lock.
+ * <p>
+ * The drop handler is called for entries dropped to make space, not for
+ * {@link #remove} or {@link #clear}.
+ */
+public class CacheS3FIFO<K, V> implements Cache<K, V> {
+    private static final int MaxFreq = 3;
+
+    private static final class Entry<K, V> {
+        final K key;
+        volatile V value;
+        // Usage count, capped at MaxFreq. Updates may be lost under contention.
+        volatile int freq = 0;
+        // Guarded by the lock.
+        boolean inMain = false;
+        boolean removed = false;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final int smallCapacity;
+    private final Map<K, Entry<K, V>> map;
+
+    // Guarded by the lock.
+    private final Object lock = new Object();
+    private final ArrayDeque<Entry<K, V>> small = new ArrayDeque<>();
+    private final ArrayDeque<Entry<K, V>> main = new ArrayDeque<>();
+    private final Map<K, Boolean> ghost;
+    private int smallSize = 0;
+    private int mainSize = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private BiConsumer<K, V> dropHandler = null;
+
+    public CacheS3FIFO(int size) {
+        if ( size <= 0 )
+            throw new IllegalArgumentException("Cache size must be positive: " + size);
+        this.capacity = size;
+        this.smallCapacity = Math.max(1, size / 10);
+        this.map = new ConcurrentHashMap<>(Math.min(size, 1024));
+        int ghostCapacity = size - smallCapacity;
+        this.ghost = new LinkedHashMap<K, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Boolean> eldest) {
+                return size() > ghostCapacity;
+            }
+        };
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        Entry<K, V> e = map.get(key);
+        if ( e == null ) {
+            misses.increment();
+            return null;
+        }
+        int f = e.freq;
+        if ( f < MaxFreq )
+            e.freq = f + 1;
+        hits.increment();
+        return e.value;
+    }
+
+    @Override
+    public V getOrFill(K key, Callable<V> callable) {
+        // Not atomic: under contention, the callable may be called more than once for a key.
+        V value = getIfPresent(key);
+        if ( value != null )
+            return value;
+        try {
+            value = callable.call();
+        } catch (Exception ex) {
+            Log.warn(CacheS3FIFO.class, "Exception filling cache", ex);
+            return null;
+        }
+        if ( value != null )
+            put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if ( value == null ) {
+            remove(key);
+            return;
+        }
+        synchronized(lock) {
+            Entry<K, V> e = map.get(key);
+            if ( e != null ) {
+                e.value = value;
+                return;
+            }
+            e = new Entry<>(key, value);
+            if ( ghost.remove(key) != null ) {
+                e.inMain = true;
+                main.addLast(e);
+                mainSize++;
+            } else {
+                small.addLast(e);
+                smallSize++;
+            }
+            map.put(key, e);
+            while ( smallSize + mainSize > capacity )
+                evict();
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        synchronized(lock) {
+            Entry<K, V> e = map.remove(key);
+            if ( e == null )
+                return;
+            e.removed = true;
+            if ( e.inMain )
+                mainSize--;
+            else
+                smallSize--;
+            // Removed entries are skipped when reached; tidy up if there are many.
+            if ( small.size() + main.size() > 2 * capacity + 16 ) {
+                small.removeIf(x -> x.removed);
+                main.removeIf(x -> x.removed);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<K> keys() {
+        return new ArrayList<>(map.keySet()).iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        synchronized(lock) {
+            map.clear();
+            small.clear();
+            main.clear();
+            ghost.clear();
+            smallSize = 0;
+            mainSize = 0;
+        }
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public void setDropHandler(BiConsumer<K, V> dropHandler) {
+        this.dropHandler = dropHandler;
+    }
+
+    /** Number of lookups that found an entry. */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** Number of lookups that did not find an entry. */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** Number of entries dropped to make space. */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Called holding the lock.
+    private void evict() {
+        if ( smallSize > smallCapacity || mainSize == 0 )
+            evictSmall();
+        else
+            evictMain();
+    }
+
+    private void evictSmall() {
+        for ( ;; ) {
+            Entry<K, V> e = small.pollFirst();
+            if ( e == null )
+                return;
+            if ( e.removed )
+                continue;
+            smallSize--;
+            if ( e.freq > 0 ) {
+                // Used again: keep.
+                e.freq = 0;
+                e.inMain = true;
+                main.addLast(e);
+                mainSize++;
+                return;
+            }
+            ghost.put(e.key, Boolean.TRUE);
+            drop(e);
+            return;
+        }
+    }
+
+    private void evictMain() {
+        for ( ;; ) {
+            Entry<K, V> e = main.pollFirst();
+            if ( e == null )
+                return;
+            if ( e.removed )
+                continue;
+            int f = e.freq;
+            if ( f > 0 ) {
+                e.freq = f - 1;
+                main.addLast(e);
+                continue;
+            }
+            mainSize--;
+            drop(e);
+            return;
+        }
+    }
+
+    private void drop(Entry<K, V> e) {
+        map.remove(e.key);
+        e.removed = true;
+        evictions.increment();
+        if ( dropHandler != null )
+            dropHandler.accept(e.key, e.value);
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.jena.atlas.lib;
 
 
+import org.apache.jena.atlas.lib.cache.TestCacheS3FIFO;
 import org.apache.jena.atlas.lib.cache.TestCacheSimple;
 import org.junit.runner.RunWith ;
 import org.junit.runners.Suite ;
@@ -31,6 +32,7 @@ import org.junit.runners.Suite ;
     TestAlg.class
     , TestBitsLong.class
     , TestBitsInt.class
+    , TestBloomFilter.class
     , TestBytes.class
     , TestEscapeStr.class
     , TestHex.class
@@ -49,6 +51,7 @@ import org.junit.runners.Suite ;
     , TestNumberUtils.class
     , TestDateTimeUtils.class
     , TestCacheSimple.class
+    , TestCacheS3FIFO.class
     , TestRefCountingMap.class
 } )
 
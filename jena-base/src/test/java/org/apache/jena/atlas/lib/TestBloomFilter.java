@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.* ;
+
+import org.junit.Test ;
+
+public class TestBloomFilter
+{
+    @Test public void bloom_01()
+    {
+        BloomFilter bloom = BloomFilter.create(1000, 0.01) ;
+        for ( long i = 0 ; i < 1000 ; i++ )
+            bloom.add(BloomFilter.hash(i)) ;
+        for ( long i = 0 ; i < 1000 ; i++ )
+            assertTrue(bloom.mightContain(BloomFilter.hash(i))) ;
+    }
+
+    @Test public void bloom_02()
+    {
+        // False positive rate is close to the requested rate.
+        BloomFilter bloom = BloomFilter.create(10000, 0.01) ;
+        for ( long i = 0 ; i < 10000 ; i++ )
+            bloom.add(BloomFilter.hash(i)) ;
+        int falsePositives = 0 ;
+        for ( long i = 10000 ; i < 110000 ; i++ ) {
+            if ( bloom.mightContain(BloomFilter.hash(i)) )
+                falsePositives++ ;
+        }
+        assertTrue("False positives: "+falsePositives, falsePositives < 2000) ;
+    }
+
+    @Test public void bloom_03()
+    {
+        BloomFilter bloom = BloomFilter.create(0, 0.1) ;
+        assertEquals(false, bloom.mightContain(BloomFilter.hash(1))) ;
+        bloom.add(BloomFilter.hash(1)) ;
+        assertTrue(bloom.mightContain(BloomFilter.hash(1))) ;
+    }
+
+    @Test public void bloom_04()
+    {
+        // Size: ~9.6 bits and 7 hashes per item for 1%.
+        BloomFilter bloom = BloomFilter.create(1000, 0.01) ;
+        assertTrue(bloom.numBits() >= 9585 && bloom.numBits() < 9585+64) ;
+        assertEquals(7, bloom.numHashes()) ;
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void bloom_05()
+    {
+        BloomFilter.create(1000, 1.5) ;
+    }
+
+    @Test public void bloom_06() throws IOException
+    {
+        BloomFilter bloom = BloomFilter.create(1000, 0.01) ;
+        for ( long i = 0 ; i < 1000 ; i++ )
+            bloom.add(BloomFilter.hash(i)) ;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        bloom.write(new DataOutputStream(bytes)) ;
+        BloomFilter bloom2 = BloomFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) ;
+        assertEquals(bloom.numBits(), bloom2.numBits()) ;
+        assertEquals(bloom.numHashes(), bloom2.numHashes()) ;
+        for ( long i = 0 ; i < 2000 ; i++ )
+            assertEquals(bloom.mightContain(BloomFilter.hash(i)), bloom2.mightContain(BloomFilter.hash(i))) ;
+    }
+}
@@ -59,6 +59,16 @@ public class TestCache
         }
     ;
 
+    private static CacheMaker<Integer, Integer> scanResistant = 
+        new CacheMaker<Integer, Integer>()
+        {
+        @Override
+        public Cache<Integer, Integer> make(int size) { return CacheFactory.createScanResistantCache(size) ; }
+        @Override
+        public String name() { return "ScanResistant" ; } 
+        }
+    ;
+
     @Parameters
     public static Collection<Object[]> cacheMakers()
     {
@@ -69,6 +79,9 @@ public class TestCache
             , { standard , 10 }
             , { standard , 2 }
             , { standard , 1 }
+            , { scanResistant , 10 }
+            , { scanResistant , 2 }
+            , { scanResistant , 1 }
         } ) ; 
     }
 
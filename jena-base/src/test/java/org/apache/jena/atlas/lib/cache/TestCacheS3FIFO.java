@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link CacheS3FIFO}
+ */
+public class TestCacheS3FIFO {
+
+    @Test
+    public void testFixedSize() {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(5);
+        for ( int i = 1 ; i <= 10 ; i++ )
+            cache.put(i, i);
+        assertEquals(5, cache.size());
+        assertEquals(5, cache.evictionCount());
+    }
+
+    @Test
+    public void testScanResistant() {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(100);
+        // Working set, used more than once.
+        for ( int i = 0 ; i < 50 ; i++ )
+            cache.put(i, i);
+        for ( int i = 0 ; i < 50 ; i++ )
+            assertNotNull(cache.getIfPresent(i));
+        // Scan of keys used once.
+        for ( int i = 1000 ; i < 2000 ; i++ )
+            cache.put(i, i);
+        for ( int i = 0 ; i < 50 ; i++ )
+            assertTrue("Key: "+i, cache.containsKey(i));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testGhost() {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(10);
+        cache.put(1, 1);
+        // Push 1 out, unused.
+        for ( int i = 100 ; i < 110 ; i++ )
+            cache.put(i, i);
+        assertFalse(cache.containsKey(1));
+        // Seen again: goes into the main queue and survives a scan.
+        cache.put(1, 1);
+        cache.getIfPresent(1);
+        for ( int i = 200 ; i < 300 ; i++ )
+            cache.put(i, i);
+        assertTrue(cache.containsKey(1));
+    }
+
+    @Test
+    public void testDropHandler() {
+        List<Integer> dropped = new ArrayList<>();
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(2);
+        cache.setDropHandler((k, v) -> dropped.add(k));
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.remove(2);
+        assertTrue(dropped.isEmpty());
+        cache.put(3, 3);
+        cache.put(4, 4);
+        assertEquals(List.of(1), dropped);
+    }
+
+    @Test
+    public void testCounts() {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(10);
+        cache.put(1, 1);
+        cache.getIfPresent(1);
+        cache.getIfPresent(2);
+        cache.getIfPresent(1);
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testRemoveMany() {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(10);
+        for ( int i = 0 ; i < 1000 ; i++ ) {
+            cache.put(i, i);
+            cache.remove(i);
+        }
+        assertTrue(cache.isEmpty());
+        for ( int i = 0 ; i < 20 ; i++ )
+            cache.put(i, i);
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        CacheS3FIFO<Integer, Integer> cache = new CacheS3FIFO<>(100);
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for ( int t = 0 ; t < threads.length ; t++ ) {
+            int base = t;
+            threads[t] = new Thread(() -> {
+                for ( int i = 0 ; i < 20_000 ; i++ ) {
+                    int k = (i * 7 + base) % 500;
+                    Integer v = cache.getOrFill(k, () -> k);
+                    if ( v == null || v != k )
+                        errors.incrementAndGet();
+                }
+            });
+        }
+        for ( Thread t : threads )
+            t.start();
+        for ( Thread t : threads )
+            t.join();
+        assertEquals(0, errors.get());
+        assertTrue(cache.size() <= 100);
+    }
+}
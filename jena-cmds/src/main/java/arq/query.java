@@ -19,6 +19,7 @@
 package arq;
 
 import java.io.PrintStream;
+import java.util.Locale;
 
 import arq.cmdline.* ;
 import org.apache.commons.io.output.NullPrintStream;
@@ -38,6 +39,7 @@ import org.apache.jena.shared.NotFoundException;
 import org.apache.jena.sparql.ARQInternalErrorException ;
 import org.apache.jena.sparql.core.Transactional ;
 import org.apache.jena.sparql.core.TransactionalNull;
+import org.apache.jena.sparql.engine.main.ExecutionProfile ;
 import org.apache.jena.sparql.mgt.Explain ;
 import org.apache.jena.sparql.resultset.ResultSetException ;
 import org.apache.jena.sparql.resultset.ResultsFormat ;
@@ -49,10 +51,13 @@ public class query extends CmdARQ
     private ArgDecl argRepeat   = new ArgDecl(ArgDecl.HasValue, "repeat") ;
     private ArgDecl argExplain  = new ArgDecl(ArgDecl.NoValue, "explain") ;
     private ArgDecl argOptimize = new ArgDecl(ArgDecl.HasValue, "opt", "optimize") ;
+    private ArgDecl argAnalyze  = new ArgDecl(ArgDecl.HasValue, "analyze") ;
 
     protected int repeatCount = 1 ;
     protected int warmupCount = 0 ;
     protected boolean queryOptimization = true ;
+    // "sse", "json" or null for no execution profile.
+    protected String analyzeFormat = null ;
 
     protected ModTime       modTime =     new ModTime() ;
     protected ModQueryIn    modQuery =    null;
@@ -81,6 +86,7 @@ public class query extends CmdARQ
         super.add(argExplain,  "--explain", "Explain and log query execution") ;
         super.add(argRepeat,   "--repeat=N or N,M", "Do N times or N warmup and then M times (use for timing to overcome start up costs of Java)");
         super.add(argOptimize, "--optimize=", "Turn the query optimizer on or off (default: on)") ;
+        super.add(argAnalyze,  "--analyze=sse|json", "Print the algebra annotated with per-operator row counts and timings") ;
     }
 
     /** Default syntax used when the syntax can not be determined from the command name or file extension
@@ -133,6 +139,13 @@ public class query extends CmdARQ
                 queryOptimization = false ;
             else throw new CmdException("Optimization flag must be true/false/on/off/yes/no. Found: "+getValue(argOptimize)) ;
         }
+
+        if ( hasArg(argAnalyze) )
+        {
+            analyzeFormat = getValue(argAnalyze).toLowerCase(Locale.ROOT) ;
+            if ( ! analyzeFormat.equals("sse") && ! analyzeFormat.equals("json") )
+                throw new CmdException("Analyze format must be sse or json. Found: "+getValue(argAnalyze)) ;
+        }
     }
 
     protected ModDataset setModDataset()
@@ -234,6 +247,11 @@ public class query extends CmdARQ
             Txn.executeRead(transactional, ()->{
                 modTime.startTimer() ;
                 try ( QueryExecution qe = QueryExecutionFactory.create(query, dataset) ) {
+                    ExecutionProfile profile = null ;
+                    if ( analyzeFormat != null ) {
+                        profile = new ExecutionProfile() ;
+                        qe.getContext().set(ARQ.executionProfile, profile) ;
+                    }
                     try { QueryExecUtils.executeQuery(query, qe, fmt, resultsDest); }
                     catch (QueryCancelledException ex) {
                         IO.flush(resultsDest);
@@ -244,6 +262,13 @@ public class query extends CmdARQ
                         totalTime += time;
                         System.err.println("Time: " + modTime.timeStr(time) + " sec");
                     }
+                    if ( profile != null ) {
+                        IO.flush(resultsDest);
+                        if ( analyzeFormat.equals("json") )
+                            System.err.println(profile.asJson()) ;
+                        else
+                            System.err.print(profile.asSSE()) ;
+                    }
                 }
                 catch (ResultSetException ex) {
                     System.err.println(ex.getMessage());
@@ -21,13 +21,23 @@ package org.apache.jena.dboe.base.block;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.jena.atlas.lib.Cache;
 import org.apache.jena.atlas.lib.CacheFactory;
+import org.apache.jena.atlas.lib.cache.CacheGuava;
+import org.apache.jena.atlas.lib.cache.CacheS3FIFO;
+import org.apache.jena.dboe.sys.SystemIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Caching block manager - this is an LRU cache */
+/**
+ * Caching block manager - this is an LRU cache.
+ * <p>
+ * With {@link BlockCacheMode#concurrent}, the read cache is a scan-resistant
+ * {@link CacheS3FIFO} and {@link #getRead} of a block in the read cache does not
+ * take the lock, so concurrent readers of cached blocks do not wait for each other.
+ */
 public class BlockMgrCache extends BlockMgrSync {
     // Actually, this is two cache one on the read blocks and one on the write
     // blocks.
@@ -45,22 +55,31 @@ public class BlockMgrCache extends BlockMgrSync {
     // Also enable the logging level.
     public static boolean            globalLogging  = false;
     private boolean                  logging        = false;
+    // Cached blocks are read without the lock.
+    private final boolean            concurrentReads;
     // ---- stats
-    long                             cacheReadHits  = 0;
-    long                             cacheMisses    = 0;
-    long                             cacheWriteHits = 0;
+    private final LongAdder          cacheReadHits  = new LongAdder();
+    private final LongAdder          cacheMisses    = new LongAdder();
+    private final LongAdder          cacheWriteHits = new LongAdder();
 
     static BlockMgr create(int readSlots, int writeSlots, final BlockMgr blockMgr) {
+        return create(readSlots, writeSlots, SystemIndex.blockCacheMode, blockMgr);
+    }
+
+    static BlockMgr create(int readSlots, int writeSlots, BlockCacheMode cacheMode, final BlockMgr blockMgr) {
         if ( readSlots < 0 && writeSlots < 0 )
             return blockMgr;
-        return new BlockMgrCache(readSlots, writeSlots, blockMgr);
+        return new BlockMgrCache(readSlots, writeSlots, cacheMode, blockMgr);
     }
 
-    private BlockMgrCache(int readSlots, int writeSlots, final BlockMgr blockMgr) {
+    private BlockMgrCache(int readSlots, int writeSlots, BlockCacheMode cacheMode, final BlockMgr blockMgr) {
         super(blockMgr);
         // Caches are related so we can't use a Getter for cache management.
+        concurrentReads = ( cacheMode == BlockCacheMode.concurrent && readSlots > 0 );
         if ( readSlots < -1 )
             readCache = CacheFactory.createNullCache();
+        else if ( concurrentReads )
+            readCache = CacheFactory.createScanResistantCache(readSlots);
         else
             readCache = CacheFactory.createCache(readSlots);
         if ( writeSlots <= 0 )
@@ -103,12 +122,23 @@ public class BlockMgrCache extends BlockMgrSync {
     }
 
     @Override
-    synchronized public Block getRead(long id) {
+    public Block getRead(long id) {
+        if ( concurrentReads ) {
+            Block blk = readCache.getIfPresent(id);
+            if ( blk != null ) {
+                cacheReadHits.increment();
+                return blk;
+            }
+        }
+        return getReadSync(id);
+    }
+
+    synchronized private Block getReadSync(long id) {
         // A Block may be in the read cache or the write cache.
         // It can be just in the write cache because the read cache is finite.
         Block blk = readCache.getIfPresent(id);
         if ( blk != null ) {
-            cacheReadHits++;
+            cacheReadHits.increment();
             log("Hit(r->r) : %d", id);
             return blk;
         }
@@ -121,12 +151,12 @@ public class BlockMgrCache extends BlockMgrSync {
             // Leave in write cache
             blk = writeCache.getIfPresent(id);
         if ( blk != null ) {
-            cacheWriteHits++;
+            cacheWriteHits.increment();
             log("Hit(r->w) : %d", id);
             return blk;
         }
 
-        cacheMisses++;
+        cacheMisses.increment();
         log("Miss/r: %d", id);
         blk = super.getRead(id);
         readCache.put(id, blk);
@@ -140,7 +170,7 @@ public class BlockMgrCache extends BlockMgrSync {
         if ( writeCache != null )
             blk = writeCache.getIfPresent(id);
         if ( blk != null ) {
-            cacheWriteHits++;
+            cacheWriteHits.increment();
             log("Hit(w->w) : %d", id);
             return blk;
         }
@@ -150,14 +180,14 @@ public class BlockMgrCache extends BlockMgrSync {
 
         if ( readCache.containsKey(id) ) {
             blk = readCache.getIfPresent(id);
-            cacheReadHits++;
+            cacheReadHits.increment();
             log("Hit(w->r) : %d", id);
             blk = promote(blk);
             return blk;
         }
 
         // Did not find.
-        cacheMisses++;
+        cacheMisses.increment();
         log("Miss/w: %d", id);
         // Pass operation to wrapper.
         blk = super.getWrite(id);
@@ -166,6 +196,15 @@ public class BlockMgrCache extends BlockMgrSync {
         return blk;
     }
 
+    @Override
+    public void release(Block block) {
+        // Releasing a block does not change the cache.
+        if ( concurrentReads )
+            blockMgr.release(block);
+        else
+            super.release(block);
+    }
+
     @Override
     synchronized public Block promote(Block block) {
         Long id = block.getId();
@@ -242,6 +281,30 @@ public class BlockMgrCache extends BlockMgrSync {
         return "Cache:" + super.blockMgr.toString();
     }
 
+    /** Number of block requests answered from the read cache. */
+    public long getCacheReadHits() {
+        return cacheReadHits.sum();
+    }
+
+    /** Number of block requests answered from the write cache. */
+    public long getCacheWriteHits() {
+        return cacheWriteHits.sum();
+    }
+
+    /** Number of block requests that went to the underlying {@code BlockMgr}. */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /** Number of blocks dropped from the read cache to make space, or -1 if not known. */
+    public long getCacheEvictions() {
+        if ( readCache instanceof CacheS3FIFO )
+            return ((CacheS3FIFO<Long, Block>)readCache).evictionCount();
+        if ( readCache instanceof CacheGuava )
+            return ((CacheGuava<Long, Block>)readCache).stats().evictionCount();
+        return -1;
+    }
+
     private void log(String fmt, Object... args) {
         if ( !logging && !globalLogging )
             return;
@@ -256,7 +319,7 @@ public class BlockMgrCache extends BlockMgrSync {
             String x = "";
             if ( getLabel() != null )
                 x = getLabel() + " : ";
-            log("%sH=%d, M=%d, W=%d", x, cacheReadHits, cacheMisses, cacheWriteHits);
+            log("%sH=%d, M=%d, W=%d", x, cacheReadHits.sum(), cacheMisses.sum(), cacheWriteHits.sum());
         }
 
         if ( writeCache != null )
@@ -47,7 +47,8 @@ public class BlockMgrFactory {
                       params.getFileMode(),
                       params.getBlockSize(),
                       params.getBlockReadCacheSize(),
-                      params.getBlockWriteCacheSize());
+                      params.getBlockWriteCacheSize(),
+                      params.getBlockCacheMode());
     }
 
     public static BlockMgr create(FileSet fileSet, String ext, int blockSize, int readBlockCacheSize, int writeBlockCacheSize) {
@@ -56,10 +57,15 @@ public class BlockMgrFactory {
 
     // XXX Deprecate?
     public static BlockMgr create(FileSet fileSet, String ext, FileMode fileMode, int blockSize, int readBlockCacheSize, int writeBlockCacheSize) {
+        return create(fileSet, ext, fileMode, blockSize, readBlockCacheSize, writeBlockCacheSize, SystemIndex.blockCacheMode);
+    }
+
+    public static BlockMgr create(FileSet fileSet, String ext, FileMode fileMode, int blockSize,
+                                  int readBlockCacheSize, int writeBlockCacheSize, BlockCacheMode cacheMode) {
         if ( fileSet.isMem() )
             return createMem(fileSet.filename(ext), blockSize);
         else
-            return createFile(fileSet.filename(ext), fileMode, blockSize, readBlockCacheSize, writeBlockCacheSize);
+            return createFile(fileSet.filename(ext), fileMode, blockSize, readBlockCacheSize, writeBlockCacheSize, cacheMode);
     }
 
     /** Create an in-memory block manager */
@@ -76,18 +82,25 @@ public class BlockMgrFactory {
     public static BlockMgr createFile(String filename, BlockParams params) {
         return createFile(filename,
                           params.getFileMode(), params.getBlockSize(),
-                          params.getBlockReadCacheSize(), params.getBlockWriteCacheSize());
+                          params.getBlockReadCacheSize(), params.getBlockWriteCacheSize(),
+                          params.getBlockCacheMode());
     }
 
         /** Create a BlockMgr backed by a real file */
     public static BlockMgr createFile(String filename, FileMode fileMode, int blockSize, int readBlockCacheSize, int writeBlockCacheSize) {
+        return createFile(filename, fileMode, blockSize, readBlockCacheSize, writeBlockCacheSize, SystemIndex.blockCacheMode);
+    }
+
+    /** Create a BlockMgr backed by a real file */
+    public static BlockMgr createFile(String filename, FileMode fileMode, int blockSize,
+                                      int readBlockCacheSize, int writeBlockCacheSize, BlockCacheMode cacheMode) {
         if ( fileMode == null )
             fileMode = SystemIndex.fileMode();
         switch (fileMode) {
             case mapped :
                 return createMMapFile(filename, blockSize);
             case direct :
-                return createStdFile(filename, blockSize, readBlockCacheSize, writeBlockCacheSize);
+                return createStdFile(filename, blockSize, readBlockCacheSize, writeBlockCacheSize, cacheMode);
         }
         throw new DBOpEnvException("Unknown file mode: " + fileMode);
     }
@@ -101,9 +114,15 @@ public class BlockMgrFactory {
 
     /** Create a Block Manager using direct access (and a cache) */
     public static BlockMgr createStdFile(String filename, int blockSize, int readBlockCacheSize, int writeBlockCacheSize) {
+        return createStdFile(filename, blockSize, readBlockCacheSize, writeBlockCacheSize, SystemIndex.blockCacheMode);
+    }
+
+    /** Create a Block Manager using direct access and a cache of the given kind. */
+    public static BlockMgr createStdFile(String filename, int blockSize,
+                                         int readBlockCacheSize, int writeBlockCacheSize, BlockCacheMode cacheMode) {
         BlockAccess file = new BlockAccessDirect(filename, blockSize);
         BlockMgr blockMgr = wrapFileAccess(file, blockSize);
-        blockMgr = addCache(blockMgr, readBlockCacheSize, writeBlockCacheSize);
+        blockMgr = addCache(blockMgr, readBlockCacheSize, writeBlockCacheSize, cacheMode);
         return track(blockMgr);
     }
 
@@ -123,9 +142,18 @@ public class BlockMgrFactory {
      * @see #addCache(BlockMgr, FileSet, FileMode, int, int)
      */
     public static BlockMgr addCache(BlockMgr blockMgr, int readBlockCacheSize, int writeBlockCacheSize) {
+        return addCache(blockMgr, readBlockCacheSize, writeBlockCacheSize, SystemIndex.blockCacheMode);
+    }
+
+    /**
+     * Add a caching layer of the given kind to a BlockMgr.
+     *
+     * @see #addCache(BlockMgr, int, int)
+     */
+    public static BlockMgr addCache(BlockMgr blockMgr, int readBlockCacheSize, int writeBlockCacheSize, BlockCacheMode cacheMode) {
         if ( blockMgr instanceof BlockMgrCache )
             Log.warn(BlockMgrFactory.class, "BlockMgr already has a cache: " + blockMgr.getLabel());
-        return BlockMgrCache.create(readBlockCacheSize, writeBlockCacheSize, blockMgr);
+        return BlockMgrCache.create(readBlockCacheSize, writeBlockCacheSize, cacheMode, blockMgr);
     }
 
     /**
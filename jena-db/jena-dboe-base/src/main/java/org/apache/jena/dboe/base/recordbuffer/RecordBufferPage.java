@@ -18,14 +18,29 @@
 
 package org.apache.jena.dboe.base.recordbuffer;
 
+import java.nio.ByteBuffer;
+
+import org.apache.jena.dboe.base.StorageException;
 import org.apache.jena.dboe.base.block.Block;
 import org.apache.jena.dboe.base.page.Page;
+import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.sys.SysDB;
 
 /**
  * B+Tree records nodes and hash buckets.
  * Add link field to a RecordBufferPageBase
+ * <p>
+ * A page may be compressed. The records of a compressed page are held in a
+ * separate buffer and written to the block front-coded: each record is stored as
+ * the number of leading bytes it shares with the record before it, then the rest
+ * of the record. The block count field has {@link #COMPRESSED} set. A compressed
+ * page can hold up to {@link #CompressionFactor} times as many records as an
+ * uncompressed one, and is full when the records may not fit in the block.
+ * <p>
+ * Compression costs on the read path: each time a page is made for a compressed
+ * block, the whole block is decoded into a new heap buffer of
+ * {@link #CompressionFactor} times the uncompressed capacity of the block.
  */
 
 public final class RecordBufferPage extends RecordBufferPageBase
@@ -41,8 +56,22 @@ public final class RecordBufferPage extends RecordBufferPageBase
     final public static int LINK            = 4;
     final private static int FIELD_LENGTH   = SysDB.SizeOfInt; // Length of the space needed here (not count)
 
+    /** Flag in the count field of a block of compressed records. */
+    final public static int COMPRESSED      = 0x40000000;
+
+    /** Maximum number of records in a compressed page, relative to an uncompressed page. */
+    final public static int CompressionFactor = 4;
+
     private int link = Page.NO_ID;
 
+    // Compressed pages only.
+    private final boolean compressed;
+    private final int dataLength;       // Space in the block for encoded records.
+    private final int maxEncodedLength; // One record, not sharing any bytes.
+    private byte[] records = null;      // The records, uncompressed.
+    private int appendCount = -1;       // Record count when appendSize was calculated.
+    private int appendSize = 0;
+
     public final int getLink() { return link; }
 
     public void setLink(int link) {
@@ -52,6 +81,9 @@ public final class RecordBufferPage extends RecordBufferPageBase
 
     @Override
     protected void _reset(Block block) {
+        // The records of a compressed page are not in the block.
+        if ( compressed )
+            return;
         // TODO -- should this be format?
         // Print this
         super.rebuild(block, this.getCount());
@@ -66,22 +98,232 @@ public final class RecordBufferPage extends RecordBufferPageBase
     public static int calcBlockSize(RecordFactory factory, int maxRec)
     { return RecordBufferPageBase.calcBlockSize(factory, maxRec, FIELD_LENGTH); }
 
+    /**
+     * Whether records in blocks of this size can be compressed. The block must be
+     * large enough that each half of a split page has space for a change.
+     */
+    public static boolean canCompress(RecordFactory factory, int blkSize) {
+        return blkSize - RecordBufferPageBase.calcBlockSize(factory, 0, FIELD_LENGTH) >= 6 * (1 + factory.recordLength());
+    }
+
     /** The construction methods */
     public static RecordBufferPage createBlank(Block block,RecordFactory factory) {
+        return createBlank(block, factory, false);
+    }
+
+    /** Create an empty page, compressed if {@code compress} is true and the block is large enough. */
+    public static RecordBufferPage createBlank(Block block, RecordFactory factory, boolean compress) {
         int count = 0;
         int linkId = NO_ID;
-        return new RecordBufferPage(block, factory, count, linkId);
+        compress = compress && canCompress(factory, block.getByteBuffer().capacity());
+        return new RecordBufferPage(block, factory, count, linkId, compress);
     }
 
     public static RecordBufferPage format(Block block, RecordFactory factory) {
+        return format(block, factory, false);
+    }
+
+    /**
+     * Page for an existing block. A block of compressed records gives a compressed
+     * page. If {@code compress} is true, a block of uncompressed records also gives
+     * a compressed page if the block is large enough.
+     */
+    public static RecordBufferPage format(Block block, RecordFactory factory, boolean compress) {
         int count = block.getByteBuffer().getInt(COUNT);
         int linkId = block.getByteBuffer().getInt(LINK);
-        return new RecordBufferPage(block, factory, count, linkId);
+        if ( (count & COMPRESSED) != 0 )
+            compress = true;
+        else
+            compress = compress && canCompress(factory, block.getByteBuffer().capacity());
+        return new RecordBufferPage(block, factory, count, linkId, compress);
+    }
+
+    private RecordBufferPage(Block block, RecordFactory factory, int count, int linkId, boolean compress) {
+        // The records are read before the block is used as a page.
+        this(block, factory, compress ? readRecords(block, factory, count) : null,
+             compress ? count & ~COMPRESSED : count, linkId);
     }
 
-    private RecordBufferPage(Block block, RecordFactory factory, int count, int linkId) {
-        super(block, FIELD_LENGTH, factory, count);
+    private RecordBufferPage(Block block, RecordFactory factory, ByteBuffer records, int count, int linkId) {
+        super(block, FIELD_LENGTH, factory, records, count);
         this.link = linkId;
+        this.compressed = (records != null);
+        this.records = compressed ? records.array() : null;
+        this.maxEncodedLength = 1 + factory.recordLength();
+        this.dataLength = block.getByteBuffer().capacity() - headerLength;
+    }
+
+    // Records of a compressed page, held outside the block.
+    // Called for every page made from a compressed block, including read-only access.
+    private static ByteBuffer readRecords(Block block, RecordFactory factory, int count) {
+        int recordLength = factory.recordLength();
+        int headerLength = calcBlockSize(factory, 0);
+        int maxRecords = CompressionFactor * calcRecordSize(factory, block.getByteBuffer().capacity());
+        ByteBuffer bb = ByteBuffer.allocate(maxRecords * recordLength);
+        if ( (count & COMPRESSED) != 0 ) {
+            count = count & ~COMPRESSED;
+            if ( count > maxRecords )
+                throw new StorageException("RecordBufferPage: too many compressed records: " + count);
+            decode(block.getByteBuffer(), headerLength, bb.array(), count, recordLength);
+        } else {
+            // Uncompressed block.
+            ByteBuffer src = block.getByteBuffer().duplicate();
+            src.position(headerLength);
+            src.get(bb.array(), 0, count * recordLength);
+        }
+        return bb;
+    }
+
+    /** Whether the records are written compressed. */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Whether the page may not have room for another record.
+     * A compressed page must have room to insert or replace a record,
+     * which can change how much of each neighbouring record is shared.
+     */
+    public boolean isFull() {
+        if ( recBuff.isFull() )
+            return true;
+        return compressed && encodedSize() + 2 * maxEncodedLength > dataLength;
+    }
+
+    /**
+     * Whether the page is at or below the minimum fill.
+     * Two pages at minimum fill can be merged, and a record can be moved into one.
+     */
+    public boolean isMinSize() {
+        // 50% packing minimum.
+        // If of max length 5 (i.e. odd), min size is 2. Integer division works.
+        if ( recBuff.size() > recBuff.maxSize() / 2 )
+            return false;
+        return !compressed || encodedSize() <= (dataLength - maxEncodedLength) / 2;
+    }
+
+    /**
+     * The index of the last record to keep when the page is split.
+     * A compressed page is split so that the halves have about the same size in bytes.
+     */
+    public int splitIndex() {
+        int size = recBuff.size();
+        if ( !compressed )
+            return size / 2 - 1;
+        int recordLength = recBuff.slotLen();
+        int half = encodedSize() / 2;
+        int total = 0;
+        int idx = 0;
+        for ( int i = 0 ; i < size ; i++ ) {
+            total += encodedLength(records, i, recordLength);
+            if ( total > half )
+                break;
+            idx = i;
+        }
+        // Both halves must have room for a record.
+        int maxRecords = recBuff.maxSize();
+        idx = Math.min(idx, Math.min(size - 2, maxRecords - 2));
+        idx = Math.max(idx, Math.max(0, size - maxRecords));
+        return idx;
+    }
+
+    /**
+     * Add a record at the end of the page, where records are being added in order.
+     * Return false, and do not add the record, if the page is full.
+     */
+    public boolean append(Record record) {
+        if ( recBuff.isFull() )
+            return false;
+        if ( !compressed ) {
+            recBuff.add(record);
+            return true;
+        }
+        if ( appendCount != recBuff.size() )
+            appendSize = encodedSize();
+        recBuff.add(record);
+        int n = recBuff.size() - 1;
+        int len = encodedLength(records, n, recBuff.slotLen());
+        if ( appendSize + len > dataLength ) {
+            recBuff.removeTop();
+            appendCount = recBuff.size();
+            return false;
+        }
+        appendSize += len;
+        appendCount = recBuff.size();
+        return true;
+    }
+
+    /** Size in bytes of the records when written to the block. */
+    public int encodedSize() {
+        int recordLength = recBuff.slotLen();
+        if ( !compressed )
+            return recBuff.size() * recordLength;
+        int total = 0;
+        for ( int i = 0 ; i < recBuff.size() ; i++ )
+            total += encodedLength(records, i, recordLength);
+        return total;
+    }
+
+    /** Write the count, link and, for a compressed page, the records, to the block. */
+    /*package*/ void writeToBlock() {
+        ByteBuffer bb = getBackingBlock().getByteBuffer();
+        int count = getCount();
+        if ( compressed ) {
+            int len = encode(records, count, recBuff.slotLen(), bb, headerLength);
+            if ( len > dataLength )
+                throw new StorageException("RecordBufferPage: compressed records do not fit: " + len + " > " + dataLength);
+            count = count | COMPRESSED;
+        }
+        bb.putInt(COUNT, count);
+        bb.putInt(LINK, getLink());
+    }
+
+    // Bytes needed for record idx after record idx-1.
+    private static int encodedLength(byte[] bytes, int idx, int recordLength) {
+        if ( idx == 0 )
+            return 1 + recordLength;
+        return 1 + recordLength - prefixLength(bytes, idx, recordLength);
+    }
+
+    // Length of the common prefix of record idx and record idx-1, at most 255.
+    private static int prefixLength(byte[] bytes, int idx, int recordLength) {
+        int x1 = (idx - 1) * recordLength;
+        int x2 = idx * recordLength;
+        int limit = Math.min(recordLength, 255);
+        int i = 0;
+        while ( i < limit && bytes[x1 + i] == bytes[x2 + i] )
+            i++;
+        return i;
+    }
+
+    private static int encode(byte[] bytes, int count, int recordLength, ByteBuffer dst, int start) {
+        int posn = start;
+        for ( int i = 0 ; i < count ; i++ ) {
+            int prefix = (i == 0) ? 0 : prefixLength(bytes, i, recordLength);
+            int suffix = recordLength - prefix;
+            if ( posn + 1 + suffix > dst.capacity() )
+                return posn + 1 + suffix - start;
+            dst.put(posn, (byte)prefix);
+            posn++;
+            int x = i * recordLength + prefix;
+            for ( int j = 0 ; j < suffix ; j++ )
+                dst.put(posn + j, bytes[x + j]);
+            posn += suffix;
+        }
+        return posn - start;
+    }
+
+    private static void decode(ByteBuffer src, int start, byte[] bytes, int count, int recordLength) {
+        int posn = start;
+        for ( int i = 0 ; i < count ; i++ ) {
+            int prefix = src.get(posn) & 0xFF;
+            posn++;
+            int x = i * recordLength;
+            if ( prefix > 0 )
+                System.arraycopy(bytes, x - recordLength, bytes, x, prefix);
+            for ( int j = prefix ; j < recordLength ; j++ )
+                bytes[x + j] = src.get(posn++);
+        }
     }
 
     @Override
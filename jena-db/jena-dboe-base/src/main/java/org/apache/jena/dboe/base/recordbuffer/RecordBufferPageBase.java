@@ -63,11 +63,22 @@ public abstract class RecordBufferPageBase extends PageBase // implements Page
     }
 
     protected RecordBufferPageBase(Block block, int offset, RecordFactory factory, int count) {
+        this(block, offset, factory, null, count);
+    }
+
+    /**
+     * Page where the records are held in {@code records}, not in the block,
+     * or in the block if {@code records} is null.
+     */
+    protected RecordBufferPageBase(Block block, int offset, RecordFactory factory, ByteBuffer records, int count) {
         // This code knows the alignment of the records in the ByteBuffer.
         super(block);
         this.headerLength = FIELD_LENGTH + offset; // NB +4 for the count field
         this.factory = factory;
-        rebuild(block, count);
+        if ( records == null )
+            rebuild(block, count);
+        else
+            this.recBuff = new RecordBuffer(records, factory, count);
     }
 
     protected void rebuild(Block block, int count) {
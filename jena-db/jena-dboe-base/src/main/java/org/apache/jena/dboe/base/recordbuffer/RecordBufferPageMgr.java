@@ -38,23 +38,39 @@ final
 public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
 {
     private final RecordFactory factory;
+    private final boolean compress;
 
     public RecordBufferPageMgr(RecordFactory factory, BlockMgr blockMgr) {
-        super(new Block2RecordBufferPage(factory), blockMgr);
+        this(factory, blockMgr, false);
+    }
+
+    /** Manager for pages that are written compressed if {@code compress} is true. */
+    public RecordBufferPageMgr(RecordFactory factory, BlockMgr blockMgr, boolean compress) {
+        super(new Block2RecordBufferPage(factory, compress), blockMgr);
         this.factory = factory;
+        this.compress = compress;
     }
 
     public RecordFactory getRecordFactory() { return factory; }
 
+    /** Whether pages are written compressed. */
+    public boolean isCompressed() { return compress; }
+
     public RecordBufferPage create() {
         return super.create(BlockType.RECORD_BLOCK);
     }
 
     public static class Block2RecordBufferPage implements BlockConverter<RecordBufferPage> {
         private RecordFactory factory;
+        private boolean compress;
 
         public Block2RecordBufferPage(RecordFactory factory) {
+            this(factory, false);
+        }
+
+        public Block2RecordBufferPage(RecordFactory factory, boolean compress) {
             this.factory = factory;
+            this.compress = compress;
         }
 
         @Override
@@ -62,14 +78,14 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
             if ( blkType != BlockType.RECORD_BLOCK )
                 throw new RecordException("Not RECORD_BLOCK: " + blkType);
             // Initially empty
-            RecordBufferPage rb = RecordBufferPage.createBlank(block, factory);
+            RecordBufferPage rb = RecordBufferPage.createBlank(block, factory, compress);
             return rb;
         }
 
         @Override
         public RecordBufferPage fromBlock(Block block) {
             synchronized (block) {
-                RecordBufferPage rb = RecordBufferPage.format(block, factory);
+                RecordBufferPage rb = RecordBufferPage.format(block, factory, compress);
                 // int count = block.getByteBuffer().getInt(COUNT);
                 // int linkId = block.getByteBuffer().getInt(LINK);
                 // RecordBufferPage rb = new RecordBufferPage(block, linkId,
@@ -80,6 +96,10 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
 
         @Override
         public Block toBlock(RecordBufferPage rbp) {
+            if ( rbp.isCompressed() ) {
+                rbp.writeToBlock();
+                return rbp.getBackingBlock();
+            }
             int count = rbp.getRecordBuffer().size();
             ByteBuffer bb = rbp.getBackingBlock().getByteBuffer();
             bb.putInt(COUNT, rbp.getCount());
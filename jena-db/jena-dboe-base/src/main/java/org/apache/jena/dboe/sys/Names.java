@@ -64,6 +64,7 @@ public class Names
     /* Node files */
     public static final String extBdfState              = "bdf";           // Node state
     public static final String extObjNodeData           = "obj";
+    public static final String extNodeFilter            = "bloom";         // Node table Bloom filter
     public static final String nodeTableBaseName        = "nodes";         // Node table
 
     /** Prefixes file */
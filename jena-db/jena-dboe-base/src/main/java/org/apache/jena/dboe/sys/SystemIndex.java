@@ -19,6 +19,7 @@
 package org.apache.jena.dboe.sys;
 
 import org.apache.jena.dboe.DBOpEnvException;
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 
 public class SystemIndex
@@ -72,6 +73,9 @@ public class SystemIndex
     /** Size of read block cache (32 bit systems only).  Increase JVM size as necessary. Per file. */
     public static final int BlockReadCacheSize      = intValue("BlockReadCacheSize", 10*1000);
 
+    /** The kind of block cache (direct file mode only). */
+    public static final BlockCacheMode blockCacheMode       = BlockCacheMode.lru;
+
     private static int intValue(String name, int dft) { return dft; }
 
     public static void setNullOut(boolean nullOut)
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.base.block;
+
+import java.nio.ByteBuffer;
+
+import static org.apache.jena.atlas.lib.ByteBufferLib.fill;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.ConfigTestDBOE;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBlockMgrCacheConcurrent extends AbstractTestBlockMgr
+{
+    static final String filename = ConfigTestDBOE.getTestingDir()+"/block-mgr-cache";
+
+    @BeforeClass static public void remove1() { FileOps.delete(filename); }
+    @AfterClass  static public void remove2() { FileOps.delete(filename); }
+
+    @Override
+    protected BlockMgr make() {
+        FileOps.delete(filename);
+        return BlockMgrFactory.createStdFile(filename, BlkSize, 5, 5, BlockCacheMode.concurrent);
+    }
+
+    @Test
+    public void cacheReads() {
+        BlockMgrCache cache = (BlockMgrCache)blockMgr;
+        long[] ids = new long[20];
+        for ( int i = 0; i < ids.length ; i++ ) {
+            Block block = blockMgr.allocate(BlkSize);
+            fill(block.getByteBuffer(), (byte)i);
+            ids[i] = block.getId();
+            blockMgr.write(block);
+            blockMgr.release(block);
+        }
+        blockMgr.sync();
+        for ( int j = 0 ; j < 3 ; j++ ) {
+            for ( int i = 0; i < ids.length ; i++ ) {
+                Block block = blockMgr.getRead(ids[i]);
+                ByteBuffer bb = block.getByteBuffer();
+                contains(bb, (byte)i);
+                blockMgr.release(block);
+            }
+        }
+        assertTrue(cache.getCacheMisses() > 0);
+        assertTrue(cache.getCacheEvictions() > 0);
+    }
+}
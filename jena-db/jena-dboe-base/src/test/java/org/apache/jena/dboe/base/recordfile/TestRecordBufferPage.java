@@ -19,6 +19,7 @@
 package org.apache.jena.dboe.base.recordfile;
 
 import org.junit.Assert;
+import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.block.BlockMgrFactory;
 import org.apache.jena.dboe.base.buffer.RecordBuffer;
@@ -84,6 +85,79 @@ public class TestRecordBufferPage extends Assert
         blkMgr.endRead();
     }
 
+    @Test public void recBufferPage03() {
+        // Compressed: more records than fit in the block uncompressed.
+        RecordFactory factory8 = new RecordFactory(8, 0);
+        BlockMgr blkMgr = BlockMgrFactory.createMem("RecordBuffer", RecordBufferPage.calcBlockSize(factory8, 10));
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm = new RecordBufferPageMgr(factory8, blkMgr, true);
+        int x = -99; {
+            RecordBufferPage page1 = rpm.create();
+            assertTrue(page1.isCompressed());
+            int i = 0;
+            while ( page1.append(record8(factory8, 1000+i)) )
+                i++;
+            assertTrue(page1.getCount() > 10);
+            assertEquals(i, page1.getCount());
+            x = page1.getId();
+            rpm.put(page1);
+        }
+        blkMgr.endUpdate();
+        blkMgr.beginRead(); {
+            RecordBufferPage page2 = rpm.getRead(x);
+            assertTrue(page2.isCompressed());
+            assertTrue(page2.getCount() > 10);
+            for ( int i = 0 ; i < page2.getCount() ; i++ )
+                assertEquals(1000+i, Bytes.getLong(page2.getRecordBuffer().get(i).getKey()));
+            rpm.release(page2);
+        }
+        blkMgr.endRead();
+    }
+
+    @Test public void recBufferPage04() {
+        // Block too small to compress.
+        BlockMgr blkMgr = makeBlockMgr(TestNumRecord);
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm = new RecordBufferPageMgr(factory, blkMgr, true);
+        RecordBufferPage page = rpm.create();
+        assertFalse(page.isCompressed());
+        fill(page.getRecordBuffer(), 10, 20, 30);
+        assertTrue(page.isFull());
+        rpm.release(page);
+        blkMgr.endUpdate();
+    }
+
+    @Test public void recBufferPage05() {
+        // Uncompressed block read by a manager for compressed pages.
+        BlockMgr blkMgr = makeBlockMgr(10);
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm1 = new RecordBufferPageMgr(factory, blkMgr);
+        RecordBufferPage page1 = rpm1.create();
+        fill(page1.getRecordBuffer(), 10, 20, 30);
+        int x = page1.getId();
+        rpm1.put(page1);
+        blkMgr.endUpdate();
+
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm2 = new RecordBufferPageMgr(factory, blkMgr, true);
+        RecordBufferPage page2 = rpm2.getWrite(x);
+        assertTrue(page2.isCompressed());
+        assertEquals(3, page2.getCount());
+        assertEquals(20, get(page2, 1));
+        page2.getRecordBuffer().add(record(40));
+        rpm2.put(page2);
+        blkMgr.endUpdate();
+
+        // Compressed block read by a manager for uncompressed pages.
+        blkMgr.beginRead();
+        RecordBufferPage page3 = rpm1.getRead(x);
+        assertTrue(page3.isCompressed());
+        assertEquals(4, page3.getCount());
+        assertEquals(40, get(page3, 3));
+        rpm1.release(page3);
+        blkMgr.endRead();
+    }
+
     private static void fill(RecordBuffer rb, int ... nums) {
         for ( int num : nums ) {
             Record rec = record( num );
@@ -107,7 +181,17 @@ public class TestRecordBufferPage extends Assert
         return r;
     }
 
+    private static Record record8(RecordFactory factory8, long v) {
+        Record r = factory8.create();
+        Bytes.setLong(v, r.getKey());
+        return r;
+    }
+
     private static BlockMgr makeBlockMgr() {
-        return BlockMgrFactory.createMem("RecordBuffer", RecordBufferPage.calcBlockSize(factory, TestNumRecord));
+        return makeBlockMgr(TestNumRecord);
+    }
+
+    private static BlockMgr makeBlockMgr(int numRecords) {
+        return BlockMgrFactory.createMem("RecordBuffer", RecordBufferPage.calcBlockSize(factory, numRecords));
     }
 }
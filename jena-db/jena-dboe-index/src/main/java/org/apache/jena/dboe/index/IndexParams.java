@@ -18,6 +18,7 @@
 
 package org.apache.jena.dboe.index;
 
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.BlockParams;
 import org.apache.jena.dboe.base.block.FileMode;
 
@@ -35,4 +36,7 @@ public interface IndexParams extends BlockParams {
 
     /** Block write cache size (mmap'ed files do not have a block cache)*/
     @Override public Integer getBlockWriteCacheSize();
+
+    /** Kind of block cache (mmap'ed files do not have a block cache)*/
+    @Override public BlockCacheMode getBlockCacheMode();
 }
@@ -434,6 +434,7 @@ public final class BPTreeNode extends BPTreePage
             boolean b = bpTree.getNodeManager().promoteDuplicate(this);
             if ( b ) {
                 bpTree.getNodeManager().getBlockMgr().release(oldBlock);
+                bpTree.freedBlock(oldBlock.getId().intValue(), true);
             }
             return b;
         }
@@ -443,7 +444,10 @@ public final class BPTreeNode extends BPTreePage
     final void release()        { bpTree.getNodeManager().release(this); }
 
     @Override
-    final void free()           { bpTree.getNodeManager().free(this); }
+    final void free() {
+        bpTree.freedBlock(getId(), true);
+        bpTree.getNodeManager().free(this);
+    }
 
     // ============ SEARCH
 
@@ -970,8 +974,9 @@ public final class BPTreeNode extends BPTreePage
                 // If two data blocks, then the split key is not included
                 // (it's already there, with its value).
                 // Size is N+N and max could be odd so N+N and N+N+1 are
-                // possible.
-                if ( left.getCount() + 1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
+                // possible. Compressed data blocks are merged by size in bytes.
+                if ( ! ((BPTreeRecords)left).isCompressed()
+                     && left.getCount() + 1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
                     BPT.error("Inconsistent data node size: %d/%d", left.getCount(), left.getMaxSize());
             } else if ( !left.isFull() ) {
                 // If not two data blocks, the left side should now be full
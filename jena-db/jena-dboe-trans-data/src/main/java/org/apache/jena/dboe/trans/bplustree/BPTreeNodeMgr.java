@@ -38,8 +38,18 @@ public final class BPTreeNodeMgr extends PageBlockMgr<BPTreeNode>
     // Only "public" for external very low level tools in development to access this class.
     // Assume package access.
 
+    private final BPlusTree bpTree;
+
     public BPTreeNodeMgr(BPlusTree bpTree, BlockMgr blockMgr) {
         super(new Block2BPTreeNode(bpTree), blockMgr);
+        this.bpTree = bpTree;
+    }
+
+    /** Use a reclaimed block if there is one. */
+    @Override
+    protected Block allocateBlock() {
+        Block block = bpTree.reuseBlock(true);
+        return block != null ? block : super.allocateBlock();
     }
 
     /** Allocate space for a fresh node. */
@@ -92,7 +92,7 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     public boolean isFull() {
-        return (rBuff.size() >= rBuff.maxSize());
+        return rBuffPage.isFull();
     }
 
     @Override
@@ -102,9 +102,12 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     public boolean isMinSize() {
-        // 50% packing minimum.
-        // If of max length 5 (i.e. odd), min size is 2. Integer division works.
-        return (rBuff.size() <= rBuff.maxSize() / 2);
+        return rBuffPage.isMinSize();
+    }
+
+    /** Whether the records are written compressed. */
+    public boolean isCompressed() {
+        return rBuffPage.isCompressed();
     }
 
     @Override
@@ -135,8 +138,10 @@ public final class BPTreeRecords extends BPTreePage {
         } else {
             Block oldBlock = getBackingBlock();
             boolean b = bprRecordsMgr.promoteDuplicate(this);
-            if ( b )
+            if ( b ) {
                 bprRecordsMgr.getBlockMgr().release(oldBlock);
+                bpTree.freedBlock(oldBlock.getId().intValue(), false);
+            }
             return b;
         }
 
@@ -149,6 +154,8 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     final public void free() {
+        if ( bpTree != null )
+            bpTree.freedBlock(getId(), false);
         bprRecordsMgr.free(this);
     }
 
@@ -159,7 +166,7 @@ public final class BPTreeRecords extends BPTreePage {
         Record r2 = null;
         if ( i < 0 ) {
             i = decodeIndex(i);
-            if ( rBuff.size() >= rBuff.maxSize() )
+            if ( rBuffPage.isFull() )
                 throw new StorageException("RecordBlock.put overflow");
             promotePage(path, this);
             rBuff.add(i, record);
@@ -191,7 +198,7 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     public Record getSplitKey() {
-        int splitIdx = rBuff.size() / 2 - 1;
+        int splitIdx = rBuffPage.splitIndex();
         Record r = rBuff.get(splitIdx);
         return r;
     }
@@ -204,7 +211,7 @@ public final class BPTreeRecords extends BPTreePage {
     @Override
     public BPTreePage split() {
         BPTreeRecords other = insertNewPage();
-        int splitIdx = rBuff.size() / 2 - 1;
+        int splitIdx = rBuffPage.splitIndex();
         Record r = rBuff.get(splitIdx); // Only need key for checking later.
         int moveLen = rBuff.size() - (splitIdx + 1); // Number to move.
         // Copy high end to new.
@@ -39,20 +39,27 @@ final public class BPTreeRecordsMgr extends PageBlockMgr<BPTreeRecords>
     BPTreeRecordsMgr(BPlusTree bpTree, RecordFactory recordFactory, RecordBufferPageMgr rBuffPageMgr) {
         super(null , rBuffPageMgr.getBlockMgr());
         this.bpTree = bpTree;
-        super.setConverter(new Block2BPTreeRecords(this, recordFactory));
+        super.setConverter(new Block2BPTreeRecords(this, recordFactory, rBuffPageMgr.isCompressed()));
         // bpt is uninitialized at this point.
         // so record rBuffPageMgr
         this.rBuffPageMgr = rBuffPageMgr;
     }
 
+    /** Use a reclaimed block if there is one. */
+    @Override
+    protected Block allocateBlock() {
+        Block block = ( bpTree == null ) ? null : bpTree.reuseBlock(false);
+        return block != null ? block : super.allocateBlock();
+    }
+
     /** Converter BPTreeRecords -- make a RecordBufferPage and wraps it.*/
     static class Block2BPTreeRecords implements BlockConverter<BPTreeRecords> {
         private Block2RecordBufferPage recordBufferConverter;
         private BPTreeRecordsMgr       recordsMgr;
 
-        Block2BPTreeRecords(BPTreeRecordsMgr mgr, RecordFactory recordFactory) {
+        Block2BPTreeRecords(BPTreeRecordsMgr mgr, RecordFactory recordFactory, boolean compress) {
             this.recordsMgr = mgr;
-            this.recordBufferConverter = new RecordBufferPageMgr.Block2RecordBufferPage(recordFactory);
+            this.recordBufferConverter = new RecordBufferPageMgr.Block2RecordBufferPage(recordFactory, compress);
         }
 
         @Override
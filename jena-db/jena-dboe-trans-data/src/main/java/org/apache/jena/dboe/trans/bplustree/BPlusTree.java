@@ -23,7 +23,10 @@ import java.util.Iterator;
 
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.ByteBufferLib;
 import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.dboe.base.block.Block;
+import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.record.RecordMapper;
@@ -128,6 +131,8 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
     private final BPlusTreeParams bpTreeParams;
     private Mode mode = Mode.TRANSACTIONAL;
     private BptTxnState nonTxnState = null;
+    // Reuse of blocks no longer in the tree. Null if not enabled.
+    private volatile BlockReclaimer reclaimer = null;
 
     // Construction is a two stage process
     //    1/ Create the object, uninitialized
@@ -213,6 +218,98 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         return nonTxnState;
     }
 
+    /**
+     * Reuse blocks that are no longer part of the tree, in place of allocating new
+     * blocks at the end of the files. Blocks made unused by a write transaction are
+     * reused after the transactions that can see them have finished. Blocks that
+     * were unused before this call are found by {@link #reclaimStep}.
+     * <p>
+     * Only for transactional B+Trees. The free blocks are not recorded on disk.
+     */
+    public synchronized void enableReclaim() {
+        if ( ! isTransactional() )
+            throw new BPTreeException("Block reclaiming is only for transactional B+Trees");
+        if ( reclaimer == null )
+            reclaimer = new BlockReclaimer();
+    }
+
+    /** Whether blocks are being reused (see {@link #enableReclaim}). */
+    public boolean isReclaiming() {
+        return reclaimer != null;
+    }
+
+    /**
+     * Look for blocks that are not part of the tree, reading at most
+     * {@code maxNodes} tree nodes. It takes several calls to go over the tree;
+     * the blocks found are reused once it has been gone over.
+     * This can be called while transactions are running and is not itself in
+     * a transaction. Nothing is done until a write transaction has committed
+     * after {@link #enableReclaim}. Return true if a pass over the tree finished.
+     */
+    public boolean reclaimStep(int maxNodes) {
+        BlockReclaimer r = reclaimer;
+        if ( r == null )
+            return false;
+        return r.markStep(nodeManager, maxNodes);
+    }
+
+    /** Number of blocks known to be unused, waiting to be reused or ready to be reused. */
+    public long countUnusedBlocks() {
+        BlockReclaimer r = reclaimer;
+        return r == null ? 0 : r.countUnused();
+    }
+
+    /** Number of times a block has been reused. */
+    public long countReusedBlocks() {
+        BlockReclaimer r = reclaimer;
+        return r == null ? 0 : r.countReused();
+    }
+
+    /** Number of passes of {@link #reclaimStep} over the tree that have finished. */
+    public long countReclaimPasses() {
+        BlockReclaimer r = reclaimer;
+        return r == null ? 0 : r.countMarks();
+    }
+
+    /** A free block for a new node or records page in a write transaction, or null. */
+    /*package*/ Block reuseBlock(boolean isNode) {
+        BlockReclaimer r = reclaimer;
+        if ( r == null || ! isTransactional() || ! super.isActiveTxn() || ! isWriteTxn() )
+            return null;
+        int id = isNode ? r.allocateNode() : r.allocateRecords();
+        if ( id < 0 )
+            return null;
+        BlockMgr blockMgr = isNode ? nodeManager.getBlockMgr() : recordsMgr.getBlockMgr();
+        Block block = blockMgr.getWrite(id);
+        block.setReadOnly(false);
+        ByteBuffer bb = block.getByteBuffer();
+        ByteBufferLib.fill(bb, 0, bb.capacity(), (byte)0);
+        bb.position(0);
+        BptTxnState state = getDataState();
+        if ( isNode )
+            state.reusedNodes.add(id);
+        else
+            state.reusedRecords.add(id);
+        return block;
+    }
+
+    /** The block is not part of the tree after this write transaction. */
+    /*package*/ void freedBlock(int id, boolean isNode) {
+        if ( reclaimer == null || ! isTransactional() )
+            return;
+        BptTxnState state = getDataState();
+        if ( isNode )
+            state.freedNodes.add(id);
+        else
+            state.freedRecords.add(id);
+    }
+
+    private void releaseReclaimed() {
+        BlockReclaimer r = reclaimer;
+        if ( r != null )
+            r.releasePending(getTransaction().getTxnMgr().oldestActiveDataVersion());
+    }
+
     /** Get the parameters describing this B+Tree */
     public BPlusTreeParams getParams()          { return bpTreeParams; }
 
@@ -507,6 +604,8 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
 
     @Override
     protected BptTxnState _begin(ReadWrite readWrite, TxnId txnId) {
+        if ( readWrite == ReadWrite.WRITE )
+            releaseReclaimed();
         return createState();
     }
 
@@ -522,6 +621,7 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
 
     @Override
     protected BptTxnState _promote(TxnId txnId, BptTxnState oldState) {
+        releaseReclaimed();
         BptTxnState newState = createState();
         return newState;
     }
@@ -543,6 +643,11 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         if ( isWriteTxn() ) {
             rootIdx = state.getRoot();
             stateManager.sync();
+            BlockReclaimer r = reclaimer;
+            if ( r != null )
+                // Called before the data version of the commit is set.
+                r.committed(getTransaction().getTxnMgr().getDataVersion(), state, rootIdx,
+                            nodeManager.allocLimit(), recordsMgr.allocLimit());
         }
     }
 
@@ -553,6 +658,9 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
     @Override
     protected void _abort(TxnId txnId, BptTxnState state) {
         if ( isWriteTxn() ) {
+            BlockReclaimer r = reclaimer;
+            if ( r != null )
+                r.aborted();
             rootIdx = state.initialroot;
             // Truncate - logically in block manager space.
             nodeManager.resetAlloc(state.boundaryBlocksNode);
@@ -19,6 +19,7 @@
 package org.apache.jena.dboe.trans.bplustree;
 
 import org.apache.jena.dboe.DBOpEnvException;
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.block.BlockMgrFactory;
 import org.apache.jena.dboe.base.block.BlockMgrLogger;
@@ -90,6 +91,16 @@ public class BPlusTreeFactory {
 
     /** Create a B+Tree using defaults */
     public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, RecordFactory factory) {
+        return createBPTree(cid, fileset, factory, SystemIndex.blockCacheMode);
+    }
+
+    /** Create a B+Tree using defaults except for the kind of block cache */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, RecordFactory factory, BlockCacheMode cacheMode) {
+        return createBPTree(cid, fileset, factory, cacheMode, false);
+    }
+
+    /** Create a B+Tree using defaults except for the kind of block cache and whether leaf blocks are compressed */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, RecordFactory factory, BlockCacheMode cacheMode, boolean compressLeaves) {
         int readCacheSize = SystemIndex.BlockReadCacheSize;
         int writeCacheSize = SystemIndex.BlockWriteCacheSize;
         int blockSize = SystemIndex.BlockSize;
@@ -99,7 +110,7 @@ public class BPlusTreeFactory {
             blockSize = SystemIndex.BlockSizeTest;
         }
 
-        return createBPTreeByBlockSize(cid, fileset, blockSize, readCacheSize, writeCacheSize, factory);
+        return createBPTree(cid, fileset, -1, blockSize, readCacheSize, writeCacheSize, cacheMode, compressLeaves, factory);
     }
 
     /** Create a B+Tree by BlockSize */
@@ -129,6 +140,20 @@ public class BPlusTreeFactory {
     public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, int order, int blockSize,
                                          int readCacheSize, int writeCacheSize,
                                          RecordFactory factory) {
+        return createBPTree(cid, fileset, order, blockSize, readCacheSize, writeCacheSize, SystemIndex.blockCacheMode, factory);
+    }
+
+    /** Knowing all the parameters, create a B+Tree */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, int order, int blockSize,
+                                         int readCacheSize, int writeCacheSize, BlockCacheMode cacheMode,
+                                         RecordFactory factory) {
+        return createBPTree(cid, fileset, order, blockSize, readCacheSize, writeCacheSize, cacheMode, false, factory);
+    }
+
+    /** Knowing all the parameters, create a B+Tree */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, int order, int blockSize,
+                                         int readCacheSize, int writeCacheSize, BlockCacheMode cacheMode,
+                                         boolean compressLeaves, RecordFactory factory) {
         // ---- Checking
         if (blockSize < 0 && order < 0) throw new IllegalArgumentException("Neither blocksize nor order specified");
         if (blockSize >= 0 && order < 0) order = BPlusTreeParams.calcOrder(blockSize, factory.recordLength());
@@ -144,10 +169,10 @@ public class BPlusTreeFactory {
             blockSize = BPlusTreeParams.calcBlockSize(order, factory);
         }
 
-        BPlusTreeParams params = new BPlusTreeParams(order, factory);
+        BPlusTreeParams params = new BPlusTreeParams(order, factory, compressLeaves);
         BufferChannel bptState = FileFactory.createBufferChannel(fileset, Names.extBptState);
-        BlockMgr blkMgrNodes = BlockMgrFactory.create(fileset, Names.extBptTree, blockSize, readCacheSize, writeCacheSize);
-        BlockMgr blkMgrRecords = BlockMgrFactory.create(fileset, Names.extBptRecords, blockSize, readCacheSize, writeCacheSize);
+        BlockMgr blkMgrNodes = BlockMgrFactory.create(fileset, Names.extBptTree, null, blockSize, readCacheSize, writeCacheSize, cacheMode);
+        BlockMgr blkMgrRecords = BlockMgrFactory.create(fileset, Names.extBptRecords, null, blockSize, readCacheSize, writeCacheSize, cacheMode);
         return BPlusTreeFactory.create(cid, params, bptState, blkMgrNodes, blkMgrRecords);
     }
 
@@ -174,7 +199,7 @@ public class BPlusTreeFactory {
 
         BPTreeNodeMgr nodeManager = new BPTreeNodeMgr(bpt, blkMgrNodes);
 
-        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), blkMgrRecords);
+        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), blkMgrRecords, params.isCompressLeaves());
         BPTreeRecordsMgr recordsMgr = new BPTreeRecordsMgr(bpt, params.getRecordFactory(), recordPageMgr);
 
         createIfAbsent(isReset, stateMgr, nodeManager, recordsMgr);
@@ -204,9 +229,14 @@ public class BPlusTreeFactory {
 
     /** (Testing mainly) Make an in-memory B+Tree, with copy-in, copy-out block managers */
     public static BPlusTree makeMem(String name, int order, int minDataRecords, int keyLength, int valueLength) {
+        return makeMem(name, order, minDataRecords, keyLength, valueLength, false);
+    }
+
+    /** (Testing mainly) Make an in-memory B+Tree, with copy-in, copy-out block managers */
+    public static BPlusTree makeMem(String name, int order, int minDataRecords, int keyLength, int valueLength, boolean compressLeaves) {
         if ( name == null )
             name = "Mem";
-        BPlusTreeParams params = new BPlusTreeParams(order, keyLength, valueLength);
+        BPlusTreeParams params = new BPlusTreeParams(order, new RecordFactory(keyLength, valueLength), compressLeaves);
 
         int blkSize;
         if ( minDataRecords > 0 ) {
@@ -36,6 +36,7 @@ final public class BPlusTreeParams
     public static final String ParamKeyLength      = NS+".keyLength";
     public static final String ParamValueLength    = NS+".valueLength";
     public static final String ParamBlockSize      = NS+".blockSize";
+    public static final String ParamCompressLeaves = NS+".compressLeaves";
 
     /* The gap is extra space in a node - some books have node size as 2*N
      * (often for the classic insertion algorithm where it's easier to implement
@@ -60,6 +61,9 @@ final public class BPlusTreeParams
     /** Factory for key-only records */
     final RecordFactory keyFactory;
 
+    /** Write leaf (records) blocks compressed. Each read of a leaf then decodes the block into a heap buffer. */
+    final boolean compressLeaves;
+
     // ---- Derived constants.
 
     /** Maximum number of keys per non-leaf block */
@@ -90,13 +94,14 @@ final public class BPlusTreeParams
 
     @Override
     public String toString() {
-        return String.format("Order=%d : Records [key=%d, value=%d] : records=[%d,%d] : pointers=[%d,%d] : split=%d",
+        return String.format("Order=%d : Records [key=%d, value=%d] : records=[%d,%d] : pointers=[%d,%d] : split=%d%s",
                              order,
                              keyFactory.keyLength() ,
                              recordFactory.valueLength() ,
                              MinRec, MaxRec,
                              MinPtr, MaxPtr,
-                             SplitIndex
+                             SplitIndex,
+                             compressLeaves ? " : compressed" : ""
                              );
     }
 
@@ -105,7 +110,8 @@ final public class BPlusTreeParams
             int pOrder = mf.getPropertyAsInteger(ParamOrder);
             int pKeyLen = mf.getPropertyAsInteger(ParamKeyLength);
             int pRecLen = mf.getPropertyAsInteger(ParamValueLength);
-            return new BPlusTreeParams(pOrder, pKeyLen, pRecLen);
+            boolean pCompress = mf.propertyEquals(ParamCompressLeaves, "true");
+            return new BPlusTreeParams(pOrder, new RecordFactory(pKeyLen, pRecLen), pCompress);
         } catch (NumberFormatException ex) {
             Log.error(BPlusTreeParams.class, "Badly formed metadata for B+Tree");
             throw new DBOpEnvException("Failed to read metadata");
@@ -116,6 +122,7 @@ final public class BPlusTreeParams
         mf.setProperty(ParamOrder, order);
         mf.setProperty(ParamKeyLength, recordFactory.keyLength());
         mf.setProperty(ParamValueLength, recordFactory.valueLength());
+        mf.setProperty(ParamCompressLeaves, Boolean.toString(compressLeaves));
         mf.flush();
     }
 
@@ -124,6 +131,11 @@ final public class BPlusTreeParams
     }
 
     public BPlusTreeParams(int order, RecordFactory factory) {
+        this(order, factory, false);
+    }
+
+    /** B+Tree parameters; leaf blocks are written compressed if {@code compressLeaves} is true. */
+    public BPlusTreeParams(int order, RecordFactory factory, boolean compressLeaves) {
         // BTrees of order one aren't strictly BTrees
         // Order 1 => Min size = 0 and max size = 2*N-1 = 1.
         // If there is a gap, then the code may be defensive enough
@@ -136,6 +148,7 @@ final public class BPlusTreeParams
         this.order = order;
         recordFactory = factory;
         keyFactory = factory.keyFactory();
+        this.compressLeaves = compressLeaves;
 
         // Derived constants.
         MaxRec  = 2*order-1 + Gap;
@@ -153,6 +166,10 @@ final public class BPlusTreeParams
         return order;
     }
 
+    public boolean isCompressLeaves() {
+        return compressLeaves;
+    }
+
     public int getPtrLength() {
         return SizeOfPointer;
     }
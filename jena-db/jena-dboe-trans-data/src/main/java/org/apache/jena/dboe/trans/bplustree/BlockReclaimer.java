@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.*;
+
+/**
+ * Blocks of a transactional {@link BPlusTree} that are no longer in the tree and
+ * can be used again.
+ * <p>
+ * A write transaction copies the blocks it changes, and frees blocks when pages
+ * merge. After it commits, the old blocks are not in the tree but may still be
+ * read by transactions that started before the commit. They are pending, recorded
+ * with the data version before the commit, until every active transaction has a
+ * later data version; then they are free and a write transaction can use them in
+ * place of new blocks at the end of the file.
+ * <p>
+ * Blocks that became unused before this was enabled, for example in an earlier run,
+ * are found by marking: walking the tree as of one data version, a few nodes
+ * at a time, then taking the blocks below the allocation limits of that version
+ * which were not reached, have not been reused since marking started, and are not
+ * already known. While marking, the walk counts as a transaction at that version.
+ * <p>
+ * Nothing is written to disk. A block is reused only after the commit that made it
+ * unused has completed, so after a crash the database does not refer to a reused
+ * block; free blocks known at the time are found again by marking.
+ */
+final class BlockReclaimer {
+
+    private static final class Pending {
+        // The blocks are not seen by transactions with a data version after this.
+        final long version;
+        final int[] nodes;
+        final int[] records;
+
+        Pending(long version, int[] nodes, int[] records) {
+            this.version = version;
+            this.nodes = nodes;
+            this.records = records;
+        }
+    }
+
+    // The state for one block manager.
+    private static final class Blocks {
+        // Ready to be reused.
+        final BitSet free = new BitSet();
+        // Free or pending.
+        final BitSet known = new BitSet();
+        // Reused by the active write transaction.
+        final List<Integer> inFlight = new ArrayList<>();
+        // Committed allocation limit.
+        long limit = -1;
+        long countReused = 0;
+
+        // Marking
+        BitSet reached = null;
+        BitSet reused = null;
+        long markLimit;
+
+        int allocate() {
+            int id = free.nextSetBit(0);
+            if ( id < 0 )
+                return -1;
+            free.clear(id);
+            known.clear(id);
+            inFlight.add(id);
+            if ( reused != null )
+                reused.set(id);
+            countReused++;
+            return id;
+        }
+
+        int[] addFreed(Collection<Integer> ids) {
+            int[] x = new int[ids.size()];
+            int i = 0;
+            for ( int id : ids ) {
+                if ( known.get(id) )
+                    continue;
+                known.set(id);
+                x[i++] = id;
+            }
+            return i == x.length ? x : Arrays.copyOf(x, i);
+        }
+
+        void startMark() {
+            reached = new BitSet();
+            reused = new BitSet();
+            inFlight.forEach(reused::set);
+            markLimit = limit;
+        }
+
+        int[] finishMark() {
+            BitSet unused = new BitSet();
+            unused.set(0, (int)markLimit);
+            unused.andNot(reached);
+            unused.andNot(reused);
+            unused.andNot(known);
+            known.or(unused);
+            reached = null;
+            reused = null;
+            return unused.stream().toArray();
+        }
+    }
+
+    private final Blocks nodes = new Blocks();
+    private final Blocks records = new Blocks();
+    private final List<Pending> pending = new ArrayList<>();
+
+    // The tree as of the last commit.
+    private int committedRoot = -1;
+    private long committedVersion = -1;
+
+    // Marking, version -1 when not marking.
+    // The walk is only done by the thread holding the markLock.
+    private final Object markLock = new Object();
+    private long markVersion = -1;
+    private final Deque<Integer> toVisit = new ArrayDeque<>();
+    private long countMarks = 0;
+
+    BlockReclaimer() {}
+
+    /** Move pending blocks that no transaction can see, given the oldest active data version, to free. */
+    synchronized void releasePending(long oldestActiveVersion) {
+        long oldest = oldestActiveVersion;
+        if ( markVersion >= 0 )
+            oldest = Math.min(oldest, markVersion);
+        Iterator<Pending> iter = pending.iterator();
+        while ( iter.hasNext() ) {
+            Pending p = iter.next();
+            if ( p.version >= oldest )
+                continue;
+            for ( int id : p.nodes )
+                nodes.free.set(id);
+            for ( int id : p.records )
+                records.free.set(id);
+            iter.remove();
+        }
+    }
+
+    /** A free node block for the write transaction, or -1. */
+    synchronized int allocateNode() {
+        return nodes.allocate();
+    }
+
+    /** A free records block for the write transaction, or -1. */
+    synchronized int allocateRecords() {
+        return records.allocate();
+    }
+
+    /**
+     * The write transaction committed; the data version before the commit was
+     * {@code version}. The tree now has the given root and allocation limits.
+     */
+    synchronized void committed(long version, BptTxnState state, int root, long nodeLimit, long recordsLimit) {
+        nodes.inFlight.clear();
+        records.inFlight.clear();
+        int[] n = nodes.addFreed(state.freedNodes);
+        int[] r = records.addFreed(state.freedRecords);
+        if ( n.length > 0 || r.length > 0 )
+            pending.add(new Pending(version, n, r));
+        committedRoot = root;
+        committedVersion = version + 1;
+        nodes.limit = nodeLimit;
+        records.limit = recordsLimit;
+    }
+
+    /** The write transaction aborted: blocks it reused are free again. */
+    synchronized void aborted() {
+        abort(nodes);
+        abort(records);
+    }
+
+    private static void abort(Blocks blocks) {
+        for ( int id : blocks.inFlight ) {
+            blocks.free.set(id);
+            blocks.known.set(id);
+        }
+        blocks.inFlight.clear();
+    }
+
+    /**
+     * Do some marking, reading at most {@code maxNodes} tree nodes.
+     * Marking starts if it is not in progress.
+     * Return true if marking finished in this step.
+     */
+    boolean markStep(BPTreeNodeMgr nodeManager, int maxNodes) {
+        synchronized(markLock) {
+            if ( ! startMark() )
+                return false;
+            nodeManager.startRead();
+            try {
+                for ( int i = 0 ; i < maxNodes && ! toVisit.isEmpty() ; i++ )
+                    visit(nodeManager, toVisit.pop());
+            } finally { nodeManager.finishRead(); }
+            if ( ! toVisit.isEmpty() )
+                return false;
+            finishMark();
+            return true;
+        }
+    }
+
+    private synchronized boolean startMark() {
+        if ( markVersion >= 0 )
+            return true;
+        if ( committedVersion < 0 )
+            // No commit seen yet.
+            return false;
+        markVersion = committedVersion;
+        nodes.startMark();
+        records.startMark();
+        toVisit.clear();
+        toVisit.push(committedRoot);
+        return true;
+    }
+
+    // Blocks reached from the root as of the marking version are not changed by writers.
+    private void visit(BPTreeNodeMgr nodeManager, int id) {
+        nodes.reached.set(id);
+        BPTreeNode node = nodeManager.getRead(id, BPlusTreeParams.NoParent);
+        try {
+            for ( int i = 0 ; i <= node.getCount() ; i++ ) {
+                int ptr = node.ptrs.get(i);
+                if ( node.isLeaf() )
+                    records.reached.set(ptr);
+                else
+                    toVisit.push(ptr);
+            }
+        } finally { nodeManager.release(node); }
+    }
+
+    private synchronized void finishMark() {
+        int[] n = nodes.finishMark();
+        int[] r = records.finishMark();
+        if ( n.length > 0 || r.length > 0 )
+            pending.add(new Pending(markVersion - 1, n, r));
+        markVersion = -1;
+        countMarks++;
+    }
+
+    /** Number of blocks that are free or pending. */
+    synchronized long countUnused() {
+        return nodes.known.cardinality() + records.known.cardinality();
+    }
+
+    /** Number of times a block has been reused. */
+    synchronized long countReused() {
+        return nodes.countReused + records.countReused;
+    }
+
+    /** Number of times marking has finished. */
+    synchronized long countMarks() {
+        return countMarks;
+    }
+}
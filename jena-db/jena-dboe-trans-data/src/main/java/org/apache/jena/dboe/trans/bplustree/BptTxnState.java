@@ -18,6 +18,11 @@
 
 package org.apache.jena.dboe.trans.bplustree;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /** Transactional state of a {@link BPlusTree} */
 final class BptTxnState {
     final int initialroot;
@@ -29,6 +34,14 @@ final class BptTxnState {
     final long boundaryBlocksNode;
     final long boundaryBlocksRecord;
 
+    // Block reuse (see BlockReclaimer).
+    // Blocks below the boundary, reused and so modifiable in this transaction.
+    final Set<Integer> reusedNodes = new HashSet<>();
+    final Set<Integer> reusedRecords = new HashSet<>();
+    // Blocks not in the tree after this transaction commits.
+    final List<Integer> freedNodes = new ArrayList<>();
+    final List<Integer> freedRecords = new ArrayList<>();
+
     BptTxnState(int initRoot, long boundaryNode, long boundaryRecords) {
         this.initialroot = initRoot;
         this.root = initRoot;
@@ -39,13 +52,13 @@ final class BptTxnState {
     boolean modifiableNodeBlock(int id) {
         if ( BPT.forcePromoteModes )
             return ! BPT.promoteDuplicateNodes;
-        return id >= boundaryBlocksNode;
+        return id >= boundaryBlocksNode || reusedNodes.contains(id);
     }
 
     boolean modifiableRecordsBlock(int id) {
         if ( BPT.forcePromoteModes )
             return ! BPT.promoteDuplicateRecords;
-        return id >= boundaryBlocksRecord;
+        return id >= boundaryBlocksRecord || reusedRecords.contains(id);
     }
 
     @Override
@@ -176,13 +176,22 @@ public class BPlusTreeRewriter {
             RecordBufferPage page1 = mgr.getWrite(id1);
             RecordBufferPage page2 = mgr.getWrite(id2);
 
-            // Wrong calculatation.
-            for ( int i = page2.getCount(); i < page1.getMaxSize() / 2 ; i++ ) {
-                // shiftOneup(node1, node2);
-                Record r = page1.getRecordBuffer().getHigh();
-                page1.getRecordBuffer().removeTop();
-
-                page2.getRecordBuffer().add(0, r);
+            if ( page1.isCompressed() ) {
+                // Compressed pages are balanced by size in bytes.
+                while ( page2.isMinSize() && !page1.isMinSize() ) {
+                    Record r = page1.getRecordBuffer().getHigh();
+                    page1.getRecordBuffer().removeTop();
+                    page2.getRecordBuffer().add(0, r);
+                }
+            } else {
+                // Wrong calculatation.
+                for ( int i = page2.getCount(); i < page1.getMaxSize() / 2 ; i++ ) {
+                    // shiftOneup(node1, node2);
+                    Record r = page1.getRecordBuffer().getHigh();
+                    page1.getRecordBuffer().removeTop();
+
+                    page2.getRecordBuffer().add(0, r);
+                }
             }
 
             mgr.put(page1);
@@ -21,7 +21,6 @@ package org.apache.jena.dboe.trans.bplustree.rewriter;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import org.apache.jena.dboe.base.buffer.RecordBuffer;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPage;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr;
@@ -37,6 +36,7 @@ import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr;
 class RecordBufferPagePacker implements Iterator<RecordBufferPage> {
     Iterator<Record>    records          = null;
     RecordBufferPage    recordBufferPage = null;
+    Record              pending          = null;   // Did not fit in the last page.
     RecordBufferPageMgr rbMgr            = null;
 
     RecordBufferPagePacker(Iterator<Record> records, RecordBufferPageMgr rbMgr) {
@@ -50,7 +50,7 @@ class RecordBufferPagePacker implements Iterator<RecordBufferPage> {
             if ( records == null )
                 return false;
 
-            if ( !records.hasNext() ) {
+            if ( pending == null && !records.hasNext() ) {
                 records = null;
                 return false;
             }
@@ -62,12 +62,18 @@ class RecordBufferPagePacker implements Iterator<RecordBufferPage> {
             // //System.out.println("Allocate : "+id);
             recordBufferPage = rbMgr.create();
 
-            RecordBuffer rb = recordBufferPage.getRecordBuffer();
-            while (!rb.isFull() && records.hasNext()) {
+            if ( pending != null ) {
+                recordBufferPage.append(pending);
+                pending = null;
+            }
+            while (records.hasNext()) {
                 Record r = records.next();
-                rb.add(r);
+                if ( !recordBufferPage.append(r) ) {
+                    pending = r;
+                    break;
+                }
             }
-            if ( !records.hasNext() )
+            if ( pending == null && !records.hasNext() )
                 records = null;
             return true;
         }
@@ -242,6 +242,11 @@ public class TransBinaryDataFile extends TransactionalComponentLifecycle<TransBi
         return binFile.length();
     }
 
+    /** The length of the file as of the last commit. */
+    public long getCommittedLength() {
+        return committedLength.get();
+    }
+
     @Override
     public boolean isEmpty() {
         super.checkTxn();
@@ -29,10 +29,12 @@ import org.junit.runners.Suite;
     TestBPTreeRecordsNonTxn.class,
     TestBPlusTreeIndexNonTxn.class,
     TestBPlusTreeNonTxn.class,
+    TestBPlusTreeCompressedNonTxn.class,
     TestBPTreeModes.class,
 
     // Transactional tests
     TestBPlusTreeTxn.class,
+    TestBPlusTreeReclaim.class,
 
     // Rewriter
     TestBPlusTreeRewriterNonTxn.class
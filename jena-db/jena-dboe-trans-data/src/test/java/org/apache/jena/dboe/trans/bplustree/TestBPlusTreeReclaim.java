@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.apache.jena.dboe.index.test.IndexTestLib;
+import org.apache.jena.dboe.test.RecordLib;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests of reusing B+Tree blocks that are no longer in the tree. */
+public class TestBPlusTreeReclaim extends Assert {
+
+    private static BPlusTree createBPTree() {
+        return BPlusTreeFactory.makeMem(3, 3, RecordLib.TestRecordLength, 0);
+    }
+
+    private static int[] keys(int start, int finish) {
+        return IntStream.range(start, finish).toArray();
+    }
+
+    private static long allocLimit(BPlusTree bpt) {
+        return bpt.getNodeManager().allocLimit() + bpt.getRecordsMgr().allocLimit();
+    }
+
+    // Replace the contents of the tree, one transaction at a time.
+    private static void churn(BPlusTree bpt, Transactional thing, int rounds) {
+        for ( int i = 0 ; i < rounds ; i++ ) {
+            int[] before = keys(100*i, 100*i+100);
+            int[] after = keys(100*i+100, 100*i+200);
+            Txn.executeWrite(thing, ()->{
+                IndexTestLib.delete(bpt, before);
+                IndexTestLib.add(bpt, after);
+            });
+        }
+    }
+
+    @Test public void bptree_reclaim_01() {
+        BPlusTree bpt1 = createBPTree();
+        Transactional thing1 = TestBPlusTreeTxn.transactional(bpt1);
+        Txn.executeWrite(thing1, ()->IndexTestLib.add(bpt1, keys(0, 100)));
+        churn(bpt1, thing1, 20);
+
+        BPlusTree bpt2 = createBPTree();
+        bpt2.enableReclaim();
+        assertTrue(bpt2.isReclaiming());
+        Transactional thing2 = TestBPlusTreeTxn.transactional(bpt2);
+        Txn.executeWrite(thing2, ()->IndexTestLib.add(bpt2, keys(0, 100)));
+        churn(bpt2, thing2, 20);
+
+        assertTrue(bpt2.countReusedBlocks() > 0);
+        assertTrue(allocLimit(bpt2) < allocLimit(bpt1));
+        Txn.executeRead(thing2, ()->IndexTestLib.testIndexContents(bpt2, keys(2000, 2100)));
+        Txn.executeRead(thing2, ()->bpt2.check());
+    }
+
+    @Test public void bptree_reclaim_02() {
+        // Blocks seen by an active reader are not reused.
+        BPlusTree bpt = createBPTree();
+        bpt.enableReclaim();
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, ()->IndexTestLib.add(bpt, keys(0, 100)));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(()->{
+            thing.begin(ReadWrite.READ);
+            try {
+                started.countDown();
+                finish.await();
+                IndexTestLib.testIndexContents(bpt, keys(0, 100));
+            } catch (Throwable th) {
+                error.set(th);
+            } finally {
+                thing.end();
+            }
+        });
+        reader.start();
+        try {
+            started.await();
+            churn(bpt, thing, 10);
+            finish.countDown();
+            reader.join();
+        } catch (InterruptedException ex) {
+            fail("Interrupted");
+        }
+        assertNull(error.get());
+        // After the reader has finished.
+        Txn.executeWrite(thing, ()->{
+            IndexTestLib.delete(bpt, keys(1000, 1100));
+            IndexTestLib.add(bpt, keys(0, 100));
+        });
+        assertTrue(bpt.countReusedBlocks() > 0);
+        Txn.executeRead(thing, ()->IndexTestLib.testIndexContents(bpt, keys(0, 100)));
+    }
+
+    @Test public void bptree_reclaim_03() {
+        // Find blocks made unused before reclaiming was enabled.
+        BPlusTree bpt = createBPTree();
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, ()->IndexTestLib.add(bpt, keys(0, 100)));
+        churn(bpt, thing, 5);
+        bpt.enableReclaim();
+        // Nothing to go on yet.
+        assertFalse(bpt.reclaimStep(10));
+        Txn.executeWrite(thing, ()->{});
+        int steps = 0;
+        while ( ! bpt.reclaimStep(2) )
+            steps++;
+        assertTrue(steps > 1);
+        assertEquals(1, bpt.countReclaimPasses());
+        assertTrue(bpt.countUnusedBlocks() > 0);
+
+        long limit = allocLimit(bpt);
+        Txn.executeWrite(thing, ()->IndexTestLib.add(bpt, keys(1000, 1050)));
+        assertEquals(limit, allocLimit(bpt));
+        assertTrue(bpt.countReusedBlocks() > 0);
+        Txn.executeRead(thing, ()->{
+            IndexTestLib.testIndexContents(bpt, IntStream.concat(IntStream.range(500, 600), IntStream.range(1000, 1050)).toArray());
+            bpt.check();
+        });
+    }
+
+    @Test public void bptree_reclaim_04() {
+        // Blocks reused by an aborted transaction are reused again.
+        BPlusTree bpt = createBPTree();
+        bpt.enableReclaim();
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, ()->IndexTestLib.add(bpt, keys(0, 100)));
+        churn(bpt, thing, 2);
+        long unused = bpt.countUnusedBlocks();
+        thing.begin(ReadWrite.WRITE);
+        IndexTestLib.add(bpt, keys(1000, 1100));
+        thing.abort();
+        thing.end();
+        assertEquals(unused, bpt.countUnusedBlocks());
+        Txn.executeRead(thing, ()->IndexTestLib.testIndexContents(bpt, keys(200, 300)));
+        Txn.executeWrite(thing, ()->IndexTestLib.add(bpt, keys(1000, 1100)));
+        Txn.executeRead(thing, ()->{
+            IndexTestLib.testIndexContents(bpt, IntStream.concat(IntStream.range(200, 300), IntStream.range(1000, 1100)).toArray());
+            bpt.check();
+        });
+    }
+}
@@ -66,11 +66,24 @@ public class TestBPlusTreeRewriterNonTxn extends Assert
 
     @Test public void bpt_rewrite_99()  { runTest(5, 1000); }
 
+    // Compressed leaf blocks.
+    @Test public void bpt_rewrite_compressed_01()  { runTest(5, 0, true); }
+    @Test public void bpt_rewrite_compressed_02()  { runTest(5, 10, true); }
+    @Test public void bpt_rewrite_compressed_03()  { runTest(5, 100, true); }
+    @Test public void bpt_rewrite_compressed_04()  { runTest(8, 5000, true); }
+
     static void runTest(int order, int N)
-    { runOneTest(order, N , recordFactory, false); }
+    { runTest(order, N, false); }
+
+    static void runTest(int order, int N, boolean compressLeaves)
+    { runOneTest(order, N , recordFactory, compressLeaves, false); }
 
     public static void runOneTest(int order, int N, RecordFactory recordFactory, boolean debug) {
-        BPlusTreeParams bptParams = new BPlusTreeParams(order, recordFactory);
+        runOneTest(order, N, recordFactory, false, debug);
+    }
+
+    public static void runOneTest(int order, int N, RecordFactory recordFactory, boolean compressLeaves, boolean debug) {
+        BPlusTreeParams bptParams = new BPlusTreeParams(order, recordFactory, compressLeaves);
         BPlusTreeRewriter.debug = debug;
 
         // ---- Test data
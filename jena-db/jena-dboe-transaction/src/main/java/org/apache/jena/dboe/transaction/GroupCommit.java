@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.dboe.transaction.txn.TransactionException;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.Transactional;
+import org.apache.jena.system.Txn;
+
+/**
+ * Group commit: run write actions from several threads in one write transaction,
+ * so that they share one commit and one flush of the journal and data files to disk.
+ * <p>
+ * The first call of {@link #execute} starts a batch. If other calls are in progress,
+ * it waits for up to the maximum delay, or until the batch is full, for them to join
+ * it; a call on its own does not wait. A batch is full when it has the maximum number
+ * of actions or the sizes given with the actions reach the maximum number of bytes.
+ * The first call then starts a write transaction; calls arriving while it waits for
+ * the transaction to start also join the batch. The actions are run in order, on the
+ * thread of the first call, and the transaction is committed. Each call returns
+ * only after the commit has completed, so each action is as durable as if it had
+ * been committed in its own transaction.
+ * <p>
+ * If an action throws an exception, the batch transaction is aborted and each
+ * action of the batch is run again in a transaction of its own. Actions must not
+ * commit or end the transaction, and should not have effects outside the data
+ * because they may be run more than once.
+ * <p>
+ * Calling {@link #execute} inside a transaction runs the action in that transaction,
+ * as {@link Txn#executeWrite} does.
+ */
+public class GroupCommit {
+    /** Default for the time the first action of a batch waits for others. */
+    public static final Duration DefaultMaxDelay = Duration.ofMillis(2);
+
+    /** Default for the largest number of actions in a batch. */
+    public static final int DefaultMaxBatchSize = 1000;
+
+    /** Default for the largest total size of the actions in a batch. */
+    public static final long DefaultMaxBatchBytes = 16L * 1024 * 1024;
+
+    private final Transactional transactional;
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+
+    private final Object lock = new Object();
+    // The batch new calls join. Guarded by the lock.
+    private Batch current = null;
+    // Calls of execute in progress. Guarded by the lock.
+    private int active = 0;
+
+    private final LongAdder countBatches = new LongAdder();
+    private final LongAdder countActions = new LongAdder();
+    private final LongAdder countBytes = new LongAdder();
+    private final LongAdder countRetries = new LongAdder();
+    private final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+
+    private static class Call {
+        final Runnable action;
+        Throwable error = null;
+
+        Call(Runnable action) {
+            this.action = action;
+        }
+    }
+
+    private static class Batch {
+        // Guarded by the lock.
+        final List<Call> calls = new ArrayList<>();
+        long bytes = 0;
+        boolean done = false;
+        // Failure to start or commit the transaction.
+        Throwable error = null;
+    }
+
+    /** Group commit with the default settings. */
+    public GroupCommit(Transactional transactional) {
+        this(transactional, DefaultMaxDelay, DefaultMaxBatchSize);
+    }
+
+    /**
+     * Group commit where a batch waits up to {@code maxDelay} for actions, and has
+     * at most {@code maxBatchSize} actions.
+     */
+    public GroupCommit(Transactional transactional, Duration maxDelay, int maxBatchSize) {
+        this(transactional, maxDelay, maxBatchSize, DefaultMaxBatchBytes);
+    }
+
+    /**
+     * Group commit where a batch waits up to {@code maxDelay} for actions, and has
+     * at most {@code maxBatchSize} actions and {@code maxBatchBytes} bytes.
+     */
+    public GroupCommit(Transactional transactional, Duration maxDelay, int maxBatchSize, long maxBatchBytes) {
+        Objects.requireNonNull(transactional);
+        if ( maxDelay.isNegative() )
+            throw new IllegalArgumentException("Negative delay: " + maxDelay);
+        if ( maxBatchSize <= 0 )
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        if ( maxBatchBytes <= 0 )
+            throw new IllegalArgumentException("Batch bytes must be positive: " + maxBatchBytes);
+        this.transactional = transactional;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Run the action in a write transaction, possibly together with the actions of
+     * other calls. Returns when the transaction has committed. An exception from
+     * the action is rethrown.
+     */
+    public void execute(Runnable action) {
+        execute(action, 0);
+    }
+
+    /**
+     * Run the action as {@link #execute(Runnable)} does. {@code bytes} is the size of
+     * the action, such as the length of a SPARQL Update request, and counts towards
+     * the maximum number of bytes in a batch.
+     */
+    public void execute(Runnable action, long bytes) {
+        Objects.requireNonNull(action);
+        if ( transactional.isInTransaction() ) {
+            Txn.executeWrite(transactional, action);
+            return;
+        }
+        Call call = new Call(action);
+        Batch batch;
+        boolean first;
+        synchronized(lock) {
+            active++;
+            first = (current == null);
+            if ( first )
+                current = new Batch();
+            batch = current;
+            batch.calls.add(call);
+            batch.bytes += bytes;
+            if ( batch.calls.size() >= maxBatchSize || batch.bytes >= maxBatchBytes ) {
+                // Full: later calls start a new batch.
+                current = null;
+                lock.notifyAll();
+            }
+        }
+        try {
+            if ( first )
+                runBatch(batch);
+            else
+                awaitBatch(batch);
+        } finally {
+            synchronized(lock) {
+                active--;
+                // A batch leader may be waiting for this call.
+                lock.notifyAll();
+            }
+        }
+
+        if ( batch.error != null )
+            throw new TransactionException("Group commit failed", batch.error);
+        if ( call.error != null ) {
+            if ( call.error instanceof RuntimeException )
+                throw (RuntimeException)call.error;
+            if ( call.error instanceof Error )
+                throw (Error)call.error;
+            throw new TransactionException(call.error);
+        }
+    }
+
+    private void runBatch(Batch batch) {
+        boolean interrupted = false;
+        synchronized(lock) {
+            long deadline = System.nanoTime() + maxDelayNanos;
+            // Wait only while there are other calls that may join.
+            while ( current == batch && active > batch.calls.size() ) {
+                long wait = deadline - System.nanoTime();
+                if ( wait <= 0 )
+                    break;
+                try {
+                    lock.wait(wait / 1_000_000, (int)(wait % 1_000_000));
+                } catch (InterruptedException ex) {
+                    // Interrupting I/O closes files; restore the status afterwards.
+                    interrupted = true;
+                }
+            }
+        }
+        List<Call> calls;
+        try {
+            transactional.begin(TxnType.WRITE);
+        } catch (Throwable th) {
+            batch.error = th;
+        }
+        synchronized(lock) {
+            if ( current == batch )
+                current = null;
+            calls = batch.calls;
+        }
+        if ( batch.error == null && ! runTogether(batch, calls) ) {
+            // An action failed. Run each action on its own.
+            countRetries.add(calls.size());
+            for ( Call call : calls )
+                runAlone(call);
+        }
+        countBatches.increment();
+        countActions.add(calls.size());
+        countBytes.add(batch.bytes);
+        largestBatch.accumulate(calls.size());
+        synchronized(lock) {
+            batch.done = true;
+            lock.notifyAll();
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    // Run the actions in the transaction started by the caller.
+    // Return false if an action failed and the transaction was aborted.
+    private boolean runTogether(Batch batch, List<Call> calls) {
+        try {
+            for ( Call call : calls ) {
+                try {
+                    call.action.run();
+                } catch (Throwable th) {
+                    call.error = th;
+                    transactional.abort();
+                    return calls.size() == 1;
+                }
+            }
+            transactional.commit();
+        } catch (Throwable th) {
+            batch.error = th;
+            try { transactional.abort(); }
+            catch (Throwable th2) { th.addSuppressed(th2); }
+        } finally {
+            transactional.end();
+        }
+        return true;
+    }
+
+    private void runAlone(Call call) {
+        call.error = null;
+        try {
+            Txn.executeWrite(transactional, call.action);
+        } catch (Throwable th) {
+            call.error = th;
+        }
+    }
+
+    private void awaitBatch(Batch batch) {
+        boolean interrupted = false;
+        synchronized(lock) {
+            // Wait for the outcome, even if interrupted.
+            while ( ! batch.done ) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    /** Number of batches run. */
+    public long getBatchCount() {
+        return countBatches.sum();
+    }
+
+    /** Number of actions run in batches. */
+    public long getActionCount() {
+        return countActions.sum();
+    }
+
+    /** Total of the sizes given with the actions run in batches. */
+    public long getByteCount() {
+        return countBytes.sum();
+    }
+
+    /** Number of calls of {@link #execute} in progress, including those waiting for their batch. */
+    public int getActiveCount() {
+        synchronized(lock) {
+            return active;
+        }
+    }
+
+    /** Number of actions in the largest batch. */
+    public long getLargestBatchSize() {
+        return largestBatch.get();
+    }
+
+    /** Average number of actions in a batch. */
+    public double getAverageBatchSize() {
+        long batches = getBatchCount();
+        return batches == 0 ? 0 : (double)getActionCount() / batches;
+    }
+
+    /** Number of actions run again, on their own, because an action in their batch failed. */
+    public long getRetryCount() {
+        return countRetries.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommit[batches=%d, actions=%d, bytes=%d, largest=%d, retries=%d]",
+                             getBatchCount(), getActionCount(), getByteCount(), getLargestBatchSize(), getRetryCount());
+    }
+}
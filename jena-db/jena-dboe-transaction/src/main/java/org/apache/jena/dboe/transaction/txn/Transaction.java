@@ -101,6 +101,11 @@ public class Transaction implements TransactionInfo {
         return dataVersion;
     }
 
+    /** The {@link TransactionCoordinator} of the transaction, or null after the transaction has ended. */
+    public TransactionCoordinator getTxnMgr() {
+        return txnMgr;
+    }
+
     public void begin() {
         checkState(INACTIVE);
         components.forEach((c) -> c.begin());
@@ -285,6 +285,11 @@ public class TransactionCoordinator {
         this.txnIdGenerator = generator;
     }
 
+    /** Apply an action to each {@link TransactionalComponent}. */
+    public void forEachComponent(Consumer<? super TransactionalComponent> action) {
+        components.forEachComponent(action);
+    }
+
     public Journal getJournal() {
         return journal;
     }
@@ -543,7 +548,6 @@ public class TransactionCoordinator {
             }
         }
         Transaction transaction = begin$(txnType);
-        startActiveTransaction(transaction);
         transaction.begin();
         notifyBegin(transaction);
         return transaction;
@@ -576,6 +580,9 @@ public class TransactionCoordinator {
                 //complete();
                 throw ex;
             }
+            // Active from the point the components have their start state.
+            // See oldestActiveDataVersion.
+            startActiveTransaction(transaction);
             return transaction;
         }
     }
@@ -890,6 +897,26 @@ public class TransactionCoordinator {
         exclusivitylock.readLock().unlock();
     }
 
+    /** The current data version. This increases by one for each write transaction that commits. */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * The lowest data version of any active transaction, or the current data
+     * version if there are no active transactions. Data that a commit makes
+     * unused, when the data version moves from {@code v} to {@code v+1}, is not
+     * seen by any active transaction if this is greater than {@code v}.
+     */
+    public long oldestActiveDataVersion() {
+        synchronized(coordinatorLock) {
+            long version = dataVersion.get();
+            for ( Transaction txn : activeTransactions )
+                version = Math.min(version, txn.getDataVersion());
+            return version;
+        }
+    }
+
     public long countActiveReaders()    { return activeReadersCount.get(); }
     public long countActiveWriter()     { return activeWritersCount.get(); }
     public long countActive()           { return activeTransactionCount.get(); }
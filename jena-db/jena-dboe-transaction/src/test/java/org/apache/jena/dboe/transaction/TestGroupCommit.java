@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.system.Txn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGroupCommit {
+    private static final long InitValue = 5;
+    private TransactionCoordinator coord;
+    private TransactionalInteger integer;
+
+    @Before public void setup() {
+        coord = new TransactionCoordinator(Location.mem());
+        integer = new TransactionalInteger(coord, InitValue);
+        coord.start();
+    }
+
+    @After public void clearup() {
+        integer.shutdown();
+    }
+
+    @Test public void groupCommit_01() {
+        GroupCommit groupCommit = new GroupCommit(integer);
+        groupCommit.execute(integer::inc);
+        assertEquals(InitValue+1, integer.value());
+        assertEquals(1, groupCommit.getBatchCount());
+        assertEquals(1, groupCommit.getActionCount());
+    }
+
+    @Test public void groupCommit_02() throws InterruptedException {
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ofMillis(20), 100);
+        int N = 8;
+        int M = 50;
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            threads[i] = new Thread(()->{
+                try {
+                    for ( int j = 0 ; j < M ; j++ )
+                        groupCommit.execute(integer::inc);
+                } catch (Throwable th) { errors.incrementAndGet(); }
+            });
+        }
+        long writes = coord.countBeginWrite();
+        for ( Thread t : threads )
+            t.start();
+        for ( Thread t : threads )
+            t.join();
+        assertEquals(0, errors.get());
+        assertEquals(InitValue+N*M, integer.value());
+        assertEquals(N*M, groupCommit.getActionCount());
+        assertEquals(groupCommit.getBatchCount(), coord.countBeginWrite()-writes);
+        assertTrue(groupCommit.getBatchCount() < N*M);
+        assertTrue(groupCommit.getLargestBatchSize() > 1);
+        assertTrue(groupCommit.getLargestBatchSize() <= 100);
+    }
+
+    @Test public void groupCommit_03() throws InterruptedException {
+        // Calls arriving while the batch waits to start the transaction join it.
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ofSeconds(60), 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(()->{
+            integer.begin(TxnType.WRITE);
+            started.countDown();
+            try { release.await(); } catch (InterruptedException ex) {}
+            integer.commit();
+            integer.end();
+        });
+        writer.start();
+        started.await();
+        Thread thread1 = new Thread(()->groupCommit.execute(integer::inc));
+        AtomicInteger errors = new AtomicInteger();
+        Thread thread2 = new Thread(()->{
+            try {
+                groupCommit.execute(()->{
+                    integer.inc();
+                    throw new IllegalStateException();
+                });
+            } catch (IllegalStateException ex) { errors.incrementAndGet(); }
+        });
+        thread1.start();
+        // Blocked starting the transaction.
+        while ( thread1.getState() != Thread.State.WAITING && thread1.getState() != Thread.State.TIMED_WAITING )
+            Thread.sleep(1);
+        thread2.start();
+        // Joined the batch.
+        while ( thread2.getState() != Thread.State.WAITING )
+            Thread.sleep(1);
+        release.countDown();
+        thread1.join();
+        thread2.join();
+        writer.join();
+        assertEquals(1, errors.get());
+        // The other action committed.
+        assertEquals(InitValue+1, integer.value());
+        assertEquals(1, groupCommit.getBatchCount());
+        assertEquals(2, groupCommit.getRetryCount());
+    }
+
+    @Test public void groupCommit_bytes() throws InterruptedException {
+        // The second call fills the batch by size; the third starts a new batch.
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ofSeconds(60), 100, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(()->{
+            integer.begin(TxnType.WRITE);
+            started.countDown();
+            try { release.await(); } catch (InterruptedException ex) {}
+            integer.commit();
+            integer.end();
+        });
+        writer.start();
+        started.await();
+        Thread thread1 = new Thread(()->groupCommit.execute(integer::inc, 6));
+        Thread thread2 = new Thread(()->groupCommit.execute(integer::inc, 6));
+        Thread thread3 = new Thread(()->groupCommit.execute(integer::inc, 1));
+        thread1.start();
+        while ( groupCommit.getActiveCount() != 1 )
+            Thread.sleep(1);
+        thread2.start();
+        while ( groupCommit.getActiveCount() != 2 )
+            Thread.sleep(1);
+        thread3.start();
+        while ( groupCommit.getActiveCount() != 3 )
+            Thread.sleep(1);
+        release.countDown();
+        thread1.join();
+        thread2.join();
+        thread3.join();
+        writer.join();
+        assertEquals(InitValue+3, integer.value());
+        assertEquals(2, groupCommit.getBatchCount());
+        assertEquals(2, groupCommit.getLargestBatchSize());
+        assertEquals(13, groupCommit.getByteCount());
+        assertEquals(0, groupCommit.getActiveCount());
+    }
+
+    @Test public void groupCommit_04() {
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ZERO, 1);
+        for ( int i = 0 ; i < 5 ; i++ )
+            groupCommit.execute(integer::inc);
+        assertEquals(InitValue+5, integer.value());
+        assertEquals(5, groupCommit.getBatchCount());
+        assertEquals(1, groupCommit.getLargestBatchSize());
+    }
+
+    @Test public void groupCommit_alone() {
+        // A call on its own does not wait for others.
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ofSeconds(60), 100);
+        long start = System.nanoTime();
+        groupCommit.execute(integer::inc);
+        groupCommit.execute(integer::inc);
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(30).toNanos());
+        assertEquals(InitValue+2, integer.value());
+        assertEquals(2, groupCommit.getBatchCount());
+    }
+
+    @Test public void groupCommit_05() {
+        // Inside a transaction: part of that transaction.
+        GroupCommit groupCommit = new GroupCommit(integer);
+        Txn.executeWrite(integer, ()->{
+            groupCommit.execute(integer::inc);
+            assertEquals(InitValue, integer.value());
+            assertEquals(InitValue+1, integer.get());
+        });
+        assertEquals(InitValue+1, integer.value());
+        assertEquals(0, groupCommit.getBatchCount());
+    }
+
+    @Test public void groupCommit_06() {
+        // A single failing action.
+        GroupCommit groupCommit = new GroupCommit(integer, Duration.ZERO, 10);
+        try {
+            groupCommit.execute(()->{
+                integer.inc();
+                throw new IllegalStateException();
+            });
+            fail("Expected an exception");
+        } catch (IllegalStateException ex) {}
+        assertEquals(InitValue, integer.value());
+        assertEquals(0, groupCommit.getRetryCount());
+        groupCommit.execute(integer::inc);
+        assertEquals(InitValue+1, integer.value());
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.apache.jena.tdb2.sys.DatabaseConnection;
 import org.apache.jena.tdb2.sys.DatabaseOps;
+import org.apache.jena.tdb2.sys.IncrementalCompaction;
 import org.apache.jena.tdb2.sys.TDBInternal;
 
 /** Operations for TDBS DatasetGraph, including admin operations
@@ -80,6 +81,18 @@ public class DatabaseMgr {
         DatabaseOps.compact(dsg, shouldDeleteOld);
     }
 
+    /**
+     * Reuse the space of unused blocks in the indexes of a TDB database, while it is in use,
+     * without copying it. See {@link IncrementalCompaction}.
+     *
+     * @param container
+     * @return The {@link IncrementalCompaction} to run steps and get counts.
+     */
+    public static IncrementalCompaction compactIncremental(DatasetGraph container) {
+        TDBInternal.requireStorage(container);
+        return new IncrementalCompaction(container);
+    }
+
     /**
      * Create a backup for a switchable TDB database. This is the normal dataset type for
      * on-disk TDB2 databases.
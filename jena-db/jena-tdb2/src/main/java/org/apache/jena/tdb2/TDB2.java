@@ -92,6 +92,35 @@ public class TDB2 {
      */
     public static final Symbol  symUnionDefaultGraph             = symUnionDefaultGraph2;
 
+    /**
+     * Symbol to control merge joins of triple patterns that can be read from the
+     * indexes in order of a shared variable. Default: true.
+     */
+    public static final Symbol  symMergeJoin                     = SystemTDB.allocSymbol("mergeJoin");
+
+    /**
+     * Symbol to control answering ORDER BY of a variable by reading an index in
+     * order, when the values are inline and their NodeIds sort in value order.
+     * Default: true.
+     */
+    public static final Symbol  symIndexOrder                    = SystemTDB.allocSymbol("indexOrder");
+
+    /**
+     * Symbol to control evaluating COUNT aggregates over a single pattern by
+     * counting index entries, without making bindings. Default: true.
+     */
+    public static final Symbol  symAggregatePushdown             = SystemTDB.allocSymbol("aggregatePushdown");
+
+    /**
+     * Symbol to run SPARQL Update requests with group commit: requests from several
+     * threads share one write transaction and one commit. This applies to requests
+     * made outside a transaction and to SPARQL Update requests to Fuseki. See
+     * {@link org.apache.jena.dboe.transaction.GroupCommit} and
+     * {@link org.apache.jena.tdb2.store.DatasetGraphSwitchable#getGroupCommit()}
+     * for the batch statistics. Default: false.
+     */
+    public static final Symbol  symGroupCommit                   = SystemTDB.allocSymbol("groupCommit");
+
     public static Context getContext() {
         return ARQ.getContext();
     }
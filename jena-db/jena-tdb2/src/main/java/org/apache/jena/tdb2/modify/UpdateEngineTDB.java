@@ -18,20 +18,64 @@
 
 package org.apache.jena.tdb2.modify;
 
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.engine.binding.Binding;
-import org.apache.jena.sparql.modify.UpdateEngine;
-import org.apache.jena.sparql.modify.UpdateEngineFactory;
-import org.apache.jena.sparql.modify.UpdateEngineMain;
-import org.apache.jena.sparql.modify.UpdateEngineRegistry;
+import org.apache.jena.sparql.modify.*;
+import org.apache.jena.sparql.modify.request.UpdateVisitor;
 import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.TDB2;
 import org.apache.jena.tdb2.store.DatasetGraphTxn;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
 
+/**
+ * Update engine for TDB2.
+ * <p>
+ * If {@link TDB2#symGroupCommit} is set, a request made outside a transaction is
+ * accumulated and then executed with the {@link GroupCommit} of the database, possibly
+ * in the same write transaction as requests from other threads.
+ */
 public class UpdateEngineTDB extends UpdateEngineMain
 {
-    public UpdateEngineTDB(DatasetGraphTxn graphStore, Binding inputBinding, Context context)
-    { super(graphStore, inputBinding, context); }
+    // Null if not using group commit.
+    private final GroupCommit groupCommit;
+    private UpdateSink groupSink = null;
+
+    public UpdateEngineTDB(DatasetGraph graphStore, Binding inputBinding, Context context)
+    {
+        super(graphStore, inputBinding, context);
+        this.groupCommit = groupCommit(graphStore, this.context);
+    }
 
+    private static GroupCommit groupCommit(DatasetGraph dsg, Context context) {
+        if ( ! context.isTrue(TDB2.symGroupCommit) || ! TDBInternal.isTDB2(dsg) || dsg.isInTransaction() )
+            return null;
+        return TDBInternal.getDatabaseContainer(dsg).getGroupCommit();
+    }
+
+    @Override
+    public UpdateSink getUpdateSink() {
+        if ( groupCommit == null )
+            return super.getUpdateSink();
+        if ( groupSink == null ) {
+            UpdateRequest accRequests = new UpdateRequest();
+            groupSink = new UpdateRequestSink(accRequests) {
+                @Override
+                public void close() {
+                    super.close();
+                    // May be run more than once if another request in the batch fails.
+                    groupCommit.execute(()->{
+                        UpdateVisitor worker = prepareWorker();
+                        for ( Update up : accRequests )
+                            up.visit(worker);
+                    });
+                }
+            };
+        }
+        return groupSink;
+    }
 
     // ---- Factory
     public static UpdateEngineFactory getFactory() {
@@ -39,12 +83,12 @@ public class UpdateEngineTDB extends UpdateEngineMain
         {
             @Override
             public boolean accept(DatasetGraph dataset, Context context) {
-                return (dataset instanceof DatasetGraphTxn);
+                return (dataset instanceof DatasetGraphTxn) || TDBInternal.isTDB2(dataset);
             }
 
             @Override
             public UpdateEngine create(DatasetGraph dataset, Binding inputBinding, Context context) {
-                return new UpdateEngineTDB((DatasetGraphTxn)dataset, inputBinding, context);
+                return new UpdateEngineTDB(dataset, inputBinding, context);
             }
         };
     }
@@ -20,6 +20,7 @@ package org.apache.jena.tdb2.params;
 
 import java.util.Objects;
 
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.index.IndexParams;
 import org.apache.jena.tdb2.params.StoreParamsBuilder.Item;
@@ -47,9 +48,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
     /*package*/ final Item<Integer>            blockSize;
     /*package*/ final Item<Integer>            blockReadCacheSize;
     /*package*/ final Item<Integer>            blockWriteCacheSize;
+    /*package*/ final Item<BlockCacheMode>     blockCacheMode;
     /*package*/ final Item<Integer>            Node2NodeIdCacheSize;
     /*package*/ final Item<Integer>            NodeId2NodeCacheSize;
     /*package*/ final Item<Integer>            NodeMissCacheSize;
+    /*package*/ final Item<Boolean>            nodeBloomFilter;
 
     /* These are items affect database layout and
      * only can be applied when a database is created.
@@ -70,6 +73,8 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
     /*package*/ final Item<String>             primaryIndexPrefix;
     /*package*/ final Item<String[]>           prefixIndexes;
 
+    /*package*/ final Item<Boolean>            compressIndexLeaves;
+
     /** Build StoreParams, starting from system defaults.
      *
      * @return StoreParamsBuilder
@@ -84,22 +89,27 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
 
     /*package*/ StoreParams(Item<FileMode> fileMode, Item<Integer> blockSize,
                             Item<Integer> blockReadCacheSize, Item<Integer> blockWriteCacheSize,
+                            Item<BlockCacheMode> blockCacheMode,
                             Item<Integer> node2NodeIdCacheSize, Item<Integer> nodeId2NodeCacheSize,
                             Item<Integer> nodeMissCacheSize,
+                            Item<Boolean> nodeBloomFilter,
 
                             Item<String> nodeTableBaseName,
                             Item<String> primaryIndexTriples, Item<String[]> tripleIndexes,
                             Item<String> primaryIndexQuads, Item<String[]> quadIndexes,
 
                             Item<String> prefixTableBasename,
-                            Item<String> primaryIndexPrefix, Item<String[]> prefixIndexes) {
+                            Item<String> primaryIndexPrefix, Item<String[]> prefixIndexes,
+                            Item<Boolean> compressIndexLeaves) {
         this.fileMode               = fileMode;
         this.blockSize              = blockSize;
         this.blockReadCacheSize     = blockReadCacheSize;
         this.blockWriteCacheSize    = blockWriteCacheSize;
+        this.blockCacheMode         = blockCacheMode;
         this.Node2NodeIdCacheSize   = node2NodeIdCacheSize;
         this.NodeId2NodeCacheSize   = nodeId2NodeCacheSize;
         this.NodeMissCacheSize      = nodeMissCacheSize;
+        this.nodeBloomFilter        = nodeBloomFilter;
 
         this.nodeTableBaseName      = nodeTableBaseName;
 
@@ -111,6 +121,8 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         this.prefixIndexes          = prefixIndexes;
 
         this.prefixTableBaseName         = prefixTableBasename;
+
+        this.compressIndexLeaves    = compressIndexLeaves;
     }
 
     /** The system default settings. This is the normal set to use.
@@ -168,6 +180,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return blockWriteCacheSize.isSet;
     }
 
+    @Override
+    public BlockCacheMode getBlockCacheMode() {
+        return blockCacheMode.value;
+    }
+
+    @Override
+    public boolean isSetBlockCacheMode() {
+        return blockCacheMode.isSet;
+    }
+
     @Override
     public Integer getNode2NodeIdCacheSize() {
         return Node2NodeIdCacheSize.value;
@@ -198,6 +220,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return NodeMissCacheSize.isSet;
     }
 
+    @Override
+    public Boolean getNodeBloomFilter() {
+        return nodeBloomFilter.value;
+    }
+
+    @Override
+    public boolean isSetNodeBloomFilter() {
+        return nodeBloomFilter.isSet;
+    }
+
     public String getNodeTableBaseName() {
         return nodeTableBaseName.value;
     }
@@ -240,6 +272,20 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return prefixIndexes.value;
     }
 
+    /**
+     * Whether the leaf blocks of the B+Tree indexes are written compressed.
+     * This trades index size for work on reads: every access to a compressed leaf
+     * decodes the block into a newly allocated heap buffer of up to 4 times the
+     * block size.
+     */
+    public Boolean getCompressIndexLeaves() {
+        return compressIndexLeaves.value;
+    }
+
+    public boolean isSetCompressIndexLeaves() {
+        return compressIndexLeaves.isSet;
+    }
+
     @Override
     public String toString() {
         StringBuilder buff = new StringBuilder();
@@ -247,9 +293,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         fmt(buff, "blockSize", getBlockSize(), blockSize.isSet);
         fmt(buff, "readCacheSize", getBlockReadCacheSize(), blockReadCacheSize.isSet);
         fmt(buff, "writeCacheSize", getBlockWriteCacheSize(), blockWriteCacheSize.isSet);
+        fmt(buff, "blockCacheMode", getBlockCacheMode().toString(), blockCacheMode.isSet);
         fmt(buff, "Node2NodeIdCacheSize", getNode2NodeIdCacheSize(), Node2NodeIdCacheSize.isSet);
         fmt(buff, "NodeId2NodeCacheSize", getNodeId2NodeCacheSize(), NodeId2NodeCacheSize.isSet);
         fmt(buff, "NodeMissCacheSize", getNodeMissCacheSize(), NodeMissCacheSize.isSet);
+        fmt(buff, "nodeBloomFilter", getNodeBloomFilter().toString(), nodeBloomFilter.isSet);
 
         fmt(buff, "nodeTableBaseName", getNodeTableBaseName(), nodeTableBaseName.isSet);
         fmt(buff, "primaryIndexTriples", getPrimaryIndexTriples(), primaryIndexTriples.isSet);
@@ -260,6 +308,7 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         fmt(buff, "prefixTableBaseName", getPrefixTableBaseName(), prefixTableBaseName.isSet);
         fmt(buff, "primaryIndexPrefix", getPrimaryIndexPrefix(), primaryIndexPrefix.isSet);
         fmt(buff, "prefixIndexes", getPrefixIndexes(), prefixIndexes.isSet);
+        fmt(buff, "compressIndexLeaves", getCompressIndexLeaves().toString(), compressIndexLeaves.isSet);
 
         return buff.toString();
     }
@@ -301,12 +350,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
             return false;
         if ( !sameValues(params1.blockWriteCacheSize, params2.blockWriteCacheSize) )
             return false;
+        if ( !sameValues(params1.blockCacheMode, params2.blockCacheMode) )
+            return false;
         if ( !sameValues(params1.Node2NodeIdCacheSize, params2.Node2NodeIdCacheSize) )
             return false;
         if ( !sameValues(params1.NodeId2NodeCacheSize, params2.NodeId2NodeCacheSize) )
             return false;
         if ( !sameValues(params1.NodeMissCacheSize, params2.NodeMissCacheSize) )
             return false;
+        if ( !sameValues(params1.nodeBloomFilter, params2.nodeBloomFilter) )
+            return false;
         if ( !sameValues(params1.nodeTableBaseName, params2.nodeTableBaseName) )
             return false;
         if ( !sameValues(params1.primaryIndexTriples, params2.primaryIndexTriples) )
@@ -323,6 +376,8 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
             return false;
         if ( !sameValues(params1.prefixIndexes, params2.prefixIndexes) )
             return false;
+        if ( !sameValues(params1.compressIndexLeaves, params2.compressIndexLeaves) )
+            return false;
         return true;
     }
 
@@ -337,9 +392,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         result = prime * result + ((Node2NodeIdCacheSize == null) ? 0 : Node2NodeIdCacheSize.hashCode());
         result = prime * result + ((NodeId2NodeCacheSize == null) ? 0 : NodeId2NodeCacheSize.hashCode());
         result = prime * result + ((NodeMissCacheSize == null) ? 0 : NodeMissCacheSize.hashCode());
+        result = prime * result + ((nodeBloomFilter == null) ? 0 : nodeBloomFilter.hashCode());
         result = prime * result + ((blockReadCacheSize == null) ? 0 : blockReadCacheSize.hashCode());
         result = prime * result + ((blockSize == null) ? 0 : blockSize.hashCode());
         result = prime * result + ((blockWriteCacheSize == null) ? 0 : blockWriteCacheSize.hashCode());
+        result = prime * result + ((blockCacheMode == null) ? 0 : blockCacheMode.hashCode());
         result = prime * result + ((fileMode == null) ? 0 : fileMode.hashCode());
         result = prime * result + ((nodeTableBaseName == null) ? 0 : nodeTableBaseName.hashCode());
         result = prime * result + ((prefixTableBaseName == null) ? 0 : prefixTableBaseName.hashCode());
@@ -349,6 +406,7 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         result = prime * result + ((primaryIndexTriples == null) ? 0 : primaryIndexTriples.hashCode());
         result = prime * result + ((quadIndexes == null) ? 0 : quadIndexes.hashCode());
         result = prime * result + ((tripleIndexes == null) ? 0 : tripleIndexes.hashCode());
+        result = prime * result + ((compressIndexLeaves == null) ? 0 : compressIndexLeaves.hashCode());
         return result;
     }
 
@@ -376,6 +434,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false;
         } else if ( !NodeMissCacheSize.equals(other.NodeMissCacheSize) )
             return false;
+        if ( nodeBloomFilter == null ) {
+            if ( other.nodeBloomFilter != null )
+                return false;
+        } else if ( !nodeBloomFilter.equals(other.nodeBloomFilter) )
+            return false;
         if ( blockReadCacheSize == null ) {
             if ( other.blockReadCacheSize != null )
                 return false;
@@ -391,6 +454,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false;
         } else if ( !blockWriteCacheSize.equals(other.blockWriteCacheSize) )
             return false;
+        if ( blockCacheMode == null ) {
+            if ( other.blockCacheMode != null )
+                return false;
+        } else if ( !blockCacheMode.equals(other.blockCacheMode) )
+            return false;
         if ( fileMode == null ) {
             if ( other.fileMode != null )
                 return false;
@@ -436,6 +504,11 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false;
         } else if ( !tripleIndexes.equals(other.tripleIndexes) )
             return false;
+        if ( compressIndexLeaves == null ) {
+            if ( other.compressIndexLeaves != null )
+                return false;
+        } else if ( !compressIndexLeaves.equals(other.compressIndexLeaves) )
+            return false;
         return true;
     }
 }
@@ -18,6 +18,7 @@
 
 package org.apache.jena.tdb2.params;
 
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 
 public class StoreParamsBuilder {
@@ -68,12 +69,16 @@ public class StoreParamsBuilder {
 
     private Item<Integer>            blockWriteCacheSize   = new Item<>(StoreParamsConst.blockWriteCacheSize, false);
 
+    private Item<BlockCacheMode>     blockCacheMode        = new Item<>(StoreParamsConst.blockCacheMode, false);
+
     private Item<Integer>            Node2NodeIdCacheSize  = new Item<>(StoreParamsConst.Node2NodeIdCacheSize, false);
 
     private Item<Integer>            NodeId2NodeCacheSize  = new Item<>(StoreParamsConst.NodeId2NodeCacheSize, false);
 
     private Item<Integer>            NodeMissCacheSize     = new Item<>(StoreParamsConst.NodeMissCacheSize, false);
 
+    private Item<Boolean>            nodeBloomFilter       = new Item<>(StoreParamsConst.nodeBloomFilter, false);
+
     /** Database layout - ignored after a database is created */
 
     private Item<Integer>            blockSize             = new Item<>(StoreParamsConst.blockSize, false);
@@ -94,6 +99,8 @@ public class StoreParamsBuilder {
 
     private Item<String[]>           prefixIndexes         = new Item<>(StoreParamsConst.prefixIndexes, false);
 
+    private Item<Boolean>            compressIndexLeaves   = new Item<>(StoreParamsConst.compressIndexLeaves, false);
+
     public static StoreParamsBuilder create() {
         return new StoreParamsBuilder();
     }
@@ -121,6 +128,9 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetBlockWriteCacheSize() )
             b.blockWriteCacheSize(additionalParams.getBlockWriteCacheSize());
 
+        if ( additionalParams.isSetBlockCacheMode() )
+            b.blockCacheMode(additionalParams.getBlockCacheMode());
+
         if ( additionalParams.isSetNode2NodeIdCacheSize() )
             b.node2NodeIdCacheSize(additionalParams.getNode2NodeIdCacheSize());
 
@@ -130,6 +140,9 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetNodeMissCacheSize() )
             b.nodeMissCacheSize(additionalParams.getNodeMissCacheSize());
 
+        if ( additionalParams.isSetNodeBloomFilter() )
+            b.nodeBloomFilter(additionalParams.getNodeBloomFilter());
+
         return b.build();
     }
 
@@ -142,9 +155,11 @@ public class StoreParamsBuilder {
         this.blockSize              = other.blockSize;
         this.blockReadCacheSize     = other.blockReadCacheSize;
         this.blockWriteCacheSize    = other.blockWriteCacheSize;
+        this.blockCacheMode         = other.blockCacheMode;
         this.Node2NodeIdCacheSize   = other.Node2NodeIdCacheSize;
         this.NodeId2NodeCacheSize   = other.NodeId2NodeCacheSize;
         this.NodeMissCacheSize      = other.NodeMissCacheSize;
+        this.nodeBloomFilter        = other.nodeBloomFilter;
 
         this.nodeTableBaseName      = other.nodeTableBaseName;
 
@@ -157,17 +172,20 @@ public class StoreParamsBuilder {
         this.prefixTableBaseName    = other.prefixTableBaseName;
         this.primaryIndexPrefix     = other.primaryIndexPrefix;
         this.prefixIndexes          = other.prefixIndexes;
+
+        this.compressIndexLeaves    = other.compressIndexLeaves;
     }
 
     public StoreParams build() {
         return new StoreParams(
-                 fileMode, blockSize, blockReadCacheSize, blockWriteCacheSize,
-                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize,
+                 fileMode, blockSize, blockReadCacheSize, blockWriteCacheSize, blockCacheMode,
+                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize, nodeBloomFilter,
                  nodeTableBaseName,
                  primaryIndexTriples, tripleIndexes,
                  primaryIndexQuads, quadIndexes,
                  prefixTableBaseName, primaryIndexPrefix,
-                 prefixIndexes);
+                 prefixIndexes,
+                 compressIndexLeaves);
     }
 
     public FileMode getFileMode() {
@@ -206,6 +224,15 @@ public class StoreParamsBuilder {
        return this;
    }
 
+    public BlockCacheMode getBlockCacheMode() {
+        return blockCacheMode.value;
+    }
+
+   public StoreParamsBuilder blockCacheMode(BlockCacheMode blockCacheMode) {
+       this.blockCacheMode = new Item<>(blockCacheMode, true);
+       return this;
+   }
+
     public int getNode2NodeIdCacheSize() {
         return Node2NodeIdCacheSize.value;
     }
@@ -233,6 +260,15 @@ public class StoreParamsBuilder {
        return this;
    }
 
+    public boolean getNodeBloomFilter() {
+        return nodeBloomFilter.value;
+    }
+
+   public StoreParamsBuilder nodeBloomFilter(boolean nodeBloomFilter) {
+       this.nodeBloomFilter = new Item<>(nodeBloomFilter, true);
+       return this;
+   }
+
    public String getNodeTableBaseName() {
        return nodeTableBaseName.value;
    }
@@ -305,5 +341,14 @@ public class StoreParamsBuilder {
        this.prefixIndexes = new Item<>(prefixIndexes, true);
        return this;
    }
+
+    public boolean getCompressIndexLeaves() {
+        return compressIndexLeaves.value;
+    }
+
+   public StoreParamsBuilder compressIndexLeaves(boolean compressIndexLeaves) {
+       this.compressIndexLeaves = new Item<>(compressIndexLeaves, true);
+       return this;
+   }
 }
 
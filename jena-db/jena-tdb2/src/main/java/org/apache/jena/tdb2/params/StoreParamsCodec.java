@@ -26,6 +26,7 @@ import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.json.*;
 import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.dboe.sys.Names;
@@ -90,9 +91,14 @@ public class StoreParamsCodec {
         encode(builder, key(fBlockSize),                params.getBlockSize());
         encode(builder, key(fBlockReadCacheSize),       params.getBlockReadCacheSize());
         encode(builder, key(fBlockWriteCacheSize),      params.getBlockWriteCacheSize());
+        // Only written when set so that the file can be read by older versions.
+        if ( params.isSetBlockCacheMode() )
+            encode(builder, key(fBlockCacheMode),       params.getBlockCacheMode().name());
         encode(builder, key(fNode2NodeIdCacheSize),     params.getNode2NodeIdCacheSize());
         encode(builder, key(fNodeId2NodeCacheSize),     params.getNodeId2NodeCacheSize());
         encode(builder, key(fNodeMissCacheSize),        params.getNodeMissCacheSize());
+        if ( params.isSetNodeBloomFilter() )
+            encode(builder, key(fNodeBloomFilter),      params.getNodeBloomFilter());
         encode(builder, key(fNodeTableBaseName),        params.getNodeTableBaseName());
         encode(builder, key(fPrimaryIndexTriples),      params.getPrimaryIndexTriples());
         encode(builder, key(fTripleIndexes),            params.getTripleIndexes());
@@ -101,6 +107,8 @@ public class StoreParamsCodec {
         encode(builder, key(fPrefixTableBaseName),      params.getPrefixTableBaseName());
         encode(builder, key(fPrimaryIndexPrefix),       params.getPrimaryIndexPrefix());
         encode(builder, key(fPrefixIndexes),            params.getPrefixIndexes());
+        if ( params.isSetCompressIndexLeaves() )
+            encode(builder, key(fCompressIndexLeaves),  params.getCompressIndexLeaves());
 
         builder.finishObject("StoreParams");
         return (JsonObject)builder.build();
@@ -130,9 +138,11 @@ public class StoreParamsCodec {
                 case fBlockSize:               builder.blockSize(getInt(json, key));                       break ;
                 case fBlockReadCacheSize:      builder.blockReadCacheSize(getInt(json, key));              break ;
                 case fBlockWriteCacheSize:     builder.blockWriteCacheSize(getInt(json, key));             break ;
+                case fBlockCacheMode:          builder.blockCacheMode(BlockCacheMode.valueOf(getString(json, key))); break ;
                 case fNode2NodeIdCacheSize:    builder.node2NodeIdCacheSize(getInt(json, key));            break ;
                 case fNodeId2NodeCacheSize:    builder.nodeId2NodeCacheSize(getInt(json, key));            break ;
                 case fNodeMissCacheSize:       builder.nodeMissCacheSize(getInt(json, key));               break ;
+                case fNodeBloomFilter:         builder.nodeBloomFilter(getBoolean(json, key));             break ;
 
                 case fNodeTableBaseName:       builder.nodeTableBaseName(getString(json, key));            break ;
                 case fPrimaryIndexTriples:     builder.primaryIndexTriples(getString(json, key));          break ;
@@ -143,6 +153,7 @@ public class StoreParamsCodec {
                 case fPrefixTableBaseName:     builder.prefixTableBaseName(getString(json, key));          break ;
                 case fPrimaryIndexPrefix:      builder.primaryIndexPrefix(getString(json, key));           break ;
                 case fPrefixIndexes:           builder.prefixIndexes(getStringArray(json, key));           break ;
+                case fCompressIndexLeaves:     builder.compressIndexLeaves(getBoolean(json, key));         break ;
 
                 default:
                     throw new TDBException("StoreParams key no recognized: "+key);
@@ -167,6 +178,13 @@ public class StoreParamsCodec {
         return x;
     }
 
+    private static Boolean getBoolean(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getBoolean: no such key: "+key);
+        Boolean x = json.get(key).getAsBoolean().value();
+        return x;
+    }
+
     private static String[] getStringArray(JsonObject json, String key) {
         if ( ! json.hasKey(key) )
             throw new TDBException("StoreParamsCodec.getStringArray: no such key: "+key);
@@ -189,6 +207,10 @@ public class StoreParamsCodec {
             builder.key(name).value(value.toString());
             return;
         }
+        if ( value instanceof Boolean ) {
+            builder.key(name).value(((Boolean)value).booleanValue());
+            return;
+        }
         if ( value instanceof String[] ) {
             String[] x = (String[])value;
             builder.key(name);
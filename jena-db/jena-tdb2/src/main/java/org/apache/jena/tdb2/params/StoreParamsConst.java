@@ -18,6 +18,7 @@
 
 package org.apache.jena.tdb2.params;
 
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.tdb2.sys.SystemTDB;
@@ -38,6 +39,9 @@ public class StoreParamsConst {
     public static final String   fBlockWriteCacheSize  = "block_write_cache_size";
     public static final int      blockWriteCacheSize   = SystemTDB.BlockWriteCacheSize;
 
+    public static final String   fBlockCacheMode       = "block_cache_mode";
+    public static final BlockCacheMode blockCacheMode  = SystemTDB.BlockCacheMode;
+
     public static final String   fNode2NodeIdCacheSize = "node2nodeid_cache_size";
     public static final int      Node2NodeIdCacheSize  = SystemTDB.Node2NodeIdCacheSize;
 
@@ -47,6 +51,9 @@ public class StoreParamsConst {
     public static final String   fNodeMissCacheSize    = "node_miss_cache_size";
     public static final int      NodeMissCacheSize     = SystemTDB.NodeMissCacheSize;
 
+    public static final String   fNodeBloomFilter      = "node_bloom_filter";
+    public static final boolean  nodeBloomFilter       = SystemTDB.NodeBloomFilter;
+
     /** Database layout - ignored after a database is created */
     public static final String   fBlockSize            = "block_size";
     public static final int      blockSize             = SystemTDB.BlockSize;
@@ -75,6 +82,9 @@ public class StoreParamsConst {
     public static final String   fPrefixIndexes        = "prefix_indexes";
     public static final String[] prefixIndexes         = Names.prefixIndexes;
 
+    public static final String   fCompressIndexLeaves  = "compress_index_leaves";
+    public static final boolean  compressIndexLeaves   = SystemTDB.CompressIndexLeaves;
+
     // Must be after the constants above to get initialization order right
     // because StoreParamsBuilder uses these constants.
 
@@ -18,6 +18,7 @@
 
 package org.apache.jena.tdb2.params;
 
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 
 /** Store parameters that can be adjusted after a store has been created,
@@ -39,6 +40,10 @@ public interface StoreParamsDynamic {
     public Integer getBlockWriteCacheSize();
     public boolean isSetBlockWriteCacheSize();
 
+    /** Block read cache policy (note: mapped files do not have a block cache) */
+    public BlockCacheMode getBlockCacheMode();
+    public boolean isSetBlockCacheMode();
+
     /** Node cache for Node{@literal ->}NodeId. */
     public Integer getNode2NodeIdCacheSize();
     public boolean isSetNode2NodeIdCacheSize();
@@ -50,5 +55,9 @@ public interface StoreParamsDynamic {
     /** Node cache for recording known misses */
     public Integer getNodeMissCacheSize();
     public boolean isSetNodeMissCacheSize();
+
+    /** Bloom filter of the nodes in the node table, for skipping index lookups of unknown nodes */
+    public Boolean getNodeBloomFilter();
+    public boolean isSetNodeBloomFilter();
 }
 
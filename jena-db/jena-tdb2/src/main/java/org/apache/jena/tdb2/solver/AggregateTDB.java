@@ -0,0 +1,338 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.apache.jena.sparql.engine.main.solver.SolverLib.makeAbortable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.atlas.lib.tuple.TupleMap;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.iterator.Abortable;
+import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.*;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+
+/**
+ * Evaluate COUNT aggregates over a single triple or quad pattern by reading an index
+ * range of {@link NodeId} tuples, without making bindings for each match.
+ * <p>
+ * The group has no grouping variables or one grouping variable from the pattern, and
+ * the aggregators are {@code COUNT(*)}, {@code COUNT(?var)}, {@code COUNT(DISTINCT *)}
+ * and {@code COUNT(DISTINCT ?var)} with variables of the pattern.
+ * The fixed terms of the pattern must be the leading slots of an index, followed by the
+ * grouping variable, if any, and then by the {@code COUNT(DISTINCT ?var)} variable, if
+ * any, so that each group, and each distinct value within a group, is a contiguous run of
+ * the index range. Only the node for the grouping variable is retrieved from the node
+ * table.
+ * <p>
+ * A plain count of the matches of a pattern is the number of entries in the index range,
+ * counted without creating tuples.
+ * <p>
+ * This is controlled by the context setting {@link TDB2#symAggregatePushdown}.
+ */
+public class AggregateTDB {
+
+    /** Whether evaluating aggregates on indexes is enabled in this context. */
+    public static boolean isEnabled(Context context) {
+        return context == null || context.isTrueOrUndef(TDB2.symAggregatePushdown);
+    }
+
+    // What each aggregator is calculated from.
+    private static final int COUNT    = 0;   // Matches in the group.
+    private static final int DISTINCT = 1;   // Distinct values of the distinct slot in the group.
+    private static final int ONE      = 2;   // COUNT(DISTINCT ?var) of the grouping variable.
+
+    /**
+     * Evaluate the group over the pattern, which must be a single triple pattern.
+     * The graph node has been resolved: null for the default graph.
+     * Returns null if this is not possible, in which case the caller should evaluate
+     * the pattern and group the results as usual.
+     */
+    public static QueryIterator execute(NodeTupleTable nodeTupleTable, Node graphNode, BasicPattern pattern,
+                                        VarExprList groupVars, List<ExprAggregator> aggregators,
+                                        QueryIterator input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        // Union graph matches are made distinct after matching.
+        if ( graphNode != null && Node.ANY.equals(graphNode) )
+            return null;
+        if ( pattern.size() != 1 )
+            return null;
+        Triple triple = pattern.get(0);
+        Tuple<Node> tuple = ( graphNode == null )
+            ? TupleFactory.create3(triple.getSubject(), triple.getPredicate(), triple.getObject())
+            : TupleFactory.create4(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+        if ( ! isSimple(tuple) )
+            return null;
+
+        Var groupVar = null;
+        int groupSlot = -1;
+        if ( groupVars.size() > 1 )
+            return null;
+        if ( groupVars.size() == 1 ) {
+            groupVar = groupVars.getVars().get(0);
+            if ( groupVars.hasExpr(groupVar) )
+                return null;
+            groupSlot = slotOf(tuple, groupVar);
+            if ( groupSlot < 0 )
+                return null;
+        }
+
+        Var[] aggVars = new Var[aggregators.size()];
+        int[] kinds = new int[aggregators.size()];
+        int distinctSlot = -1;
+        for ( int i = 0 ; i < aggregators.size() ; i++ ) {
+            ExprAggregator exprAgg = aggregators.get(i);
+            Aggregator agg = exprAgg.getAggregator();
+            aggVars[i] = exprAgg.getVar();
+            if ( agg instanceof AggCount || agg instanceof AggCountDistinct ) {
+                // Matches are distinct tuples of the index.
+                kinds[i] = COUNT;
+                continue;
+            }
+            if ( ! ( agg instanceof AggCountVar ) && ! ( agg instanceof AggCountVarDistinct ) )
+                return null;
+            Expr expr = agg.getExprList().get(0);
+            if ( ! expr.isVariable() )
+                return null;
+            int slot = slotOf(tuple, expr.asVar());
+            if ( slot < 0 )
+                return null;
+            if ( agg instanceof AggCountVar ) {
+                // Variables of the pattern are always bound.
+                kinds[i] = COUNT;
+            } else if ( slot == groupSlot ) {
+                kinds[i] = ONE;
+            } else {
+                if ( distinctSlot >= 0 && distinctSlot != slot )
+                    return null;
+                distinctSlot = slot;
+                kinds[i] = DISTINCT;
+            }
+        }
+
+        TupleIndex[] indexes = MergeJoinTDB.recordIndexes(nodeTupleTable);
+        if ( indexes == null )
+            return null;
+        NodeId[] shape = new NodeId[tuple.len()];
+        for ( int j = 0 ; j < tuple.len() ; j++ )
+            shape[j] = Var.isVar(tuple.get(j)) ? NodeId.NodeIdAny : NodeId.NodeIdDefined;
+        TupleIndexRecord index = chooseIndex(indexes, TupleFactory.create(shape), groupSlot, distinctSlot);
+        if ( index == null )
+            return null;
+
+        NodeTable nodeTable = nodeTupleTable.getNodeTable();
+        NodeId[] ids = new NodeId[tuple.len()];
+        boolean empty = false;
+        for ( int j = 0 ; j < tuple.len() ; j++ ) {
+            Node n = tuple.get(j);
+            ids[j] = Var.isVar(n) ? NodeId.NodeIdAny : nodeTable.getNodeIdForNode(n);
+            if ( NodeId.isDoesNotExist(ids[j]) )
+                empty = true;
+        }
+        Tuple<NodeId> indexPattern = TupleFactory.create(ids);
+
+        List<Abortable> killList = new ArrayList<>();
+        Iterator<Tuple<NodeId>> tuples = null;
+        if ( empty )
+            tuples = Iter.nullIterator();
+        else if ( groupSlot >= 0 || distinctSlot >= 0 || filter != null ) {
+            tuples = index.findFrom(indexPattern, null);
+            if ( filter != null )
+                tuples = Iter.filter(tuples, filter);
+            tuples = makeAbortable(tuples, killList);
+        }
+        // else count the index range.
+        Iterator<Binding> iterBinding = new GroupCounts(index, indexPattern, tuples, groupVar, groupSlot, distinctSlot,
+                                                        aggVars, kinds, nodeTable);
+        return new QueryIterAbortable(iterBinding, killList, input, execCxt);
+    }
+
+    /** Plain terms, no repeated variables, and no RDF-star terms. */
+    private static boolean isSimple(Tuple<Node> tuple) {
+        for ( int j = 0 ; j < tuple.len() ; j++ ) {
+            Node n = tuple.get(j);
+            if ( n.isNodeTriple() )
+                return false;
+            if ( ! Var.isVar(n) )
+                continue;
+            for ( int k = j+1 ; k < tuple.len() ; k++ ) {
+                if ( n.equals(tuple.get(k)) )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slotOf(Tuple<Node> tuple, Var var) {
+        for ( int j = 0 ; j < tuple.len() ; j++ ) {
+            if ( var.equals(tuple.get(j)) )
+                return j;
+        }
+        return -1;
+    }
+
+    /**
+     * An index where the fixed terms of the pattern are the leading slots, followed
+     * by the given slots, in order, for those that are not -1.
+     */
+    private static TupleIndexRecord chooseIndex(TupleIndex[] indexes, Tuple<NodeId> pattern, int... slots) {
+        int numFixed = 0;
+        for ( int j = 0 ; j < pattern.len() ; j++ ) {
+            if ( ! NodeId.isAny(pattern.get(j)) )
+                numFixed++;
+        }
+        for ( TupleIndex index : indexes ) {
+            if ( index == null )
+                continue;
+            TupleMap map = index.getMapping();
+            boolean matches = true;
+            for ( int k = 0 ; matches && k < numFixed ; k++ )
+                matches = ! NodeId.isAny(pattern.get(map.mapIdx(k)));
+            int k = numFixed;
+            for ( int slot : slots ) {
+                if ( matches && slot >= 0 )
+                    matches = ( map.mapIdx(k++) == slot );
+            }
+            if ( matches )
+                return (TupleIndexRecord)index;
+        }
+        return null;
+    }
+
+    /**
+     * The groups of an index range, in index order.
+     * With no grouping variable, there is exactly one group, which may be empty.
+     */
+    private static class GroupCounts implements Iterator<Binding> {
+        private final TupleIndexRecord index;
+        private final Tuple<NodeId> pattern;
+        // Null for counting index entries.
+        private final Iterator<Tuple<NodeId>> tuples;
+        private final Var groupVar;
+        private final int groupSlot;
+        private final int distinctSlot;
+        private final Var[] aggVars;
+        private final int[] kinds;
+        private final NodeTable nodeTable;
+
+        private Tuple<NodeId> pending = null;
+        private boolean started = false;
+        private Binding slot = null;
+
+        GroupCounts(TupleIndexRecord index, Tuple<NodeId> pattern, Iterator<Tuple<NodeId>> tuples,
+                    Var groupVar, int groupSlot, int distinctSlot, Var[] aggVars, int[] kinds, NodeTable nodeTable) {
+            this.index = index;
+            this.pattern = pattern;
+            this.tuples = tuples;
+            this.groupVar = groupVar;
+            this.groupSlot = groupSlot;
+            this.distinctSlot = distinctSlot;
+            this.aggVars = aggVars;
+            this.kinds = kinds;
+            this.nodeTable = nodeTable;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ( slot != null )
+                return true;
+            if ( groupSlot < 0 ) {
+                if ( started )
+                    return false;
+                started = true;
+                if ( tuples == null ) {
+                    slot = result(null, index.countFrom(pattern), 0);
+                    return true;
+                }
+            }
+            if ( pending == null ) {
+                if ( ! tuples.hasNext() ) {
+                    if ( groupSlot < 0 ) {
+                        slot = result(null, 0, 0);
+                        return true;
+                    }
+                    return false;
+                }
+                pending = tuples.next();
+            }
+
+            NodeId key = ( groupSlot < 0 ) ? null : pending.get(groupSlot);
+            long count = 0;
+            long distinct = 0;
+            NodeId previous = null;
+            while ( pending != null && ( key == null || key.equals(pending.get(groupSlot)) ) ) {
+                count++;
+                if ( distinctSlot >= 0 ) {
+                    NodeId x = pending.get(distinctSlot);
+                    if ( ! x.equals(previous) ) {
+                        distinct++;
+                        previous = x;
+                    }
+                }
+                pending = tuples.hasNext() ? tuples.next() : null;
+            }
+            slot = result(key, count, distinct);
+            return true;
+        }
+
+        private Binding result(NodeId key, long count, long distinct) {
+            BindingBuilder builder = Binding.builder();
+            if ( key != null )
+                builder.add(groupVar, nodeTable.getNodeForNodeId(key));
+            for ( int i = 0 ; i < aggVars.length ; i++ ) {
+                long x = ( kinds[i] == COUNT ) ? count : ( kinds[i] == DISTINCT ) ? distinct : 1;
+                builder.add(aggVars[i], NodeValue.makeInteger(x).asNode());
+            }
+            return builder.build();
+        }
+
+        @Override
+        public Binding next() {
+            if ( ! hasNext() )
+                throw new NoSuchElementException();
+            Binding b = slot;
+            slot = null;
+            return b;
+        }
+    }
+}
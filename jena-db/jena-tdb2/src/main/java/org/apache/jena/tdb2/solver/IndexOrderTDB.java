@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import static org.apache.jena.sparql.engine.main.solver.SolverLib.makeAbortable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.Abortable;
+import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
+import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+
+/**
+ * Evaluate a basic graph pattern in order of a variable by reading an index in order,
+ * for {@code ORDER BY ?var} without sorting.
+ * <p>
+ * One pattern of the basic graph pattern must be readable in order of the variable:
+ * there is an index where the fixed terms of the pattern are the leading slots and the
+ * variable is the next slot. The other patterns are matched, by index nested loops, for
+ * each row of that index range so the solutions come out in the order of the index.
+ * <p>
+ * Index order is NodeId order. This is the SPARQL order only for values that are inline
+ * and share an encoding in which the stored form increases with the value:
+ * <ul>
+ * <li>integers (xsd:integer and each derived type) of the same sign,
+ * <li>xsd:dateTime, xsd:dateTimeStamp and xsd:date values with the same timezone,
+ * <li>xsd:boolean.
+ * </ul>
+ * Other values, including decimals and doubles, whose encodings do not sort by value,
+ * and values stored in the node table, are not in order in the index. Before reading, the
+ * first and last keys of the index range are checked to be in one such part of the
+ * key space; if not, the caller sorts as usual.
+ * <p>
+ * Only ascending order is provided because indexes are read forwards.
+ * This is controlled by the context setting {@link TDB2#symIndexOrder}.
+ */
+public class IndexOrderTDB {
+
+    /** Whether reading in index order is enabled in this context. */
+    public static boolean isEnabled(Context context) {
+        return context == null || context.isTrueOrUndef(TDB2.symIndexOrder);
+    }
+
+    /** The variable of a single ascending sort condition on a variable, or null. */
+    public static Var sortVar(List<SortCondition> conditions) {
+        if ( conditions.size() != 1 )
+            return null;
+        SortCondition condition = conditions.get(0);
+        if ( condition.getDirection() == Query.ORDER_DESCENDING )
+            return null;
+        Expr expr = condition.getExpression();
+        return expr.isVariable() ? expr.asVar() : null;
+    }
+
+    /**
+     * Evaluate the pattern in ascending order of the variable.
+     * The graph node has been resolved: null for the default graph.
+     * Returns null if the pattern can not be read in order, in which case
+     * the caller should evaluate and sort.
+     */
+    public static QueryIterator execute(NodeTupleTable nodeTupleTable, Node graphNode, BasicPattern pattern, Var var,
+                                        QueryIterator input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        // Union graph matches are made distinct after matching.
+        if ( graphNode != null && Node.ANY.equals(graphNode) )
+            return null;
+        TupleIndex[] indexes = MergeJoinTDB.recordIndexes(nodeTupleTable);
+        if ( indexes == null )
+            return null;
+        NodeTable nodeTable = nodeTupleTable.getNodeTable();
+        List<Triple> triples = pattern.getList();
+
+        for ( int i = 0 ; i < triples.size() ; i++ ) {
+            Triple triple = triples.get(i);
+            Tuple<Node> tuple = ( graphNode == null )
+                ? TupleFactory.create3(triple.getSubject(), triple.getPredicate(), triple.getObject())
+                : TupleFactory.create4(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+            int slot = orderSlot(tuple, var);
+            if ( slot < 0 )
+                continue;
+            NodeId[] shape = new NodeId[tuple.len()];
+            for ( int j = 0 ; j < tuple.len() ; j++ )
+                shape[j] = Var.isVar(tuple.get(j)) ? NodeId.NodeIdAny : NodeId.NodeIdDefined;
+            TupleIndexRecord index = MergeJoinTDB.chooseIndex(indexes, TupleFactory.create(shape), slot);
+            if ( index == null )
+                continue;
+
+            NodeId[] ids = new NodeId[tuple.len()];
+            Var[] vars = new Var[tuple.len()];
+            for ( int j = 0 ; j < tuple.len() ; j++ ) {
+                Node n = tuple.get(j);
+                if ( Var.isVar(n) ) {
+                    vars[j] = Var.alloc(n);
+                    ids[j] = NodeId.NodeIdAny;
+                    continue;
+                }
+                ids[j] = nodeTable.getNodeIdForNode(n);
+                if ( NodeId.isDoesNotExist(ids[j]) )
+                    return QueryIterNullIterator.create(execCxt);
+            }
+            Tuple<NodeId> leadPattern = TupleFactory.create(ids);
+            if ( ! inOrder(index, leadPattern, slot, filter) )
+                return null;
+
+            List<Triple> rest = new ArrayList<>(triples);
+            rest.remove(i);
+            return scan(nodeTupleTable, graphNode, index, leadPattern, vars, rest, input, filter, execCxt);
+        }
+        return null;
+    }
+
+    /**
+     * The slot of the variable if the tuple is a pattern that can lead an ordered scan:
+     * plain terms, no repeated variables, and no RDF-star terms.
+     */
+    private static int orderSlot(Tuple<Node> tuple, Var var) {
+        int slot = -1;
+        for ( int j = 0 ; j < tuple.len() ; j++ ) {
+            Node n = tuple.get(j);
+            if ( n.isNodeTriple() )
+                return -1;
+            if ( ! Var.isVar(n) )
+                continue;
+            for ( int k = j+1 ; k < tuple.len() ; k++ ) {
+                if ( n.equals(tuple.get(k)) )
+                    return -1;
+            }
+            if ( var.equals(n) )
+                slot = j;
+        }
+        return slot;
+    }
+
+    /**
+     * Check that all the keys of the index range for the variable slot are in a part
+     * of the key space where NodeId order is value order.
+     */
+    private static boolean inOrder(TupleIndexRecord index, Tuple<NodeId> pattern, int slot, Predicate<Tuple<NodeId>> filter) {
+        Iterator<Tuple<NodeId>> iter = index.findFrom(pattern, null);
+        if ( filter != null )
+            iter = Iter.filter(iter, filter);
+        if ( ! iter.hasNext() ) {
+            Iter.close(iter);
+            // Empty - trivially in order.
+            return true;
+        }
+        NodeId first = iter.next().get(slot);
+        Iter.close(iter);
+        long mask = orderMask(first);
+        if ( mask == 0 )
+            return false;
+        // The largest key in the same part of the key space.
+        long last = NodeIdFactory.encode(first) | ~mask;
+        iter = index.findFrom(pattern, NodeIdFactory.decode(last));
+        try {
+            while ( iter.hasNext() ) {
+                if ( NodeIdFactory.encode(iter.next().get(slot)) != last )
+                    return false;
+            }
+            return true;
+        } finally {
+            Iter.close(iter);
+        }
+    }
+
+    /**
+     * The high bits of the stored form of a NodeId that, when fixed, give a range of
+     * keys in which NodeId order is the SPARQL value order; 0 if there is no such range.
+     */
+    /*package*/ static long orderMask(NodeId nodeId) {
+        switch (nodeId.type()) {
+            case XSD_INTEGER:
+            case XSD_POSITIVE_INTEGER:
+            case XSD_NEGATIVE_INTEGER:
+            case XSD_NON_NEGATIVE_INTEGER:
+            case XSD_NON_POSITIVE_INTEGER:
+            case XSD_LONG:
+            case XSD_INT:
+            case XSD_SHORT:
+            case XSD_BYTE:
+            case XSD_UNSIGNEDLONG:
+            case XSD_UNSIGNEDINT:
+            case XSD_UNSIGNEDSHORT:
+            case XSD_UNSIGNEDBYTE:
+                // Type and sign: 56 bit twos-complement values.
+                return 0xFF80_0000_0000_0000L;
+            case XSD_DATETIME:
+            case XSD_DATETIMESTAMP:
+            case XSD_DATE:
+                // Type and timezone, then year, month, day and time.
+                return 0xFFFE_0000_0000_0000L;
+            case XSD_BOOLEAN:
+                return 0xFF00_0000_0000_0000L;
+            default:
+                return 0;
+        }
+    }
+
+    private static QueryIterator scan(NodeTupleTable nodeTupleTable, Node graphNode,
+                                      TupleIndexRecord index, Tuple<NodeId> pattern, Var[] vars, List<Triple> rest,
+                                      QueryIterator input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        List<Abortable> killList = new ArrayList<>();
+        Iterator<Tuple<NodeId>> tuples = index.findFrom(pattern, null);
+        if ( filter != null )
+            tuples = Iter.filter(tuples, filter);
+        Iterator<BindingNodeId> chain = Iter.map(tuples, tuple -> {
+            BindingNodeId b = new BindingNodeId();
+            for ( int j = 0 ; j < vars.length ; j++ ) {
+                if ( vars[j] != null )
+                    b.put(vars[j], tuple.get(j));
+            }
+            return b;
+        });
+        chain = makeAbortable(chain, killList);
+        if ( ! rest.isEmpty() )
+            chain = PatternMatchTDB2.solve(nodeTupleTable, graphNode, rest, chain, filter, killList, execCxt);
+        Iterator<Binding> iterBinding = SolverLibTDB.convertToNodes(chain, nodeTupleTable.getNodeTable());
+        return new QueryIterAbortable(iterBinding, killList, input, execCxt);
+    }
+}
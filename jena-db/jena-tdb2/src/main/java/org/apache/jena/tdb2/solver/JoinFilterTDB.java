@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.lib.BloomFilter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.join.JoinFilter;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * Apply the runtime {@link JoinFilter}s of the enclosing hash joins to the tuples
+ * of one pattern match, by NodeId, before any binding is made.
+ * <p>
+ * The scan may start before the hash table of the join is built, so each filter
+ * is looked at again until it has been published. The NodeId form of a filter is
+ * built once per node table.
+ */
+class JoinFilterTDB implements Predicate<Tuple<NodeId>> {
+    private static final double falsePositiveRate = 0.01;
+
+    private static final int UNRESOLVED = -2;
+    private static final int NOT_USED   = -1;
+
+    private final NodeTable     nodeTable;
+    private final Var[]         vars;
+    private final JoinFilter[]  filters;
+    private final BloomFilter[] blooms;
+    // Slot in the tuple of each filter's variable, or NOT_USED, or UNRESOLVED before publication.
+    private final int[]         slots;
+    private int                 unresolved;
+
+    /**
+     * Return a predicate for the tuples of a pattern with variables {@code vars}
+     * (null for a fixed slot), or null if there are no join filters.
+     */
+    static Predicate<Tuple<NodeId>> create(NodeTable nodeTable, Var[] vars, ExecutionContext execCxt) {
+        JoinFilter joinFilter = JoinFilter.get(execCxt);
+        if ( joinFilter == null )
+            return null;
+        boolean hasVars = false;
+        for ( Var v : vars )
+            hasVars |= ( v != null );
+        if ( ! hasVars )
+            return null;
+        List<JoinFilter> filters = new ArrayList<>();
+        for ( JoinFilter jf = joinFilter ; jf != null ; jf = jf.getParent() )
+            filters.add(jf);
+        return new JoinFilterTDB(nodeTable, vars, filters.toArray(new JoinFilter[0]));
+    }
+
+    private JoinFilterTDB(NodeTable nodeTable, Var[] vars, JoinFilter[] filters) {
+        this.nodeTable = nodeTable;
+        this.vars = vars;
+        this.filters = filters;
+        this.blooms = new BloomFilter[filters.length];
+        this.slots = new int[filters.length];
+        Arrays.fill(slots, UNRESOLVED);
+        this.unresolved = filters.length;
+    }
+
+    @Override
+    public boolean test(Tuple<NodeId> tuple) {
+        if ( unresolved > 0 )
+            resolve();
+        for ( int i = 0 ; i < filters.length ; i++ ) {
+            int slot = slots[i];
+            if ( slot < 0 )
+                continue;
+            if ( ! blooms[i].mightContain(hash(tuple.get(slot))) )
+                return false;
+        }
+        return true;
+    }
+
+    private void resolve() {
+        for ( int i = 0 ; i < filters.length ; i++ ) {
+            if ( slots[i] != UNRESOLVED || ! filters[i].isPublished() )
+                continue;
+            unresolved--;
+            slots[i] = slot(filters[i].getVar());
+            if ( slots[i] >= 0 )
+                blooms[i] = filters[i].derive(nodeTable, this::nodeIdFilter);
+        }
+    }
+
+    private int slot(Var var) {
+        for ( int i = 0 ; i < vars.length ; i++ ) {
+            if ( var.equals(vars[i]) )
+                return i;
+        }
+        return NOT_USED;
+    }
+
+    private BloomFilter nodeIdFilter(Node[] keys) {
+        BloomFilter bloom = BloomFilter.create(keys.length, falsePositiveRate);
+        for ( Node n : keys ) {
+            NodeId id = nodeTable.getNodeIdForNode(n);
+            // Not in the database: no tuple can have it.
+            if ( NodeId.isDoesNotExist(id) )
+                continue;
+            bloom.add(hash(id));
+        }
+        return bloom;
+    }
+
+    private static long hash(NodeId id) {
+        return BloomFilter.hash(id.hashCode());
+    }
+}
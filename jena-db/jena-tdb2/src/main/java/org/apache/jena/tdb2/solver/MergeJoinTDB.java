@@ -0,0 +1,418 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.iterator.IteratorSlotted;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.atlas.lib.tuple.TupleMap;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.main.solver.SolverLib;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+
+/**
+ * Merge join of triple (or quad) patterns on a shared variable.
+ * <p>
+ * A pattern can be read in the order of a variable when there is an index where
+ * the fixed terms of the pattern are the leading slots and the variable is the next
+ * slot: {@code (?s :p :o)} is in order of {@code ?s} from POS and {@code (:s :p ?o)}
+ * is in order of {@code ?o} from SPO. Patterns that can all be read in order of the
+ * same variable are joined by stepping through the indexes together, in NodeId
+ * order, seeking forward in an index to skip over ranges of keys that can not match
+ * ("leapfrog"). Only the solutions for one value of the join variable are held in
+ * memory at a time.
+ * <p>
+ * This is used for the leading patterns of a basic graph pattern, after reordering,
+ * when there are two or more patterns that can be read in order of a variable of
+ * the first pattern. Merge joins are controlled by the context setting
+ * {@link TDB2#symMergeJoin}.
+ */
+public class MergeJoinTDB {
+    // Number of steps along an index before seeking.
+    private static final int SeekThreshold = 16;
+
+    private final NodeTupleTable nodeTupleTable;
+    private final List<Tuple<Node>> patterns;
+    private final List<Integer> patternIndexes;
+    private final Var joinVar;
+
+    /** Whether merge joins are enabled in this context. */
+    public static boolean isEnabled(Context context) {
+        return context == null || context.isTrueOrUndef(TDB2.symMergeJoin);
+    }
+
+    /**
+     * Choose a merge join for the leading patterns of a basic graph pattern.
+     * Returns null if there is no merge join starting with the first pattern.
+     */
+    static MergeJoinTDB plan(NodeTupleTable nodeTupleTable, List<Triple> triples, List<Tuple<Node>> patternTuples,
+                             boolean anyGraph, ExecutionContext execCxt) {
+        // Union graph matches are made distinct after matching.
+        if ( anyGraph || patternTuples.size() < 2 || ! isEnabled(execCxt.getContext()) )
+            return null;
+        // RDF-star patterns with variables are matched by node.
+        for ( Triple t : triples ) {
+            if ( SolverLib.tripleHasEmbTripleWithVars(t) )
+                return null;
+        }
+        TupleIndex[] indexes = recordIndexes(nodeTupleTable);
+        if ( indexes == null )
+            return null;
+
+        Tuple<Node> first = patternTuples.get(0);
+        MergeJoinTDB best = null;
+        for ( int i = 0 ; i < first.len() ; i++ ) {
+            Node n = first.get(i);
+            if ( ! Var.isVar(n) )
+                continue;
+            Var var = Var.alloc(n);
+            if ( best != null && best.joinVar.equals(var) )
+                continue;
+            if ( ! canReadInOrder(indexes, first, var) )
+                continue;
+            List<Tuple<Node>> run = new ArrayList<>();
+            List<Integer> runIndexes = new ArrayList<>();
+            for ( int j = 0 ; j < patternTuples.size() ; j++ ) {
+                Tuple<Node> pattern = patternTuples.get(j);
+                if ( j == 0 || canReadInOrder(indexes, pattern, var) ) {
+                    run.add(pattern);
+                    runIndexes.add(j);
+                }
+            }
+            if ( run.size() >= 2 && ( best == null || run.size() > best.patterns.size() ) )
+                best = new MergeJoinTDB(nodeTupleTable, run, runIndexes, var);
+        }
+        return best;
+    }
+
+    private MergeJoinTDB(NodeTupleTable nodeTupleTable, List<Tuple<Node>> patterns, List<Integer> patternIndexes, Var joinVar) {
+        this.nodeTupleTable = nodeTupleTable;
+        this.patterns = patterns;
+        this.patternIndexes = patternIndexes;
+        this.joinVar = joinVar;
+    }
+
+    /** Whether the i'th pattern of the basic graph pattern is evaluated by this merge join. */
+    boolean covers(int i) {
+        return patternIndexes.contains(i);
+    }
+
+    public Var getJoinVar() {
+        return joinVar;
+    }
+
+    /** Evaluate the patterns of this merge join for each input. */
+    Iterator<BindingNodeId> access(Iterator<BindingNodeId> input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        return Iter.flatMap(input, bnid -> access(bnid, filter, execCxt));
+    }
+
+    private Iterator<BindingNodeId> access(BindingNodeId input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        if ( input.containsKey(joinVar) )
+            return nestedLoops(input, filter, execCxt);
+        TupleIndex[] indexes = recordIndexes(nodeTupleTable);
+        NodeTable nodeTable = nodeTupleTable.getNodeTable();
+        Cursor[] cursors = new Cursor[patterns.size()];
+        for ( int i = 0 ; i < patterns.size() ; i++ ) {
+            Tuple<Node> pattern = patterns.get(i);
+            int len = pattern.len();
+            NodeId[] ids = new NodeId[len];
+            Var[] vars = new Var[len];
+            int joinSlot = -1;
+            for ( int j = 0 ; j < len ; j++ ) {
+                Node n = pattern.get(j);
+                if ( Var.isVar(n) ) {
+                    Var v = Var.alloc(n);
+                    NodeId id = input.get(v);
+                    if ( id == null ) {
+                        vars[j] = v;
+                        ids[j] = NodeId.NodeIdAny;
+                        if ( joinSlot < 0 && v.equals(joinVar) )
+                            joinSlot = j;
+                        continue;
+                    }
+                    ids[j] = id;
+                } else
+                    ids[j] = nodeTable.getNodeIdForNode(n);
+                if ( NodeId.isDoesNotExist(ids[j]) )
+                    return Iter.nullIterator();
+            }
+            Tuple<NodeId> tuple = TupleFactory.create(ids);
+            TupleIndexRecord index = chooseIndex(indexes, tuple, joinSlot);
+            if ( index == null )
+                // Input bindings have changed which index is usable.
+                return nestedLoops(input, filter, execCxt);
+            cursors[i] = new Cursor(index, tuple, vars, joinSlot, filter);
+        }
+        return new MergeIterator(input, cursors);
+    }
+
+    /** Evaluate the patterns one at a time. */
+    private Iterator<BindingNodeId> nestedLoops(BindingNodeId input, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        Iterator<BindingNodeId> chain = Iter.singleton(input);
+        for ( Tuple<Node> pattern : patterns )
+            chain = StageMatchTuple.access(nodeTupleTable, chain, pattern, filter, false, execCxt);
+        return chain;
+    }
+
+    // The indexes, if they are all ones that can be read from a starting point.
+    /*package*/ static TupleIndex[] recordIndexes(NodeTupleTable nodeTupleTable) {
+        TupleIndex[] indexes = nodeTupleTable.getTupleTable().getIndexes();
+        TupleIndex[] baseIndexes = new TupleIndex[indexes.length];
+        for ( int i = 0 ; i < indexes.length ; i++ ) {
+            if ( indexes[i] == null )
+                continue;
+            TupleIndex base = indexes[i].baseTupleIndex();
+            if ( ! ( base instanceof TupleIndexRecord ) )
+                return null;
+            baseIndexes[i] = base;
+        }
+        return baseIndexes;
+    }
+
+    /** Is there an index where the fixed terms of the pattern are the leading slots, followed by the variable? */
+    private static boolean canReadInOrder(TupleIndex[] indexes, Tuple<Node> pattern, Var var) {
+        NodeId[] ids = new NodeId[pattern.len()];
+        int joinSlot = -1;
+        for ( int j = 0 ; j < pattern.len() ; j++ ) {
+            Node n = pattern.get(j);
+            // Only the shape of the pattern matters here.
+            ids[j] = Var.isVar(n) ? NodeId.NodeIdAny : NodeId.NodeIdDefined;
+            if ( joinSlot < 0 && var.equals(n) )
+                joinSlot = j;
+        }
+        if ( joinSlot < 0 )
+            return false;
+        return chooseIndex(indexes, TupleFactory.create(ids), joinSlot) != null;
+    }
+
+    /*package*/ static TupleIndexRecord chooseIndex(TupleIndex[] indexes, Tuple<NodeId> pattern, int joinSlot) {
+        if ( joinSlot < 0 )
+            return null;
+        int numFixed = 0;
+        for ( int j = 0 ; j < pattern.len() ; j++ ) {
+            if ( ! NodeId.isAny(pattern.get(j)) )
+                numFixed++;
+        }
+        for ( TupleIndex index : indexes ) {
+            if ( index == null )
+                continue;
+            TupleMap map = index.getMapping();
+            boolean matches = ( map.mapIdx(numFixed) == joinSlot );
+            for ( int k = 0 ; matches && k < numFixed ; k++ )
+                matches = ! NodeId.isAny(pattern.get(map.mapIdx(k)));
+            if ( matches )
+                return (TupleIndexRecord)index;
+        }
+        return null;
+    }
+
+    /** A position in an index range, in order of the join variable. */
+    private static class Cursor {
+        private final TupleIndexRecord index;
+        private final Tuple<NodeId> pattern;
+        private final Var[] vars;
+        private final int joinSlot;
+        private final Predicate<Tuple<NodeId>> filter;
+        private Iterator<Tuple<NodeId>> iter;
+        private Tuple<NodeId> current = null;
+        // Key of the current tuple: the join slot as stored in the index.
+        private long key;
+
+        Cursor(TupleIndexRecord index, Tuple<NodeId> pattern, Var[] vars, int joinSlot, Predicate<Tuple<NodeId>> filter) {
+            this.index = index;
+            this.pattern = pattern;
+            this.vars = vars;
+            this.joinSlot = joinSlot;
+            this.filter = filter;
+            this.iter = open(null);
+            advance();
+        }
+
+        private Iterator<Tuple<NodeId>> open(NodeId start) {
+            Iterator<Tuple<NodeId>> x = index.findFrom(pattern, start);
+            if ( filter != null )
+                x = Iter.filter(x, filter);
+            return x;
+        }
+
+        boolean atEnd() {
+            return current == null;
+        }
+
+        /** Move to the next tuple; return false at the end. */
+        boolean advance() {
+            if ( ! iter.hasNext() ) {
+                current = null;
+                return false;
+            }
+            current = iter.next();
+            key = NodeIdFactory.encode(current.get(joinSlot));
+            return true;
+        }
+
+        /** Move to the first tuple with key equal to or greater than the target; return false at the end. */
+        boolean seek(long target) {
+            for ( int i = 0 ; i < SeekThreshold ; i++ ) {
+                if ( Long.compareUnsigned(key, target) >= 0 )
+                    return true;
+                if ( ! advance() )
+                    return false;
+            }
+            if ( Long.compareUnsigned(key, target) >= 0 )
+                return true;
+            Iter.close(iter);
+            iter = open(NodeIdFactory.decode(target));
+            return advance();
+        }
+
+        void close() {
+            Iter.close(iter);
+        }
+    }
+
+    /** Leapfrog merge of the cursors, generating the combinations of tuples with the same key. */
+    private static class MergeIterator extends IteratorSlotted<BindingNodeId> {
+        private final BindingNodeId input;
+        private final Cursor[] cursors;
+        private final List<List<Tuple<NodeId>>> groups;
+        private final int[] counters;
+        private boolean inGroup = false;
+
+        MergeIterator(BindingNodeId input, Cursor[] cursors) {
+            this.input = input;
+            this.cursors = cursors;
+            this.groups = new ArrayList<>(cursors.length);
+            for ( int i = 0 ; i < cursors.length ; i++ )
+                groups.add(new ArrayList<>());
+            this.counters = new int[cursors.length];
+        }
+
+        @Override
+        protected boolean hasMore() {
+            return true;
+        }
+
+        @Override
+        protected BindingNodeId moveToNext() {
+            for ( ;; ) {
+                if ( ! inGroup ) {
+                    if ( ! nextGroup() )
+                        return null;
+                    inGroup = true;
+                }
+                BindingNodeId b = combination();
+                step();
+                if ( b != null )
+                    return b;
+            }
+        }
+
+        /** Find the next key where all cursors have a tuple. */
+        private boolean nextGroup() {
+            for ( Cursor c : cursors ) {
+                if ( c.atEnd() )
+                    return false;
+            }
+            for ( ;; ) {
+                long max = cursors[0].key;
+                for ( int i = 1 ; i < cursors.length ; i++ ) {
+                    if ( Long.compareUnsigned(cursors[i].key, max) > 0 )
+                        max = cursors[i].key;
+                }
+                boolean aligned = true;
+                for ( Cursor c : cursors ) {
+                    if ( c.key != max ) {
+                        if ( ! c.seek(max) )
+                            return false;
+                        if ( c.key != max )
+                            aligned = false;
+                    }
+                }
+                if ( aligned )
+                    break;
+            }
+            long k = cursors[0].key;
+            for ( int i = 0 ; i < cursors.length ; i++ ) {
+                Cursor c = cursors[i];
+                List<Tuple<NodeId>> group = groups.get(i);
+                group.clear();
+                do {
+                    group.add(c.current);
+                } while ( c.advance() && c.key == k );
+                counters[i] = 0;
+            }
+            return true;
+        }
+
+        // The solution for the current combination of tuples, or null if they are not compatible.
+        private BindingNodeId combination() {
+            BindingNodeId output = new BindingNodeId(input);
+            for ( int i = 0 ; i < cursors.length ; i++ ) {
+                Var[] vars = cursors[i].vars;
+                Tuple<NodeId> tuple = groups.get(i).get(counters[i]);
+                for ( int j = 0 ; j < vars.length ; j++ ) {
+                    Var v = vars[j];
+                    if ( v == null )
+                        continue;
+                    NodeId id = tuple.get(j);
+                    NodeId id2 = output.get(v);
+                    if ( id2 == null )
+                        output.put(v, id);
+                    else if ( ! id2.equals(id) )
+                        return null;
+                }
+            }
+            return output;
+        }
+
+        // Next combination.
+        private void step() {
+            for ( int i = cursors.length-1 ; i >= 0 ; i-- ) {
+                counters[i]++;
+                if ( counters[i] < groups.get(i).size() )
+                    return;
+                counters[i] = 0;
+            }
+            inGroup = false;
+        }
+
+        @Override
+        protected void closeIterator() {
+            for ( Cursor c : cursors )
+                c.close();
+        }
+    }
+}
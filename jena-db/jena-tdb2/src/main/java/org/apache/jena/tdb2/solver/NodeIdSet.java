@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.Arrays;
+
+/**
+ * A set of NodeIds, held as their 64 bit encoded form (see
+ * {@link org.apache.jena.tdb2.store.NodeIdFactory#encode}) in an open addressing
+ * hash table. This avoids a {@code NodeId} or {@code Long} object for each member.
+ */
+final class NodeIdSet {
+    // Zero is a legal encoded NodeId (the first node in the node table)
+    // so it is tracked separately and zero marks an empty slot.
+    private static final int InitialCapacity = 64;
+    private long[] table;
+    private int size = 0;
+    private boolean containsZero = false;
+
+    NodeIdSet() {
+        table = new long[InitialCapacity];
+    }
+
+    /** Add an element; return true if it was not already in the set. */
+    boolean add(long x) {
+        if ( x == 0 ) {
+            if ( containsZero )
+                return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        if ( 2 * (size + 1) > table.length )
+            resize();
+        if ( ! insert(table, x) )
+            return false;
+        size++;
+        return true;
+    }
+
+    boolean contains(long x) {
+        if ( x == 0 )
+            return containsZero;
+        int mask = table.length - 1;
+        for ( int i = hash(x) & mask ; ; i = (i + 1) & mask ) {
+            long v = table[i];
+            if ( v == 0 )
+                return false;
+            if ( v == x )
+                return true;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static boolean insert(long[] table, long x) {
+        int mask = table.length - 1;
+        for ( int i = hash(x) & mask ; ; i = (i + 1) & mask ) {
+            long v = table[i];
+            if ( v == 0 ) {
+                table[i] = x;
+                return true;
+            }
+            if ( v == x )
+                return false;
+        }
+    }
+
+    private void resize() {
+        long[] table2 = new long[table.length * 2];
+        for ( long v : table ) {
+            if ( v != 0 )
+                insert(table2, v);
+        }
+        table = table2;
+    }
+
+    private static int hash(long x) {
+        // Mix the bits: NodeIds for nodes in the node table are offsets into a file.
+        x ^= (x >>> 33);
+        x *= 0xff51afd7ed558ccdL;
+        x ^= (x >>> 33);
+        return (int)x;
+    }
+
+    @Override
+    public String toString() {
+        long[] elts = new long[size];
+        int idx = 0;
+        if ( containsZero )
+            elts[idx++] = 0;
+        for ( long v : table ) {
+            if ( v != 0 )
+                elts[idx++] = v;
+        }
+        return Arrays.toString(elts);
+    }
+}
@@ -18,12 +18,17 @@
 
 package org.apache.jena.tdb2.solver;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.transaction.txn.TransactionInfo;
+import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.query.TxnType;
 import org.apache.jena.sparql.ARQInternalErrorException;
 import org.apache.jena.sparql.algebra.Op;
 import org.apache.jena.sparql.algebra.op.*;
@@ -34,13 +39,17 @@ import org.apache.jena.sparql.core.Substitute;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterFilterExpr;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek;
+import org.apache.jena.sparql.engine.iterator.QueryIterSlice;
 import org.apache.jena.sparql.engine.main.OpExecutor;
 import org.apache.jena.sparql.engine.main.OpExecutorFactory;
+import org.apache.jena.sparql.engine.main.ParallelExecution;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.main.iterator.QueryIterGraph;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.expr.Expr;
 import org.apache.jena.sparql.expr.ExprList;
 import org.apache.jena.sparql.mgt.Explain;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
@@ -87,6 +96,43 @@ public class OpExecutorTDB2 extends OpExecutor
         return super.exec(op, input);
     }
 
+    /**
+     * Parallel execution over TDB2: the query thread must be in a read transaction.
+     * Each worker thread starts its own read transaction and uses it only if it sees
+     * the same data version as the query thread.
+     */
+    @Override
+    protected ParallelExecution.WorkerSetup parallelWorkerSetup() {
+        if ( ! ParallelExecution.isEnabled(execCxt) )
+            return null;
+        if ( ! ( execCxt.getDataset() instanceof DatasetGraphTDB ) )
+            return super.parallelWorkerSetup();
+        TransactionalSystem txnSystem = ((DatasetGraphTDB)execCxt.getDataset()).getTxnSystem();
+        TransactionInfo txnInfo = txnSystem.getTransactionInfo();
+        if ( txnInfo == null || txnInfo.getTxnType() != TxnType.READ )
+            return null;
+        long dataVersion = txnInfo.getDataVersion();
+        return new ParallelExecution.WorkerSetup() {
+            @Override
+            public boolean begin() {
+                if ( txnSystem.isInTransaction() )
+                    return false;
+                txnSystem.begin(TxnType.READ);
+                if ( txnSystem.getTransactionInfo().getDataVersion() != dataVersion ) {
+                    // A writer has committed since the query started.
+                    txnSystem.end();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void end() {
+                txnSystem.end();
+            }
+        };
+    }
+
     // Retrieving nodes isn't so bad because they will be needed anyway.
     // And if their duplicates, likely to be cached.
     // Need to work with SolverLib which wraps the NodeId bindgins with a converter.
@@ -112,6 +158,25 @@ public class OpExecutorTDB2 extends OpExecutor
         // If the filter does not apply to the input??
         // Where does ARQ catch this?
 
+        // EXISTS and NOT EXISTS that may be hash joins are applied after the rest
+        // of the filter, not placed in the basic graph pattern.
+        ExprList exprsHash = new ExprList();
+        ExprList exprsOther = new ExprList();
+        for ( Expr expr : opFilter.getExprs() ) {
+            if ( isHashExists(expr) )
+                exprsHash.add(expr);
+            else
+                exprsOther.add(expr);
+        }
+        if ( ! exprsHash.isEmpty() ) {
+            Op opBase = opFilter.getSubOp();
+            Op op = exprsOther.isEmpty() ? opBase : OpFilter.filterDirect(exprsOther, opBase);
+            QueryIterator qIter = exec(op, input);
+            for ( Expr expr : exprsHash )
+                qIter = filter(qIter, opBase, expr);
+            return qIter;
+        }
+
         // (filter (bgp ...))
         if ( OpBGP.isBGP(opFilter.getSubOp()) )
         {
@@ -135,6 +200,134 @@ public class OpExecutorTDB2 extends OpExecutor
         return super.execute(opFilter, input);
         }
 
+    // ---- ORDER BY from index order
+
+    @Override
+    protected QueryIterator execute(OpOrder opOrder, QueryIterator input)
+    {
+        QueryIterator qIter = executeInIndexOrder(opOrder.getSubOp(), opOrder.getConditions(), input);
+        if ( qIter != null )
+            return qIter;
+        return super.execute(opOrder, input);
+    }
+
+    @Override
+    protected QueryIterator execute(OpTopN opTop, QueryIterator input)
+    {
+        QueryIterator qIter = executeInIndexOrder(opTop.getSubOp(), opTop.getConditions(), input);
+        if ( qIter != null )
+            // Already in order: the first N rows.
+            return new QueryIterSlice(qIter, 0, opTop.getLimit(), execCxt);
+        return super.execute(opTop, input);
+    }
+
+    /**
+     * Execute (bgp), (quadpattern) or (filter) of these so that the results are in the
+     * order of the sort conditions by reading an index in order.
+     * Returns null if this is not possible.
+     * @see IndexOrderTDB
+     */
+    private QueryIterator executeInIndexOrder(Op subOp, List<SortCondition> conditions, QueryIterator input)
+    {
+        if ( ! isForTDB || ! IndexOrderTDB.isEnabled(execCxt.getContext()) )
+            return null;
+        // The sort is over all the results, not per input row.
+        if ( ! input.isJoinIdentity() )
+            return null;
+        Var var = IndexOrderTDB.sortVar(conditions);
+        if ( var == null )
+            return null;
+
+        ExprList exprs = null;
+        if ( subOp instanceof OpFilter )
+        {
+            exprs = ((OpFilter)subOp).getExprs();
+            subOp = ((OpFilter)subOp).getSubOp();
+        }
+
+        DatasetGraphTDB ds;
+        Node gn;
+        BasicPattern pattern;
+        if ( OpBGP.isBGP(subOp) )
+        {
+            GraphTDB graph = (GraphTDB)execCxt.getActiveGraph();
+            ds = graph.getDSG();
+            gn = graph.getGraphName();
+            pattern = ((OpBGP)subOp).getPattern();
+        }
+        else if ( subOp instanceof OpQuadPattern )
+        {
+            ds = (DatasetGraphTDB)execCxt.getDataset();
+            gn = ((OpQuadPattern)subOp).getGraphNode();
+            pattern = ((OpQuadPattern)subOp).getBasicPattern();
+        }
+        else
+            return null;
+
+        gn = decideGraphNode(gn, execCxt);
+        Predicate<Tuple<NodeId>> filter = QC2.getFilter(execCxt.getContext());
+        QueryIterator qIter = IndexOrderTDB.execute(ds.chooseNodeTupleTable(gn), gn, pattern, var, input, filter, execCxt);
+        if ( qIter == null )
+            return null;
+        if ( exprs != null )
+        {
+            for ( Expr expr : exprs )
+                qIter = new QueryIterFilterExpr(qIter, expr, execCxt);
+        }
+        return qIter;
+    }
+
+    // ---- Aggregates from the indexes
+
+    @Override
+    protected QueryIterator execute(OpGroup opGroup, QueryIterator input)
+    {
+        QueryIterator qIter = executeAggregate(opGroup, input);
+        if ( qIter != null )
+            return qIter;
+        return super.execute(opGroup, input);
+    }
+
+    /**
+     * Execute a group of counts over a (bgp) or (quadpattern) of one pattern by
+     * reading an index range.
+     * Returns null if this is not possible.
+     * @see AggregateTDB
+     */
+    private QueryIterator executeAggregate(OpGroup opGroup, QueryIterator input)
+    {
+        if ( ! isForTDB || ! AggregateTDB.isEnabled(execCxt.getContext()) )
+            return null;
+        // The group is over all the results, not per input row.
+        if ( ! input.isJoinIdentity() )
+            return null;
+
+        Op subOp = opGroup.getSubOp();
+        DatasetGraphTDB ds;
+        Node gn;
+        BasicPattern pattern;
+        if ( OpBGP.isBGP(subOp) )
+        {
+            GraphTDB graph = (GraphTDB)execCxt.getActiveGraph();
+            ds = graph.getDSG();
+            gn = graph.getGraphName();
+            pattern = ((OpBGP)subOp).getPattern();
+        }
+        else if ( subOp instanceof OpQuadPattern )
+        {
+            ds = (DatasetGraphTDB)execCxt.getDataset();
+            gn = ((OpQuadPattern)subOp).getGraphNode();
+            pattern = ((OpQuadPattern)subOp).getBasicPattern();
+        }
+        else
+            return null;
+
+        gn = decideGraphNode(gn, execCxt);
+        Predicate<Tuple<NodeId>> filter = QC2.getFilter(execCxt.getContext());
+        return AggregateTDB.execute(ds.chooseNodeTupleTable(gn), gn, pattern,
+                                    opGroup.getGroupVars(), opGroup.getAggregators(), input, filter, execCxt);
+    }
+
     // ---- Triple patterns
 
     @Override
@@ -164,6 +357,18 @@ public class OpExecutorTDB2 extends OpExecutor
         return optimizeExecuteQuads(ds, input, gn, bgp, null, execCxt);
     }
 
+    @Override
+    protected QueryIterator execute(OpPath opPath, QueryIterator input)
+    {
+        if ( ! isForTDB )
+            return super.execute(opPath, input);
+        // Transitive paths of a single predicate are evaluated on NodeIds.
+        PathTDB pathTDB = PathTDB.create((GraphTDB)execCxt.getActiveGraph(), opPath.getTriplePath(), execCxt);
+        if ( pathTDB == null )
+            return super.execute(opPath, input);
+        return pathTDB.exec(input, execCxt);
+    }
+
     @Override
     protected QueryIterator execute(OpGraph opGraph, QueryIterator input)
     {
@@ -0,0 +1,387 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.iterator.QueryIterRepeatApply;
+import org.apache.jena.sparql.engine.iterator.QueryIterSingleton;
+import org.apache.jena.sparql.mgt.Explain;
+import org.apache.jena.sparql.path.*;
+import org.apache.jena.sparql.pfunction.PropertyFunctionRegistry;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.store.GraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+
+/**
+ * Evaluation of {@code :p*} and {@code :p+}, and of the inverse forms
+ * {@code ^:p*}, {@code (^:p)*} and so on, working on the NodeIds of a TDB2 graph.
+ * <p>
+ * The traversal records visited nodes as encoded NodeIds in a {@link NodeIdSet};
+ * nodes are only retrieved from the node table for the results. When both ends are
+ * bound, the search is bidirectional, expanding the smaller frontier at each step.
+ * The results are the same as the general path engine with SPARQL semantics.
+ */
+public class PathTDB {
+    private final TriplePath triplePath;
+    private final NodeTupleTable nodeTupleTable;
+    private final NodeTable nodeTable;
+    // null for the default graph (triple table), NodeIdAny for the union graph.
+    private final NodeId graphId;
+    private final NodeId predicateId;
+    // Forward means subject to object.
+    private final boolean inverse;
+    // p* (true) or p+ (false)
+    private final boolean zeroLength;
+    // The predicate (or graph) is not in the database.
+    private final boolean noTriples;
+
+    /**
+     * Return an evaluator for the triple path on the graph, or null if the path is
+     * not one handled by this class.
+     */
+    public static PathTDB create(GraphTDB graph, TriplePath triplePath, ExecutionContext execCxt) {
+        Path path = triplePath.getPath();
+        boolean inverse = false;
+        // "^:p*" is "^(:p*)"
+        if ( path instanceof P_Inverse ) {
+            inverse = true;
+            path = ((P_Inverse)path).getSubPath();
+        }
+        boolean zeroLength;
+        if ( path instanceof P_ZeroOrMore1 )
+            zeroLength = true;
+        else if ( path instanceof P_OneOrMore1 )
+            zeroLength = false;
+        else
+            return null;
+        Path step = ((P_Path1)path).getSubPath();
+        if ( step instanceof P_Inverse ) {
+            inverse = !inverse;
+            step = ((P_Inverse)step).getSubPath();
+        }
+        if ( !(step instanceof P_Link) )
+            return null;
+        Node predicate = ((P_Link)step).getNode();
+        if ( isPropertyFunction(predicate, execCxt.getContext()) )
+            return null;
+        // Tuple filters (e.g. access control) are applied by the general path engine
+        // through the graph.
+        if ( QC2.getFilter(execCxt.getContext()) != null )
+            return null;
+        return new PathTDB(graph, triplePath, predicate, inverse, zeroLength);
+    }
+
+    private static boolean isPropertyFunction(Node node, Context context) {
+        if ( ! node.isURI() )
+            return false;
+        if ( context != null && ! context.isTrueOrUndef(ARQ.propertyFunctions) )
+            return false;
+        PropertyFunctionRegistry registry = PropertyFunctionRegistry.chooseRegistry(context);
+        return registry != null && registry.isRegistered(node.getURI());
+    }
+
+    private PathTDB(GraphTDB graph, TriplePath triplePath, Node predicate, boolean inverse, boolean zeroLength) {
+        this.triplePath = triplePath;
+        this.nodeTupleTable = graph.getNodeTupleTable();
+        this.nodeTable = nodeTupleTable.getNodeTable();
+        this.inverse = inverse;
+        this.zeroLength = zeroLength;
+        this.predicateId = nodeTable.getNodeIdForNode(predicate);
+        NodeId gId = null;
+        if ( nodeTupleTable.getTupleLen() == 4 ) {
+            Node gn = graph.getGraphName();
+            gId = Quad.isUnionGraph(gn) ? NodeId.NodeIdAny : nodeTable.getNodeIdForNode(gn);
+        }
+        this.graphId = gId;
+        this.noTriples = NodeId.isDoesNotExist(predicateId) || NodeId.isDoesNotExist(graphId);
+    }
+
+    /** Evaluate the path for each binding of the input. */
+    public QueryIterator exec(QueryIterator input, ExecutionContext execCxt) {
+        return new QueryIterRepeatApply(input, execCxt) {
+            @Override
+            protected QueryIterator nextStage(Binding binding) {
+                return eval(binding, getExecContext());
+            }
+        };
+    }
+
+    /** Evaluate the path for one binding. */
+    public QueryIterator eval(Binding binding, ExecutionContext execCxt) {
+        Explain.explain(triplePath.getSubject(), triplePath.getPath(), triplePath.getObject(), execCxt.getContext());
+        Node s = Var.lookup(binding, triplePath.getSubject());
+        Node o = Var.lookup(binding, triplePath.getObject());
+
+        // "forward" is the direction of the path, which is object to subject for "^:p".
+        if ( Var.isVar(s) && Var.isVar(o) ) {
+            if ( s.equals(o) )
+                return evalSameVar(binding, Var.alloc(s), execCxt);
+            return evalUngrounded(binding, Var.alloc(s), Var.alloc(o), execCxt);
+        }
+        if ( !Var.isVar(s) && !Var.isVar(o) )
+            return evalGrounded(binding, s, o, execCxt);
+        if ( Var.isVar(s) )
+            // Work backwards from the object.
+            return evalOneEnd(binding, o, Var.alloc(s), false, execCxt);
+        return evalOneEnd(binding, s, Var.alloc(o), true, execCxt);
+    }
+
+    // One end bound.
+    private QueryIterator evalOneEnd(Binding binding, Node start, Var var, boolean forward, ExecutionContext execCxt) {
+        NodeId startId = nodeTable.getNodeIdForNode(start);
+        if ( NodeId.isDoesNotExist(startId) ) {
+            // Not in the data but "<x> :p* <x>" still holds.
+            if ( zeroLength )
+                return QueryIterSingleton.create(binding, var, start, execCxt);
+            return QueryIterNullIterator.create(execCxt);
+        }
+        long x = NodeIdFactory.encode(startId);
+        LongList results = reachable(x, forward);
+        // Retrieve nodes only for the results. The start is output as given.
+        Iterator<Binding> iter = Iter.map(results.iterator(),
+                                          id -> BindingFactory.binding(binding, var, (id == x) ? start : node(id)));
+        return QueryIterPlainWrapper.create(iter, execCxt);
+    }
+
+    // Both ends bound.
+    private QueryIterator evalGrounded(Binding binding, Node s, Node o, ExecutionContext execCxt) {
+        NodeId sId = nodeTable.getNodeIdForNode(s);
+        if ( NodeId.isDoesNotExist(sId) ) {
+            boolean match = zeroLength && s.sameValueAs(o);
+            return match ? QueryIterSingleton.create(binding, execCxt) : QueryIterNullIterator.create(execCxt);
+        }
+        long sx = NodeIdFactory.encode(sId);
+        if ( o.isLiteral() ) {
+            // Literals are matched by value, which is not the same as by NodeId.
+            // Work out from the subject.
+            LongList results = reachable(sx, true);
+            int count = 0;
+            for ( int i = 0 ; i < results.size() ; i++ ) {
+                long id = results.get(i);
+                Node n = (id == sx) ? s : node(id);
+                if ( n.sameValueAs(o) )
+                    count++;
+            }
+            return repeat(binding, count, execCxt);
+        }
+        NodeId oId = nodeTable.getNodeIdForNode(o);
+        if ( NodeId.isDoesNotExist(oId) )
+            return QueryIterNullIterator.create(execCxt);
+        boolean match = connected(sx, NodeIdFactory.encode(oId));
+        return match ? QueryIterSingleton.create(binding, execCxt) : QueryIterNullIterator.create(execCxt);
+    }
+
+    // Both ends unbound, different variables.
+    private QueryIterator evalUngrounded(Binding binding, Var sVar, Var oVar, ExecutionContext execCxt) {
+        LongList starts = startingSet();
+        Iterator<Binding> iter = Iter.flatMap(starts.iterator(), x -> {
+            Binding b = BindingFactory.binding(binding, sVar, node(x));
+            LongList results = reachable(x, true);
+            return Iter.map(results.iterator(), id -> BindingFactory.binding(b, oVar, node(id)));
+        });
+        return QueryIterPlainWrapper.create(iter, execCxt);
+    }
+
+    // Both ends unbound, same variable.
+    private QueryIterator evalSameVar(Binding binding, Var var, ExecutionContext execCxt) {
+        LongList starts = startingSet();
+        // ":p*" - every node is connected to itself.
+        Iterator<Long> iter = zeroLength ? starts.iterator() : Iter.filter(starts.iterator(), x -> connected(x, x));
+        return QueryIterPlainWrapper.create(Iter.map(iter, x -> BindingFactory.binding(binding, var, node(x))), execCxt);
+    }
+
+    private static QueryIterator repeat(Binding binding, int count, ExecutionContext execCxt) {
+        if ( count == 0 )
+            return QueryIterNullIterator.create(execCxt);
+        Binding[] results = new Binding[count];
+        Arrays.fill(results, binding);
+        return QueryIterPlainWrapper.create(Arrays.asList(results).iterator(), execCxt);
+    }
+
+    /**
+     * Starting points when both ends are unbound: for ":p+", the nodes with a step
+     * in the direction of the path; for ":p*", all subjects and objects of the graph.
+     */
+    private LongList startingSet() {
+        NodeIdSet seen = new NodeIdSet();
+        LongList starts = new LongList();
+        if ( zeroLength ) {
+            if ( NodeId.isDoesNotExist(graphId) )
+                return starts;
+            int sIdx = offset();
+            Iterator<Tuple<NodeId>> iter = find(NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny);
+            iter.forEachRemaining(t -> {
+                add(seen, starts, NodeIdFactory.encode(t.get(sIdx)));
+                add(seen, starts, NodeIdFactory.encode(t.get(sIdx + 2)));
+            });
+            return starts;
+        }
+        if ( noTriples )
+            return starts;
+        int idx = offset() + (inverse ? 2 : 0);
+        Iterator<Tuple<NodeId>> iter = find(NodeId.NodeIdAny, predicateId, NodeId.NodeIdAny);
+        iter.forEachRemaining(t -> add(seen, starts, NodeIdFactory.encode(t.get(idx))));
+        return starts;
+    }
+
+    private static void add(NodeIdSet seen, LongList acc, long x) {
+        if ( seen.add(x) )
+            acc.add(x);
+    }
+
+    /**
+     * All nodes reachable from {@code start}, including {@code start} itself for ":p*".
+     * Breadth first; the results list is also the work queue.
+     */
+    private LongList reachable(long start, boolean forward) {
+        NodeIdSet visited = new NodeIdSet();
+        LongList acc = new LongList();
+        LongList next = new LongList();
+        if ( zeroLength )
+            add(visited, acc, start);
+        else {
+            step(start, forward, next);
+            for ( int j = 0 ; j < next.size() ; j++ )
+                add(visited, acc, next.get(j));
+        }
+        for ( int i = 0 ; i < acc.size() ; i++ ) {
+            next.clear();
+            step(acc.get(i), forward, next);
+            for ( int j = 0 ; j < next.size() ; j++ )
+                add(visited, acc, next.get(j));
+        }
+        return acc;
+    }
+
+    /**
+     * Test whether {@code end} can be reached from {@code start}.
+     * Bidirectional breadth first search, expanding the smaller frontier.
+     */
+    private boolean connected(long start, long end) {
+        NodeIdSet visitedFwd = new NodeIdSet();
+        NodeIdSet visitedBkwd = new NodeIdSet();
+        LongList frontierFwd = new LongList();
+        LongList frontierBkwd = new LongList();
+        LongList next = new LongList();
+
+        // Nodes in visitedFwd are the end of a path from start of the right length
+        // (zero or more, one or more). Nodes in visitedBkwd are the start of a path,
+        // of length zero or more, to the end.
+        if ( zeroLength )
+            add(visitedFwd, frontierFwd, start);
+        else {
+            step(start, true, next);
+            for ( int j = 0 ; j < next.size() ; j++ )
+                add(visitedFwd, frontierFwd, next.get(j));
+        }
+        if ( visitedFwd.contains(end) )
+            return true;
+        add(visitedBkwd, frontierBkwd, end);
+
+        while ( ! frontierFwd.isEmpty() && ! frontierBkwd.isEmpty() ) {
+            boolean expandFwd = frontierFwd.size() <= frontierBkwd.size();
+            LongList frontier = expandFwd ? frontierFwd : frontierBkwd;
+            NodeIdSet visited = expandFwd ? visitedFwd : visitedBkwd;
+            NodeIdSet visitedOther = expandFwd ? visitedBkwd : visitedFwd;
+            LongList frontier2 = new LongList();
+            for ( int i = 0 ; i < frontier.size() ; i++ ) {
+                next.clear();
+                step(frontier.get(i), expandFwd, next);
+                for ( int j = 0 ; j < next.size() ; j++ ) {
+                    long x = next.get(j);
+                    if ( visitedOther.contains(x) )
+                        return true;
+                    add(visited, frontier2, x);
+                }
+            }
+            if ( expandFwd )
+                frontierFwd = frontier2;
+            else
+                frontierBkwd = frontier2;
+        }
+        return false;
+    }
+
+    /** One step from {@code x}, in the direction of the path or against it. */
+    private void step(long x, boolean forward, LongList acc) {
+        if ( noTriples )
+            return;
+        NodeId id = NodeIdFactory.decode(x);
+        boolean subjectToObject = ( forward != inverse );
+        Iterator<Tuple<NodeId>> iter = subjectToObject
+            ? find(id, predicateId, NodeId.NodeIdAny)
+            : find(NodeId.NodeIdAny, predicateId, id);
+        int idx = offset() + (subjectToObject ? 2 : 0);
+        iter.forEachRemaining(t -> acc.add(NodeIdFactory.encode(t.get(idx))));
+    }
+
+    private Iterator<Tuple<NodeId>> find(NodeId s, NodeId p, NodeId o) {
+        if ( graphId == null )
+            return nodeTupleTable.find(s, p, o);
+        return nodeTupleTable.find(graphId, s, p, o);
+    }
+
+    private int offset() {
+        return ( graphId == null ) ? 0 : 1;
+    }
+
+    private Node node(long x) {
+        return nodeTable.getNodeForNodeId(NodeIdFactory.decode(x));
+    }
+
+    /** Growable array of longs. */
+    private static class LongList {
+        private long[] elts = new long[16];
+        private int size = 0;
+
+        void add(long x) {
+            if ( size == elts.length )
+                elts = Arrays.copyOf(elts, 2 * size);
+            elts[size++] = x;
+        }
+
+        long get(int i) { return elts[i]; }
+        int size()      { return size; }
+        boolean isEmpty() { return size == 0; }
+        void clear()    { size = 0; }
+
+        Iterator<Long> iterator() {
+            return Arrays.stream(elts, 0, size).iterator();
+        }
+    }
+}
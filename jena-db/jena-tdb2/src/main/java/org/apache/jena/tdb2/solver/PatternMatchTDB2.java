@@ -36,6 +36,7 @@ import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.iterator.Abortable;
+import org.apache.jena.sparql.engine.iterator.BatchReader;
 import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
@@ -86,7 +87,6 @@ public class PatternMatchTDB2 {
             graphNode = null;
 
         List<Triple> triples = pattern.getList();
-        boolean anyGraph = (graphNode == null ? false : (Node.ANY.equals(graphNode)));
 
         int tupleLen = nodeTupleTable.getTupleTable().getTupleLen();
         if ( graphNode == null ) {
@@ -99,17 +99,49 @@ public class PatternMatchTDB2 {
 
         // Convert from a QueryIterator (Bindings of Var/Node) to BindingNodeId
         NodeTable nodeTable = nodeTupleTable.getNodeTable();
-        Iterator<BindingNodeId> chain = Iter.map(input, SolverLibTDB.convFromBinding(nodeTable));
+        // Read the input in batches.
+        Iterator<BindingNodeId> chain = Iter.map(BatchReader.create(input, execCxt), SolverLibTDB.convFromBinding(nodeTable));
         List<Abortable> killList = new ArrayList<>();
+        chain = solve(nodeTupleTable, graphNode, triples, chain, filter, killList, execCxt);
+
+        Iterator<Binding> iterBinding = SolverLibTDB.convertToNodes(chain, nodeTable);
 
+        // "input" will be closed by QueryIterAbortable but is otherwise unused.
+        // "killList" will be aborted on timeout.
+        return new QueryIterAbortable(iterBinding, killList, input, execCxt);
+    }
+
+    /**
+     * Match the triples, in order, for each solution of the chain.
+     * The graph node has been resolved: null for the default graph,
+     * Node.ANY for the union graph.
+     */
+    /*package*/ static Iterator<BindingNodeId> solve(NodeTupleTable nodeTupleTable, Node graphNode, List<Triple> triples,
+                                                     Iterator<BindingNodeId> chain, Predicate<Tuple<NodeId>> filter,
+                                                     List<Abortable> killList, ExecutionContext execCxt) {
+        boolean anyGraph = (graphNode == null ? false : (Node.ANY.equals(graphNode)));
+        List<Tuple<Node>> patternTuples = new ArrayList<>(triples.size());
         for ( Triple triple : triples ) {
-            Tuple<Node> patternTuple = null;
             if ( graphNode == null )
                 // 3-tuples
-                patternTuple = TupleFactory.create3(triple.getSubject(), triple.getPredicate(), triple.getObject());
+                patternTuples.add(TupleFactory.create3(triple.getSubject(), triple.getPredicate(), triple.getObject()));
             else
                 // 4-tuples.
-                patternTuple = TupleFactory.create4(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+                patternTuples.add(TupleFactory.create4(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject()));
+        }
+
+        // Leading patterns that can be read in the same order are merge joined.
+        MergeJoinTDB mergeJoin = MergeJoinTDB.plan(nodeTupleTable, triples, patternTuples, anyGraph, execCxt);
+        if ( mergeJoin != null ) {
+            chain = mergeJoin.access(chain, filter, execCxt);
+            chain = makeAbortable(chain, killList);
+        }
+
+        for ( int i = 0 ; i < triples.size() ; i++ ) {
+            if ( mergeJoin != null && mergeJoin.covers(i) )
+                continue;
+            Triple triple = triples.get(i);
+            Tuple<Node> patternTuple = patternTuples.get(i);
             // Plain RDF, no RDF-star
             // chain = solve(nodeTupleTable, tuple, anyGraph, chain, filter, execCxt)
             // ;
@@ -118,12 +150,7 @@ public class PatternMatchTDB2 {
 
             chain = makeAbortable(chain, killList);
         }
-
-        Iterator<Binding> iterBinding = SolverLibTDB.convertToNodes(chain, nodeTable);
-
-        // "input" will be closed by QueryIterAbortable but is otherwise unused.
-        // "killList" will be aborted on timeout.
-        return new QueryIterAbortable(iterBinding, killList, input, execCxt);
+        return chain;
     }
 
     private static Iterator<BindingNodeId> matchQuadPattern(Iterator<BindingNodeId> chain, Node graphNode, Triple tPattern,
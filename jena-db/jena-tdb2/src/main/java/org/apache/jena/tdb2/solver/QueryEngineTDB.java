@@ -24,16 +24,20 @@ import org.apache.jena.query.Query ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.algebra.Op ;
 import org.apache.jena.sparql.algebra.OpLib;
+import org.apache.jena.sparql.algebra.Transformer ;
+import org.apache.jena.sparql.algebra.optimize.TransformJoinOrder ;
 import org.apache.jena.sparql.core.DatasetDescription ;
 import org.apache.jena.sparql.core.DatasetGraph ;
 import org.apache.jena.sparql.core.DynamicDatasets ;
 import org.apache.jena.sparql.core.Substitute ;
 import org.apache.jena.sparql.engine.Plan ;
+import org.apache.jena.sparql.engine.PlanCache ;
 import org.apache.jena.sparql.engine.QueryEngineFactory ;
 import org.apache.jena.sparql.engine.QueryEngineRegistry ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.main.QueryEngineMain ;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator ;
 import org.apache.jena.sparql.mgt.Explain ;
 import org.apache.jena.sparql.util.Context ;
 import org.apache.jena.tdb2.TDB2;
@@ -54,16 +58,25 @@ public class QueryEngineTDB extends QueryEngineMain
     static public void register()       { QueryEngineRegistry.addFactory(factory); }
     static public void unregister()     { QueryEngineRegistry.removeFactory(factory); }
 
+    static {
+        // The union default graph setting changes the algebra.
+        PlanCache.addPlanningSymbol(TDB2.symUnionDefaultGraph);
+    }
+
     // ---- Object
 
+    private final CardinalityEstimator cardinalityEstimator;
+
     protected QueryEngineTDB(Op op, DatasetGraphTDB dataset, Binding input, Context context)
     {
         super(op, dataset, input, context);
+        this.cardinalityEstimator = dataset.getCardinalityEstimator();
     }
 
     protected QueryEngineTDB(Query query, DatasetGraphTDB dataset, Binding input, Context cxt)
     {
         super(query, dataset, input, cxt);
+        this.cardinalityEstimator = dataset.getCardinalityEstimator();
     }
 
     private static boolean isUnionDefaultGraph(Context cxt) {
@@ -81,6 +94,11 @@ public class QueryEngineTDB extends QueryEngineMain
     protected Op modifyOp(Op op)
     {
         op = Substitute.substitute(op, getStartBinding());
+        // Join order from the statistics, before the joins become sequences.
+        if ( cardinalityEstimator != null ) {
+            op = Transformer.transform(new TransformJoinOrder(cardinalityEstimator), op);
+            Explain.explain("JOIN ORDER", op, context);
+        }
         // Optimize (high-level)
         op = super.modifyOp(op);
 
@@ -67,6 +67,11 @@ class StageMatchTuple {
         if ( filter != null )
             iterMatches = Iter.filter(iterMatches, filter);
 
+        // Drop matches that can not join with the build side of an enclosing hash join.
+        Predicate<Tuple<NodeId>> joinFilter = JoinFilterTDB.create(nodeTupleTable.getNodeTable(), vars, execCxt);
+        if ( joinFilter != null )
+            iterMatches = Iter.filter(iterMatches, joinFilter);
+
         // If we want to reduce to RDF semantics over quads,
         // we need to reduce the quads to unique triples.
         // We do that by having the graph slot as "any", then running
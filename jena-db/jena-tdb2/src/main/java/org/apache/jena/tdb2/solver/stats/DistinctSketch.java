@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver.stats;
+
+import java.util.TreeSet;
+
+/**
+ * Estimate the number of distinct values seen, using the "k minimum values"
+ * sketch: keep the k smallest hashes; if the hashes are spread evenly, the
+ * k'th smallest hash tells how densely the hash space is filled.
+ */
+class DistinctSketch {
+    private final int k;
+    private final TreeSet<Long> minimums = new TreeSet<>();
+
+    DistinctSketch(int k) {
+        this.k = k;
+    }
+
+    void add(Object value) {
+        // Non-negative 64 bit hash.
+        long h = mix(value.hashCode()) >>> 1;
+        if ( minimums.size() < k ) {
+            minimums.add(h);
+            return;
+        }
+        if ( h >= minimums.last() || minimums.contains(h) )
+            return;
+        minimums.add(h);
+        minimums.pollLast();
+    }
+
+    long estimate() {
+        if ( minimums.size() < k )
+            // Exact (up to hash collisions).
+            return minimums.size();
+        double fraction = (double)minimums.last() / Long.MAX_VALUE;
+        return Math.round((k - 1) / fraction);
+    }
+
+    // 64 bit finalization mix of MurmurHash3.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -34,6 +34,8 @@ import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
+import org.apache.jena.sparql.engine.optimizer.PredicateStats;
 import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
 import org.apache.jena.sparql.graph.NodeConst;
 import org.apache.jena.sparql.sse.Item;
@@ -48,30 +50,24 @@ public class Stats
     /** Write statistics */
     static public void write(String filename, StatsResults stats)
     {
-        write(filename, stats.getPredicates(), stats.getTypes(), stats.getCount());
+        write(filename, format(stats));
     }
 
     /** Write statistics */
     static public void write(OutputStream output, StatsResults stats)
     {
-        write(output, stats.getPredicates(), stats.getTypes(), stats.getCount());
+        ItemWriter.write(output, format(stats));
     }
 
-    static private void write(String filename, Map<Node, Integer> predicateStats, Map<Node, Integer> typeStats, long statsTotal)
+    static private void write(String filename, Item item)
     {
         // Write out the stats
         try (OutputStream statsOut = new BufferedOutputStream(new FileOutputStream(filename))) {
-            write(statsOut, predicateStats, typeStats, statsTotal);
+            ItemWriter.write(statsOut, item);
         } catch (IOException ex)
         { Log.warn(Stats.class, "Problem when writing stats file", ex); }
     }
 
-    static private void write(OutputStream output, Map<Node, Integer> predicateStats, Map<Node, Integer> typeStats, long statsTotal)
-    {
-        Item item = format(predicateStats, typeStats, statsTotal);
-        ItemWriter.write(output, item);
-    }
-
 
     /** Gather statistics, any graph */
     public static StatsCollector gather(Graph graph)
@@ -90,10 +86,11 @@ public class Stats
 
     public static Item format(StatsResults stats)
     {
-        return format(stats.getPredicates(), stats.getTypes(), stats.getCount());
+        return format(stats.getPredicates(), stats.getTypes(), stats.getPredicateStats(), stats.getCount());
     }
 
-    private static Item format(Map<Node, Integer> predicates, Map<Node, Integer> types, long count)
+    private static Item format(Map<Node, Integer> predicates, Map<Node, Integer> types,
+                               Map<Node, PredicateStats> predicateStats, long count)
     {
         Item stats = Item.createList();
         ItemList statsList = stats.getList();
@@ -124,6 +121,10 @@ public class Stats
         // Add a default rule.
         addPair(statsList, StatsMatcher.OTHER, ZERO);
 
+        // Distinct counts and histograms for the cardinality estimator.
+        if ( predicateStats != null && !predicateStats.isEmpty() )
+            statsList.add(CardinalityEstimator.format(predicateStats));
+
         return stats;
     }
 
@@ -33,4 +33,9 @@ public class StatsCollector extends StatsCollectorBase<Node> {
     protected Map<Node, Integer> convert(Map<Node, Integer> map) {
         return map;
     }
+
+    @Override
+    protected Node convert(Node node) {
+        return node;
+    }
 }
@@ -19,18 +19,35 @@
 package org.apache.jena.tdb2.solver.stats;
 
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.engine.optimizer.PredicateStats;
 
 /** Statistics collector, general purpose */
 abstract class StatsCollectorBase<T> {
+    // Number of hashes kept to estimate the number of distinct subjects and objects.
+    private static final int SketchSize         = 256;
+    // Number of objects sampled, per predicate, for the histogram.
+    private static final int SampleSize         = 128;
+    private static final int HistogramBuckets   = 16;
+    private static final int HistogramMinimum   = 16;
+
     private long            count      = 0;
     private Map<T, Integer> predicates = new HashMap<>(10000);
     private Map<T, Integer> types      = new HashMap<>(10000);
+    private Map<T, PredicateSketch<T>> sketches = new HashMap<>(10000);
+    // Fixed seed - the same data gives the same statistics.
+    private Random          random     = new Random(0);
     private T               typeTrigger;
 
+    private static class PredicateSketch<T> {
+        final DistinctSketch subjects = new DistinctSketch(SketchSize);
+        final DistinctSketch objects = new DistinctSketch(SketchSize);
+        final List<T> sample = new ArrayList<>();
+        long seen = 0;
+    }
+
     protected StatsCollectorBase(T typeTrigger) {
         this.typeTrigger = typeTrigger;
     }
@@ -40,11 +57,55 @@ abstract class StatsCollectorBase<T> {
         predicates.put(p, predicates.getOrDefault(p, 0) + 1);
         if ( typeTrigger != null && typeTrigger.equals(p) )
             types.put(o, types.getOrDefault(o, 0) + 1);
+        PredicateSketch<T> sketch = sketches.computeIfAbsent(p, x -> new PredicateSketch<>());
+        sketch.subjects.add(s);
+        sketch.objects.add(o);
+        // Reservoir sample of the objects.
+        sketch.seen++;
+        if ( sketch.sample.size() < SampleSize )
+            sketch.sample.add(o);
+        else {
+            long i = (long)(random.nextDouble() * sketch.seen);
+            if ( i < SampleSize )
+                sketch.sample.set((int)i, o);
+        }
     }
 
     protected abstract Map<Node, Integer> convert(Map<T, Integer> map);
 
+    protected abstract Node convert(T item);
+
     public StatsResults results() {
-        return new StatsResults(convert(predicates), convert(types), count);
+        Map<Node, PredicateStats> predicateStats = new HashMap<>(sketches.size());
+        sketches.forEach((p, sketch) -> {
+            PredicateStats stats = new PredicateStats(predicates.get(p), sketch.subjects.estimate(), sketch.objects.estimate(),
+                                                      histogram(sketch.sample));
+            predicateStats.put(convert(p), stats);
+        });
+        return new StatsResults(convert(predicates), convert(types), predicateStats, count);
+    }
+
+    /** Equi-depth histogram of the sampled objects, if they are mostly numbers. */
+    private double[] histogram(List<T> sample) {
+        double[] values = new double[sample.size()];
+        int n = 0;
+        for ( T x : sample ) {
+            Node node = convert(x);
+            if ( node == null || !node.isLiteral() )
+                continue;
+            try {
+                Object obj = node.getLiteralValue();
+                if ( obj instanceof Number )
+                    values[n++] = ((Number)obj).doubleValue();
+            } catch (Exception ex) { /* Bad lexical form */ }
+        }
+        if ( n < HistogramMinimum || 2 * n < sample.size() )
+            return null;
+        Arrays.sort(values, 0, n);
+        int buckets = Math.min(HistogramBuckets, n - 1);
+        double[] boundaries = new double[buckets + 1];
+        for ( int i = 0 ; i <= buckets ; i++ )
+            boundaries[i] = values[(int)((long)i * (n - 1) / buckets)];
+        return boundaries;
     }
 }
@@ -53,4 +53,9 @@ public class StatsCollectorNodeId extends StatsCollectorBase<NodeId> {
         }
         return statsNodes;
     }
+
+    @Override
+    protected Node convert(NodeId nodeId) {
+        return nodeTable.getNodeForNodeId(nodeId);
+    }
 }
@@ -21,19 +21,22 @@ package org.apache.jena.tdb2.solver.stats;
 import java.util.Map;
 
 import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.engine.optimizer.PredicateStats;
 
 /** Statistics collector */
 public class StatsResults
 {
     private final Map<Node, Integer> predicates;
     private final Map<Node, Integer> types;
+    private final Map<Node, PredicateStats> predicateStats;
     private final long count;
 
-    StatsResults(Map<Node, Integer> predicates, Map<Node, Integer> types, long count)
+    StatsResults(Map<Node, Integer> predicates, Map<Node, Integer> types, Map<Node, PredicateStats> predicateStats, long count)
     {
         this.count = count;
         this.predicates = predicates;
         this.types = types;
+        this.predicateStats = predicateStats;
     }
 
     public Map<Node, Integer> getPredicates()
@@ -46,6 +49,12 @@ public class StatsResults
         return types;
     }
 
+    /** Per-predicate distinct counts and histograms, for join ordering. */
+    public Map<Node, PredicateStats> getPredicateStats()
+    {
+        return predicateStats;
+    }
+
     public long getCount()
     {
         return count;
@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.jena.atlas.lib.Cache;
 import org.apache.jena.atlas.lib.CacheFactory;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.system.PrefixMap;
@@ -47,6 +48,7 @@ public class DatasetGraphSwitchable extends DatasetGraphWrapper
     private final Path basePath;
     private final Location location;
     private final PrefixMapSwitchable prefixes;
+    private final GroupCommit groupCommit;
 
     public DatasetGraphSwitchable(Path base, Location location, DatasetGraph dsg) {
         // Don't use the slot in datasetGraphWrapper - use the AtomicReference
@@ -55,6 +57,7 @@ public class DatasetGraphSwitchable extends DatasetGraphWrapper
         this.basePath = base;
         this.location = location;
         this.prefixes = new PrefixMapSwitchable(this);
+        this.groupCommit = new GroupCommit(this);
     }
 
     /** Is this {@code DatasetGraphSwitchable} just a holder for a {@code DatasetGraph}?
@@ -81,6 +84,15 @@ public class DatasetGraphSwitchable extends DatasetGraphWrapper
         return dsgx.getAndSet(dsg);
     }
 
+    /**
+     * The group commit for this database, used for SPARQL Update when
+     * {@link org.apache.jena.tdb2.TDB2#symGroupCommit} is set.
+     * It is kept across switches of the base {@link DatasetGraph}.
+     */
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
     @Override
     public PrefixMap prefixes() {
         return prefixes;
@@ -29,6 +29,7 @@ import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.lib.NodeLib;
@@ -43,16 +44,24 @@ public class DatasetGraphTDB extends DatasetGraphStorage
     private final TransactionalSystem txnSystem;
     private final StoreParams storeParams;
     private final ReorderTransformation reorderTransformation;
+    private final CardinalityEstimator cardinalityEstimator;
     private boolean isClosed = false;
 
     public DatasetGraphTDB(Location location, StoreParams params, ReorderTransformation reorderTransformation,
                            StorageTDB storage, StoragePrefixes prefixes, TransactionalSystem txnSystem) {
+        this(location, params, reorderTransformation, null, storage, prefixes, txnSystem);
+    }
+
+    public DatasetGraphTDB(Location location, StoreParams params, ReorderTransformation reorderTransformation,
+                           CardinalityEstimator cardinalityEstimator,
+                           StorageTDB storage, StoragePrefixes prefixes, TransactionalSystem txnSystem) {
         super(storage, prefixes, txnSystem);
         this.storageTDB = storage;
         this.location = location;
         this.storeParams = params;
         this.txnSystem = txnSystem;
         this.reorderTransformation = reorderTransformation;
+        this.cardinalityEstimator = cardinalityEstimator;
     }
 
     private void checkNotClosed() {
@@ -91,6 +100,11 @@ public class DatasetGraphTDB extends DatasetGraphStorage
         return reorderTransformation;
     }
 
+    /** Cardinality estimates for join ordering, or null if there are no statistics. */
+    public CardinalityEstimator getCardinalityEstimator() {
+        return cardinalityEstimator;
+    }
+
     @Override
     public void close() {
         isClosed = true;
@@ -20,9 +20,9 @@ package org.apache.jena.tdb2.store;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.UUID;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
 
 import org.apache.jena.atlas.lib.tuple.TupleMap;
 import org.apache.jena.dboe.DBOpEnvException;
@@ -40,9 +40,11 @@ import org.apache.jena.dboe.transaction.txn.*;
 import org.apache.jena.dboe.transaction.txn.journal.Journal;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
 import org.apache.jena.sparql.sse.SSEParseException;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.params.StoreParamsCodec;
@@ -50,7 +52,9 @@ import org.apache.jena.tdb2.params.StoreParamsFactory;
 import org.apache.jena.tdb2.solver.OpExecutorTDB2;
 import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.apache.jena.tdb2.store.nodetable.NodeTableCache;
+import org.apache.jena.tdb2.store.nodetable.NodeTableFilter;
 import org.apache.jena.tdb2.store.nodetable.NodeTableInline;
+import org.apache.jena.tdb2.store.nodetable.NodeTableNative;
 import org.apache.jena.tdb2.store.nodetable.NodeTableTRDF;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTableConcrete;
@@ -107,10 +111,16 @@ public class TDB2StorageBuilder {
         // Finalize.
         builder.components.forEach(txnCoord::add);
         builder.listeners.forEach(txnCoord::addListener);
+        if ( ! builder.nodeFilters.isEmpty() )
+            txnCoord.add(()->builder.nodeFilters.keySet().forEach(NodeTableNative::saveFilter));
         // Freezes the TransactionCoordinator components
         txnCoord.start();
+        // After recovery, so the node tables are as last committed.
+        if ( ! builder.nodeFilters.isEmpty() )
+            Txn.executeRead(txnSystem, ()->builder.nodeFilters.forEach(NodeTableNative::setFilter));
         ReorderTransformation reorderTranform = chooseReorderTransformation(location);
-        DatasetGraphTDB dsg = new DatasetGraphTDB(location, params, reorderTranform,
+        CardinalityEstimator cardinalityEstimator = chooseCardinalityEstimator(location);
+        DatasetGraphTDB dsg = new DatasetGraphTDB(location, params, reorderTranform, cardinalityEstimator,
                                                   storage, prefixes, txnSystem);
 
         // Enable query processing.
@@ -189,6 +199,8 @@ public class TDB2StorageBuilder {
     // Accumulate TransactionalComponents as they are used to build the database.
     private final Collection<TransactionalComponent> components = new ArrayList<>();
     private final Collection<TransactionListener> listeners = new ArrayList<>();
+    // Node tables with a filter, set up after recovery.
+    private final Map<NodeTableNative, NodeTableFilter> nodeFilters = new LinkedHashMap<>();
 
     private TDB2StorageBuilder(TransactionalSystem txnSystem,
                         Location location, StoreParams params, ComponentIdMgr componentIdMgr) {
@@ -294,7 +306,8 @@ public class TDB2StorageBuilder {
     private RangeIndex makeRangeIndex(RecordFactory recordFactory, String name) {
         ComponentId cid = componentIdMgr.getComponentId(name);
         FileSet fs = new FileSet(location, name);
-        BPlusTree bpt = BPlusTreeFactory.createBPTree(cid, fs, recordFactory);
+        BPlusTree bpt = BPlusTreeFactory.createBPTree(cid, fs, recordFactory, params.getBlockCacheMode(),
+                                                      params.getCompressIndexLeaves());
         components.add(bpt);
         return bpt;
     }
@@ -321,7 +334,12 @@ public class TDB2StorageBuilder {
         String dataname = name+"-data";
         TransBinaryDataFile transBinFile = makeBinaryDataFile(dataname);
         components.add(transBinFile);
-        return new NodeTableTRDF(index, transBinFile);
+        NodeTableTRDF nodeTable = new NodeTableTRDF(index, transBinFile);
+        if ( params.getNodeBloomFilter() ) {
+            Path path = location.isMem() ? null : Paths.get(location.getPath(name, Names.extNodeFilter));
+            nodeFilters.put(nodeTable, new NodeTableFilter(path));
+        }
+        return nodeTable;
     }
 
     private TransBinaryDataFile makeBinaryDataFile(String name) {
@@ -370,4 +388,24 @@ public class TDB2StorageBuilder {
         return reorder ;
     }
 
+    /**
+     * Cardinality estimates for join ordering, from the per-predicate section of the
+     * statistics file. Returns null if there are none, or BGP optimization is turned off.
+     */
+    public static CardinalityEstimator chooseCardinalityEstimator(Location location) {
+        if ( location == null || location.isMem() )
+            return null ;
+        if ( location.exists(Names.optNone) || !location.exists(Names.optStats) )
+            return null ;
+        try {
+            CardinalityEstimator estimator = CardinalityEstimator.read(location.getPath(Names.optStats)) ;
+            if ( estimator != null )
+                log.debug("Statistics-based join ordering") ;
+            return estimator ;
+        }
+        catch (SSEParseException ex) {
+            log.warn("Error in stats file: " + ex.getMessage()) ;
+            return null ;
+        }
+    }
 }
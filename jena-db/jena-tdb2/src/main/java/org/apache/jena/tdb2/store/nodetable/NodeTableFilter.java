@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.BloomFilter;
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.tdb2.sys.IOX;
+
+/**
+ * Bloom filter of the node hashes in a {@link NodeTableNative}. A node whose hash is
+ * not in the filter is not in the node table, and the index is not used.
+ * <p>
+ * The filter grows by adding a filter of twice the size when the last one is full.
+ * Hashes are only added, so nodes added by a transaction that aborts stay in the
+ * filter; that only costs an index lookup.
+ * <p>
+ * The filter is kept in a file, written when the database is shut down, with the
+ * length of the node data file at the time. The file is used when the database is
+ * next opened only if the node data file has the same length, otherwise the filter
+ * is rebuilt from the index.
+ */
+public class NodeTableFilter {
+    private static final long   Magic               = 0x5444_4232_4E46_0001L;
+    private static final double FalsePositiveRate   = 0.01;
+    private static final long   MinCapacity         = 100_000;
+
+    private static final class Segment {
+        final BloomFilter bloom;
+        final long capacity;
+        long count = 0;
+
+        Segment(BloomFilter bloom, long capacity) {
+            this.bloom = bloom;
+            this.capacity = capacity;
+        }
+    }
+
+    // Null for in-memory databases.
+    private final Path file;
+    private List<Segment> segments = new ArrayList<>();
+
+    /** Create an empty filter, kept in {@code file}, or not kept if null. */
+    public NodeTableFilter(Path file) {
+        this(file, MinCapacity);
+    }
+
+    private NodeTableFilter(Path file, long capacity) {
+        this.file = file;
+        addSegment(Math.max(MinCapacity, capacity));
+    }
+
+    /** An empty filter, using the same file, for about {@code expected} nodes. */
+    NodeTableFilter resize(long expected) {
+        // Room to grow before another segment is needed.
+        return new NodeTableFilter(file, 2 * expected);
+    }
+
+    private void addSegment(long capacity) {
+        segments.add(new Segment(BloomFilter.create(capacity, FalsePositiveRate), capacity));
+    }
+
+    private static long hash(byte[] nodeHash) {
+        // The node hash is already well mixed.
+        return Bytes.getLong(nodeHash, 0);
+    }
+
+    /** Add a node hash. */
+    void add(byte[] nodeHash) {
+        Segment last = segments.get(segments.size() - 1);
+        if ( last.count >= last.capacity ) {
+            addSegment(2 * last.capacity);
+            last = segments.get(segments.size() - 1);
+        }
+        last.bloom.add(hash(nodeHash));
+        last.count++;
+    }
+
+    /** Test for a node hash. False means it has not been added. */
+    boolean mightContain(byte[] nodeHash) {
+        long h = hash(nodeHash);
+        for ( Segment segment : segments ) {
+            if ( segment.bloom.mightContain(h) )
+                return true;
+        }
+        return false;
+    }
+
+    /** Number of node hashes added. */
+    public long count() {
+        return segments.stream().mapToLong(s -> s.count).sum();
+    }
+
+    /** Number of bits of the filter. */
+    public long numBits() {
+        return segments.stream().mapToLong(s -> s.bloom.numBits()).sum();
+    }
+
+    /**
+     * Read the filter from its file, if the file was written with the same
+     * {@code dataLength}. Return false if the filter has not been read.
+     */
+    boolean load(long dataLength) {
+        if ( file == null || ! Files.exists(file) )
+            return false;
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))) ) {
+            if ( in.readLong() != Magic )
+                return false;
+            if ( in.readLong() != dataLength )
+                return false;
+            int n = in.readInt();
+            List<Segment> x = new ArrayList<>(n);
+            for ( int i = 0 ; i < n ; i++ ) {
+                long capacity = in.readLong();
+                long count = in.readLong();
+                Segment segment = new Segment(BloomFilter.read(in), capacity);
+                segment.count = count;
+                x.add(segment);
+            }
+            if ( x.isEmpty() )
+                return false;
+            segments = x;
+            return true;
+        } catch (IOException ex) {
+            Log.warn(this, "Failed to read node filter: " + file, ex);
+            return false;
+        }
+    }
+
+    /** Write the filter to its file, recording the length of the node data file. */
+    void save(long dataLength) {
+        if ( file == null )
+            return;
+        IOX.safeWrite(file, output -> {
+            DataOutputStream out = new DataOutputStream(output);
+            out.writeLong(Magic);
+            out.writeLong(dataLength);
+            out.writeInt(segments.size());
+            for ( Segment segment : segments ) {
+                out.writeLong(segment.capacity);
+                out.writeLong(segment.count);
+                segment.bloom.write(out);
+            }
+            out.flush();
+        });
+    }
+}
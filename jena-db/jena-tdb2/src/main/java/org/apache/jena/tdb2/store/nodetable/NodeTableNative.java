@@ -20,9 +20,11 @@ package org.apache.jena.tdb2.store.nodetable;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.jena.atlas.lib.NotImplemented;
 import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.index.Index;
 import org.apache.jena.graph.Node;
@@ -39,6 +41,8 @@ public abstract class NodeTableNative implements NodeTable
 {
     protected Index nodeHashToId;        // hash -> int
     private boolean syncNeeded = false;
+    // Node hashes in the index, or null.
+    private NodeTableFilter filter = null;
 
     public NodeTableNative(Index nodeToId) {
         this.nodeHashToId = nodeToId;
@@ -129,13 +133,17 @@ public abstract class NodeTableNative implements NodeTable
 
         synchronized (this)  // Pair to readNodeFromTable.
         {
-            // Key and value, or null
-            Record r2 = nodeHashToId.find(r);
-            if ( r2 != null )
+            // Not in the filter means not in the index.
+            if ( filter == null || filter.mightContain(k) )
             {
-                // Found.  Get the NodeId.
-                NodeId id = NodeIdFactory.get(r2.getValue(), 0);
-                return id;
+                // Key and value, or null
+                Record r2 = nodeHashToId.find(r);
+                if ( r2 != null )
+                {
+                    // Found.  Get the NodeId.
+                    NodeId id = NodeIdFactory.get(r2.getValue(), 0);
+                    return id;
+                }
             }
 
             // Not found.
@@ -152,10 +160,60 @@ public abstract class NodeTableNative implements NodeTable
             // Put in index - may appear because of concurrency
             if ( ! nodeHashToId.insert(r) )
                 throw new TDBException("NodeTableBase::nodeToId - record mysteriously appeared");
+            if ( filter != null )
+                filter.add(k);
             return id;
         }
     }
 
+    // -------- Filter
+
+    /**
+     * Use a filter of the node hashes to avoid index lookups for nodes that
+     * are not in the table. The filter is read from its file if that is up to
+     * date, otherwise it is built from the index. Call in a transaction when
+     * there is no write transaction.
+     */
+    public synchronized void setFilter(NodeTableFilter filter) {
+        Objects.requireNonNull(filter);
+        if ( ! filter.load(dataLength()) )
+            filter = buildFilter(filter);
+        this.filter = filter;
+    }
+
+    /**
+     * Build the filter again from the index, sized for the nodes in the table.
+     * Call in a transaction when there is no write transaction.
+     */
+    public synchronized void rebuildFilter() {
+        if ( filter == null )
+            return;
+        filter = buildFilter(filter);
+    }
+
+    // A new filter, using the same file, sized for and filled from the index.
+    private NodeTableFilter buildFilter(NodeTableFilter filter) {
+        long start = System.currentTimeMillis();
+        NodeTableFilter newFilter = filter.resize(nodeHashToId.size());
+        Iterator<Record> iter = nodeHashToId.iterator();
+        while ( iter.hasNext() )
+            newFilter.add(iter.next().getKey());
+        long ms = System.currentTimeMillis() - start;
+        Log.info(this, String.format("Node filter built: %,d nodes in %,d ms", newFilter.count(), ms));
+        return newFilter;
+    }
+
+    /** Write the filter to its file. Call when there are no transactions. */
+    public synchronized void saveFilter() {
+        if ( filter != null )
+            filter.save(dataLength());
+    }
+
+    /** The filter in use, or null. */
+    public NodeTableFilter getFilter() {
+        return filter;
+    }
+
     // -------- NodeId<->Node
     // Synchronization:
     //   write: in accessIndex
@@ -165,6 +223,8 @@ public abstract class NodeTableNative implements NodeTable
     abstract protected NodeId writeNodeToTable(Node node);
     abstract protected Node readNodeFromTable(NodeId id);
     abstract protected void syncSub();
+    /** Length of the committed node data, recorded with the filter. */
+    abstract protected long dataLength();
     abstract protected void closeSub();
 
     // -------- NodeId<->Node
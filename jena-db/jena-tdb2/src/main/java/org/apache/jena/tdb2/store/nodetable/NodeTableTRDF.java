@@ -21,6 +21,7 @@ package org.apache.jena.tdb2.store.nodetable;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.base.file.BinaryDataFile;
 import org.apache.jena.dboe.index.Index;
+import org.apache.jena.dboe.trans.data.TransBinaryDataFile;
 import org.apache.jena.dboe.transaction.txn.TransactionException;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.thrift.RiotThriftException;
@@ -98,6 +99,13 @@ public class NodeTableTRDF extends NodeTableNative {
         catch (Exception ex) { throw new TDBException("NodeTableTRDF", ex); }
     }
 
+    @Override
+    protected long dataLength() {
+        if ( diskFile instanceof TransBinaryDataFile )
+            return ((TransBinaryDataFile)diskFile).getCommittedLength();
+        return diskFile.length();
+    }
+
     @Override
     protected void closeSub() {
         if ( transport.isOpen() ) {
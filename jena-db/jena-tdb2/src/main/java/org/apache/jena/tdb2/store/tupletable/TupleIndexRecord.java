@@ -243,6 +243,94 @@ public class TupleIndexRecord extends TupleIndexBase
         return tuples;
     }
 
+    /**
+     * Find all tuples matching a pattern whose defined slots are the leading slots
+     * of this index, in index order, starting at the first tuple with the next slot
+     * in index order equal to or after {@code start}. A {@code start} of null is the
+     * first tuple of the range. The tuples are returned in index order.
+     * <p>
+     * Returns null if the defined slots of the pattern are not a prefix of the index
+     * or if all slots are defined.
+     * <p>
+     * Input pattern in natural order, not index order.
+     */
+    public Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> patternNaturalOrder, NodeId start) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int prefixLen = prefixLength(pattern);
+        if ( prefixLen < 0 || prefixLen == pattern.len() )
+            return null;
+        return index.iterator(minRecord(pattern, prefixLen, start), maxRecord(pattern, prefixLen), recordMapper);
+    }
+
+    /**
+     * Count the tuples matching a pattern whose defined slots are the leading slots
+     * of this index. The index entries are counted without creating tuples.
+     * <p>
+     * Returns -1 if the defined slots of the pattern are not a prefix of the index.
+     * <p>
+     * Input pattern in natural order, not index order.
+     */
+    public long countFrom(Tuple<NodeId> patternNaturalOrder) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int prefixLen = prefixLength(pattern);
+        if ( prefixLen < 0 )
+            return -1;
+        Record minRec = minRecord(pattern, prefixLen, null);
+        if ( prefixLen == pattern.len() )
+            return index.contains(minRec) ? 1 : 0;
+        Iterator<Boolean> iter = index.iterator(minRec, maxRecord(pattern, prefixLen), countMapper);
+        try {
+            long count = 0;
+            while ( iter.hasNext() ) {
+                iter.next();
+                count++;
+            }
+            return count;
+        } finally {
+            Iter.close(iter);
+        }
+    }
+
+    // Visit an entry, making no object. The key bytes are still needed for the range test.
+    private static final RecordMapper<Boolean> countMapper = (bb, entryIdx, key, recFactory) -> {
+        if ( key != null ) {
+            bb.position(entryIdx*recFactory.recordLength());
+            bb.get(key, 0, recFactory.keyLength());
+        }
+        return Boolean.TRUE;
+    };
+
+    /** The number of defined slots before the first undefined one, or -1 if there are defined slots after that. */
+    private static int prefixLength(Tuple<NodeId> pattern) {
+        int prefixLen = 0;
+        while ( prefixLen < pattern.len() && ! NodeId.isAny(pattern.get(prefixLen)) )
+            prefixLen++;
+        for ( int i = prefixLen ; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) )
+                return -1;
+        }
+        return prefixLen;
+    }
+
+    private Record minRecord(Tuple<NodeId> pattern, int prefixLen, NodeId start) {
+        Record minRec = factory.createKeyOnly();
+        for ( int i = 0 ; i < prefixLen ; i++ )
+            NodeIdFactory.set(pattern.get(i), minRec.getKey(), i*SizeOfNodeId);
+        if ( start != null )
+            NodeIdFactory.set(start, minRec.getKey(), prefixLen*SizeOfNodeId);
+        return minRec;
+    }
+
+    private Record maxRecord(Tuple<NodeId> pattern, int prefixLen) {
+        if ( prefixLen == 0 )
+            return null;
+        Record maxRec = factory.createKeyOnly();
+        for ( int i = 0 ; i < prefixLen-1 ; i++ )
+            NodeIdFactory.set(pattern.get(i), maxRec.getKey(), i*SizeOfNodeId);
+        NodeIdFactory.setNext(pattern.get(prefixLen-1), maxRec.getKey(), (prefixLen-1)*SizeOfNodeId);
+        return maxRec;
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> all()
     {
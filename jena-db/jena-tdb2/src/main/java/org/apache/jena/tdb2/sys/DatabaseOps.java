@@ -41,6 +41,8 @@ import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetable.NodeTableNative;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -257,6 +259,10 @@ public class DatabaseOps {
         // Copy the latest generation.
         DatasetGraphTDB dsgCompact = StoreConnection.connectCreate(loc2).getDatasetGraphTDB();
         CopyDSG.copy(dsgBase, dsgCompact);
+        // Size the node table filter, if any, for the nodes copied.
+        NodeTable nodeTable = dsgCompact.getTripleTable().getNodeTupleTable().getNodeTable().baseNodeTable();
+        if ( nodeTable instanceof NodeTableNative )
+            Txn.executeRead(dsgCompact, ((NodeTableNative)nodeTable)::rebuildFilter);
 
         TransactionCoordinator txnMgr2 = dsgCompact.getTxnSystem().getTxnMgr();
         txnMgr2.startExclusiveMode();
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+
+/**
+ * Reuse space in a TDB2 database without copying it.
+ * <p>
+ * TDB2 indexes are copy-on-write B+Trees: each write transaction writes new
+ * blocks and the blocks they replace are left in the files. {@link DatabaseOps#compact}
+ * removes them by copying the live data to a new database. This instead keeps a
+ * list of the blocks that are no longer in use and writes new blocks into them, so
+ * the index files stop growing when the amount of data is steady.
+ * <p>
+ * Blocks replaced by write transactions are reused when no reader can still see
+ * them. Blocks that were unused before this started are found by going over each
+ * index a few blocks at a time, with {@link #step} or in the background with
+ * {@link #start}, while the database is in use. The lists are kept in memory and
+ * are rebuilt after a restart. Files do not get smaller, and the node table data
+ * file is not affected.
+ */
+public class IncrementalCompaction {
+
+    private final DatasetGraph container;
+    // The storage of the container; changes if the database is compacted by copying.
+    private DatasetGraphTDB storage = null;
+    private List<BPlusTree> indexes = List.of();
+    private int current = 0;
+
+    private ScheduledExecutorService executor = null;
+
+    /** Start reusing blocks in the indexes of a TDB2 database. Not called in a transaction. */
+    public IncrementalCompaction(DatasetGraph container) {
+        this.container = container;
+        indexes();
+    }
+
+    private synchronized List<BPlusTree> indexes() {
+        DatasetGraphTDB dsg = TDBInternal.requireStorage(container);
+        if ( dsg == storage )
+            return indexes;
+        List<BPlusTree> x = new ArrayList<>();
+        dsg.getTxnSystem().getTxnMgr().forEachComponent(c->{
+            if ( c instanceof BPlusTree )
+                x.add((BPlusTree)c);
+        });
+        x.forEach(BPlusTree::enableReclaim);
+        // Record the starting point.
+        Txn.executeWrite(container, ()->{});
+        storage = dsg;
+        indexes = x;
+        current = 0;
+        return indexes;
+    }
+
+    /**
+     * Look for unused blocks, reading at most {@code maxBlocks} index blocks. The
+     * indexes are taken in turn. Return true if the last index has been gone over.
+     */
+    public synchronized boolean step(int maxBlocks) {
+        List<BPlusTree> x = indexes();
+        if ( x.isEmpty() )
+            return true;
+        if ( ! x.get(current).reclaimStep(maxBlocks) )
+            return false;
+        current = (current + 1) % x.size();
+        return current == 0;
+    }
+
+    /** Call {@link #step} every {@code period}, in the background. */
+    public synchronized void start(Duration period, int blocksPerStep) {
+        if ( executor != null )
+            throw new IllegalStateException("Already started");
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TDB2-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, period.toMillis());
+        executor.scheduleWithFixedDelay(()->{
+            try { step(blocksPerStep); }
+            catch (Throwable th) { Log.warn(IncrementalCompaction.class, "Exception in compaction step", th); }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stop calling {@link #step} in the background. Unused blocks continue to be reused. */
+    public synchronized void stop() {
+        if ( executor == null )
+            return;
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /** Number of index blocks known to be unused. */
+    public long countUnusedBlocks() {
+        return indexes().stream().mapToLong(BPlusTree::countUnusedBlocks).sum();
+    }
+
+    /** Number of times an index block has been reused. */
+    public long countReusedBlocks() {
+        return indexes().stream().mapToLong(BPlusTree::countReusedBlocks).sum();
+    }
+}
@@ -25,10 +25,12 @@ import java.util.Properties;
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.lib.PropertyUtils;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.base.file.ProcessFileLock;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.sys.SysDB;
+import org.apache.jena.dboe.sys.SystemIndex;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
@@ -179,12 +181,25 @@ public class SystemTDB
     /** Size of Node lookup miss cache. */
     public static final int NodeMissCacheSize       = 1000;
 
+    /** Whether to keep a Bloom filter of the nodes in the node table. */
+    public static final boolean NodeBloomFilter     = false;
+
     /** Size of the delayed-write block cache (32 bit systems only). Per file. */
     public static final int BlockWriteCacheSize     = intValue("BlockWriteCacheSize", 1000);
 
     /** Size of read block cache (32 bit systems only). Per file. */
     public static final int BlockReadCacheSize      = intValue("BlockReadCacheSize", 5*1000);
 
+    /** Kind of read block cache (32 bit systems only). */
+    public static final BlockCacheMode BlockCacheMode = SystemIndex.blockCacheMode;
+
+    /**
+     * Whether the leaf blocks of new B+Tree indexes are written compressed.
+     * Compressed indexes are smaller but every leaf read decodes the block into a
+     * heap buffer of up to 4 times the block size.
+     */
+    public static final boolean CompressIndexLeaves = false;
+
     // ---- Misc
 
 //    /** Number of adds/deletes between calls to sync (-ve to disable) */
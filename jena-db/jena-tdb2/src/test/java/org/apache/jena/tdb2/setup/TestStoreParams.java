@@ -20,6 +20,7 @@ package org.apache.jena.tdb2.setup;
 
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.dboe.base.block.BlockCacheMode;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.params.StoreParams;
@@ -131,6 +132,67 @@ public class TestStoreParams {
 
     }
 
+    @Test public void store_params_23() {
+        StoreParams params1 = StoreParams.builder().build();
+        StoreParams params2 = StoreParams.builder().blockCacheMode(BlockCacheMode.concurrent).build();
+        assertFalse(params1.isSetBlockCacheMode());
+        assertFalse(StoreParams.sameValues(params1, params2));
+        StoreParams params3 = StoreParamsBuilder.modify(params1, params2);
+        assertTrue(params3.isSetBlockCacheMode());
+        assertEquals(BlockCacheMode.concurrent, params3.getBlockCacheMode());
+    }
+
+    @Test public void store_params_24() {
+        String xs = "{ \"tdb.block_cache_mode\": \"concurrent\" }";
+        JsonObject x = JSON.parse(xs);
+        StoreParams paramsExpected = StoreParams.builder().blockCacheMode(BlockCacheMode.concurrent).build();
+        StoreParams paramsActual = StoreParamsCodec.decode(x);
+        assertEqualsStoreParams(paramsExpected, paramsActual);
+        assertEqualsStoreParams(paramsExpected, roundTrip(paramsExpected));
+    }
+
+    @Test public void store_params_25() {
+        // Not written unless set.
+        JsonObject obj = StoreParamsCodec.encodeToJson(StoreParams.getDftStoreParams());
+        assertFalse(obj.hasKey("tdb.block_cache_mode"));
+    }
+
+    @Test public void store_params_26() {
+        String xs = "{ \"tdb.compress_index_leaves\": true }";
+        JsonObject x = JSON.parse(xs);
+        StoreParams paramsExpected = StoreParams.builder().compressIndexLeaves(true).build();
+        StoreParams paramsActual = StoreParamsCodec.decode(x);
+        assertTrue(paramsActual.getCompressIndexLeaves());
+        assertEqualsStoreParams(paramsExpected, paramsActual);
+        assertEqualsStoreParams(paramsExpected, roundTrip(paramsExpected));
+    }
+
+    @Test public void store_params_27() {
+        // Layout, not changed by dynamic parameters.
+        StoreParams params1 = StoreParams.builder().compressIndexLeaves(true).build();
+        StoreParams params2 = StoreParams.builder().build();
+        assertFalse(params2.getCompressIndexLeaves());
+        assertFalse(StoreParams.sameValues(params1, params2));
+        StoreParams params3 = StoreParamsBuilder.modify(params1, params2);
+        assertTrue(params3.getCompressIndexLeaves());
+        // Not written unless set.
+        JsonObject obj = StoreParamsCodec.encodeToJson(params2);
+        assertFalse(obj.hasKey("tdb.compress_index_leaves"));
+    }
+
+    @Test public void store_params_28() {
+        String xs = "{ \"tdb.node_bloom_filter\": true }";
+        JsonObject x = JSON.parse(xs);
+        StoreParams paramsExpected = StoreParams.builder().nodeBloomFilter(true).build();
+        StoreParams paramsActual = StoreParamsCodec.decode(x);
+        assertTrue(paramsActual.getNodeBloomFilter());
+        assertEqualsStoreParams(paramsExpected, paramsActual);
+        assertEqualsStoreParams(paramsExpected, roundTrip(paramsExpected));
+        // Not written unless set.
+        JsonObject obj = StoreParamsCodec.encodeToJson(StoreParams.getDftStoreParams());
+        assertFalse(obj.hasKey("tdb.node_bloom_filter"));
+    }
+
 
     // --------
 
@@ -31,9 +31,13 @@ import java.nio.file.Paths;
 
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb2.ConfigTest;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.params.StoreParamsCodec;
@@ -158,6 +162,28 @@ public class TestStoreParamsCreate {
         assertEquals(pApp.getBlockSize(), pDB.getBlockSize());
     }
 
+    // Compressed index leaves: layout, kept from creation.
+    @Test public void params_reconnect_04() {
+        StoreParams pCompress = StoreParams.builder(pApp).compressIndexLeaves(true).build();
+        // Create.
+        DatasetGraph dsg = StoreConnection.connectCreate(loc, pCompress).getDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 2000 ; i++ )
+                dsg.add(SSE.parseQuad("(:g :s"+(i%10)+" :p "+i+")"));
+        });
+        // Drop.
+        expel();
+        // Reconnect
+        StoreConnection.connectCreate(loc, pApp);
+        StoreParams pDB = StoreConnection.connectExisting(loc).getDatasetGraphTDB().getStoreParams();
+        assertTrue(pDB.getCompressIndexLeaves());
+
+        DatasetGraph dsg2 = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(2000, Iter.count(dsg2.find()));
+            assertTrue(dsg2.contains(SSE.parseQuad("(:g :s3 :p 1993)")));
+        });
+    }
 
 //    // Custom then modified.
 //    @Test public void params_reconnect_03() {
@@ -25,6 +25,13 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
     TestSolverTDB.class
     , TestStats.class
+    , TestPathTDB.class
+    , TestMergeJoinTDB.class
+    , TestIndexOrderTDB.class
+    , TestAggregateTDB.class
+    , TestJoinFilterTDB.class
+    , TestHashExistsTDB.class
+    , TestSortTDB.class
 })
 
 public class TS_SolverTDB
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpGroup;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.junit.TL;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** COUNT aggregates evaluated on the indexes, checked against the general engine. */
+public class TestAggregateTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIXES);
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            sb.append(String.format(":e%d :p %d .\n", i, i % 7));
+            sb.append(String.format(":e%d :q :c%d .\n", i, i % 3));
+            if ( i % 2 == 0 )
+                sb.append(String.format(":e%d :q :d%d .\n", i, i % 5));
+            if ( i % 5 == 0 )
+                sb.append(String.format(":e%d :self :e%d .\n", i, i));
+            if ( i % 4 == 0 )
+                sb.append(String.format(":g { :e%d :p %d }\n", i, i % 3));
+        }
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void aggregate_plan_01() { testPlan("(group () ((?.0 (count))) (bgp (?s :p ?o)))", true); }
+    @Test public void aggregate_plan_02() { testPlan("(group (?p) ((?.0 (count))) (bgp (?s ?p ?o)))", true); }
+    @Test public void aggregate_plan_03() { testPlan("(group () ((?.0 (count distinct ?o))) (bgp (?s :q ?o)))", true); }
+    @Test public void aggregate_plan_04() { testPlan("(group (?p) ((?.0 (count distinct ?o))) (bgp (?s ?p ?o)))", true); }
+    @Test public void aggregate_plan_05() { testPlan("(group (?p) ((?.0 (count ?o)) (?.1 (count distinct))) (bgp (?s ?p ?o)))", true); }
+    // Two patterns.
+    @Test public void aggregate_plan_10() { testPlan("(group () ((?.0 (count))) (bgp (?s :p ?o) (?s :q ?x)))", false); }
+    // Not a count.
+    @Test public void aggregate_plan_11() { testPlan("(group () ((?.0 (sum ?o))) (bgp (?s :p ?o)))", false); }
+    // Repeated variable.
+    @Test public void aggregate_plan_12() { testPlan("(group () ((?.0 (count))) (bgp (?s :self ?s)))", false); }
+    // Two distinct variables.
+    @Test public void aggregate_plan_13() { testPlan("(group () ((?.0 (count distinct ?s)) (?.1 (count distinct ?o))) (bgp (?s :q ?o)))", false); }
+    // Grouping by an expression.
+    @Test public void aggregate_plan_14() { testPlan("(group ((?x (str ?p))) ((?.0 (count))) (bgp (?s ?p ?o)))", false); }
+    // No index with ?s after :q.
+    @Test public void aggregate_plan_15() { testPlan("(group () ((?.0 (count distinct ?s))) (bgp (?s :q ?o)))", false); }
+
+    @Test public void aggregate_01() { test("SELECT (COUNT(*) AS ?c) { ?s :p ?o }"); }
+    @Test public void aggregate_02() { test("SELECT (COUNT(*) AS ?c) { ?s ?p ?o }"); }
+    @Test public void aggregate_03() { test("SELECT (COUNT(?s) AS ?c) { ?s :q :c1 }"); }
+    @Test public void aggregate_04() { test("SELECT (COUNT(DISTINCT ?s) AS ?c) { ?s :q ?o }"); }
+    @Test public void aggregate_05() { test("SELECT (COUNT(DISTINCT ?o) AS ?c) { ?s :q ?o }"); }
+    @Test public void aggregate_06() { test("SELECT ?p (COUNT(*) AS ?c) { ?s ?p ?o } GROUP BY ?p"); }
+    @Test public void aggregate_07() { test("SELECT ?p (COUNT(DISTINCT ?o) AS ?c) { ?s ?p ?o } GROUP BY ?p"); }
+    @Test public void aggregate_08() { test("SELECT ?o (COUNT(*) AS ?c) (COUNT(DISTINCT ?o) AS ?d) { ?s :q ?o } GROUP BY ?o"); }
+    @Test public void aggregate_09() { test("SELECT (COUNT(*) AS ?c) { ?s :unknown ?o }"); }
+    @Test public void aggregate_10() { test("SELECT ?o (COUNT(*) AS ?c) { ?s :unknown ?o } GROUP BY ?o"); }
+    @Test public void aggregate_11() { test("SELECT (COUNT(*) AS ?c) { GRAPH :g { ?s :p ?o } }"); }
+    @Test public void aggregate_12() { test("SELECT ?g (COUNT(*) AS ?c) { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g"); }
+    @Test public void aggregate_13() { test("SELECT (COUNT(DISTINCT *) AS ?c) { ?s :q ?o }"); }
+    @Test public void aggregate_14() { test("SELECT ?p (COUNT(*) AS ?c) { ?s ?p ?o } GROUP BY ?p HAVING (COUNT(*) > 100)"); }
+    @Test public void aggregate_15() { test("SELECT (COUNT(*) AS ?c) { :e1 :p 1 }"); }
+
+    // Evaluated as usual.
+    @Test public void aggregate_20() { test("SELECT (COUNT(*) AS ?c) { ?s :self ?s }"); }
+    @Test public void aggregate_21() { test("SELECT (SUM(?o) AS ?c) { ?s :p ?o }"); }
+    @Test public void aggregate_22() { test("SELECT (COUNT(*) AS ?c) { ?s :p ?o FILTER(?o > 3) }"); }
+    @Test public void aggregate_23() { test("SELECT ?s (COUNT(*) AS ?c) { ?s :q ?o } GROUP BY ?s"); }
+    @Test public void aggregate_24() { test("SELECT (COUNT(*) AS ?c) { ?s :p ?o ; :q ?x }"); }
+    @Test public void aggregate_25() { test("SELECT ?p (COUNT(DISTINCT ?s) AS ?c) { ?s ?p ?o } GROUP BY ?p"); }
+
+    @Test public void aggregate_disabled() {
+        Query query = QueryFactory.create(PREFIXES + "SELECT (COUNT(*) AS ?c) { ?s :p ?o }");
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                qExec.getContext().set(TDB2.symAggregatePushdown, false);
+                assertEquals(100, qExec.execSelect().next().getLiteral("c").getInt());
+            }
+        });
+    }
+
+    private static void testPlan(String opStr, boolean onIndexes) {
+        OpGroup opGroup = (OpGroup)SSE.parseOp(opStr);
+        OpBGP opBGP = (OpBGP)opGroup.getSubOp();
+        Txn.executeRead(dsgTDB, ()->{
+            DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dsgTDB);
+            ExecutionContext execCxt = new ExecutionContext(dsg.getContext(), dsg.getDefaultGraphTDB(), dsg, null);
+            QueryIterator input = QueryIterRoot.create(execCxt);
+            QueryIterator qIter = AggregateTDB.execute(dsg.getTripleTable().getNodeTupleTable(), (Node)null, opBGP.getPattern(),
+                                                       opGroup.getGroupVars(), opGroup.getAggregators(), input, null, execCxt);
+            if ( onIndexes ) {
+                assertNotNull(qIter);
+                qIter.close();
+            } else
+                assertNull(qIter);
+        });
+    }
+
+    private static void test(String queryString) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.join.HashJoinStats;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.junit.TL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** FILTER EXISTS, NOT EXISTS and MINUS as hash joins on TDB2, checked against the general engine. */
+public class TestHashExistsTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIXES);
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            sb.append(String.format(":s%d :p %d .\n", i, i));
+            if ( i % 3 == 0 )
+                sb.append(String.format(":s%d :label \"s%d\" .\n", i, i));
+            if ( i % 7 == 0 )
+                sb.append(String.format(":g { :s%d :label \"g%d\" }\n", i, i));
+        }
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void hashExists_01() { test("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l } }", 1); }
+    @Test public void hashExists_02() { test("SELECT * { ?s :p ?o FILTER EXISTS { ?s :label ?l } }", 1); }
+    @Test public void hashExists_03() { test("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l } FILTER(?o < 50) }", 1); }
+    @Test public void hashExists_04() { test("SELECT * { ?s :p ?o FILTER NOT EXISTS { GRAPH ?g { ?s :label ?l } } }", 1); }
+    @Test public void hashExists_05() { test("SELECT * { ?s :p ?o MINUS { ?s :label ?l } }", 1); }
+    @Test public void hashExists_06() { test("SELECT * { GRAPH :g { ?s :label ?o FILTER NOT EXISTS { ?s :label 'g7' } } }", 1); }
+    // By substitution.
+    @Test public void hashExists_10() { test("SELECT * { ?s :p ?o FILTER NOT EXISTS { ?s :label ?l FILTER(?o > 10) } }", 0); }
+
+    private static void test(String queryString, long hashJoins) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            qExec.getContext().set(ARQ.hashExistsThreshold, -1);
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        HashJoinStats stats = new HashJoinStats();
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                qExec.getContext().set(ARQ.hashExistsThreshold, 0);
+                qExec.getContext().set(HashJoinStats.symbol, stats);
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+        assertEquals(hashJoins, stats.getJoins());
+    }
+}
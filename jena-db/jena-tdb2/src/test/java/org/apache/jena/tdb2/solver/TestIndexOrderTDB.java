@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.junit.TL;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** ORDER BY answered by reading an index in order, checked against the general engine. */
+public class TestIndexOrderTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIXES);
+        for ( int i = 0 ; i < 200 ; i++ ) {
+            // A permutation of 0..199.
+            sb.append(String.format(":e%d :n %d .\n", i, (i*7) % 200));
+            sb.append(String.format(":e%d :date \"2020-%02d-%02dT%02d:00:00Z\"^^<http://www.w3.org/2001/XMLSchema#dateTime> .\n",
+                                    i, i%12+1, i%28+1, i%24));
+            sb.append(String.format(":e%d :neg %d .\n", i, -((i*3) % 200) - 1));
+            sb.append(String.format(":e%d :m %d .\n", i, i-100));
+            sb.append(String.format(":e%d :dec %d.%d .\n", i, i/10, i%10));
+            if ( i % 2 == 0 )
+                sb.append(String.format(":e%d a :Even .\n", i));
+            if ( i % 10 == 0 )
+                sb.append(String.format(":e%d :mixed \"s%d\" .\n", i, i));
+            else
+                sb.append(String.format(":e%d :mixed %d .\n", i, i));
+            String tz = ( i % 2 == 0 ) ? "Z" : "+01:00";
+            sb.append(String.format(":e%d :tz \"2020-01-01T%02d:00:00%s\"^^<http://www.w3.org/2001/XMLSchema#dateTime> .\n", i, i%24, tz));
+            if ( i % 4 == 0 )
+                sb.append(String.format(":g { :e%d :n %d }\n", i, (i*7) % 200));
+        }
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void indexOrder_plan_01() { testPlan("(?s :n ?v)", true); }
+    @Test public void indexOrder_plan_02() { testPlan("(?s :date ?v)", true); }
+    @Test public void indexOrder_plan_03() { testPlan("(?s :neg ?v)", true); }
+    @Test public void indexOrder_plan_04() { testPlan("(?s rdf:type :Even) (?s :n ?v)", true); }
+    // Empty range.
+    @Test public void indexOrder_plan_05() { testPlan("(?s :unknown ?v)", true); }
+    // Both signs.
+    @Test public void indexOrder_plan_10() { testPlan("(?s :m ?v)", false); }
+    // Decimals do not sort by value.
+    @Test public void indexOrder_plan_11() { testPlan("(?s :dec ?v)", false); }
+    // Strings are in the node table.
+    @Test public void indexOrder_plan_12() { testPlan("(?s :mixed ?v)", false); }
+    // Different timezones.
+    @Test public void indexOrder_plan_13() { testPlan("(?s :tz ?v)", false); }
+    // No index with ?v after the fixed terms.
+    @Test public void indexOrder_plan_14() { testPlan("(?v :n ?x)", false); }
+
+    @Test public void indexOrder_01() { test("SELECT ?v { ?s :n ?v } ORDER BY ?v"); }
+    @Test public void indexOrder_02() { test("SELECT ?v { ?s :n ?v } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_03() { test("SELECT ?v { ?s :n ?v } ORDER BY ?v LIMIT 10 OFFSET 20"); }
+    @Test public void indexOrder_04() { test("SELECT ?s ?v { ?s :n ?v FILTER(?v > 50) } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_05() { test("SELECT ?s ?v { ?s a :Even . ?s :n ?v } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_06() { test("SELECT ?v { ?s :date ?v } ORDER BY ?v LIMIT 15"); }
+    @Test public void indexOrder_07() { test("SELECT ?s ?v { ?s :neg ?v } ORDER BY ASC(?v) LIMIT 10"); }
+    @Test public void indexOrder_08() { test("SELECT ?v ?d { ?s :n ?v ; :dec ?d } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_09() { test("SELECT ?v { GRAPH :g { ?s :n ?v } } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_10() { test("SELECT ?v { ?s :unknown ?v } ORDER BY ?v LIMIT 10"); }
+
+    // Sorted as usual.
+    @Test public void indexOrder_20() { test("SELECT ?v { ?s :n ?v } ORDER BY DESC(?v) LIMIT 10"); }
+    @Test public void indexOrder_21() { test("SELECT ?v { ?s :m ?v } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_22() { test("SELECT ?v { ?s :dec ?v } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_23() { test("SELECT ?v { ?s :mixed ?v } ORDER BY ?v LIMIT 10"); }
+    @Test public void indexOrder_24() { test("SELECT ?v { ?s :tz ?v } ORDER BY ?v"); }
+    @Test public void indexOrder_25() { test("SELECT ?v { VALUES ?s { :e1 :e2 :e3 } ?s :n ?v } ORDER BY ?v"); }
+    @Test public void indexOrder_26() { test("SELECT ?s ?v { ?s :n ?v } ORDER BY ?v ?s LIMIT 10"); }
+
+    @Test public void indexOrder_disabled() {
+        Query query = QueryFactory.create(PREFIXES + "SELECT ?v { ?s :n ?v } ORDER BY ?v LIMIT 5");
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                qExec.getContext().set(TDB2.symIndexOrder, false);
+                assertEquals(5, ResultSetFormatter.consume(qExec.execSelect()));
+            }
+        });
+    }
+
+    private static void testPlan(String bgpStr, boolean inOrder) {
+        BasicPattern bgp = SSE.parseBGP("(bgp "+bgpStr+")");
+        Txn.executeRead(dsgTDB, ()->{
+            DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dsgTDB);
+            ExecutionContext execCxt = new ExecutionContext(dsg.getContext(), dsg.getDefaultGraphTDB(), dsg, null);
+            QueryIterator input = QueryIterRoot.create(execCxt);
+            QueryIterator qIter = IndexOrderTDB.execute(dsg.getTripleTable().getNodeTupleTable(), (Node)null, bgp, Var.alloc("v"),
+                                                        input, null, execCxt);
+            if ( inOrder ) {
+                assertNotNull(qIter);
+                qIter.close();
+            } else
+                assertNull(qIter);
+        });
+    }
+
+    private static void test(String queryString) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTermAndOrder(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+    }
+}
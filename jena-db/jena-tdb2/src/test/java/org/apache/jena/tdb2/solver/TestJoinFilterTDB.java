@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.join.HashJoinStats;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.junit.TL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runtime join filters: the scans of the streamed side of a hash join drop tuples
+ * that can not join, checked against the general engine.
+ */
+public class TestJoinFilterTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    private static final int N = 2000;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIXES);
+        for ( int i = 0 ; i < N ; i++ ) {
+            sb.append(String.format(":e%d :big %d .\n", i, i));
+            sb.append(String.format(":e%d :label \"e%d\" .\n", i, i));
+            sb.append(String.format(":g { :e%d :big %d }\n", i, i));
+            if ( i % 100 == 0 )
+                sb.append(String.format(":e%d :small %d .\n", i, i/100));
+        }
+        // Join values that are not in the database.
+        sb.append(":x1 :small :unknown .\n");
+        sb.append(":unknown :small 99 .\n");
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void joinFilter_01() {
+        test("SELECT * { { ?s :small ?x } { ?s :big ?v } }", true);
+    }
+
+    @Test public void joinFilter_02() {
+        // Two patterns on the streamed side.
+        test("SELECT * { { ?s :small ?x } { ?s :big ?v ; :label ?l } }", true);
+    }
+
+    @Test public void joinFilter_03() {
+        test("SELECT * { { ?s :small ?x } { ?s :big ?v FILTER(?v >= 0) } }", true);
+    }
+
+    @Test public void joinFilter_04() {
+        test("SELECT * { { ?s :small ?x } { { ?s :big ?v } UNION { ?s :label ?v } } }", true);
+    }
+
+    @Test public void joinFilter_05() {
+        test("SELECT * { { ?s :small ?x } { GRAPH ?g { ?s :big ?v } } }", true);
+    }
+
+    @Test public void joinFilter_06() {
+        // Join on the object.
+        test("SELECT * { { :e300 :big ?v } { ?s :big ?v } }", true);
+    }
+
+    @Test public void joinFilter_07() {
+        // Nested joins.
+        test("SELECT * { { ?s :small ?x } { { ?s :big ?v } { ?s :label ?l } } }", true);
+    }
+
+    @Test public void joinFilter_10() {
+        // Not below OPTIONAL.
+        test("SELECT * { { ?s :small ?x } { ?t :big ?v OPTIONAL { ?s :big ?v } } }", false);
+    }
+
+    @Test public void joinFilter_11() {
+        // Not below EXISTS.
+        test("SELECT * { { ?s :small ?x } { ?s :big ?v FILTER EXISTS { ?s :label ?l } } }", false);
+    }
+
+    @Test public void joinFilter_12() {
+        // Not below a sub-query.
+        test("SELECT * { { ?s :small ?x } { SELECT ?s ?v { ?s :big ?v } LIMIT 10000 } }", false);
+    }
+
+    @Test public void joinFilter_13() {
+        // Some rows of the left side do not bind the join variable.
+        test("SELECT * { { { ?s :small ?x } UNION { :e1 :big ?x } } { ?s :big ?v } }", false);
+    }
+
+    private static void test(String queryString, boolean filtered) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        long probeRowsWith = exec(query, expected, true);
+        long probeRowsWithout = exec(query, expected, false);
+        if ( filtered )
+            assertTrue("Not filtered: "+probeRowsWith+" / "+probeRowsWithout, probeRowsWith * 10 < probeRowsWithout);
+        else
+            assertEquals(probeRowsWithout, probeRowsWith);
+    }
+
+    /** Execute, check the results, and return the number of rows streamed into hash joins. */
+    private static long exec(Query query, ResultSetRewindable expected, boolean joinFilter) {
+        HashJoinStats stats = new HashJoinStats();
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                // Keep the joins as written.
+                qExec.getContext().set(ARQ.optimization, false);
+                qExec.getContext().set(ARQ.runtimeJoinFilter, joinFilter);
+                qExec.getContext().set(HashJoinStats.symbol, stats);
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                expected.reset();
+                boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+        assertTrue(stats.getJoins() > 0);
+        return stats.getProbeRows();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.junit.TL;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Merge joins of triple patterns, checked against the general engine. */
+public class TestMergeJoinTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        StringBuilder sb = new StringBuilder(PREFIXES);
+        // Overlapping sets of subjects, with long runs that do not match.
+        for ( int i = 0 ; i < 300 ; i++ ) {
+            if ( i % 2 == 0 )
+                sb.append(String.format(":s%d :p :o .\n", i));
+            if ( i % 3 == 0 )
+                sb.append(String.format(":s%d :q :o .\n", i));
+            if ( i % 50 == 0 || i == 299 )
+                sb.append(String.format(":s%d :r :o .\n", i));
+            if ( i % 7 == 0 ) {
+                sb.append(String.format(":s%d :v %d .\n", i, i));
+                sb.append(String.format(":s%d :v :x%d .\n", i, i % 4));
+            }
+            if ( i % 5 == 0 )
+                sb.append(String.format(":a :link :s%d .\n", i));
+            if ( i % 10 == 0 )
+                sb.append(String.format(":g1 { :s%d :p :o . :s%d :q :o }\n", i, 2*i));
+        }
+        sb.append(":b :link :s0 . :b :link :s30 . :b :link :s31 .\n");
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(sb.toString()).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void mergeJoin_plan_01() { testPlan("(?s :p :o) (?s :q :o)", "s", 2); }
+    @Test public void mergeJoin_plan_02() { testPlan("(?s :p :o) (?s :q :o) (?s :r :o)", "s", 3); }
+    @Test public void mergeJoin_plan_03() { testPlan("(:a :link ?s) (?s :p :o)", "s", 2); }
+    @Test public void mergeJoin_plan_04() { testPlan("(?s :p :o) (?s :v ?v) (?s :q :o)", "s", 2); }
+    // No index gives ?s in order for (?s :v ?v).
+    @Test public void mergeJoin_plan_05() { testPlan("(?s :v ?v) (?s :p :o)", null, 0); }
+    @Test public void mergeJoin_plan_06() { testPlan("(?s :p :o)", null, 0); }
+    @Test public void mergeJoin_plan_07() { testPlan("(?s :p ?o) (?o :q ?z)", null, 0); }
+
+    @Test public void mergeJoin_01() { test("SELECT * { ?s :p :o . ?s :q :o }"); }
+    @Test public void mergeJoin_02() { test("SELECT * { ?s :p :o . ?s :q :o . ?s :r :o }"); }
+    @Test public void mergeJoin_03() { test("SELECT * { ?s :r :o . ?s :p :o }"); }
+    @Test public void mergeJoin_04() { test("SELECT * { :a :link ?s . ?s :q :o }"); }
+    @Test public void mergeJoin_05() { test("SELECT * { :a :link ?s . :b :link ?s }"); }
+    @Test public void mergeJoin_06() { test("SELECT * { ?s :p :o . ?s :q :o . ?s :v ?v }"); }
+    @Test public void mergeJoin_07() { test("SELECT * { ?s :p ?o . ?s :q ?o }"); }
+    @Test public void mergeJoin_08() { test("SELECT * { ?s :p :o . ?s :unknown :o }"); }
+    @Test public void mergeJoin_09() { test("SELECT * { ?s :p :o . ?s :q :o FILTER(?s != :s6) }"); }
+    @Test public void mergeJoin_10() { test("SELECT (count(*) AS ?c) { ?s :p :o . ?s :q :o }"); }
+    // Duplicate groups: many solutions for each value of ?v.
+    @Test public void mergeJoin_11() { test("SELECT * { :s0 :v ?v . :s28 :v ?v }"); }
+
+    // Input bindings.
+    @Test public void mergeJoin_20() { test("SELECT * { VALUES ?s { :s6 :s7 :unknown } ?s :p :o . ?s :q :o }"); }
+    @Test public void mergeJoin_21() { test("SELECT * { VALUES ?x { :a :b } ?x :link ?s . ?s :p :o }"); }
+    @Test public void mergeJoin_22() { test("SELECT * { ?s :r :o OPTIONAL { ?s :p :o . ?s :q :o } }"); }
+
+    // Named graphs.
+    @Test public void mergeJoin_30() { test("SELECT * { GRAPH :g1 { ?s :p :o . ?s :q :o } }"); }
+    @Test public void mergeJoin_31() { test("SELECT * { GRAPH ?g { ?s :p :o . ?s :q :o } }"); }
+    @Test public void mergeJoin_32() { test("SELECT * { GRAPH <urn:x-arq:UnionGraph> { ?s :p :o . ?s :q :o } }"); }
+
+    @Test public void mergeJoin_disabled() {
+        Query query = QueryFactory.create(PREFIXES + "SELECT * { ?s :p :o . ?s :q :o }");
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                qExec.getContext().set(TDB2.symMergeJoin, false);
+                assertEquals(50, ResultSetFormatter.consume(qExec.execSelect()));
+            }
+        });
+    }
+
+    private static void testPlan(String bgpStr, String joinVar, int size) {
+        BasicPattern bgp = SSE.parseBGP("(bgp "+bgpStr+")");
+        List<Triple> triples = bgp.getList();
+        List<Tuple<Node>> tuples = new ArrayList<>();
+        for ( Triple t : triples )
+            tuples.add(TupleFactory.create3(t.getSubject(), t.getPredicate(), t.getObject()));
+        Txn.executeRead(dsgTDB, ()->{
+            DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dsgTDB);
+            ExecutionContext execCxt = new ExecutionContext(dsg.getContext(), dsg.getDefaultGraphTDB(), dsg, null);
+            MergeJoinTDB mergeJoin = MergeJoinTDB.plan(dsg.getTripleTable().getNodeTupleTable(), triples, tuples, false, execCxt);
+            if ( joinVar == null ) {
+                assertNull(mergeJoin);
+                return;
+            }
+            assertNotNull(mergeJoin);
+            assertEquals(joinVar, mergeJoin.getJoinVar().getVarName());
+            int count = 0;
+            for ( int i = 0 ; i < triples.size() ; i++ ) {
+                if ( mergeJoin.covers(i) )
+                    count++;
+            }
+            assertEquals(size, count);
+        });
+    }
+
+    private static void test(String queryString) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.path.PathParser;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.junit.TL;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.GraphTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Transitive paths evaluated on NodeIds, checked against the general path engine. */
+public class TestPathTDB {
+    private static String PREFIXES = "PREFIX : <http://example/> PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n";
+    private static String DATA = PREFIXES + String.join("\n"
+        , ":a :p :b . :b :p :c . :c :p :a . :c :p :d ."
+        , ":d :q :e . :e :p :f ."
+        , ":x :p 1 . :x :p \"2\"^^xsd:int ."
+        , ":g1 { :a :p :z . :z :p :w . }"
+        , ":g2 { :w :p :a . :a :p :b . }"
+        );
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        dsgMem = DatasetGraphFactory.create();
+        RDFParser.fromString(DATA).lang(Lang.TRIG).parse(dsgMem);
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void pathTDB_create_01() { testCreate(":p*", true); }
+    @Test public void pathTDB_create_02() { testCreate(":p+", true); }
+    @Test public void pathTDB_create_03() { testCreate("^:p*", true); }
+    @Test public void pathTDB_create_04() { testCreate("(^:p)+", true); }
+    @Test public void pathTDB_create_05() { testCreate(":p?", false); }
+    @Test public void pathTDB_create_06() { testCreate("(:p/:q)*", false); }
+    @Test public void pathTDB_create_07() { testCreate("^((^:p)+)", true); }
+
+    @Test public void pathTDB_01() { test("SELECT * { :a :p* ?x }"); }
+    @Test public void pathTDB_02() { test("SELECT * { :a :p+ ?x }"); }
+    @Test public void pathTDB_03() { test("SELECT * { ?x :p* :a }"); }
+    @Test public void pathTDB_04() { test("SELECT * { ?x :p+ :d }"); }
+    @Test public void pathTDB_05() { test("SELECT * { :a ^:p* ?x }"); }
+    @Test public void pathTDB_06() { test("SELECT * { :a (^:p)+ ?x }"); }
+    @Test public void pathTDB_07() { test("SELECT * { :d :p+ ?x }"); }
+    @Test public void pathTDB_08() { test("SELECT * { :a ^((^:p)+) ?x }"); }
+
+    // Both ends unbound.
+    @Test public void pathTDB_10() { test("SELECT * { ?x :p+ ?y }"); }
+    @Test public void pathTDB_11() { test("SELECT * { ?x :p* ?y }"); }
+    @Test public void pathTDB_12() { test("SELECT * { ?x (^:p)+ ?y }"); }
+    @Test public void pathTDB_13() { test("SELECT * { ?x :p+ ?x }"); }
+    @Test public void pathTDB_14() { test("SELECT * { ?x :p* ?x }"); }
+
+    // Both ends bound.
+    @Test public void pathTDB_20() { test("SELECT * { :a :p+ :d }"); }
+    @Test public void pathTDB_21() { test("SELECT * { :d :p+ :a }"); }
+    @Test public void pathTDB_22() { test("SELECT * { :a :p+ :a }"); }
+    @Test public void pathTDB_23() { test("SELECT * { :d :p* :d }"); }
+    @Test public void pathTDB_24() { test("SELECT * { :d :p+ :d }"); }
+    @Test public void pathTDB_25() { test("SELECT * { :d ^:p* :a }"); }
+    @Test public void pathTDB_26() { test("SELECT * { :x :p+ 1 }"); }
+    @Test public void pathTDB_27() { test("SELECT * { :x :p+ \"01\"^^xsd:integer }"); }
+    @Test public void pathTDB_28() { test("SELECT * { :x :p+ 2 }"); }
+
+    // Not in the data.
+    @Test public void pathTDB_30() { test("SELECT * { :unknown :p* ?x }"); }
+    @Test public void pathTDB_31() { test("SELECT * { :unknown :p+ ?x }"); }
+    @Test public void pathTDB_32() { test("SELECT * { :unknown :p* :unknown }"); }
+    @Test public void pathTDB_33() { test("SELECT * { :a :unknown* ?x }"); }
+    @Test public void pathTDB_34() { test("SELECT * { ?x :unknown* ?y }"); }
+    @Test public void pathTDB_35() { test("SELECT * { 1 :p* ?x }"); }
+
+    // Input bindings.
+    @Test public void pathTDB_40() { test("SELECT * { ?s :q ?o . ?o :p* ?x }"); }
+    @Test public void pathTDB_41() { test("SELECT * { VALUES ?s { :a :d :unknown } ?s :p+ ?x }"); }
+
+    // Named graphs.
+    @Test public void pathTDB_50() { test("SELECT * { GRAPH :g1 { :a :p* ?x } }"); }
+    @Test public void pathTDB_51() { test("SELECT * { GRAPH ?g { :a :p+ ?x } }"); }
+    @Test public void pathTDB_52() { test("SELECT * { GRAPH ?g { ?x :p+ ?y } }"); }
+    @Test public void pathTDB_53() { test("SELECT * { GRAPH <"+Quad.unionGraph.getURI()+"> { :a :p+ ?x } }"); }
+    @Test public void pathTDB_54() { test("SELECT * { GRAPH <"+Quad.unionGraph.getURI()+"> { ?x :p* ?y } }"); }
+    @Test public void pathTDB_55() { test("SELECT * { GRAPH :g1 { :z :p* :b } }"); }
+    @Test public void pathTDB_56() { test("SELECT * { GRAPH :unknown { :a :p* ?x } }"); }
+
+    private static void testCreate(String pathStr, boolean expected) {
+        TriplePath triplePath = new TriplePath(SSE.parseNode("?s"), PathParser.parse(pathStr, SSE.getPrefixMapRead()), SSE.parseNode("?o"));
+        Txn.executeRead(dsgTDB, ()->{
+            DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dsgTDB);
+            ExecutionContext execCxt = new ExecutionContext(dsg.getContext(), dsg.getDefaultGraphTDB(), dsg, null);
+            PathTDB pathTDB = PathTDB.create((GraphTDB)dsg.getDefaultGraphTDB(), triplePath, execCxt);
+            if ( expected )
+                assertNotNull(pathTDB);
+            else
+                assertNull(pathTDB);
+        });
+    }
+
+    private static void test(String queryString) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTerm(expected, actual);
+                if ( ! b ) {
+                    expected.reset();
+                    actual.reset();
+                    ResultSetFormatter.out(expected);
+                    ResultSetFormatter.out(actual);
+                }
+                assertTrue(b);
+            }
+        });
+    }
+
+    @Test public void nodeIdSet_01() {
+        NodeIdSet set = new NodeIdSet();
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        for ( long i = 1 ; i < 1000 ; i++ )
+            assertTrue(set.add(i << 8));
+        for ( long i = 1 ; i < 1000 ; i++ )
+            assertFalse(set.add(i << 8));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(999 << 8));
+        assertFalse(set.contains(1000 << 8));
+        assertFalse(set.contains(1));
+        assertTrue(set.size() == 1000);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.junit.TL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** ORDER BY on TDB2, in a read transaction, checked against the general engine. */
+public class TestSortTDB {
+    private static String PREFIXES = "PREFIX : <http://example/>\n";
+    private static final int N = 20000;
+
+    private static DatasetGraph dsgTDB;
+    private static DatasetGraph dsgMem;
+
+    @BeforeClass public static void beforeClass() {
+        dsgMem = DatasetGraphFactory.create();
+        Node p = NodeFactory.createURI("http://example/p");
+        for ( int i = 0 ; i < N ; i++ ) {
+            // Many bindings with equal sort keys.
+            Node s = NodeFactory.createURI("http://example/s"+i);
+            dsgMem.getDefaultGraph().add(s, p, NodeFactory.createLiteral(Integer.toString(i % 3)));
+        }
+        dsgTDB = TL.createTestDatasetGraphMem();
+        Txn.executeWrite(dsgTDB, ()->dsgTDB.addAll(dsgMem));
+    }
+
+    @AfterClass public static void afterClass() {
+        TL.expel(dsgTDB);
+    }
+
+    @Test public void sort_01() { test("SELECT * { ?s :p ?o } ORDER BY ?o", -1); }
+    @Test public void sort_02() { test("SELECT * { ?s :p ?o } ORDER BY DESC(?o)", -1); }
+    // Spill to disk.
+    @Test public void sort_03() { test("SELECT * { ?s :p ?o } ORDER BY ?o", N/3); }
+
+    private static void test(String queryString, int threshold) {
+        Query query = QueryFactory.create(PREFIXES + queryString);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgMem)) ) {
+            qExec.getContext().set(ARQ.parallelSort, false);
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        assertEquals(N, expected.size());
+        Txn.executeRead(dsgTDB, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsgTDB)) ) {
+                qExec.getContext().set(ARQ.parallelSort, true);
+                if ( threshold > 0 )
+                    qExec.getContext().set(ARQ.spillToDiskThreshold, threshold);
+                ResultSetRewindable actual = ResultSetFactory.makeRewindable(qExec.execSelect());
+                boolean b = ResultSetCompare.equalsByTermAndOrder(expected, actual);
+                assertTrue(b);
+            }
+        });
+    }
+}
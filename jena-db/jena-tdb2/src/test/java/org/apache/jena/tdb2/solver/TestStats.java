@@ -19,6 +19,8 @@
 package org.apache.jena.tdb2.solver;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.Iterator;
 
@@ -26,8 +28,11 @@ import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.system.Txn;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.engine.optimizer.CardinalityEstimator;
+import org.apache.jena.sparql.engine.optimizer.PredicateStats;
 import org.apache.jena.sparql.sse.SSE;
 import org.apache.jena.tdb2.junit.TL;
+import org.apache.jena.tdb2.solver.stats.Stats;
 import org.apache.jena.tdb2.solver.stats.StatsCollectorNodeId;
 import org.apache.jena.tdb2.solver.stats.StatsResults;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
@@ -116,4 +121,21 @@ public class TestStats {
         assertEquals(1, r.getPredicates().keySet().size());
     }
 
+    @Test
+    public void stats_05() {
+        StatsResults r = statsForGraph(null);
+        PredicateStats ps = r.getPredicateStats().get(NodeFactory.createURI("p"));
+        assertEquals(3, ps.getCount());
+        assertEquals(1, ps.getDistinctSubjects());
+        assertEquals(3, ps.getDistinctObjects());
+        assertNull(ps.getHistogram());
+    }
+
+    @Test
+    public void stats_06() {
+        StatsResults r = statsForGraph(null);
+        CardinalityEstimator estimator = CardinalityEstimator.create(Stats.format(r));
+        assertNotNull(estimator);
+        assertEquals(3, estimator.getStats(NodeFactory.createURI("p")).getDistinctObjects());
+    }
 }
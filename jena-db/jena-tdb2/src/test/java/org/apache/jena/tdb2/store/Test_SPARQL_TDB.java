@@ -20,7 +20,10 @@ package org.apache.jena.tdb2.store;
 
 import static org.junit.Assert.*;
 import org.apache.jena.atlas.lib.StrUtils;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.system.Txn;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.NodeFactory;
@@ -28,8 +31,10 @@ import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
 import org.apache.jena.tdb2.TDB2;
 import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.sys.TDBInternal;
 import org.apache.jena.update.*;
 import org.junit.Test;
 
@@ -202,6 +207,45 @@ public class Test_SPARQL_TDB
         });
     }
 
+    @Test public void sparql_update_groupCommit() throws InterruptedException
+    {
+        Dataset ds = create();
+        GroupCommit groupCommit = TDBInternal.getDatabaseContainer(ds.asDatasetGraph()).getGroupCommit();
+        Context cxt = ARQ.getContext().copy();
+        cxt.set(TDB2.symGroupCommit, true);
+        int N = 4;
+        int M = 25;
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            int x = i;
+            threads[i] = new Thread(()->{
+                try {
+                    for ( int j = 0 ; j < M ; j++ ) {
+                        UpdateRequest req = UpdateFactory.create("INSERT DATA { <http://example/s"+x+"> <http://example/p> "+j+" }");
+                        UpdateExecutionFactory.create(req, ds, cxt).execute();
+                    }
+                } catch (Throwable th) { errors.incrementAndGet(); }
+            });
+        }
+        for ( Thread t : threads )
+            t.start();
+        for ( Thread t : threads )
+            t.join();
+        assertEquals(0, errors.get());
+        assertEquals(N*M, groupCommit.getActionCount());
+        assertTrue(groupCommit.getBatchCount() <= N*M);
+        Txn.executeRead(ds, ()->assertEquals(N*M, count(ds)));
+
+        // In a transaction: not group commit.
+        Txn.executeWrite(ds, ()->{
+            UpdateRequest req = UpdateFactory.create("DELETE WHERE { ?s ?p 0 }");
+            UpdateExecutionFactory.create(req, ds, cxt).execute();
+        });
+        assertEquals(N*M, groupCommit.getActionCount());
+        Txn.executeRead(ds, ()->assertEquals(N*M-N, count(ds)));
+    }
+
     private int count(Dataset dataset)
     { return count(dataset, "SELECT * { ?s ?p ?o }"); }
 
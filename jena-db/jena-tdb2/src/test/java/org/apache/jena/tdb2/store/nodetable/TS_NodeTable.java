@@ -27,6 +27,7 @@ import org.junit.runners.Suite;
     , TestNodeTableStoredBase.class
     , TestNodeTableStored.class
     , TestNodeTable.class
+    , TestNodeTableFilter.class
 })
 public class TS_NodeTable
 {
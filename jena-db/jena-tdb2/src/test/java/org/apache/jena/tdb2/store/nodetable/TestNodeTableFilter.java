@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.sys.DatabaseConnection;
+import org.apache.jena.tdb2.sys.IOX;
+import org.apache.jena.tdb2.sys.StoreConnection;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestNodeTableFilter
+{
+    private Location dir = null;
+
+    @Before
+    public void before() {
+        String DIR = ConfigTest.getCleanDir();
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+        dir = Location.create(DIR);
+    }
+
+    @After
+    public void after() {
+        TDBInternal.reset();
+        FileUtils.deleteQuietly(IOX.asFile(dir));
+    }
+
+    private static DatasetGraph connect(Location location, boolean bloomFilter) {
+        StoreParams params = StoreParams.builder().nodeBloomFilter(bloomFilter).build();
+        return DatabaseConnection.connectCreate(location, params).getDatasetGraph();
+    }
+
+    private static NodeTableNative nodeTable(DatasetGraph dsg) {
+        return (NodeTableNative)TDBInternal.getDatasetGraphTDB(dsg)
+            .getTripleTable().getNodeTupleTable().getNodeTable().baseNodeTable();
+    }
+
+    private static Path filterFile(DatasetGraph dsg) {
+        DatasetGraphTDB dsgtdb = TDBInternal.getDatasetGraphTDB(dsg);
+        String name = dsgtdb.getStoreParams().getNodeTableBaseName();
+        return Paths.get(dsgtdb.getLocation().getPath(name, Names.extNodeFilter));
+    }
+
+    private static Node node(int i) {
+        return NodeFactory.createURI("http://example/n"+i);
+    }
+
+    private static void load(DatasetGraph dsg, int start, int count) {
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = start ; i < start+count ; i++ )
+                dsg.add(Quad.defaultGraphIRI, node(i), node(-1), node(i+1));
+        });
+    }
+
+    private static void check(DatasetGraph dsg, int start, int count) {
+        NodeTable nodeTable = nodeTable(dsg);
+        Txn.executeRead(dsg, ()->{
+            for ( int i = start ; i <= start+count ; i++ )
+                assertFalse("Node: "+i, NodeId.isDoesNotExist(nodeTable.getNodeIdForNode(node(i))));
+            for ( int i = 0 ; i < 100 ; i++ )
+                assertTrue(NodeId.isDoesNotExist(nodeTable.getNodeIdForNode(NodeFactory.createURI("http://example/other"+i))));
+        });
+    }
+
+    @Test public void filter_none() {
+        DatasetGraph dsg = connect(dir, false);
+        load(dsg, 0, 10);
+        assertNull(nodeTable(dsg).getFilter());
+        check(dsg, 0, 10);
+    }
+
+    @Test public void filter_mem() {
+        StoreParams params = StoreParams.builder().nodeBloomFilter(true).build();
+        DatasetGraph dsg = StoreConnection.connectCreate(Location.mem(), params).getDatasetGraph();
+        load(dsg, 0, 100);
+        NodeTableFilter filter = nodeTable(dsg).getFilter();
+        assertNotNull(filter);
+        assertTrue(filter.count() >= 100);
+        check(dsg, 0, 100);
+    }
+
+    @Test public void filter_abort() {
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 100);
+        dsg.begin(TxnType.WRITE);
+        dsg.add(Quad.defaultGraphIRI, node(1000), node(-1), node(1001));
+        dsg.abort();
+        dsg.end();
+        check(dsg, 0, 100);
+        Txn.executeRead(dsg, ()->assertTrue(NodeId.isDoesNotExist(nodeTable(dsg).getNodeIdForNode(node(1000)))));
+    }
+
+    @Test public void filter_persist() {
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 100);
+        long count = nodeTable(dsg).getFilter().count();
+        Path file = filterFile(dsg);
+        TDBInternal.expel(dsg);
+        assertTrue(Files.exists(file));
+
+        DatasetGraph dsg2 = connect(dir, true);
+        assertEquals(count, nodeTable(dsg2).getFilter().count());
+        check(dsg2, 0, 100);
+    }
+
+    @Test public void filter_stale() throws Exception {
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 100);
+        Path file = filterFile(dsg);
+        TDBInternal.expel(dsg);
+        Path saved = Paths.get(file.toString()+".saved");
+        Files.copy(file, saved);
+
+        DatasetGraph dsg2 = connect(dir, true);
+        load(dsg2, 100, 100);
+        TDBInternal.expel(dsg2);
+        // As if the database stopped without writing the filter.
+        Files.move(saved, file, StandardCopyOption.REPLACE_EXISTING);
+
+        DatasetGraph dsg3 = connect(dir, true);
+        check(dsg3, 0, 200);
+    }
+
+    @Test public void filter_missing() throws Exception {
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 100);
+        Path file = filterFile(dsg);
+        TDBInternal.expel(dsg);
+        Files.delete(file);
+
+        DatasetGraph dsg2 = connect(dir, true);
+        check(dsg2, 0, 100);
+    }
+
+    @Test public void filter_missing_size() throws Exception {
+        // Rebuilt in one piece, sized for the nodes in the table.
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 60_000);
+        Path file = filterFile(dsg);
+        TDBInternal.expel(dsg);
+        Files.delete(file);
+
+        DatasetGraph dsg2 = connect(dir, true);
+        NodeTableFilter filter = nodeTable(dsg2).getFilter();
+        assertEquals(new NodeTableFilter(null).resize(filter.count()).numBits(), filter.numBits());
+        check(dsg2, 0, 60_000);
+    }
+
+    @Test public void filter_compact() {
+        DatasetGraph dsg = connect(dir, true);
+        load(dsg, 0, 100);
+        DatabaseMgr.compact(dsg, true);
+        assertNotNull(nodeTable(dsg).getFilter());
+        check(dsg, 0, 100);
+        load(dsg, 100, 100);
+        check(dsg, 0, 200);
+    }
+}
@@ -311,5 +311,31 @@ public class TestTupleIndexRecordDirect
         assertFalse(iter.hasNext());
    }
 
+    @Test public void TupleIndexRecordFindFrom_1()
+    {
+        TupleIndexRecord index = create("POS");
+        add(index, n1, n2, n3);
+        add(index, n2, n2, n3);
+        add(index, n3, n2, n3);
+        add(index, n1, n2, n4);
+
+        // P and O fixed, S in order, starting at n2.
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple(null, n2, n3), n2);
+        assertEquals(tuple(n2, n2, n3), iter.next());
+        assertEquals(tuple(n3, n2, n3), iter.next());
+        assertFalse(iter.hasNext());
 
+        iter = index.findFrom(tuple(null, n2, n3), null);
+        assertEquals(3, Iter.count(iter));
+    }
+
+    @Test public void TupleIndexRecordFindFrom_2()
+    {
+        TupleIndexRecord index = create("SPO");
+        add(index, n1, n2, n3);
+        // Not a prefix of the index.
+        assertNull(index.findFrom(tuple(null, n2, n3), null));
+        // All slots defined.
+        assertNull(index.findFrom(tuple(n1, n2, n3), null));
+    }
 }
@@ -26,6 +26,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
     TestDatabaseOps.class
     , TestDatabaseConnection.class
+    , TestIncrementalCompaction.class
     , TestSys.class
     //, TestOps.class
 })
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIncrementalCompaction
+{
+    private Location dir = null;
+
+    @Before
+    public void before() {
+        String DIR = ConfigTest.getCleanDir();
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+        dir = Location.create(DIR);
+    }
+
+    @After
+    public void after() {
+        TDBInternal.reset();
+        FileUtils.deleteQuietly(IOX.asFile(dir));
+    }
+
+    private static Quad quad(int i) {
+        Node s = NodeFactory.createURI("http://example/s"+(i%50));
+        Node p = NodeFactory.createURI("http://example/p");
+        return Quad.create(Quad.defaultGraphIRI, s, p, NodeFactory.createLiteral("value-"+i));
+    }
+
+    // Replace the data, one transaction at a time.
+    private static void churn(DatasetGraph dsg, int start, int rounds) {
+        for ( int r = start ; r < start+rounds ; r++ ) {
+            int round = r;
+            Txn.executeWrite(dsg, ()->{
+                for ( int i = 0 ; i < 200 ; i++ ) {
+                    dsg.delete(quad(200*round+i));
+                    dsg.add(quad(200*(round+1)+i));
+                }
+            });
+        }
+    }
+
+    private static void check(DatasetGraph dsg, int round) {
+        Txn.executeRead(dsg, ()->{
+            assertEquals(200, dsg.getDefaultGraph().size());
+            for ( int i = 0 ; i < 200 ; i++ )
+                assertTrue(dsg.contains(quad(200*round+i)));
+        });
+    }
+
+    @Test public void compact_incremental_1() {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        churn(dsg, -1, 5);
+        IncrementalCompaction compaction = DatabaseMgr.compactIncremental(dsg);
+        int steps = 0;
+        while ( ! compaction.step(10) )
+            steps++;
+        assertTrue(steps > 0);
+        assertTrue(compaction.countUnusedBlocks() > 0);
+        churn(dsg, 4, 5);
+        assertTrue(compaction.countReusedBlocks() > 0);
+        check(dsg, 9);
+
+        // Data is as committed after a restart.
+        TDBInternal.expel(dsg);
+        DatasetGraph dsg2 = DatabaseMgr.connectDatasetGraph(dir);
+        check(dsg2, 9);
+    }
+
+    @Test public void compact_incremental_2() {
+        // In the background, while being updated.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        churn(dsg, -1, 3);
+        IncrementalCompaction compaction = DatabaseMgr.compactIncremental(dsg);
+        compaction.start(Duration.ofMillis(1), 5);
+        try {
+            churn(dsg, 2, 20);
+        } finally {
+            compaction.stop();
+        }
+        assertTrue(compaction.countReusedBlocks() > 0);
+        check(dsg, 22);
+    }
+
+    @Test public void compact_incremental_3() {
+        // After compacting by copying.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        churn(dsg, -1, 3);
+        IncrementalCompaction compaction = DatabaseMgr.compactIncremental(dsg);
+        DatabaseMgr.compact(dsg, true);
+        churn(dsg, 2, 3);
+        while ( ! compaction.step(100) ) {}
+        churn(dsg, 5, 3);
+        check(dsg, 8);
+    }
+}
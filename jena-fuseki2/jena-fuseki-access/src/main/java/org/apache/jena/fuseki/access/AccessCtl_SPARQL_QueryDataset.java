@@ -49,6 +49,19 @@ public class AccessCtl_SPARQL_QueryDataset extends SPARQL_QueryDataset {
         return Collections.singletonList("user");
     }
 
+    /**
+     * Results of queries on an access controlled dataset are not cached. What the
+     * query can see depends on the user as given by {@code requestUser}, which need
+     * not be the authenticated user of the request.
+     */
+    @Override
+    protected ResultCache resultCache(HttpAction action) {
+        DatasetGraph dsg = action.getDataset();
+        if ( dsg != null && DataAccessCtl.isAccessControlled(dsg) )
+            return null;
+        return super.resultCache(action);
+    }
+
     /** Decide the dataset - this modifies the query
      *  If the query has a dataset description.
      */
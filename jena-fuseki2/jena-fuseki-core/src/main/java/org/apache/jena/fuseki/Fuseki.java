@@ -44,6 +44,7 @@ import org.apache.jena.sparql.SystemARQ;
 import org.apache.jena.sparql.mgt.SystemInfo;
 import org.apache.jena.sparql.util.Context;
 import org.apache.jena.sparql.util.MappingRegistry;
+import org.apache.jena.sparql.util.Symbol;
 import org.apache.jena.sys.JenaSystem;
 import org.apache.jena.tdb.TDB;
 import org.apache.jena.tdb.transaction.TransactionManager;
@@ -79,6 +80,20 @@ public class Fuseki {
     /** Add CORS header */
     static public final boolean CORS_ENABLED = false;
 
+    /**
+     * Context setting: cache the serialized results of queries, for the endpoint
+     * (or dataset) where it is set to "true". Cached results are discarded when the
+     * dataset changes - a write transaction commits through Fuseki or, for TDB2, by
+     * any other route.
+     */
+    static public final Symbol symResultCache            = Symbol.create(FusekiSymbolIRI+"resultCache");
+
+    /**
+     * Context setting: maximum size in bytes of the result cache of a dataset.
+     * Default {@link org.apache.jena.fuseki.servlets.ResultCache#DefaultSize}.
+     */
+    static public final Symbol symResultCacheSize        = Symbol.create(FusekiSymbolIRI+"resultCacheSize");
+
     /**
      * A relative resources path to the location of
      * <code>fuseki-properties.xml</code> file.
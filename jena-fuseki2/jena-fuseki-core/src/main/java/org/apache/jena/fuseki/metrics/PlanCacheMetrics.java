@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.fuseki.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.jena.fuseki.Fuseki;
+import org.apache.jena.fuseki.server.DataAccessPoint;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.PlanCache;
+import org.apache.jena.sparql.util.Context;
+
+/** Hits, misses and size of the query plan cache used by a dataset, if any. */
+public class PlanCacheMetrics implements MeterBinder {
+
+    private DataAccessPoint dataAccessPoint;
+
+    public PlanCacheMetrics(DataAccessPoint dataAccessPoint) {
+        this.dataAccessPoint = dataAccessPoint;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        DatasetGraph dsg = dataAccessPoint.getDataService().getDataset();
+        if ( dsg == null )
+            return;
+        PlanCache planCache = PlanCache.get(Context.mergeCopy(Fuseki.getContext(), dsg.getContext()));
+        if ( planCache == null )
+            return;
+        String[] tags = { "dataset", dataAccessPoint.getName() };
+        Gauge.builder("fuseki_plancache_hits", planCache, PlanCache::getHits).tags(tags).register(registry);
+        Gauge.builder("fuseki_plancache_misses", planCache, PlanCache::getMisses).tags(tags).register(registry);
+        Gauge.builder("fuseki_plancache_size", planCache, PlanCache::size).tags(tags).register(registry);
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.fuseki.FusekiException;
 import org.apache.jena.fuseki.metrics.FusekiRequestsMetrics;
+import org.apache.jena.fuseki.metrics.PlanCacheMetrics;
 
 /**
  * Registry of (dataset name, {@link DataAccessPoint}).
@@ -55,6 +56,7 @@ public class DataAccessPointRegistry extends Registry<String, DataAccessPoint>
         super.put(name, accessPt);
         if (meterRegistry != null) {
             new FusekiRequestsMetrics( accessPt ).bindTo( meterRegistry );
+            new PlanCacheMetrics( accessPt ).bindTo( meterRegistry );
         }
     }
 
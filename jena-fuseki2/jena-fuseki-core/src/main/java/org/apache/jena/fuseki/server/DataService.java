@@ -35,9 +35,11 @@ import org.apache.jena.fuseki.FusekiException;
 import org.apache.jena.fuseki.auth.AuthPolicy;
 import org.apache.jena.fuseki.build.FusekiConfig;
 import org.apache.jena.fuseki.servlets.ActionService;
+import org.apache.jena.fuseki.servlets.ResultCache;
 import org.apache.jena.query.TxnType;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphWrapper;
+import org.apache.jena.sparql.util.Context;
 
 public class DataService {
     // Not final - it null'ed if closed to release the dataset state.
@@ -276,6 +278,34 @@ public class DataService {
         activeTxn.decrementAndGet();
     }
 
+    /** Counter of write transactions that have committed through Fuseki. */
+    private final AtomicLong dataVersion = new AtomicLong(0);
+
+    /** Note that a write transaction has committed. */
+    public void advanceDataVersion() {
+        dataVersion.incrementAndGet();
+    }
+
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    private volatile ResultCache resultCache = null;
+
+    /**
+     * The result cache for this dataset, created on first use with the size
+     * from {@link Fuseki#symResultCacheSize} in the context.
+     */
+    public ResultCache getResultCache(Context context) {
+        if ( resultCache == null ) {
+            synchronized(this) {
+                if ( resultCache == null )
+                    resultCache = new ResultCache(context.getLong(Fuseki.symResultCacheSize, ResultCache.DefaultSize));
+            }
+        }
+        return resultCache;
+    }
+
     /** Shutdown and never use again. */
     public synchronized void shutdown() {
         if ( state == CLOSING )
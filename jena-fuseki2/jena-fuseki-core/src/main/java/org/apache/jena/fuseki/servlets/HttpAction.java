@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.fuseki.FusekiException;
 import org.apache.jena.fuseki.server.*;
@@ -39,6 +40,8 @@ import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Transactional;
 import org.apache.jena.sparql.core.TransactionalLock;
 import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 
 /**
@@ -312,9 +315,41 @@ public class HttpAction
     public void commit() {
         dataService.finishTxn();
         transactional.commit();
+        // Cached results are now out of date.
+        dataService.advanceDataVersion();
         end();
     }
 
+    /**
+     * Return the {@link GroupCommit} to use for write actions, or null.
+     * Group commit is used for a TDB2 database when {@link TDB2#symGroupCommit} is set.
+     */
+    public GroupCommit getGroupCommit() {
+        if ( dsg == null || ! isTransactional || ! getContext().isTrue(TDB2.symGroupCommit) )
+            return null;
+        if ( ! TDBInternal.isTDB2(dsg) )
+            return null;
+        return TDBInternal.getDatabaseContainer(dsg).getGroupCommit();
+    }
+
+    /**
+     * Run a write action on the dataset ({@link #getDataset()}) with group commit, in
+     * place of begin-write, the action and {@link #commit()}. The action may run on
+     * another thread, in the same write transaction as the actions of other requests,
+     * and may be run more than once. This call returns when that transaction has
+     * committed. {@code bytes} is the size of the request.
+     */
+    public void executeWrite(GroupCommit groupCommit, long bytes, Runnable writeAction) {
+        dataService.startTxn(WRITE);
+        try {
+            groupCommit.execute(writeAction, bytes);
+        } finally {
+            dataService.finishTxn();
+        }
+        // Cached results are now out of date.
+        dataService.advanceDataVersion();
+    }
+
     /** Abort: ignore exceptions (for clearup code) */
     public void abortSilent() {
         try { transactional.abort(); }
@@ -19,8 +19,13 @@
 package org.apache.jena.fuseki.servlets;
 
 import static java.lang.String.format;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
@@ -31,12 +36,114 @@ import org.apache.jena.atlas.logging.Log;
 public class HttpServletResponseTracker extends HttpServletResponseWrapper
 {
     private final HttpAction action;
+    // Copy of the response body, for the result cache.
+    private int captureLimit = -1;
+    private CaptureOutputStream capture = null;
+    private boolean captureFailed = false;
 
     public HttpServletResponseTracker(HttpAction action, HttpServletResponse response) {
         super(response);
         this.action = action;
     }
 
+    /**
+     * Start keeping a copy of the response body, up to {@code limit} bytes.
+     * Call before the response is written.
+     */
+    public void startCapture(int limit) {
+        captureLimit = limit;
+        capture = null;
+        captureFailed = false;
+    }
+
+    /**
+     * Stop keeping a copy of the response body and return it, or return null if
+     * it was not all captured (too large, or written by other means).
+     */
+    public byte[] finishCapture() {
+        CaptureOutputStream x = capture;
+        boolean failed = captureFailed;
+        captureLimit = -1;
+        capture = null;
+        captureFailed = false;
+        if ( x == null || failed )
+            return null;
+        return x.captured();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if ( captureLimit < 0 )
+            return super.getOutputStream();
+        if ( capture == null )
+            capture = new CaptureOutputStream(super.getOutputStream(), captureLimit);
+        return capture;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if ( captureLimit >= 0 )
+            captureFailed = true;
+        return super.getWriter();
+    }
+
+    /** Write to the response, keeping a copy of up to {@code limit} bytes. */
+    private static class CaptureOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CaptureOutputStream(ServletOutputStream out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        byte[] captured() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        private boolean room(int len) {
+            if ( copy != null && copy.size() + len > limit )
+                // Too large - stop copying.
+                copy = null;
+            return copy != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if ( room(1) )
+                copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if ( room(len) )
+                copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
     @Override
     public void sendError(int sc, String msg) throws IOException {
         action.statusCode = sc;
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.fuseki.servlets;
+
+import java.util.*;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.jena.ext.com.google.common.cache.Cache;
+import org.apache.jena.ext.com.google.common.cache.CacheBuilder;
+import org.apache.jena.riot.web.HttpNames;
+
+/**
+ * Cache of serialized query results for one dataset.
+ * <p>
+ * Entries are keyed by endpoint, query, the authenticated user, the request
+ * details that decide the response format, and the version of the data. A newer
+ * data version (a write transaction has committed) discards all entries. The total
+ * size of the cached results is bounded; least recently used entries are evicted
+ * first.
+ *
+ * @see org.apache.jena.fuseki.Fuseki#symResultCache
+ */
+public class ResultCache {
+    /** Default maximum size in bytes */
+    public static final long DefaultSize = 64L * 1024 * 1024;
+
+    // Largest single entry, as a fraction of the maximum size.
+    private static final int EntryFraction = 16;
+
+    /** Cached response */
+    public static final class Entry {
+        private final String contentType;
+        private final String charset;
+        private final byte[] bytes;
+
+        Entry(String contentType, String charset, byte[] bytes) {
+            this.contentType = contentType;
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+
+        public String getContentType()  { return contentType; }
+        /** The charset of the response, or null. */
+        public String getCharset()      { return charset; }
+        public byte[] getBytes()        { return bytes; }
+    }
+
+    /**
+     * Version of the data: a counter of writes through Fuseki and, if the storage
+     * records it, the storage version of the read transaction.
+     */
+    public static final class Version {
+        private final long service;
+        private final long storage;
+
+        public Version(long service, long storage) {
+            this.service = service;
+            this.storage = storage;
+        }
+
+        boolean isAfter(Version other) {
+            return service >= other.service && storage >= other.storage && !equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, storage);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof Version) )
+                return false;
+            Version other = (Version)obj;
+            return service == other.service && storage == other.storage;
+        }
+
+        @Override
+        public String toString() {
+            return service + "/" + storage;
+        }
+    }
+
+    private static final class Key {
+        private final String endpoint;
+        private final String query;
+        private final String user;
+        private final String request;
+        private final Version version;
+
+        Key(String endpoint, String query, String user, String request, Version version) {
+            this.endpoint = endpoint;
+            this.query = query;
+            this.user = user;
+            this.request = request;
+            this.version = version;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, query, user, request, version);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof Key) )
+                return false;
+            Key other = (Key)obj;
+            return endpoint.equals(other.endpoint) && query.equals(other.query) && Objects.equals(user, other.user)
+                   && request.equals(other.request) && version.equals(other.version);
+        }
+    }
+
+    private final long maxEntrySize;
+    private final Cache<Key, Entry> cache;
+    private Version currentVersion = new Version(-1, -1);
+
+    public ResultCache(long maxSize) {
+        this.maxEntrySize = Math.min(Integer.MAX_VALUE, maxSize / EntryFraction);
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSize)
+            .weigher((Key key, Entry entry) -> entry.bytes.length + key.query.length())
+            .build();
+    }
+
+    /** The largest response that will be cached. */
+    public int maxEntrySize() {
+        return (int)maxEntrySize;
+    }
+
+    /**
+     * Get the cached response, or null.
+     * The version is the data version seen by the request.
+     */
+    public Entry get(String endpoint, String query, HttpServletRequest request, Version version) {
+        if ( !checkVersion(version) )
+            return null;
+        return cache.getIfPresent(key(endpoint, query, request, version));
+    }
+
+    /**
+     * Add a response to the cache. It is not cached if the data has changed since
+     * {@code version}.
+     */
+    public void put(String endpoint, String query, HttpServletRequest request, Version version,
+                    String contentType, String charset, byte[] bytes) {
+        if ( bytes.length > maxEntrySize || !checkVersion(version) )
+            return;
+        cache.put(key(endpoint, query, request, version), new Entry(contentType, charset, bytes));
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // Move to a newer version, discarding the cached results.
+    // Returns false for requests that see an older version.
+    private synchronized boolean checkVersion(Version version) {
+        if ( version.isAfter(currentVersion) ) {
+            currentVersion = version;
+            cache.invalidateAll();
+            return true;
+        }
+        return version.equals(currentVersion);
+    }
+
+    // Request parameters and headers that decide the response, excluding the query
+    // itself and the timeout. The response may depend on the user (data access control)
+    // so the user is part of the key.
+    private static Key key(String endpoint, String query, HttpServletRequest request, Version version) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getHeader(HttpNames.hAccept)).append('\n');
+        SortedMap<String, String[]> params = new TreeMap<>(request.getParameterMap());
+        params.forEach((name, values) -> {
+            if ( name.equals(HttpNames.paramQuery) || name.equals(HttpNames.paramRequest) || name.equals(HttpNames.paramTimeout) )
+                return;
+            sb.append(name).append('=').append(String.join("\t", values)).append('\n');
+        });
+        return new Key(endpoint, query, request.getRemoteUser(), sb.toString(), version);
+    }
+}
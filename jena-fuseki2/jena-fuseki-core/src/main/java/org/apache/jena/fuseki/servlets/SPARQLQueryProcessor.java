@@ -29,6 +29,7 @@ import static org.apache.jena.riot.web.HttpNames.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -40,15 +41,19 @@ import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.web.ContentType;
 import org.apache.jena.fuseki.Fuseki;
+import org.apache.jena.fuseki.server.DataService;
 import org.apache.jena.fuseki.system.FusekiNetLib;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.riot.web.HttpOp;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Prologue;
 import org.apache.jena.sparql.engine.EngineLib;
+import org.apache.jena.sparql.engine.main.ExecutionProfile;
 import org.apache.jena.sparql.resultset.SPARQLResult;
+import org.apache.jena.tdb2.sys.TDBInternal;
 import org.apache.jena.web.HttpSC;
 
 /**
@@ -259,9 +264,33 @@ public abstract class SPARQLQueryProcessor extends ActionService
             ServletOps.errorBadRequest("Error: \n" + queryString + "\n" + ex.getMessage());
         }
 
+        // EXPLAIN ANALYZE : execute the query and return the execution profile, not the results.
+        String analyze = action.request.getParameter(paramAnalyze);
+        if ( analyze != null ) {
+            analyze = analyze.isEmpty() ? "json" : analyze.toLowerCase(Locale.ROOT);
+            if ( ! analyze.equals("json") && ! analyze.equals("sse") )
+                ServletOps.errorBadRequest("Parameter 'analyze' must be 'json' or 'sse': " + analyze);
+        }
+
+        ResultCache resultCache = ( analyze == null ) ? resultCache(action) : null;
+        // The service version must be read before the read transaction starts
+        // so that a concurrent commit makes this request's version look old.
+        long serviceVersion = ( resultCache == null ) ? -1 : action.getDataService().getDataVersion();
+
         // Assumes finished whole thing by end of sendResult.
         try {
             action.beginRead();
+            ResultCache.Version version = null;
+            if ( resultCache != null ) {
+                version = new ResultCache.Version(serviceVersion, storageVersion(action.getActiveDSG()));
+                ResultCache.Entry entry = resultCache.get(action.getEndpoint().getName(), queryStringLog, action.request, version);
+                if ( entry != null ) {
+                    sendCachedResults(action, entry);
+                    return;
+                }
+                action.response.startCapture(resultCache.maxEntrySize());
+            }
+
             Pair<DatasetGraph, Query> p = decideDataset(action, query, queryStringLog);
             DatasetGraph dataset = p.getLeft();
             Query q = p.getRight();
@@ -269,9 +298,28 @@ public abstract class SPARQLQueryProcessor extends ActionService
                 q = query;
 
             try ( QueryExecution qExec = createQueryExecution(action, q, dataset); ) {
+                ExecutionProfile profile = null;
+                if ( analyze != null ) {
+                    profile = new ExecutionProfile();
+                    qExec.getContext().set(ARQ.executionProfile, profile);
+                }
                 SPARQLResult result = executeQuery(action, qExec, query, queryStringLog);
-                // Deals with exceptions itself.
-                sendResults(action, result, query.getPrologue());
+                if ( profile != null )
+                    sendProfile(action, result, profile, analyze);
+                else
+                    // Deals with exceptions itself.
+                    sendResults(action, result, query.getPrologue());
+            }
+
+            if ( resultCache != null ) {
+                byte[] bytes = action.response.finishCapture();
+                // The content type as sent, including any charset however it was set.
+                String contentType = action.response.getContentType();
+                if ( bytes != null && contentType != null && action.statusCode == HttpSC.OK_200 ) {
+                    ContentType ct = ContentType.create(contentType);
+                    resultCache.put(action.getEndpoint().getName(), queryStringLog, action.request, version,
+                                    ct.getContentTypeStr(), ct.getCharset(), bytes);
+                }
             }
         }
         catch (QueryParseException ex) {
@@ -282,7 +330,73 @@ public abstract class SPARQLQueryProcessor extends ActionService
             // Additional counter information.
             incCounter(action.getEndpoint().getCounters(), QueryTimeouts);
             throw ex;
-        } finally { action.endRead(); }
+        } finally {
+            if ( resultCache != null )
+                // Discard any partial copy.
+                action.response.finishCapture();
+            action.endRead();
+        }
+    }
+
+    /**
+     * Return the {@link ResultCache} to use for this action, or null if results are not cached.
+     * Caching is enabled per endpoint (or per service) by setting {@link Fuseki#symResultCache}
+     * in the context.
+     */
+    protected ResultCache resultCache(HttpAction action) {
+        DataService dSrv = action.getDataService();
+        if ( dSrv == null || action.getEndpoint() == null )
+            return null;
+        if ( ! action.getContext().isTrue(Fuseki.symResultCache) )
+            return null;
+        return dSrv.getResultCache(action.getContext());
+    }
+
+    /**
+     * The version of the storage as seen by the current read transaction.
+     * TDB2 records a data version for each commit; other datasets return -1
+     * and rely on the service version, which only tracks writes made through Fuseki.
+     */
+    private static long storageVersion(DatasetGraph dsg) {
+        if ( dsg == null || ! TDBInternal.isTDB2(dsg) )
+            return -1;
+        return TDBInternal.getDatasetGraphTDB(dsg).getTxnSystem().getTransactionInfo().getDataVersion();
+    }
+
+    private static void sendCachedResults(HttpAction action, ResultCache.Entry entry) {
+        action.log.info(format("[%d] Result cache hit", action.id));
+        ServletOps.setNoCache(action);
+        action.response.setContentType(entry.getContentType());
+        if ( entry.getCharset() != null )
+            action.response.setCharacterEncoding(entry.getCharset());
+        ServletOps.success(action);
+        try {
+            action.response.getOutputStream().write(entry.getBytes());
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    /**
+     * Run the query to completion, discarding the results, and send the
+     * execution profile as JSON or as SSE text.
+     */
+    private static void sendProfile(HttpAction action, SPARQLResult result, ExecutionProfile profile, String format) {
+        if ( result.isResultSet() )
+            ResultSetFormatter.consume(result.getResultSet());
+        else if ( result.isJson() )
+            result.getJsonItems().forEachRemaining(x->{});
+        action.log.info(format("[%d] Execution profile (%s)", action.id, format));
+        if ( format.equals("json") ) {
+            ServletOps.sendJsonReponse(action, profile.asJson());
+            return;
+        }
+        ServletOps.success(action);
+        try {
+            byte[] bytes = profile.asSSE().getBytes(StandardCharsets.UTF_8);
+            action.response.setContentType(WebContent.contentTypeTextPlain);
+            action.response.setCharacterEncoding(WebContent.charsetUTF8);
+            action.response.setContentLength(bytes.length);
+            action.response.getOutputStream().write(bytes);
+        } catch (IOException ex) { IO.exception(ex); }
     }
 
     /**
@@ -442,7 +556,8 @@ public abstract class SPARQLQueryProcessor extends ActionService
     /** The parameters Fuseki also provides */
     private static Collection<String> fusekiParams_ = Arrays.asList(paramQueryRef, paramStyleSheet, paramAccept,
                                                                     paramOutput1, paramOutput2, paramOutput3,
-                                                                    paramCallback, paramForceAccept, paramTimeout);
+                                                                    paramCallback, paramForceAccept, paramTimeout,
+                                                                    paramAnalyze);
 
     protected Collection<String> fusekiParams() { return fusekiParams_; }
 }
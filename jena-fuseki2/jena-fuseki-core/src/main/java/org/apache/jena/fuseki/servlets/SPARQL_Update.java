@@ -42,6 +42,7 @@ import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.atlas.lib.StrUtils;
 import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
@@ -52,6 +53,7 @@ import org.apache.jena.query.QueryParseException;
 import org.apache.jena.query.Syntax;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.shared.OperationDeniedException;
+import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.modify.UsingList;
 import org.apache.jena.update.UpdateAction;
 import org.apache.jena.update.UpdateException;
@@ -208,6 +210,12 @@ public class SPARQL_Update extends ActionService
     protected void execute(HttpAction action, InputStream input) {
         UsingList usingList = processProtocol(action.request);
 
+        GroupCommit groupCommit = action.getGroupCommit();
+        if ( groupCommit != null ) {
+            executeGroupCommit(action, groupCommit, usingList, input);
+            return;
+        }
+
         // If the dsg is transactional, then we can parse and execute the update in a streaming fashion.
         // If it isn't, we need to read the entire update request before performing any updates, because
         // we have to attempt to make the request atomic in the face of malformed updates.
@@ -250,6 +258,32 @@ public class SPARQL_Update extends ActionService
         } finally { action.end(); }
     }
 
+    // The update may share a transaction with other requests and may be run again
+    // if another update of the batch fails, so it is parsed before it is executed.
+    private void executeGroupCommit(HttpAction action, GroupCommit groupCommit, UsingList usingList, InputStream input) {
+        byte[] bytes = IO.readWholeFile(input);
+        UpdateRequest req;
+        try {
+            req = UpdateFactory.read(usingList, new ByteArrayInputStream(bytes), UpdateParseBase, Syntax.syntaxARQ);
+        }
+        catch (UpdateException ex) { ServletOps.errorBadRequest(ex.getMessage()); return; }
+        catch (QueryParseException ex) { ServletOps.errorBadRequest(messageForException(ex)); return; }
+
+        DatasetGraph dsg = action.getDataset();
+        try {
+            action.executeWrite(groupCommit, bytes.length, ()->UpdateAction.execute(req, dsg));
+        } catch (UpdateException ex) {
+            incCounter(action.getEndpoint().getCounters(), UpdateExecErrors);
+            ServletOps.errorOccurred(ex.getMessage());
+        } catch (QueryBuildException ex) {
+            ServletOps.errorBadRequest(messageForException(ex));
+        } catch (OperationDeniedException | ActionErrorException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            ServletOps.errorOccurred(ex.getMessage(), ex);
+        }
+    }
+
     /* [It is an error to supply the using-graph-uri or using-named-graph-uri parameters
      * when using this protocol to convey a SPARQL 1.1 Update request that contains an
      * operation that uses the USING, USING NAMED, or WITH clause.]
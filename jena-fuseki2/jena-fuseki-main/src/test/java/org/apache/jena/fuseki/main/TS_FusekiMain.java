@@ -35,6 +35,8 @@ import org.junit.runners.Suite.SuiteClasses;
   , TestHTTP.class
   , TestFusekiServerBuild.class
   , TestFusekiShaclValidation.class
+  , TestResultCache.class
+  , TestGroupCommitUpdate.class
 })
 public class TS_FusekiMain {}
 
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.fuseki.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.dboe.transaction.GroupCommit;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpOp;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.apache.jena.web.HttpSC;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** SPARQL Update through Fuseki with group commit on a TDB2 database. */
+public class TestGroupCommitUpdate {
+
+    private FusekiServer server;
+    private String URL;
+    private DatasetGraph dsg;
+    private GroupCommit groupCommit;
+
+    @Before public void before() {
+        dsg = DatabaseMgr.createDatasetGraph();
+        dsg.getContext().set(TDB2.symGroupCommit, true);
+        groupCommit = TDBInternal.getDatabaseContainer(dsg).getGroupCommit();
+        server = FusekiServer.create().port(0).add("/ds", dsg).build();
+        server.start();
+        URL = server.datasetURL("/ds")+"/update";
+    }
+
+    @After public void after() {
+        server.stop();
+    }
+
+    private void update(String updateString) {
+        HttpOp.execHttpPost(URL, WebContent.contentTypeSPARQLUpdate, updateString);
+    }
+
+    private long count() {
+        return Txn.calculateRead(dsg, ()->Iter.count(dsg.find()));
+    }
+
+    @Test public void groupCommit_update_01() {
+        update("INSERT DATA { <x:s> <x:p> 1 }");
+        update("INSERT DATA { <x:s> <x:p> 2 }");
+        assertEquals(2, count());
+        assertEquals(2, groupCommit.getActionCount());
+        assertTrue(groupCommit.getByteCount() > 0);
+    }
+
+    @Test public void groupCommit_update_concurrent() throws InterruptedException {
+        int N = 5;
+        // Hold the writer so that the updates wait for it, and join one batch.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(()->{
+            dsg.begin(TxnType.WRITE);
+            started.countDown();
+            try { release.await(); } catch (InterruptedException ex) {}
+            dsg.commit();
+            dsg.end();
+        });
+        writer.start();
+        started.await();
+
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            String updateString = "INSERT DATA { <x:s> <x:p> "+i+" }";
+            threads[i] = new Thread(()->{
+                try { update(updateString); }
+                catch (Throwable th) { errors.incrementAndGet(); }
+            });
+            threads[i].start();
+        }
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ( groupCommit.getActiveCount() != N ) {
+                if ( System.currentTimeMillis() > deadline )
+                    fail("Updates not waiting for group commit: "+groupCommit.getActiveCount());
+                Thread.sleep(1);
+            }
+        } finally {
+            release.countDown();
+            for ( Thread t : threads )
+                t.join();
+            writer.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(N, count());
+        assertEquals(N, groupCommit.getActionCount());
+        assertEquals(1, groupCommit.getBatchCount());
+    }
+
+    @Test public void groupCommit_update_bad() {
+        update("INSERT DATA { <x:s> <x:p> 1 }");
+        try {
+            update("INSERT DATA { <x:s> <x:p> }");
+            fail("Expected a bad request");
+        } catch (HttpException ex) {
+            assertEquals(HttpSC.BAD_REQUEST_400, ex.getStatusCode());
+        }
+        assertEquals(1, count());
+        assertEquals(1, groupCommit.getActionCount());
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.fuseki.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.atlas.web.WebLib;
+import org.apache.jena.fuseki.Fuseki;
+import org.apache.jena.fuseki.access.DataAccessCtl;
+import org.apache.jena.fuseki.access.SecurityContextView;
+import org.apache.jena.fuseki.access.SecurityRegistry;
+import org.apache.jena.fuseki.jetty.JettyLib;
+import org.apache.jena.fuseki.server.DataService;
+import org.apache.jena.fuseki.servlets.ResultCache;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpNames;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.update.UpdateExecutionFactory;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.web.HttpSC;
+import org.eclipse.jetty.security.ConstraintSecurityHandler;
+import org.eclipse.jetty.security.UserStore;
+import org.eclipse.jetty.util.security.Password;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResultCache {
+
+    private FusekiServer server;
+    private String URL;
+    private DataService dataService;
+
+    @Before public void before() {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s :p 1)")));
+        dsg.getContext().set(Fuseki.symResultCache, true);
+        int port = WebLib.choosePort();
+        server = FusekiServer.create().port(port).add("/ds", dsg).build();
+        server.start();
+        URL = "http://localhost:"+port+"/ds";
+        dataService = server.getDataAccessPointRegistry().get("/ds").getDataService();
+    }
+
+    @After public void after() {
+        server.stop();
+    }
+
+    private int count(String queryString) {
+        try ( QueryExecution qExec = QueryExecutionFactory.sparqlService(URL+"/query", queryString) ) {
+            return ResultSetFormatter.consume(qExec.execSelect());
+        }
+    }
+
+    @Test public void resultCache_01() {
+        assertEquals(1, count("SELECT * { ?s ?p ?o }"));
+        ResultCache cache = dataService.getResultCache(Fuseki.getContext());
+        assertNotNull(cache);
+        assertEquals(1, cache.size());
+        // Served from the cache.
+        assertEquals(1, count("SELECT * { ?s ?p ?o }"));
+        assertEquals(1, cache.size());
+        assertEquals(1, count("SELECT ?s { ?s ?p ?o }"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void resultCache_charset_select() throws IOException {
+        ContentType ct = testContentType("SELECT * { ?s ?p ?o }", WebContent.contentTypeResultsJSON);
+        assertEquals(WebContent.charsetUTF8, ct.getCharset().toLowerCase(Locale.ROOT));
+    }
+
+    @Test public void resultCache_charset_construct() throws IOException {
+        testContentType("CONSTRUCT WHERE { ?s ?p ?o }", WebContent.contentTypeTurtle);
+    }
+
+    // The cached response has the same content type and charset as the original response.
+    private ContentType testContentType(String query, String accept) throws IOException {
+        ContentType ct1 = ContentType.create(contentType(query, accept));
+        assertEquals(1, dataService.getResultCache(Fuseki.getContext()).size());
+        // Served from the cache.
+        ContentType ct2 = ContentType.create(contentType(query, accept));
+        assertEquals(ct1.getContentTypeStr(), ct2.getContentTypeStr());
+        assertEquals(ct1.getCharset(), ct2.getCharset());
+        return ct2;
+    }
+
+    private String contentType(String queryString, String accept) throws IOException {
+        String x = URL+"/query?query="+URLEncoder.encode(queryString, StandardCharsets.UTF_8.name());
+        HttpURLConnection conn = (HttpURLConnection)new java.net.URL(x).openConnection();
+        conn.setRequestProperty(HttpNames.hAccept, accept);
+        try ( InputStream in = conn.getInputStream() ) {
+            assertEquals(HttpSC.OK_200, conn.getResponseCode());
+            IO.readWholeFile(in);
+            return conn.getContentType();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Test public void resultCache_02() {
+        assertEquals(1, count("SELECT * { ?s ?p ?o }"));
+        UpdateExecutionFactory.createRemote(UpdateFactory.create("INSERT DATA { <x:s> <x:p> 2 }"), URL+"/update").execute();
+        // An update invalidates the cache.
+        assertEquals(2, count("SELECT * { ?s ?p ?o }"));
+        assertTrue(dataService.getDataVersion() > 0);
+    }
+
+    // Users see different results.
+    private static final String queryUsers = "SELECT * { GRAPH ?g { ?s ?p ?o } }";
+
+    @Test public void resultCache_users() {
+        // No access control: the results are cached per user.
+        serverUsers(dsg->dsg, (url, ds)->{
+            assertEquals(1, countUser(url, "user1", "pw1", queryUsers));
+            assertEquals(1, countUser(url, "user2", "pw2", queryUsers));
+            assertEquals(2, ds.getResultCache(Fuseki.getContext()).size());
+        });
+    }
+
+    @Test public void resultCache_accessControl() {
+        SecurityRegistry reg = new SecurityRegistry();
+        reg.put("user1", new SecurityContextView("http://test/g1"));
+        reg.put("user2", new SecurityContextView(Quad.defaultGraphIRI.getURI()));
+        serverUsers(dsg->DataAccessCtl.controlledDataset(dsg, reg), (url, ds)->{
+            assertEquals(1, countUser(url, "user1", "pw1", queryUsers));
+            // Same query, a user who can not see the named graph.
+            assertEquals(0, countUser(url, "user2", "pw2", queryUsers));
+            assertEquals(1, countUser(url, "user1", "pw1", queryUsers));
+            assertEquals(0, ds.getResultCache(Fuseki.getContext()).size());
+        });
+    }
+
+    private interface UsersAction { void run(String url, DataService dataService); }
+
+    private static void serverUsers(UnaryOperator<DatasetGraph> setup, UsersAction action) {
+        DatasetGraph dsg0 = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg0, ()->dsg0.add(SSE.parseQuad("(<http://test/g1> :s :p 1)")));
+        dsg0.getContext().set(Fuseki.symResultCache, true);
+        DatasetGraph dsg = setup.apply(dsg0);
+        UserStore userStore = new UserStore();
+        userStore.addUser("user1", new Password("pw1"), new String[]{"**"});
+        userStore.addUser("user2", new Password("pw2"), new String[]{"**"});
+        ConstraintSecurityHandler sh = JettyLib.makeSecurityHandler("*", userStore);
+        JettyLib.addPathConstraint(sh, "/*");
+        FusekiServer server = FusekiServer.create().port(0).securityHandler(sh).add("/ds", dsg).build();
+        server.start();
+        try {
+            action.run(server.datasetURL("/ds"), server.getDataAccessPointRegistry().get("/ds").getDataService());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int countUser(String url, String user, String password, String queryString) {
+        int[] count = { 0 };
+        try ( RDFConnection conn = RDFConnectionFactory.connectPW(url, user, password) ) {
+            conn.queryResultSet(queryString, rs->count[0] = ResultSetFormatter.consume(rs));
+        }
+        return count[0];
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.jena.sparql.core.DatasetGraph ;
 import org.apache.jena.sparql.core.DynamicDatasets ;
 import org.apache.jena.sparql.core.Substitute ;
 import org.apache.jena.sparql.engine.Plan ;
+import org.apache.jena.sparql.engine.PlanCache ;
 import org.apache.jena.sparql.engine.QueryEngineFactory ;
 import org.apache.jena.sparql.engine.QueryEngineRegistry ;
 import org.apache.jena.sparql.engine.QueryIterator ;
@@ -53,6 +54,11 @@ public class QueryEngineTDB extends QueryEngineMain
     static public void register()       { QueryEngineRegistry.addFactory(factory) ; }
     static public void unregister()     { QueryEngineRegistry.removeFactory(factory) ; }
 
+    static {
+        // The union default graph setting changes the algebra.
+        PlanCache.addPlanningSymbol(TDB.symUnionDefaultGraph) ;
+    }
+
     // ---- Object
 
     protected QueryEngineTDB(Op op, DatasetGraphTDB dataset, Binding input, Context context) {